@@ -0,0 +1,128 @@
+/* Loop nests in the style of the NAS Parallel Benchmarks used as inputs of
+   the symbolic-analysis benchmarks. The code is not meant to be run. */
+
+#define NX 66
+#define NY 66
+#define NZ 66
+#define NA 1400
+#define NZZ 15000
+
+double u[NZ][NY][NX], v[NZ][NY][NX], r[NZ][NY][NX];
+double a[4];
+double colval[NZZ], p[NA+2], q[NA+2];
+int rowstr[NA+2], colidx[NZZ];
+double rsd[5][NZ][NY][NX], flux[5][NX];
+double x[2*NX][NY], y[NY][2*NX];
+
+/* MG: residual computation on a 3-D grid with a 27-point stencil */
+void resid(int n1, int n2, int n3)
+{
+  int i1, i2, i3;
+  double u1[NX], u2[NX];
+  for (i3 = 1; i3 < n3-1; i3++) {
+    for (i2 = 1; i2 < n2-1; i2++) {
+      for (i1 = 0; i1 < n1; i1++) {
+        u1[i1] = u[i3][i2-1][i1] + u[i3][i2+1][i1]
+               + u[i3-1][i2][i1] + u[i3+1][i2][i1];
+        u2[i1] = u[i3-1][i2-1][i1] + u[i3-1][i2+1][i1]
+               + u[i3+1][i2-1][i1] + u[i3+1][i2+1][i1];
+      }
+      for (i1 = 1; i1 < n1-1; i1++) {
+        r[i3][i2][i1] = v[i3][i2][i1]
+                      - a[0] * u[i3][i2][i1]
+                      - a[2] * (u2[i1] + u1[i1-1] + u1[i1+1])
+                      - a[3] * (u2[i1-1] + u2[i1+1]);
+      }
+    }
+  }
+}
+
+/* MG: restriction to a coarser grid with strided accesses */
+void rprj3(int m1k, int m2k, int m3k, int m1j, int m2j, int m3j)
+{
+  int i1, i2, i3, j1, j2, j3;
+  for (j3 = 1; j3 < m3j-1; j3++) {
+    i3 = 2*j3 - 1;
+    for (j2 = 1; j2 < m2j-1; j2++) {
+      i2 = 2*j2 - 1;
+      for (j1 = 1; j1 < m1j-1; j1++) {
+        i1 = 2*j1 - 1;
+        v[j3][j2][j1] = 0.5 * r[i3+1][i2+1][i1+1]
+                      + 0.25 * (r[i3+1][i2+1][i1] + r[i3+1][i2+1][i1+2]);
+      }
+    }
+  }
+}
+
+/* CG: sparse matrix-vector product with indirect accesses */
+void matvec(int firstrow, int lastrow)
+{
+  int j, k;
+  double sum;
+  for (j = 1; j <= lastrow - firstrow + 1; j++) {
+    sum = 0.0;
+    for (k = rowstr[j]; k < rowstr[j+1]; k++) {
+      sum = sum + colval[k] * p[colidx[k]];
+    }
+    q[j] = sum;
+  }
+}
+
+/* LU: lower-triangular sweep with symbolic bounds */
+void blts(int ist, int iend, int jst, int jend, int k)
+{
+  int i, j, m;
+  for (j = jst; j <= jend; j++) {
+    for (i = ist; i <= iend; i++) {
+      for (m = 0; m < 5; m++) {
+        rsd[m][k][j][i] = rsd[m][k][j][i]
+                        - 0.1 * (rsd[m][k-1][j][i] + rsd[m][k][j-1][i]
+                        + rsd[m][k][j][i-1]);
+      }
+    }
+  }
+}
+
+/* LU: flux differences along one dimension */
+void rhsx(int nx, int jst, int jend, int k)
+{
+  int i, j, m;
+  for (j = jst; j <= jend; j++) {
+    for (i = 0; i < nx; i++) {
+      for (m = 0; m < 5; m++) {
+        flux[m][i] = rsd[m][k][j][i] * 0.4;
+      }
+    }
+    for (i = 1; i < nx-1; i++) {
+      for (m = 0; m < 5; m++) {
+        rsd[m][k][j][i] = rsd[m][k][j][i] - (flux[m][i+1] - flux[m][i-1]);
+      }
+    }
+  }
+}
+
+/* FT: transpose with a blocked loop nest */
+void transpose(int n1, int n2, int bs)
+{
+  int i, j, ii, jj;
+  for (jj = 0; jj < n2; jj += bs) {
+    for (ii = 0; ii < n1; ii += bs) {
+      for (j = jj; j < jj + bs; j++) {
+        for (i = ii; i < ii + bs; i++) {
+          y[j][i] = x[i][j];
+        }
+      }
+    }
+  }
+}
+
+int main()
+{
+  resid(NX, NY, NZ);
+  rprj3(NX, NY, NZ, NX/2, NY/2, NZ/2);
+  matvec(1, NA);
+  blts(1, NX-2, 1, NY-2, 2);
+  rhsx(NX, 1, NY-2, 2);
+  transpose(NX, NY, 8);
+  return 0;
+}
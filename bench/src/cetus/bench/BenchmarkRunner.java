@@ -0,0 +1,309 @@
+package cetus.bench;
+
+import cetus.analysis.Cache;
+import cetus.exec.Driver;
+import cetus.hir.Program;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* Runs the symbolic-analysis kernels on parsed input programs and reports the
+* average time per invocation in microseconds. Each kernel runs a number of
+* warmup iterations followed by measurement iterations of a fixed duration,
+* and the score is the mean over the measurement iterations with the error
+* at 99.9% confidence. The result is written in the JSON layout of JMH so
+* results of different commits can be compared, either with the JMH tools or
+* with the -baseline option of this runner.
+*
+* <pre>
+* java cetus.bench.BenchmarkRunner [runner options] [cetus options] [files]
+*   -warmup=N       number of warmup iterations (default 5)
+*   -iterations=N   number of measurement iterations (default 10)
+*   -time=MS        duration of each iteration in milliseconds (default 500)
+*   -warm           keep the analysis caches between invocations; by default
+*                   all named caches are cleared before every invocation
+*   -kernel=NAME    run only the kernels whose names contain NAME
+*   -out=FILE       write the result to FILE (default bench-result.json)
+*   -baseline=FILE  compare the result with a previous result in FILE
+* </pre>
+* Without input files, the programs in resources/examples and bench/inputs
+* are used.
+*/
+public class BenchmarkRunner {
+
+    /* Quantiles of Student's t-distribution for 99.9% confidence */
+    private static final double[] T_999 = {
+        636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59,
+        4.44, 4.32, 4.22, 4.14, 4.07, 4.01, 3.97, 3.92, 3.88, 3.85,
+        3.82, 3.79, 3.77, 3.75, 3.73, 3.71, 3.69, 3.67, 3.66, 3.65};
+
+    /* Consumes the kernel results */
+    private static volatile long sink;
+
+    private int num_warmups = 5;
+    private int num_iterations = 10;
+    private long iteration_time = 500;
+    private boolean warm = false;
+    private String kernel_filter = null;
+    private String out_file = "bench-result.json";
+    private String baseline_file = null;
+
+    /** Result of a kernel */
+    private static class Result {
+        private final String name;
+        private final int num_inputs;
+        private final double[] scores;
+        private double score, error;
+
+        private Result(String name, int num_inputs, double[] scores) {
+            this.name = name;
+            this.num_inputs = num_inputs;
+            this.scores = scores;
+            double sum = 0.0;
+            for (double s : scores) {
+                sum += s;
+            }
+            score = sum / scores.length;
+            error = Double.NaN;
+            if (scores.length > 1) {
+                double var = 0.0;
+                for (double s : scores) {
+                    var += (s - score) * (s - score);
+                }
+                var /= (scores.length - 1);
+                int df = scores.length - 1;
+                double t = (df <= T_999.length) ? T_999[df - 1] : 3.29;
+                error = t * Math.sqrt(var / scores.length);
+            }
+        }
+    }
+
+    /** Driver that only parses the input files */
+    private static class InputDriver extends Driver {
+        private Program parse(String[] args) {
+            parseCommandLine(args);
+            parseFiles();
+            return program;
+        }
+    }
+
+    public static void main(String[] args) {
+        new BenchmarkRunner().run(args);
+    }
+
+    private void run(String[] args) {
+        List<String> driver_args = new ArrayList<String>();
+        boolean has_files = false;
+        for (String arg : args) {
+            if (arg.startsWith("-warmup=")) {
+                num_warmups = Integer.parseInt(getValue(arg));
+            } else if (arg.startsWith("-iterations=")) {
+                num_iterations = Math.max(1, Integer.parseInt(getValue(arg)));
+            } else if (arg.startsWith("-time=")) {
+                iteration_time = Long.parseLong(getValue(arg));
+            } else if (arg.equals("-warm")) {
+                warm = true;
+            } else if (arg.startsWith("-kernel=")) {
+                kernel_filter = getValue(arg);
+            } else if (arg.startsWith("-out=")) {
+                out_file = getValue(arg);
+            } else if (arg.startsWith("-baseline=")) {
+                baseline_file = getValue(arg);
+            } else {
+                has_files |= !arg.startsWith("-");
+                driver_args.add(arg);
+            }
+        }
+        if (!has_files) {
+            driver_args.addAll(getDefaultInputs());
+        }
+        driver_args.add(0, "-outdir=" + System.getProperty("java.io.tmpdir"));
+        Program program = new InputDriver().parse(
+                driver_args.toArray(new String[driver_args.size()]));
+        List<Result> results = new ArrayList<Result>();
+        for (Kernel kernel : SymbolicKernels.getKernels()) {
+            if (kernel_filter != null &&
+                !kernel.getName().contains(kernel_filter)) {
+                continue;
+            }
+            kernel.setUp(program);
+            results.add(measure(kernel));
+        }
+        try {
+            writeJSON(results);
+            if (baseline_file != null) {
+                compare(readJSON(baseline_file), results);
+            }
+        } catch (IOException e) {
+            System.err.println("[Benchmark] " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String getValue(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    private static List<String> getDefaultInputs() {
+        List<String> ret = new ArrayList<String>();
+        for (String dir : Arrays.asList("resources/examples", "bench/inputs")) {
+            File[] files = new File(dir).listFiles();
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(".c")) {
+                    ret.add(file.getPath());
+                }
+            }
+        }
+        return ret;
+    }
+
+    private Result measure(Kernel kernel) {
+        String name = kernel.getName();
+        System.out.println("[Benchmark] " + name + ": " +
+                kernel.getNumInputs() + " inputs");
+        for (int i = 0; i < num_warmups; i++) {
+            System.out.println(String.format(Locale.ROOT,
+                    "  warmup %d: %.3f us/op", i + 1, iterate(kernel)));
+        }
+        double[] scores = new double[num_iterations];
+        for (int i = 0; i < num_iterations; i++) {
+            scores[i] = iterate(kernel);
+            System.out.println(String.format(Locale.ROOT,
+                    "  iteration %d: %.3f us/op", i + 1, scores[i]));
+        }
+        Result ret = new Result(name, kernel.getNumInputs(), scores);
+        System.out.println(String.format(Locale.ROOT,
+                "  score: %.3f +- %.3f us/op", ret.score, ret.error));
+        return ret;
+    }
+
+    // Runs the kernel for the iteration time and returns the average time
+    // per invocation in microseconds.
+    private double iterate(Kernel kernel) {
+        long deadline = System.nanoTime() + iteration_time * 1000000L;
+        long elapsed = 0, count = 0, result = 0;
+        do {
+            if (!warm) {
+                Cache.clearAll();
+            }
+            long start = System.nanoTime();
+            result += kernel.run();
+            elapsed += System.nanoTime() - start;
+            count++;
+        } while (System.nanoTime() < deadline);
+        sink += result;
+        return elapsed / 1000.0 / count;
+    }
+
+    private void writeJSON(List<Result> results) throws IOException {
+        PrintWriter out =
+                new PrintWriter(new BufferedWriter(new FileWriter(out_file)));
+        out.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            out.println("    {");
+            out.println("        \"benchmark\" : \"" + r.name + "\",");
+            out.println("        \"mode\" : \"avgt\",");
+            out.println("        \"warmupIterations\" : " + num_warmups + ",");
+            out.println("        \"measurementIterations\" : " +
+                    num_iterations + ",");
+            out.println("        \"measurementTime\" : \"" + iteration_time +
+                    " ms\",");
+            out.println("        \"params\" : {");
+            out.println("            \"inputs\" : \"" + r.num_inputs + "\",");
+            out.println("            \"caches\" : \"" +
+                    (warm ? "warm" : "cold") + "\"");
+            out.println("        },");
+            out.println("        \"primaryMetric\" : {");
+            out.println("            \"score\" : " + format(r.score) + ",");
+            out.println("            \"scoreError\" : " + format(r.error) +
+                    ",");
+            out.println("            \"scoreUnit\" : \"us/op\",");
+            out.print("            \"rawData\" : [[");
+            for (int j = 0; j < r.scores.length; j++) {
+                out.print(((j == 0) ? "" : ", ") + format(r.scores[j]));
+            }
+            out.println("]]");
+            out.println("        }");
+            out.println((i + 1 < results.size()) ? "    }," : "    }");
+        }
+        out.println("]");
+        out.close();
+        System.out.println("[Benchmark] result written to " + out_file);
+    }
+
+    private static String format(double value) {
+        return (Double.isNaN(value)) ? "\"NaN\"" :
+                String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    // Reads the scores and errors from a result written by this runner or
+    // by JMH.
+    private static Map<String, double[]> readJSON(String file)
+            throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        String line;
+        while ((line = in.readLine()) != null) {
+            sb.append(line).append('\n');
+        }
+        in.close();
+        Map<String, double[]> ret = new LinkedHashMap<String, double[]>();
+        Pattern pattern = Pattern.compile("\"benchmark\"\\s*:\\s*\"([^\"]*)\"" +
+                ".*?\"score\"\\s*:\\s*([-0-9.eE]+)" +
+                ".*?\"scoreError\"\\s*:\\s*\"?([-0-9.eENa]+)\"?",
+                Pattern.DOTALL);
+        Matcher m = pattern.matcher(sb);
+        while (m.find()) {
+            double error = m.group(3).equals("NaN") ? Double.NaN :
+                    Double.parseDouble(m.group(3));
+            ret.put(m.group(1), new double[] {
+                    Double.parseDouble(m.group(2)), error});
+        }
+        return ret;
+    }
+
+    // Prints the change from the baseline; a change is significant if the
+    // confidence intervals do not overlap.
+    private static void compare(Map<String, double[]> baseline,
+                                List<Result> results) {
+        System.out.println(String.format(Locale.ROOT, "%-32s %12s %12s %8s",
+                "benchmark", "baseline", "current", "change"));
+        for (Result r : results) {
+            double[] base = baseline.get(r.name);
+            if (base == null) {
+                System.out.println(String.format(Locale.ROOT,
+                        "%-32s %12s %12.3f", r.name, "-", r.score));
+                continue;
+            }
+            double change = (r.score - base[0]) / base[0] * 100.0;
+            String verdict = "";
+            double margin = (Double.isNaN(base[1]) ? 0.0 : base[1]) +
+                    (Double.isNaN(r.error) ? 0.0 : r.error);
+            if (Math.abs(r.score - base[0]) > margin) {
+                verdict = (r.score > base[0]) ? "slower" : "faster";
+            }
+            System.out.println(String.format(Locale.ROOT,
+                    "%-32s %12.3f %12.3f %+7.1f%% %s",
+                    r.name, base[0], r.score, change, verdict));
+        }
+    }
+}
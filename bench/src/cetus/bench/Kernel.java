@@ -0,0 +1,30 @@
+package cetus.bench;
+
+import cetus.hir.Program;
+
+/**
+* Base class of the benchmarked kernels. A kernel extracts its inputs from the
+* parsed programs once, and each invocation of {@link #run()} processes all
+* the inputs once.
+*/
+public abstract class Kernel {
+
+    /** Returns the name of the kernel */
+    public abstract String getName();
+
+    /**
+    * Extracts the inputs of the kernel from the specified program.
+    * @param program the parsed input program.
+    */
+    public abstract void setUp(Program program);
+
+    /** Returns the number of inputs processed by each invocation */
+    public abstract int getNumInputs();
+
+    /**
+    * Processes all the inputs once.
+    * @return a value that depends on the results, which is consumed by the
+    * runner so the computation cannot be eliminated.
+    */
+    public abstract long run();
+}
@@ -0,0 +1,391 @@
+package cetus.bench;
+
+import cetus.analysis.CFGraph;
+import cetus.analysis.DDArrayAccessInfo;
+import cetus.analysis.DDTestWrapper;
+import cetus.analysis.DependenceVector;
+import cetus.analysis.LoopInfo;
+import cetus.analysis.LoopTools;
+import cetus.analysis.NormalExpression;
+import cetus.analysis.RangeAnalysis;
+import cetus.analysis.RangeDomain;
+import cetus.analysis.Section;
+import cetus.hir.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+* Kernels of the symbolic analyses: expression normalization, range
+* comparison and forward substitution, array section operations, data
+* dependence testing of access pairs, and control flow graph construction.
+* The inputs are collected from the array accesses, loop bounds and
+* assignments in the parsed programs.
+*/
+public class SymbolicKernels {
+
+    /** Maximum number of inputs collected by a kernel */
+    private static final int MAX_INPUTS = 4096;
+
+    /** Access types of DDArrayAccessInfo */
+    private static final int WRITE = 0, READ = 1;
+
+    private SymbolicKernels() {
+    }
+
+    /** Returns all kernels in the order they are run */
+    public static List<Kernel> getKernels() {
+        List<Kernel> ret = new ArrayList<Kernel>();
+        ret.add(new Simplify());
+        ret.add(new RangeCompare());
+        ret.add(new SubstituteForward());
+        ret.add(new SectionOperation(SectionOperation.INTERSECT));
+        ret.add(new SectionOperation(SectionOperation.UNION));
+        ret.add(new SectionOperation(SectionOperation.DIFFERENCE));
+        ret.add(new AccessPairTest());
+        ret.add(new CFGConstruction());
+        return ret;
+    }
+
+    /** NormalExpression.simplify on subscripts, bounds and assignments */
+    static class Simplify extends Kernel {
+        private final List<Expression> inputs = new ArrayList<Expression>();
+
+        public String getName() {
+            return "NormalExpression.simplify";
+        }
+
+        public void setUp(Program program) {
+            for (ArrayAccess acc : getArrayAccesses(program)) {
+                add(inputs, acc.getIndices());
+            }
+            DFIterator<ForLoop> loop_iter =
+                    new DFIterator<ForLoop>(program, ForLoop.class);
+            while (loop_iter.hasNext()) {
+                ForLoop loop = loop_iter.next();
+                if (loop.getCondition() != null) {
+                    add(inputs, loop.getCondition());
+                }
+            }
+            DFIterator<AssignmentExpression> assign_iter =
+                    new DFIterator<AssignmentExpression>(
+                    program, AssignmentExpression.class);
+            while (assign_iter.hasNext()) {
+                add(inputs, assign_iter.next().getRHS());
+            }
+        }
+
+        public int getNumInputs() {
+            return inputs.size();
+        }
+
+        public long run() {
+            long ret = 0;
+            for (Expression e : inputs) {
+                ret += NormalExpression.simplify(e).getChildren().size();
+            }
+            return ret;
+        }
+    }
+
+    /** RangeDomain.compare on subscripts of the same array and dimension */
+    static class RangeCompare extends Kernel {
+        private final List<AccessPair> inputs = new ArrayList<AccessPair>();
+
+        public String getName() {
+            return "RangeDomain.compare";
+        }
+
+        public void setUp(Program program) {
+            add(inputs, getAccessPairs(program));
+        }
+
+        public int getNumInputs() {
+            return inputs.size();
+        }
+
+        public long run() {
+            long ret = 0;
+            for (AccessPair pair : inputs) {
+                RangeDomain rd = RangeAnalysis.query(pair.stmt1);
+                for (int i = 0; i < pair.acc1.getNumIndices(); i++) {
+                    ret += rd.compare(pair.acc1.getIndex(i),
+                            pair.acc2.getIndex(i)).hashCode();
+                }
+            }
+            return ret;
+        }
+    }
+
+    /** RangeDomain.substituteForward on array subscripts */
+    static class SubstituteForward extends Kernel {
+        private final List<ArrayAccess> inputs = new ArrayList<ArrayAccess>();
+
+        public String getName() {
+            return "RangeDomain.substituteForward";
+        }
+
+        public void setUp(Program program) {
+            add(inputs, getArrayAccesses(program));
+        }
+
+        public int getNumInputs() {
+            return inputs.size();
+        }
+
+        public long run() {
+            long ret = 0;
+            for (ArrayAccess acc : inputs) {
+                RangeDomain rd = RangeAnalysis.query(acc.getStatement());
+                ret += rd.substituteForward(acc).getChildren().size();
+            }
+            return ret;
+        }
+    }
+
+    /** Section operations on pairs of accesses to the same array */
+    static class SectionOperation extends Kernel {
+        static final int INTERSECT = 0, UNION = 1, DIFFERENCE = 2;
+        private static final String[] names = {
+            "Section.intersectWith", "Section.unionWith",
+            "Section.differenceFrom"};
+        private final int operation;
+        private final List<AccessPair> inputs = new ArrayList<AccessPair>();
+
+        SectionOperation(int operation) {
+            this.operation = operation;
+        }
+
+        public String getName() {
+            return names[operation];
+        }
+
+        public void setUp(Program program) {
+            add(inputs, getAccessPairs(program));
+        }
+
+        public int getNumInputs() {
+            return inputs.size();
+        }
+
+        public long run() {
+            long ret = 0;
+            for (AccessPair pair : inputs) {
+                RangeDomain rd = RangeAnalysis.query(pair.stmt1);
+                Section s1 = new Section(pair.acc1);
+                Section s2 = new Section(pair.acc2);
+                Section result = null;
+                switch (operation) {
+                case INTERSECT:
+                    result = s1.intersectWith(s2, rd);
+                    break;
+                case UNION:
+                    result = s1.unionWith(s2, rd);
+                    break;
+                default:
+                    result = s1.differenceFrom(s2, rd);
+                }
+                ret += (result == null) ? 0 : result.size();
+            }
+            return ret;
+        }
+    }
+
+    /** DDTestWrapper.testAccessPair on accesses in eligible loop nests */
+    static class AccessPairTest extends Kernel {
+        private final List<AccessPair> inputs = new ArrayList<AccessPair>();
+        private final Map<Loop, LoopInfo> loop_info =
+                new HashMap<Loop, LoopInfo>();
+
+        public String getName() {
+            return "DDTestWrapper.testAccessPair";
+        }
+
+        public void setUp(Program program) {
+            for (Loop outer :
+                    LoopTools.extractOutermostDependenceTestEligibleLoops(
+                    program)) {
+                for (AccessPair pair : getAccessPairs((Traversable)outer)) {
+                    if (pair.nest.isEmpty() || inputs.size() >= MAX_INPUTS) {
+                        continue;
+                    }
+                    for (Loop loop : pair.nest) {
+                        if (!loop_info.containsKey(loop)) {
+                            loop_info.put(loop, new LoopInfo(loop));
+                        }
+                    }
+                    inputs.add(pair);
+                }
+            }
+        }
+
+        public int getNumInputs() {
+            return inputs.size();
+        }
+
+        public long run() {
+            long ret = 0;
+            for (AccessPair pair : inputs) {
+                HashMap<Loop, LoopInfo> info = new HashMap<Loop, LoopInfo>();
+                for (Loop loop : pair.nest) {
+                    info.put(loop, loop_info.get(loop));
+                }
+                DDTestWrapper ddt = new DDTestWrapper(
+                        new DDArrayAccessInfo(pair.acc1, pair.type1,
+                        pair.nest.getLast(), pair.stmt1),
+                        new DDArrayAccessInfo(pair.acc2, pair.type2,
+                        pair.nest.getLast(), pair.stmt2),
+                        pair.nest, info);
+                ArrayList<DependenceVector> dvs =
+                        new ArrayList<DependenceVector>();
+                if (ddt.testAccessPair(dvs)) {
+                    ret += dvs.size();
+                }
+            }
+            return ret;
+        }
+    }
+
+    /** CFGraph construction for every procedure */
+    static class CFGConstruction extends Kernel {
+        private final List<Procedure> inputs = new ArrayList<Procedure>();
+
+        public String getName() {
+            return "CFGraph.<init>";
+        }
+
+        public void setUp(Program program) {
+            DFIterator<Procedure> iter =
+                    new DFIterator<Procedure>(program, Procedure.class);
+            iter.pruneOn(Procedure.class);
+            while (iter.hasNext()) {
+                add(inputs, iter.next());
+            }
+        }
+
+        public int getNumInputs() {
+            return inputs.size();
+        }
+
+        public long run() {
+            long ret = 0;
+            for (Procedure proc : inputs) {
+                ret += new CFGraph(proc).size();
+            }
+            return ret;
+        }
+    }
+
+    /** Pair of accesses to the same array with their common loop nest */
+    private static class AccessPair {
+        private final ArrayAccess acc1, acc2;
+        private final Statement stmt1, stmt2;
+        private final int type1, type2;
+        private final LinkedList<Loop> nest;
+
+        private AccessPair(ArrayAccess acc1, ArrayAccess acc2,
+                           LinkedList<Loop> nest) {
+            this.acc1 = acc1;
+            this.acc2 = acc2;
+            this.stmt1 = acc1.getStatement();
+            this.stmt2 = acc2.getStatement();
+            this.type1 = getAccessType(acc1);
+            this.type2 = getAccessType(acc2);
+            this.nest = nest;
+        }
+    }
+
+    private static <T> void add(List<T> list, T input) {
+        if (list.size() < MAX_INPUTS) {
+            list.add(input);
+        }
+    }
+
+    private static <T> void add(List<T> list, List<? extends T> inputs) {
+        for (T input : inputs) {
+            add(list, input);
+        }
+    }
+
+    // Returns the outermost array accesses within statements.
+    private static List<ArrayAccess> getArrayAccesses(Traversable t) {
+        List<ArrayAccess> ret = new ArrayList<ArrayAccess>();
+        DFIterator<ArrayAccess> iter =
+                new DFIterator<ArrayAccess>(t, ArrayAccess.class);
+        iter.pruneOn(ArrayAccess.class);
+        while (iter.hasNext()) {
+            ArrayAccess acc = iter.next();
+            if (acc.getStatement() != null &&
+                acc.getStatement().getProcedure() != null) {
+                ret.add(acc);
+            }
+        }
+        return ret;
+    }
+
+    // Returns pairs of accesses to the same array with the same number of
+    // indices within a loop body, where at least one access is a write.
+    private static List<AccessPair> getAccessPairs(Traversable t) {
+        Map<List<Object>, List<ArrayAccess>> groups =
+                new LinkedHashMap<List<Object>, List<ArrayAccess>>();
+        for (ArrayAccess acc : getArrayAccesses(t)) {
+            Loop loop = IRTools.getAncestorOfType(acc, Loop.class);
+            Symbol array = SymbolTools.getSymbolOf(acc.getArrayName());
+            if (loop == null || array == null) {
+                continue;
+            }
+            List<Object> key = new ArrayList<Object>(3);
+            key.add(loop);
+            key.add(array);
+            key.add(acc.getNumIndices());
+            List<ArrayAccess> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<ArrayAccess>();
+                groups.put(key, group);
+            }
+            group.add(acc);
+        }
+        List<AccessPair> ret = new ArrayList<AccessPair>();
+        for (List<ArrayAccess> group : groups.values()) {
+            for (int i = 0; i < group.size(); i++) {
+                for (int j = i; j < group.size(); j++) {
+                    ArrayAccess acc1 = group.get(i), acc2 = group.get(j);
+                    if (getAccessType(acc1) == WRITE ||
+                        getAccessType(acc2) == WRITE) {
+                        ret.add(new AccessPair(acc1, acc2,
+                                getCommonNest(acc1, acc2, t)));
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static int getAccessType(ArrayAccess acc) {
+        Traversable parent = acc.getParent();
+        if (parent instanceof AssignmentExpression &&
+            ((AssignmentExpression)parent).getLHS() == acc) {
+            return WRITE;
+        }
+        return READ;
+    }
+
+    // Returns the loops enclosing both accesses within the root, from the
+    // outermost to the innermost loop.
+    private static LinkedList<Loop>
+            getCommonNest(ArrayAccess acc1, ArrayAccess acc2, Traversable root) {
+        LinkedList<Loop> ret = new LinkedList<Loop>();
+        Traversable t = acc1.getParent();
+        while (t != null && t != root.getParent()) {
+            if (t instanceof ForLoop && IRTools.isAncestorOf(t, acc2)) {
+                ret.addFirst((Loop)t);
+            }
+            t = t.getParent();
+        }
+        return ret;
+    }
+}
@@ -37,9 +37,16 @@ import java.util.Set;
  * The advanced interprocedural analyzer is supplemented by a 
  * simple array-argument disambiguation analysis, 
  * {@link ArrayParameterAnalysis}.
+ * <p>
+ * For very large programs, option level 4 selects a fast unification-based 
+ * analysis, {@link UnificationAliasAnalysis}, which provides flow and context 
+ * insensitive alias sets for the whole program. The unification-based 
+ * analysis is also used at levels 1 and 2 if points-to analysis exceeds 
+ * the size or time limit given on the command line.
  * 
  * @see PointsToAnalysis
  * @see IPPointsToAnalysis
+ * @see UnificationAliasAnalysis
  * @see ArrayParameterAnalysis
  */
 
@@ -51,6 +58,7 @@ public class AliasAnalysis extends AnalysisPass {
     private static final int ADVANCED_INTERPROC = 1;
     private static final int NO_ALIAS_FORCED = 2;
     private static final int NO_ALIAS = 3;
+    private static final int UNIFICATION = 4;
 
     // Specifies "*", which means that a symbol 
     // has alias set = "*" i.e. it is aliased to 
@@ -76,7 +84,8 @@ public class AliasAnalysis extends AnalysisPass {
         alias_level =
                 Integer.valueOf(Driver.getOptionValue("alias")).intValue();
         if (alias_level == ADVANCED_INTERPROC ||
-            alias_level == NO_ALIAS_FORCED) {
+            alias_level == NO_ALIAS_FORCED ||
+            alias_level == UNIFICATION) {
             array_analysis = new ArrayParameterAnalysis(program);
         }
         if (alias_level == ALL_ALIAS_ASSUMED) {
@@ -112,6 +121,16 @@ public class AliasAnalysis extends AnalysisPass {
             alias_level == NO_ALIAS_FORCED) {
             array_analysis.start();
             IPPointsToAnalysis.updatePointsToRelations(program);
+            // Falls back to the unification-based analysis if points-to
+            // analysis gave up due to the size or time limit.
+            if (IPPointsToAnalysis.isOverBudget()) {
+                PrintTools.printlnStatus(1, pass_name,
+                "points-to analysis exceeded its limits;",
+                "unification-based alias analysis is used instead");
+                alias_level = UNIFICATION;
+                UnificationAliasAnalysis.updateAliasSets(program);
+                return;
+            }
             all_aliased = IPPointsToAnalysis.containsUniverse();
             if (all_aliased && alias_level == NO_ALIAS_FORCED) {
                 PrintTools.printlnStatus(0, pass_name,
@@ -119,6 +138,10 @@ public class AliasAnalysis extends AnalysisPass {
                 "[WARNING] no alias is assumed as requested by the user");
             }
         }
+        if (alias_level == UNIFICATION) {
+            array_analysis.start();
+            UnificationAliasAnalysis.updateAliasSets(program);
+        }
         // if (debug_level > 1) System.out.println("[AliasAnalysis] Done");
     }
 
@@ -162,6 +185,8 @@ public class AliasAnalysis extends AnalysisPass {
                 }
                 return (aliased_symbols);
             }
+        } else if (alias_level == UNIFICATION) {
+            return getUnificationAliasSet(cur_stmt, symbol);
         } else if (alias_level == NO_ALIAS_FORCED && all_aliased) {
             return null;
         } else {
@@ -216,6 +241,12 @@ public class AliasAnalysis extends AnalysisPass {
             } else {
                 return false;
             }
+        } else if (alias_level == UNIFICATION) {
+            if (!PointsToAnalysis.isPointer(a)) {
+                return false;
+            }
+            Set<Symbol> aliased_symbols = getUnificationAliasSet(stmt, a);
+            return (aliased_symbols != null && aliased_symbols.contains(b));
         } else if (alias_level == NO_ALIAS_FORCED && all_aliased) {
             return false;
         } else {
@@ -290,10 +321,22 @@ public class AliasAnalysis extends AnalysisPass {
         return alias_map;
     }
   
+    // Returns the alias set of the symbol computed by the unification-based
+    // analysis, filtered by the array parameter analysis at the statement.
+    private Set<Symbol> getUnificationAliasSet(Statement stmt, Symbol symbol) {
+        Set<Symbol> aliased_symbols =
+                UnificationAliasAnalysis.getAliasSet(program, symbol);
+        if (aliased_symbols != null && stmt != null) {
+            aliased_symbols =
+                    arrayParameterFilter(symbol, aliased_symbols, stmt);
+        }
+        return aliased_symbols;
+    }
+
     @SuppressWarnings("unchecked")
-    private Set
+    private Set<Symbol>
             arrayParameterFilter(Symbol source, Set aliased, Statement stmt) {
-        Set filtered_aliases = new HashSet<Symbol>();
+        Set<Symbol> filtered_aliases = new HashSet<Symbol>();
         Procedure proc = stmt.getProcedure();
         for (Symbol alias : (Set<Symbol>)aliased) {
             if (!array_analysis.isDisjoint(source, alias, proc)) {
@@ -1,5 +1,6 @@
 package cetus.analysis; 
 
+import cetus.exec.PassTelemetry;
 import cetus.hir.IRTools;
 import cetus.hir.PrintTools;
 import cetus.hir.Program;
@@ -20,7 +21,10 @@ public abstract class AnalysisPass
   {
 		double timer = Tools.getTime();
     PrintTools.println(pass.getPassName() + " begin", 0);
+    PassTelemetry.Record telemetry =
+        PassTelemetry.begin(pass.getPassName(), pass.program);
     pass.start();
+    PassTelemetry.end(telemetry, pass.program);
     PrintTools.println(pass.getPassName() + " end in " +
 			String.format("%.2f seconds", Tools.getTime(timer)), 0);
     if (!IRTools.checkConsistency(pass.program))
@@ -123,6 +123,24 @@ public class ArrayParameterAnalysis extends AnalysisPass {
         safe_scalars = null;
     }
 
+    /**
+    * Invalidates the analysis result if any of the specified procedures was
+    * analyzed. The result is computed for the whole call graph at once, so it
+    * is kept only if the procedures are not part of the call graph.
+    * @param procs the modified procedures and their transitive callers.
+    */
+    public static void invalidate(Set<Procedure> procs) {
+        if (param_to_args == null) {
+            return;
+        }
+        for (Procedure proc : procs) {
+            if (param_to_args.containsKey(proc)) {
+                invalidate();
+                return;
+            }
+        }
+    }
+
     /** Initializes the data structrue */
     private void initializeData() {
         param_to_args =
@@ -288,6 +306,9 @@ public class ArrayParameterAnalysis extends AnalysisPass {
             isDisjoint(Symbol symbol1, Symbol symbol2, Procedure procedure) {
         if (!SymbolTools.isFormal(symbol1) || !SymbolTools.isFormal(symbol2))
             return false; // only formal parameters are considered.
+        if (!pointer_ranges.containsKey(procedure) ||
+            !param_to_args.containsKey(procedure))
+            return false; // not reachable from the call graph.
         Set<Symbol> safe_parameters = pointer_ranges.get(procedure).keySet();
         if (!safe_parameters.contains(symbol1) ||
             !safe_parameters.contains(symbol2))
@@ -1,6 +1,8 @@
 package cetus.analysis;
 
 import cetus.exec.Driver;
+import cetus.exec.IncrementalState;
+import cetus.exec.PassTelemetry;
 import cetus.hir.*; 
 
 import java.util.*;
@@ -177,7 +179,12 @@ public class ArrayPrivatization extends AnalysisPass {
                     "[WARNING] Privatization stops due to all-to-all alias");
                 break;
             }
+            if (IncrementalState.isReused(p)) {
+                continue;
+            }
+            long timer = System.nanoTime();
             analyzeProcedure(p);
+            PassTelemetry.addProcedureTime(p, System.nanoTime() - timer);
         }
     }
 
@@ -238,7 +238,7 @@ public class BanerjeeTest implements DDTest {
     }
 
     private void printDirectionVector(
-            HashMap<Loop,Integer> dv, LinkedList<Loop> nest) {
+            Map<Loop,Integer> dv, LinkedList<Loop> nest) {
         PrintTools.print("(", 2);
         for (int i=0; i< nest.size(); i++) {
             Loop loop = nest.get(i);
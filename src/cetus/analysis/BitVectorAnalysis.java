@@ -0,0 +1,505 @@
+package cetus.analysis;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Class BitVectorAnalysis solves gen/kill data flow problems, e.g., reaching
+ * definitions and live variables, on a {@link DataFlowGraph}. The facts are
+ * bit vectors stored in flat arrays of words indexed by the node ids, so the
+ * meet operation and the transfer function process 64 bits at a time. The
+ * nodes are evaluated in the topological order of the strongly connected
+ * components (SCC) along the flow direction, and the nodes in an SCC are
+ * evaluated in reverse post order until they are stable; hence, a node
+ * outside of any cycle is evaluated exactly once. After a problem is solved,
+ * the GEN and KILL sets of some nodes can be changed and {@link #update()}
+ * re-evaluates only the nodes that the changes can reach.
+ *
+ * <p>Every node in the graph is evaluated including the nodes unreachable
+ * from the root. The boundary nodes are the root node for forward problems
+ * and the nodes without successors for backward problems, and their IN facts
+ * are the boundary fact. The IN fact of other nodes is the meet of the OUT
+ * facts of their predecessors in the flow direction; i.e., union for may
+ * problems and intersection for must problems. IN and OUT always refer to
+ * the flow direction; e.g., the IN fact of a backward problem is the fact at
+ * the exit of the node.
+ */
+public class BitVectorAnalysis {
+
+    /** The graph being analyzed. */
+    protected final DataFlowGraph graph;
+
+    /** True for forward problems, false for backward problems. */
+    protected final boolean forward;
+
+    /** True for may problems (union), false for must problems (intersection). */
+    protected final boolean may;
+
+    // Number of bits and words in each vector.
+    private final int num_bits, num_words;
+
+    // Mask for the valid bits in the last word.
+    private final long tail_mask;
+
+    // Vectors of node i are stored at [i*num_words, (i+1)*num_words).
+    private final long[] gen, kill, in, out;
+
+    // Boundary fact and initial OUT fact.
+    private final long[] boundary, initial;
+
+    // Node ids in the topological order of the SCCs, the first position of
+    // each SCC in the order, and the SCC of each node.
+    private int[] order;
+    private boolean[] comp_first;
+    private int[] comp_of;
+
+    // Nodes whose GEN or KILL set changed after the last solve.
+    private final BitSet dirty;
+
+    // Number of node evaluations performed by the last solve or update.
+    private int num_visits;
+
+    /**
+     * Constructs a gen/kill problem on the specified graph. The GEN and KILL
+     * sets, the boundary fact, and the initial fact are empty.
+     *
+     * @param graph the graph being analyzed.
+     * @param num_bits the number of bits in each fact.
+     * @param forward true for a forward problem, false for a backward problem.
+     * @param may true for a may problem, false for a must problem.
+     */
+    public BitVectorAnalysis(
+            DataFlowGraph graph, int num_bits, boolean forward, boolean may) {
+        this.graph = graph;
+        this.num_bits = num_bits;
+        this.forward = forward;
+        this.may = may;
+        num_words = (num_bits + 63) >>> 6;
+        tail_mask = ((num_bits & 63) == 0) ? -1L : (1L << (num_bits & 63)) - 1;
+        int size = graph.size() * num_words;
+        gen = new long[size];
+        kill = new long[size];
+        in = new long[size];
+        out = new long[size];
+        boundary = new long[num_words];
+        initial = new long[num_words];
+        dirty = new BitSet(graph.size());
+    }
+
+    /**
+     * Applies the transfer function to a word of the facts. The default
+     * function is OUT = GEN | (IN &amp; ~KILL), and a subclass can override
+     * this method for other bitwise transfer functions.
+     *
+     * @param in a word of the IN fact.
+     * @param gen the corresponding word of the GEN set.
+     * @param kill the corresponding word of the KILL set.
+     * @return the corresponding word of the OUT fact.
+     */
+    protected long transfer(long in, long gen, long kill) {
+        return (in & ~kill) | gen;
+    }
+
+    /**
+     * Returns the number of bits in each fact.
+     *
+     * @return the number of bits.
+     */
+    public int getNumBits() {
+        return num_bits;
+    }
+
+    /**
+     * Adds a bit to the GEN set of the specified node.
+     *
+     * @param id the node id.
+     * @param bit the bit index.
+     */
+    public void setGen(int id, int bit) {
+        setBit(gen, id, bit, true);
+    }
+
+    /**
+     * Removes a bit from the GEN set of the specified node.
+     *
+     * @param id the node id.
+     * @param bit the bit index.
+     */
+    public void clearGen(int id, int bit) {
+        setBit(gen, id, bit, false);
+    }
+
+    /**
+     * Replaces the GEN set of the specified node.
+     *
+     * @param id the node id.
+     * @param bits the new GEN set.
+     */
+    public void setGen(int id, BitSet bits) {
+        setBits(gen, id, bits);
+    }
+
+    /**
+     * Adds a bit to the KILL set of the specified node.
+     *
+     * @param id the node id.
+     * @param bit the bit index.
+     */
+    public void setKill(int id, int bit) {
+        setBit(kill, id, bit, true);
+    }
+
+    /**
+     * Removes a bit from the KILL set of the specified node.
+     *
+     * @param id the node id.
+     * @param bit the bit index.
+     */
+    public void clearKill(int id, int bit) {
+        setBit(kill, id, bit, false);
+    }
+
+    /**
+     * Replaces the KILL set of the specified node.
+     *
+     * @param id the node id.
+     * @param bits the new KILL set.
+     */
+    public void setKill(int id, BitSet bits) {
+        setBits(kill, id, bits);
+    }
+
+    /**
+     * Sets the fact that flows into the boundary nodes.
+     *
+     * @param bits the boundary fact.
+     */
+    public void setBoundary(BitSet bits) {
+        toWords(bits, boundary, 0);
+    }
+
+    /**
+     * Sets the OUT fact of every node before the iteration starts.
+     *
+     * @param bits the initial fact.
+     */
+    public void setInitial(BitSet bits) {
+        toWords(bits, initial, 0);
+    }
+
+    /**
+     * Returns the IN fact of the specified node.
+     *
+     * @param id the node id.
+     * @return a new bit set containing the fact.
+     */
+    public BitSet getIn(int id) {
+        return toBitSet(in, id);
+    }
+
+    /**
+     * Returns the OUT fact of the specified node.
+     *
+     * @param id the node id.
+     * @return a new bit set containing the fact.
+     */
+    public BitSet getOut(int id) {
+        return toBitSet(out, id);
+    }
+
+    /**
+     * Checks if the IN fact of the specified node contains the bit.
+     *
+     * @param id the node id.
+     * @param bit the bit index.
+     * @return true if the bit is set.
+     */
+    public boolean isInSet(int id, int bit) {
+        return (in[id * num_words + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Checks if the OUT fact of the specified node contains the bit.
+     *
+     * @param id the node id.
+     * @param bit the bit index.
+     * @return true if the bit is set.
+     */
+    public boolean isOutSet(int id, int bit) {
+        return (out[id * num_words + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Returns the number of node evaluations performed by the last call to
+     * {@link #solve()} or {@link #update()}.
+     *
+     * @return the number of evaluations.
+     */
+    public int getNumVisits() {
+        return num_visits;
+    }
+
+    /**
+     * Solves the problem for every node starting from the initial facts.
+     */
+    public void solve() {
+        if (order == null) {
+            computeOrder();
+        }
+        int n = graph.size();
+        for (int id = 0; id < n; id++) {
+            System.arraycopy(initial, 0, out, id * num_words, num_words);
+        }
+        dirty.clear();
+        BitSet pending = new BitSet(n);
+        pending.set(0, n);
+        iterate(pending);
+    }
+
+    /**
+     * Updates the solution after the GEN or KILL sets of some nodes have
+     * changed since the last call to {@link #solve()} or {@link #update()}.
+     * The facts of the nodes reachable from the changed nodes in the flow
+     * direction are reset to the initial fact and recomputed, and the other
+     * nodes are not evaluated.
+     */
+    public void update() {
+        if (order == null) {
+            solve();
+            return;
+        }
+        BitSet pending = new BitSet(graph.size());
+        int[] queue = new int[graph.size()];
+        int head = 0, tail = 0;
+        for (int id = dirty.nextSetBit(0); id >= 0;
+                id = dirty.nextSetBit(id + 1)) {
+            pending.set(id);
+            queue[tail++] = id;
+        }
+        while (head < tail) {
+            int id = queue[head++];
+            System.arraycopy(initial, 0, out, id * num_words, num_words);
+            int num_succs = getNumFlowSuccs(id);
+            for (int k = 0; k < num_succs; k++) {
+                int succ = getFlowSucc(id, k);
+                if (!pending.get(succ)) {
+                    pending.set(succ);
+                    queue[tail++] = succ;
+                }
+            }
+        }
+        dirty.clear();
+        iterate(pending);
+    }
+
+    // Evaluates the pending nodes SCC by SCC until they are stable.
+    private void iterate(BitSet pending) {
+        num_visits = 0;
+        int n = order.length;
+        int first = 0;
+        while (first < n) {
+            int last = first + 1;
+            while (last < n && !comp_first[last]) {
+                last++;
+            }
+            boolean again = true;
+            while (again) {
+                again = false;
+                for (int pos = first; pos < last; pos++) {
+                    int id = order[pos];
+                    if (!pending.get(id)) {
+                        continue;
+                    }
+                    pending.clear(id);
+                    num_visits++;
+                    if (!evaluate(id)) {
+                        continue;
+                    }
+                    int num_succs = getNumFlowSuccs(id);
+                    for (int k = 0; k < num_succs; k++) {
+                        int succ = getFlowSucc(id, k);
+                        pending.set(succ);
+                        again |= (comp_of[succ] == comp_of[id]);
+                    }
+                }
+            }
+            first = last;
+        }
+    }
+
+    // Computes the IN and OUT facts of the node and returns true if the OUT
+    // fact has changed.
+    private boolean evaluate(int id) {
+        int base = id * num_words;
+        int num_preds = getNumFlowPreds(id);
+        if ((forward) ? (id == 0 && graph.getNumReachable() > 0) :
+                (num_preds == 0)) {
+            System.arraycopy(boundary, 0, in, base, num_words);
+        } else {
+            Arrays.fill(in, base, base + num_words, (may) ? 0L : -1L);
+            for (int k = 0; k < num_preds; k++) {
+                int pred_base = getFlowPred(id, k) * num_words;
+                if (may) {
+                    for (int w = 0; w < num_words; w++) {
+                        in[base + w] |= out[pred_base + w];
+                    }
+                } else {
+                    for (int w = 0; w < num_words; w++) {
+                        in[base + w] &= out[pred_base + w];
+                    }
+                }
+            }
+        }
+        boolean changed = false;
+        for (int w = 0; w < num_words; w++) {
+            int i = base + w;
+            long word = transfer(in[i], gen[i], kill[i]);
+            if (w == num_words - 1) {
+                in[i] &= tail_mask;
+                word &= tail_mask;
+            }
+            if (word != out[i]) {
+                out[i] = word;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Computes the topological order of the SCCs along the flow direction
+    // with Tarjan's algorithm, and sorts the nodes in each SCC in reverse post
+    // order along the flow direction.
+    private void computeOrder() {
+        int n = graph.size();
+        order = new int[n];
+        comp_first = new boolean[n];
+        comp_of = new int[n];
+        int[] index = new int[n];
+        int[] low = new int[n];
+        boolean[] on_stack = new boolean[n];
+        int[] stack = new int[n];
+        int[] call = new int[n];
+        int[] next_succ = new int[n];
+        Arrays.fill(index, -1);
+        int next_index = 0, sp = 0, num_ordered = n, num_comps = 0;
+        for (int i = 0; i < n; i++) {
+            int root = (forward) ? i : n - 1 - i;
+            if (index[root] >= 0) {
+                continue;
+            }
+            int cp = 0;
+            call[0] = root;
+            next_succ[0] = 0;
+            index[root] = low[root] = next_index++;
+            stack[sp++] = root;
+            on_stack[root] = true;
+            while (cp >= 0) {
+                int v = call[cp];
+                if (next_succ[cp] < getNumFlowSuccs(v)) {
+                    int w = getFlowSucc(v, next_succ[cp]++);
+                    if (index[w] < 0) {
+                        index[w] = low[w] = next_index++;
+                        stack[sp++] = w;
+                        on_stack[w] = true;
+                        call[++cp] = w;
+                        next_succ[cp] = 0;
+                    } else if (on_stack[w] && index[w] < low[v]) {
+                        low[v] = index[w];
+                    }
+                    continue;
+                }
+                if (low[v] == index[v]) {
+                    // SCCs are found in reverse topological order.
+                    int end = num_ordered, w;
+                    do {
+                        w = stack[--sp];
+                        on_stack[w] = false;
+                        comp_of[w] = num_comps;
+                        order[--num_ordered] = w;
+                    } while (w != v);
+                    comp_first[num_ordered] = true;
+                    num_comps++;
+                    Arrays.sort(order, num_ordered, end);
+                    if (!forward) {
+                        reverse(order, num_ordered, end);
+                    }
+                }
+                if (--cp >= 0 && low[v] < low[call[cp]]) {
+                    low[call[cp]] = low[v];
+                }
+            }
+        }
+    }
+
+    private static void reverse(int[] a, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int tmp = a[i];
+            a[i] = a[j];
+            a[j] = tmp;
+        }
+    }
+
+    private int getNumFlowSuccs(int id) {
+        return (forward) ? graph.getNumSuccs(id) : graph.getNumPreds(id);
+    }
+
+    private int getFlowSucc(int id, int k) {
+        return (forward) ? graph.getSucc(id, k) : graph.getPred(id, k);
+    }
+
+    private int getNumFlowPreds(int id) {
+        return (forward) ? graph.getNumPreds(id) : graph.getNumSuccs(id);
+    }
+
+    private int getFlowPred(int id, int k) {
+        return (forward) ? graph.getPred(id, k) : graph.getSucc(id, k);
+    }
+
+    private void setBit(long[] vectors, int id, int bit, boolean value) {
+        if (bit < 0 || bit >= num_bits) {
+            throw new IndexOutOfBoundsException("bit " + bit);
+        }
+        int i = id * num_words + (bit >>> 6);
+        long prev = vectors[i];
+        vectors[i] = (value) ? (prev | (1L << bit)) : (prev & ~(1L << bit));
+        if (vectors[i] != prev) {
+            dirty.set(id);
+        }
+    }
+
+    private void setBits(long[] vectors, int id, BitSet bits) {
+        int base = id * num_words;
+        long[] prev = new long[num_words];
+        System.arraycopy(vectors, base, prev, 0, num_words);
+        toWords(bits, vectors, base);
+        for (int w = 0; w < num_words; w++) {
+            if (vectors[base + w] != prev[w]) {
+                dirty.set(id);
+                break;
+            }
+        }
+    }
+
+    // Copies the bits within the range of the facts into the words.
+    private void toWords(BitSet bits, long[] words, int base) {
+        Arrays.fill(words, base, base + num_words, 0L);
+        for (int bit = bits.nextSetBit(0); bit >= 0 && bit < num_bits;
+                bit = bits.nextSetBit(bit + 1)) {
+            words[base + (bit >>> 6)] |= (1L << bit);
+        }
+    }
+
+    private BitSet toBitSet(long[] vectors, int id) {
+        BitSet ret = new BitSet(num_bits);
+        int base = id * num_words;
+        for (int w = 0; w < num_words; w++) {
+            long word = vectors[base + w];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                ret.set((w << 6) + bit);
+                word &= word - 1;
+            }
+        }
+        return ret;
+    }
+}
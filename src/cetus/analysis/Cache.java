@@ -1,29 +1,357 @@
 package cetus.analysis;
- 
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Data structure implementing FIFO cache. Time-consuming manipulations can be
+ * Data structure implementing LRU cache. Time-consuming manipulations can be
  * cached to save computation time at the price of additional memory usage.
+ * Entries are kept in access order and the least recently used entries are
+ * evicted when the cache exceeds its capacity, which is given as a number of
+ * entries and optionally as a total weight computed by a {@link Weigher}, e.g.,
+ * an estimated size in bytes. A cache created with a name keeps hit, miss, and
+ * eviction counts that are reported by {@link #getStatistics()}.
+ * <p>
+ * Analyses may share a cache across threads, e.g., parallel data dependence
+ * testing and parallel interprocedural analysis. To keep the threads from
+ * contending for a single lock, a large cache is split into segments selected
+ * by the hash code of the key. Each segment is an LRU cache with its own lock
+ * and an equal share of the capacity, so the least recently used entry is
+ * evicted per segment rather than from the whole cache, and an entry heavier
+ * than the weight share of its segment evicts the other entries of the
+ * segment. A cache with fewer than 32 entries has a single segment and is an
+ * exact LRU cache.
  */
-public class Cache<K,E> extends LinkedHashMap<K,E> {
+public class Cache<K,E> extends AbstractMap<K,E> {
+
+    /** Maximum number of segments of a cache */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** Minimum number of entries of a segment */
+    private static final int MIN_SEGMENT_ENTRIES = 16;
+
+    /** Named caches reported by getStatistics() */
+    private static final List<Cache<?,?>> named_caches =
+            new ArrayList<Cache<?,?>>();
+
+    /**
+     * Computes the weight of a cache entry, e.g., its estimated size in
+     * bytes.
+     */
+    public interface Weigher<K,E> {
+        long weigh(K key, E value);
+    }
+
+    /**
+     * Part of the cache guarded by its own lock. The entries are kept in
+     * access order.
+     */
+    private class Segment extends LinkedHashMap<K,E> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int max_entries;
+
+        private final long max_weight;
+
+        private long weight;
+
+        private long num_hits, num_misses, num_evictions;
+
+        private Segment(int max_entries, long max_weight) {
+            super(16, 0.75f, true);
+            this.max_entries = max_entries;
+            this.max_weight = max_weight;
+            this.weight = 0;
+        }
+
+        private synchronized E getEntry(Object key) {
+            E ret = super.get(key);
+            if (ret == null) {
+                num_misses++;
+            } else {
+                num_hits++;
+            }
+            return ret;
+        }
 
-    private static final long serialVersionUID = 16L;
+        private synchronized E putEntry(K key, E value) {
+            E ret = super.put(key, value);
+            if (weigher != null) {
+                if (ret != null) {
+                    weight -= weigher.weigh(key, ret);
+                }
+                weight += weigher.weigh(key, value);
+            }
+            Iterator<Map.Entry<K,E>> iter = entrySet().iterator();
+            while (iter.hasNext() && (size() > max_entries ||
+                    max_weight > 0 && weight > max_weight && size() > 1)) {
+                Map.Entry<K,E> eldest = iter.next();
+                if (weigher != null) {
+                    weight -= weigher.weigh(eldest.getKey(),
+                                            eldest.getValue());
+                }
+                iter.remove();
+                num_evictions++;
+            }
+            return ret;
+        }
 
-    private int max_entries = 64;
+        private synchronized boolean containsEntry(Object key) {
+            return super.containsKey(key);
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized E removeEntry(Object key) {
+            E ret = super.remove(key);
+            if (ret != null && weigher != null) {
+                weight -= weigher.weigh((K)key, ret);
+            }
+            return ret;
+        }
+
+        private synchronized void clearEntries() {
+            super.clear();
+            weight = 0;
+        }
+
+        private synchronized int getSize() {
+            return super.size();
+        }
+
+        private synchronized void addEntriesTo(Map<K,E> map) {
+            map.putAll(this);
+        }
+    }
+
+    private final String name;
+
+    private final int max_entries;
+
+    private final long max_weight;
+
+    private final Weigher<? super K, ? super E> weigher;
+
+    private final List<Segment> segments;
 
     public Cache() {
-        super();
+        this(null, 64, 0, null);
     }
 
     public Cache(int max_entries) {
-        super();
+        this(null, max_entries, 0, null);
+    }
+
+    /**
+     * Constructs a named cache with the specified number of entries.
+     *
+     * @param name the name used in the statistics report.
+     * @param max_entries the maximum number of entries.
+     */
+    public Cache(String name, int max_entries) {
+        this(name, max_entries, 0, null);
+    }
+
+    /**
+     * Constructs a named cache bounded by both the number of entries and the
+     * total weight of the entries.
+     *
+     * @param name the name used in the statistics report, or null.
+     * @param max_entries the maximum number of entries.
+     * @param max_weight the maximum total weight, or 0 for no limit.
+     * @param weigher computes the weight of an entry, or null.
+     */
+    public Cache(String name, int max_entries, long max_weight,
+                 Weigher<? super K, ? super E> weigher) {
+        this.name = name;
         this.max_entries = max_entries;
+        this.max_weight = (weigher == null) ? 0 : max_weight;
+        this.weigher = weigher;
+        int num_segments = 1;
+        while (num_segments < MAX_SEGMENTS &&
+               max_entries >= 2 * num_segments * MIN_SEGMENT_ENTRIES) {
+            num_segments *= 2;
+        }
+        segments = new ArrayList<Segment>(num_segments);
+        for (int i = 0; i < num_segments; i++) {
+            segments.add(new Segment(
+                    (max_entries + num_segments - 1) / num_segments,
+                    (this.max_weight + num_segments - 1) / num_segments));
+        }
+        if (name != null) {
+            synchronized (named_caches) {
+                named_caches.add(this);
+            }
+        }
     }
 
-    protected boolean removeEldestEntry(Map.Entry eldest) {
-        return size() > max_entries;
+    // Returns the segment of the key.
+    private Segment getSegment(Object key) {
+        if (segments.size() == 1) {
+            return segments.get(0);
+        }
+        int h = (key == null) ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return segments.get(h & (segments.size() - 1));
     }
 
+    @Override
+    public E get(Object key) {
+        return getSegment(key).getEntry(key);
+    }
+
+    @Override
+    public E put(K key, E value) {
+        return getSegment(key).putEntry(key, value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getSegment(key).containsEntry(key);
+    }
+
+    @Override
+    public E remove(Object key) {
+        return getSegment(key).removeEntry(key);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clearEntries();
+        }
+    }
+
+    @Override
+    public int size() {
+        int ret = 0;
+        for (Segment segment : segments) {
+            ret += segment.getSize();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a snapshot of the entries; the returned set is not backed by
+     * the cache.
+     */
+    @Override
+    public Set<Map.Entry<K,E>> entrySet() {
+        Map<K,E> entries = new LinkedHashMap<K,E>();
+        for (Segment segment : segments) {
+            segment.addEntriesTo(entries);
+        }
+        return Collections.unmodifiableSet(entries.entrySet());
+    }
+
+    /** Returns a one-line summary of the cache usage */
+    public String getSummary() {
+        long num_hits = 0, num_misses = 0, num_evictions = 0, weight = 0;
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                num_hits += segment.num_hits;
+                num_misses += segment.num_misses;
+                num_evictions += segment.num_evictions;
+                weight += segment.weight;
+                size += segment.getSize();
+            }
+        }
+        long total = num_hits + num_misses;
+        StringBuilder sb = new StringBuilder(80);
+        sb.append("[Cache] ").append((name == null) ? "cache" : name);
+        sb.append(": ").append(num_hits).append(" hits, ");
+        sb.append(num_misses).append(" misses (");
+        sb.append(String.format("%.1f%%",
+                (total == 0) ? 0.0 : 100.0 * num_hits / total));
+        sb.append(" hit rate), ").append(num_evictions).append(" evictions, ");
+        sb.append(size).append("/").append(max_entries);
+        sb.append(" entries");
+        if (max_weight > 0) {
+            sb.append(", weight ").append(weight).append("/");
+            sb.append(max_weight);
+        }
+        if (segments.size() > 1) {
+            sb.append(", ").append(segments.size()).append(" segments");
+        }
+        return sb.toString();
+    }
+
+    // Returns the number of hits of this cache.
+    private long getHits() {
+        long ret = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                ret += segment.num_hits;
+            }
+        }
+        return ret;
+    }
+
+    // Returns the number of misses of this cache.
+    private long getMisses() {
+        long ret = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                ret += segment.num_misses;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Clears all named caches, e.g., to measure the cost of the cached
+     * computations.
+     */
+    public static void clearAll() {
+        synchronized (named_caches) {
+            for (Cache<?,?> cache : named_caches) {
+                cache.clear();
+            }
+        }
+    }
+
+    /** Returns the total number of hits of all named caches */
+    public static long getTotalHits() {
+        long ret = 0;
+        synchronized (named_caches) {
+            for (Cache<?,?> cache : named_caches) {
+                ret += cache.getHits();
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the total number of misses of all named caches */
+    public static long getTotalMisses() {
+        long ret = 0;
+        synchronized (named_caches) {
+            for (Cache<?,?> cache : named_caches) {
+                ret += cache.getMisses();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the usage summary of all named caches, one line per cache.
+     */
+    public static String getStatistics() {
+        StringBuilder sb = new StringBuilder(256);
+        synchronized (named_caches) {
+            for (Cache<?,?> cache : named_caches) {
+                if (sb.length() > 0) {
+                    sb.append("\n");
+                }
+                sb.append(cache.getSummary());
+            }
+        }
+        return sb.toString();
+    }
 }
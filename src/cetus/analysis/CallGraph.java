@@ -77,6 +77,9 @@ public class CallGraph {
 
     private HashMap<Procedure, Node> callgraph;
 
+    /* Flags for calls through function pointers */
+    private boolean has_indirect_calls;
+
     /**
     * Creates a call graph for the program.
     * Assumes the graph is rooted at a procedure
@@ -87,6 +90,7 @@ public class CallGraph {
     */
     public CallGraph(Program program) {
         callgraph = new HashMap<Procedure, Node>();
+        has_indirect_calls = false;
         /* add nodes for every procedure */
         DFIterator<Procedure> iter =
                 new DFIterator<Procedure>(program, Procedure.class);
@@ -119,8 +123,93 @@ public class CallGraph {
                 if (calledproc != null) {
                     calledproc.addCaller(call.getStatement());
                 }
+            } else if (isIndirectCall(call)) {
+                has_indirect_calls = true;
+            }
+        }
+    }
+
+    /* Checks if the call is made through a function pointer */
+    private static boolean isIndirectCall(FunctionCall call) {
+        Expression name = call.getName();
+        if (!(name instanceof Identifier)) {
+            return true;
+        }
+        Symbol symbol = ((Identifier)name).getSymbol();
+        return (symbol != null && !(symbol instanceof Procedure) &&
+                !(symbol instanceof ProcedureDeclarator));
+    }
+
+    /**
+    * Returns the procedures connected to the specified procedures through
+    * call edges in either direction, including the specified procedures that
+    * are in the graph. Interprocedural analysis results of the returned
+    * procedures may depend on the specified procedures.
+    *
+    * @param procs the procedures of interest.
+    * @return the set of connected procedures, or null if the program contains
+    *       calls through function pointers.
+    */
+    public Set<Procedure> getConnectedProcedures(Collection<Procedure> procs) {
+        if (has_indirect_calls) {
+            return null;
+        }
+        Set<Procedure> ret = new LinkedHashSet<Procedure>();
+        LinkedList<Procedure> work_list = new LinkedList<Procedure>();
+        for (Procedure proc : procs) {
+            if (callgraph.containsKey(proc) && ret.add(proc)) {
+                work_list.add(proc);
+            }
+        }
+        while (!work_list.isEmpty()) {
+            Node node = callgraph.get(work_list.removeFirst());
+            for (Procedure callee : node.getCallees()) {
+                if (callgraph.containsKey(callee) && ret.add(callee)) {
+                    work_list.add(callee);
+                }
+            }
+            for (Caller caller : node.getCallers()) {
+                Procedure proc = caller.getCallingProc();
+                if (proc != null && ret.add(proc)) {
+                    work_list.add(proc);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+    * Returns the procedures that call the specified procedures directly or
+    * transitively, including the specified procedures that are in the graph.
+    * Analysis results that use the side effects of callees, e.g., value
+    * ranges, of the returned procedures may depend on the specified
+    * procedures.
+    *
+    * @param procs the procedures of interest.
+    * @return the set of calling procedures, or null if the program contains
+    *       calls through function pointers.
+    */
+    public Set<Procedure> getCallingProcedures(Collection<Procedure> procs) {
+        if (has_indirect_calls) {
+            return null;
+        }
+        Set<Procedure> ret = new LinkedHashSet<Procedure>();
+        LinkedList<Procedure> work_list = new LinkedList<Procedure>();
+        for (Procedure proc : procs) {
+            if (callgraph.containsKey(proc) && ret.add(proc)) {
+                work_list.add(proc);
+            }
+        }
+        while (!work_list.isEmpty()) {
+            Node node = callgraph.get(work_list.removeFirst());
+            for (Caller caller : node.getCallers()) {
+                Procedure proc = caller.getCallingProc();
+                if (proc != null && ret.add(proc)) {
+                    work_list.add(proc);
+                }
             }
         }
+        return ret;
     }
 
     public boolean callsSelf(Procedure proc) {
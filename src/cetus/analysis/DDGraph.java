@@ -6,10 +6,21 @@ import cetus.hir.Loop;
 import cetus.hir.Statement;
 import cetus.hir.PrintTools;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
 
 /**
- * Data-dependence Graph to store the result of dependence testing
+ * Data-dependence Graph to store the result of dependence testing. Arcs are
+ * kept in insertion order and are indexed by their source, sink, dependence
+ * type and direction vector so duplicate arcs are detected without scanning
+ * the graph. Query indexes by access pair, statement pair and carried loop
+ * are built on demand and dropped whenever the set of arcs changes; the arcs
+ * in a graph should not be modified except through the graph.
  */
 public class DDGraph {
 
@@ -17,6 +28,90 @@ public class DDGraph {
     public static final boolean not_summarize = false;
     private boolean summarized_status;
     private ArrayList<Arc> depArcs;
+    /* Arcs keyed by source, sink, dependence type and direction vector */
+    private HashMap<ArcKey, Arc> arcIndex;
+    /* Number of arcs in depArcs when the indexes were last updated */
+    private int indexedSize;
+    /* Arcs keyed by their source and sink array accesses (ordered pair) */
+    private HashMap<NodePair, ArrayList<Arc>> accessIndex;
+    /* Arcs keyed by their source and sink statements (unordered pair) */
+    private HashMap<NodePair, ArrayList<Arc>> statementIndex;
+    /* Loops that carry at least one dependence in this graph */
+    private HashSet<Loop> carriedLoops;
+
+    /**
+     * Key that identifies an arc for duplicate detection. The direction
+     * vector is copied when the key is created.
+     */
+    private static class ArcKey {
+        private final DDArrayAccessInfo source;
+        private final DDArrayAccessInfo sink;
+        private final byte depType;
+        private final DependenceVector directions;
+        private final int hash;
+
+        private ArcKey(Arc arc) {
+            source = arc.source;
+            sink = arc.sink;
+            depType = arc.depType;
+            directions = new DependenceVector(arc.depVector);
+            hash = 31 * (31 * (31 * System.identityHashCode(source) +
+                    System.identityHashCode(sink)) + depType) +
+                    directions.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ArcKey)) {
+                return false;
+            }
+            ArcKey other = (ArcKey)o;
+            return (hash == other.hash && source == other.source &&
+                    sink == other.sink && depType == other.depType &&
+                    directions.equals(other.directions));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Pair of IR objects compared by identity; an unordered pair matches
+     * the same objects in either order.
+     */
+    private static class NodePair {
+        private final Object first;
+        private final Object second;
+        private final boolean ordered;
+
+        private NodePair(Object first, Object second, boolean ordered) {
+            this.first = first;
+            this.second = second;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NodePair)) {
+                return false;
+            }
+            NodePair other = (NodePair)o;
+            if (first == other.first && second == other.second) {
+                return true;
+            }
+            return (!ordered && first == other.second &&
+                    second == other.first);
+        }
+
+        @Override
+        public int hashCode() {
+            int h1 = System.identityHashCode(first);
+            int h2 = System.identityHashCode(second);
+            return (ordered) ? (31 * h1 + h2) : (h1 + h2);
+        }
+    }
     
     static public class Arc {
         /* source node */
@@ -130,31 +225,15 @@ public class DDGraph {
         }
         
         public boolean isCarried(Loop l) {
-            boolean is_carried_for_loop = false;
-            DependenceVector dv = this.getDependenceVector();
-            if ((dv.getDirectionVector()).containsKey(l)) {
-                int direction_for_l = dv.getDirection(l);
-                if ((direction_for_l == DependenceVector.any) ||
+            // getDirection() returns nil for loops not in the vector
+            int direction_for_l = this.getDependenceVector().getDirection(l);
+            return ((direction_for_l == DependenceVector.any) ||
                     (direction_for_l == DependenceVector.greater) ||
-                    (direction_for_l == DependenceVector.less)) {
-                    is_carried_for_loop = true;
-                }
-            }
-            return is_carried_for_loop;
+                    (direction_for_l == DependenceVector.less));
         }
         
         public boolean containsLoopCarriedDependence() {
-            boolean loop_carried = false;
-            DependenceVector dv = this.getDependenceVector();
-            if ((dv.getDirectionVector()).
-                        containsValue(DependenceVector.less) ||
-                (dv.getDirectionVector()).
-                        containsValue(DependenceVector.greater) ||
-                (dv.getDirectionVector()).
-                        containsValue(DependenceVector.any)) {
-                loop_carried = true;
-            }
-            return loop_carried;
+            return this.getDependenceVector().isLoopCarried();
         }
         
         public String toString() {
@@ -170,6 +249,8 @@ public class DDGraph {
     public DDGraph() {
         // Initialize list of arcs in this graph
         depArcs = new ArrayList<Arc>();
+        arcIndex = new HashMap<ArcKey, Arc>();
+        indexedSize = 0;
         // Arcs are not summarized, all dependences are explicit by default
         summarized_status = DDGraph.not_summarize;
     }
@@ -178,32 +259,101 @@ public class DDGraph {
         // Create a list of arcs for this graph
         depArcs = new ArrayList<Arc>();
         depArcs.addAll(dependence_arcs);
+        arcIndex = new HashMap<ArcKey, Arc>();
+        rebuildIndex();
         // Arcs are not summarized, all dependences are explicit by default
         summarized_status = DDGraph.not_summarize;
     }
+
+    /**
+     * Rebuilds the duplicate-detection index from the current arcs and drops
+     * the query indexes.
+     */
+    private void rebuildIndex() {
+        arcIndex.clear();
+        int depArcs_size = depArcs.size();
+        for (int i = 0; i < depArcs_size; i++) {
+            Arc arc = depArcs.get(i);
+            arcIndex.put(new ArcKey(arc), arc);
+        }
+        indexedSize = depArcs_size;
+        invalidateQueryIndexes();
+    }
+
+    /**
+     * Rebuilds the indexes if the list of arcs was modified outside of this
+     * graph, e.g., through {@link #getAllArcs()}.
+     */
+    private void checkIndex() {
+        if (indexedSize != depArcs.size()) {
+            rebuildIndex();
+        }
+    }
+
+    private void invalidateQueryIndexes() {
+        accessIndex = null;
+        statementIndex = null;
+        carriedLoops = null;
+    }
+
+    /**
+     * Builds the query indexes if they are not available.
+     */
+    private void buildQueryIndexes() {
+        checkIndex();
+        if (accessIndex != null) {
+            return;
+        }
+        accessIndex = new HashMap<NodePair, ArrayList<Arc>>();
+        statementIndex = new HashMap<NodePair, ArrayList<Arc>>();
+        carriedLoops = new HashSet<Loop>();
+        int depArcs_size = depArcs.size();
+        for (int i = 0; i < depArcs_size; i++) {
+            addToQueryIndexes(depArcs.get(i));
+        }
+    }
+
+    private void addToQueryIndexes(Arc arc) {
+        addToIndex(accessIndex, new NodePair(arc.getSource().getArrayAccess(),
+                arc.getSink().getArrayAccess(), true), arc);
+        addToIndex(statementIndex, new NodePair(arc.getSourceStatement(),
+                arc.getSinkStatement(), false), arc);
+        for (Loop loop : arc.getDependenceVector().getLoops()) {
+            if (arc.isCarried(loop)) {
+                carriedLoops.add(loop);
+            }
+        }
+    }
+
+    private static void addToIndex(
+            HashMap<NodePair, ArrayList<Arc>> index, NodePair key, Arc arc) {
+        ArrayList<Arc> arcs = index.get(key);
+        if (arcs == null) {
+            arcs = new ArrayList<Arc>(4);
+            index.put(key, arcs);
+        }
+        arcs.add(arc);
+    }
     
     public void addArc(Arc arc_to_add) {
-        boolean this_is_redundant = false;
         if (arc_to_add.getDependenceVector().isValid()) {
-            int depArcs_size = depArcs.size();
-            for (int i = 0; i < depArcs_size; i++) {
-                Arc arc = depArcs.get(i);
-                if ((arc.getSource() == arc_to_add.getSource()) &&
-                    (arc.getSink() == arc_to_add.getSink()) &&
-                    (arc.getDependenceType() ==
-                            arc_to_add.getDependenceType()) &&
-                    ((arc.getDependenceVector().getDirectionVector()).equals(
-                        arc_to_add.getDependenceVector().getDirectionVector())))
-                    this_is_redundant = true;
-            }
-            if (!this_is_redundant) {
+            checkIndex();
+            ArcKey key = new ArcKey(arc_to_add);
+            if (!arcIndex.containsKey(key)) {
+                arcIndex.put(key, arc_to_add);
                 depArcs.add(arc_to_add);
+                indexedSize++;
+                if (accessIndex != null) {
+                    addToQueryIndexes(arc_to_add);
+                }
             }
         }
     }
 
     public void deleteArc(Arc arc) {
-        depArcs.remove(arc);
+        if (depArcs.remove(arc)) {
+            rebuildIndex();
+        }
     }
     
     public ArrayList<Arc> getAllArcs() {
@@ -221,45 +371,39 @@ public class DDGraph {
      * (.) --&gt; containing '.' = invalid merged direction
      */
     public void filterUnwantedArcs() {
-        for (int i = 0; i < depArcs.size();) {
-            DependenceVector dv = depArcs.get(i).getDependenceVector();
-            if (dv.isValid()) {
-                i++;
-            } else {
-                depArcs.remove(i);
+        ArrayList<Arc> valid_arcs = new ArrayList<Arc>(depArcs.size());
+        for (Arc arc : depArcs) {
+            if (arc.getDependenceVector().isValid()) {
+                valid_arcs.add(arc);
             }
         }
+        if (valid_arcs.size() != depArcs.size()) {
+            depArcs.clear();
+            depArcs.addAll(valid_arcs);
+        }
+        rebuildIndex();
     }
     
     /**
-     * Filter out duplicate and unwanted arcs from the graph
+     * Filter out duplicate and unwanted arcs from the graph; the first arc
+     * of each set of duplicates is kept.
      */
     public void removeDuplicateArcs() {
         // First remove invalid arcs if any, then proceed to check for
         // duplicate arcs
         this.filterUnwantedArcs();
-        int depArcs_size = depArcs.size();
-        for (int i = 0; i < depArcs_size; i++) {
-            Arc arc1 = depArcs.get(i);
-            DependenceVector dv1 = arc1.depVector;
-            if (dv1.isValid()) {
-                for (int j = i+1; j < depArcs_size; j++) {
-                    Arc arc2 = depArcs.get(j);
-                    DependenceVector dv2 = arc2.depVector;
-                    if (dv2.isValid()) {
-                        if (arc1.source == arc2.source &&
-                            arc1.sink == arc2.sink &&
-                            arc1.depType == arc2.depType &&
-                            dv1.getDirectionVector().equals(
-                                    dv2.getDirectionVector())) {
-                            dv2.setValid(false);
-                        }
-                    }
-                }
+        HashSet<ArcKey> seen = new HashSet<ArcKey>(depArcs.size() * 2);
+        ArrayList<Arc> unique_arcs = new ArrayList<Arc>(depArcs.size());
+        for (Arc arc : depArcs) {
+            if (seen.add(new ArcKey(arc))) {
+                unique_arcs.add(arc);
             }
         }
-        // Remove arcs marked invalid by the duplicate check
-        this.filterUnwantedArcs();
+        if (unique_arcs.size() != depArcs.size()) {
+            depArcs.clear();
+            depArcs.addAll(unique_arcs);
+            rebuildIndex();
+        }
     }
 
     /**
@@ -269,14 +413,16 @@ public class DDGraph {
         this.summarized_status = DDGraph.summarize;
         // Create a new set of arcs that must be added to the graph
         ArrayList<Arc> newArcsForGraph = new ArrayList<Arc>();
+        // The access index is not updated while the direction vectors are
+        // invalidated below; arcs are grouped regardless of their validity.
+        buildQueryIndexes();
         int depArcs_size = depArcs.size();
         for (int i = 0; i < depArcs_size; i++) {
             Arc arc = depArcs.get(i);
             DependenceVector dv = arc.getDependenceVector();
             if (dv.isValid()) {
                 Set<Loop> loopsInVector = dv.getLoops();
-                ArrayList<Arc> arcsToBeSummarized = new ArrayList<Arc>();
-                arcsToBeSummarized = getDependenceArcsFromTo(
+                List<Arc> arcsToBeSummarized = getDependenceArcsFromTo(
                         arc.getSource().getArrayAccess(),
                         arc.getSink().getArrayAccess());
                 ArrayList<DependenceVector> dvsToBeSummarized =
@@ -330,6 +476,7 @@ public class DDGraph {
         }
         // Add all new arcs to the graph
         depArcs.addAll(newArcsForGraph);
+        invalidateQueryIndexes();
         // Remove duplicate arcs that might have been added as part of the
         // summarization process
         this.removeDuplicateArcs();
@@ -341,14 +488,13 @@ public class DDGraph {
      * @return true if it does, false otherwise
      */
     public boolean checkLoopCarriedDependenceForGraph() {
-        boolean contains_loop_carried_deps = false;
-        ArrayList<Arc> loop_carried_deps = getLoopCarriedDependencesForGraph();
-        if(loop_carried_deps.isEmpty()) {
-            contains_loop_carried_deps = false;
-        } else {
-            contains_loop_carried_deps = true;
+        int depArcs_size = depArcs.size();
+        for (int i = 0; i < depArcs_size; i++) {
+            if (depArcs.get(i).containsLoopCarriedDependence()) {
+                return true;
+            }
         }
-        return contains_loop_carried_deps;
+        return false;
     }
 
     /**
@@ -395,14 +541,8 @@ public class DDGraph {
      * @return true if it is, false otherwise
      */
     public boolean checkLoopCarriedDependence(Loop l) {
-        int depArcs_size = depArcs.size();
-        for (int i = 0; i < depArcs_size; i++) {
-            Arc dep = depArcs.get(i); 
-            if (dep.isCarried(l)) {
-                return true;
-            }
-        }
-        return false;
+        buildQueryIndexes();
+        return carriedLoops.contains(l);
     }
 
     /**
@@ -414,17 +554,13 @@ public class DDGraph {
      */
     public ArrayList<Arc>
             getDependenceArcsFromTo(ArrayAccess expr1, ArrayAccess expr2) {
-        ArrayList<Arc> arcSet = new ArrayList<Arc>();
-        int depArcs_size = depArcs.size();
-        for (int i = 0; i < depArcs_size; i++) {
-            Arc arc = depArcs.get(i);
-            if (arc.getSource().getArrayAccess() == expr1) {
-                if (arc.getSink().getArrayAccess() == expr2) {
-                    arcSet.add(arc);
-                }
-            }
+        buildQueryIndexes();
+        ArrayList<Arc> arcSet = accessIndex.get(
+                new NodePair(expr1, expr2, true));
+        if (arcSet == null) {
+            return new ArrayList<Arc>();
         }
-        return arcSet;
+        return new ArrayList<Arc>(arcSet);
     }
     
     /**
@@ -496,21 +632,13 @@ public class DDGraph {
      * statements
      */
     public ArrayList<Arc> getDependences(Statement stmt1, Statement stmt2) {
-        ArrayList<Arc> arcSet = new ArrayList<Arc>();
-        int depArcs_size = depArcs.size(); 
-        for (int i = 0; i < depArcs_size; i++) {
-            Arc arc = depArcs.get(i);
-            if (arc.getSourceStatement() == stmt1) {
-                if (arc.getSinkStatement() == stmt2) {
-                    arcSet.add(arc);
-                }
-            } else if (arc.getSourceStatement() == stmt2) {
-                if (arc.getSinkStatement() == stmt1) {
-                    arcSet.add(arc);
-                }
-            }
+        buildQueryIndexes();
+        ArrayList<Arc> arcSet = statementIndex.get(
+                new NodePair(stmt1, stmt2, false));
+        if (arcSet == null) {
+            return new ArrayList<Arc>();
         }
-        return arcSet;
+        return new ArrayList<Arc>(arcSet);
     }
     
     /**
@@ -586,4 +714,39 @@ public class DDGraph {
         }
         return dir_matrix;
     }
+
+    /**
+     * Updates the direction vectors after the headers of a perfect loop nest
+     * were permuted, i.e., the loop at position p of the nest now iterates
+     * over the index of the loop that was at position order[p].
+     * @param nest the loops of the nest from the outermost one.
+     * @param order the previous positions of the loop headers.
+     */
+    public void permuteLoops(List<Loop> nest, int[] order) {
+        int[] directions = new int[nest.size()];
+        IdentityHashMap<DependenceVector, Boolean> done =
+                new IdentityHashMap<DependenceVector, Boolean>();
+        int depArcs_size = depArcs.size();
+        for (int i = 0; i < depArcs_size; i++) {
+            DependenceVector dv = depArcs.get(i).getDependenceVector();
+            if (done.put(dv, Boolean.TRUE) != null) {
+                continue;
+            }
+            boolean contains_nest = false;
+            for (int j = 0; j < directions.length; j++) {
+                directions[j] = dv.getDirection(nest.get(j));
+                contains_nest |= (directions[j] != DependenceVector.nil);
+            }
+            if (!contains_nest) {
+                continue;
+            }
+            for (int j = 0; j < directions.length; j++) {
+                if (directions[j] != DependenceVector.nil ||
+                    directions[order[j]] != DependenceVector.nil) {
+                    dv.setDirection(nest.get(j), directions[order[j]]);
+                }
+            }
+        }
+        rebuildIndex();
+    }
 }
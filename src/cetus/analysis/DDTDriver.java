@@ -1,7 +1,13 @@
 package cetus.analysis; 
 
+import cetus.exec.Driver;
+import cetus.exec.IncrementalState;
 import cetus.hir.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /*
 Algorithm:
@@ -69,12 +75,30 @@ public class DDTDriver extends AnalysisPass {
         // testing
         List<Loop> eligible_loops =
                 LoopTools.extractOutermostDependenceTestEligibleLoops(program);
+        // Loops in the procedures reused by incremental compilation are not
+        // tested.
+        Iterator<Loop> eligible_iter = eligible_loops.iterator();
+        while (eligible_iter.hasNext()) {
+            if (IncrementalState.isReused((Statement)eligible_iter.next())) {
+                eligible_iter.remove();
+            }
+        }
         PrintTools.printlnStatus(1, pass_name,
                 "Number of eligible outermost loops =", eligible_loops.size());
-        for (Loop loop : eligible_loops) {
-            DDGraph dependence_graph = analyzeLoopsForDependence(loop);
-            ddg.addAllArcs(dependence_graph.getAllArcs());
+        int num_threads = getNumThreads(eligible_loops.size());
+        if (num_threads > 1) {
+            for (DDGraph dependence_graph :
+                    analyzeLoopsInParallel(eligible_loops, num_threads)) {
+                ddg.addAllArcs(dependence_graph.getAllArcs());
+            }
+        } else {
+            for (Loop loop : eligible_loops) {
+                DDGraph dependence_graph = analyzeLoopsForDependence(loop);
+                ddg.addAllArcs(dependence_graph.getAllArcs());
+            }
         }
+        PrintTools.printlnStatus(1, pass_name,
+                DDTestWrapper.getMemoStatistics());
         // TODO: replace with generic metric
         //PrintTools.println("Size of data dependence graph = " +
         //                   (ddg.getAllArcs()).size(), 1);
@@ -89,23 +113,128 @@ public class DDTDriver extends AnalysisPass {
     * loop nest with this loop as the outermost loop.
     */
     public DDGraph analyzeLoopsForDependence(Loop loop) {
-        // Dependence Graph for nest defined by this loop
-        DDGraph loopDDGraph = new DDGraph();
+        return collectNest(loop).test();
+    }
+
+    /**
+    * Information collected for a loop nest before dependence testing. The
+    * collection step runs serially and queries alias analysis and the ranges
+    * of the loops, which computes the range domains of the whole procedure
+    * except in the sparse mode. The test step of different nests may run
+    * concurrently and still queries range analysis for the statements of the
+    * accesses, both here and in {@link RangeTest}. Such a query is a lookup
+    * in a concurrent map when the domains are already computed, and a miss
+    * computes them while holding the lock of the map; the returned domains
+    * are only read, e.g., {@link RangeDomain#substituteForward} works on a
+    * clone of the expression.
+    */
+    private class LoopNest implements Callable<DDGraph> {
+        private final Loop loop;
         // Storage space for loop information
-        HashMap<Loop, LoopInfo> loopInfoMap = new HashMap<Loop, LoopInfo>();
+        private final HashMap<Loop, LoopInfo> loopInfoMap;
         // Map from array name (Expression) to array access information
         // (DDArrayAccessInfo)
-        HashMap<Symbol, ArrayList<DDArrayAccessInfo>> loopArrayAccessMap =
-            new HashMap<Symbol, ArrayList<DDArrayAccessInfo>>();
+        private final HashMap<Symbol, ArrayList<DDArrayAccessInfo>>
+                loopArrayAccessMap;
+        // Map from array name to its alias set within the nest; an alias set
+        // contains symbols, or "*" if the name may be aliased to any symbol
+        private final Map<Symbol, Set<Object>> aliasSetMap;
+
+        private LoopNest(Loop loop) {
+            this.loop = loop;
+            loopInfoMap = new HashMap<Loop, LoopInfo>();
+            loopArrayAccessMap =
+                    new HashMap<Symbol, ArrayList<DDArrayAccessInfo>>();
+            aliasSetMap = new HashMap<Symbol, Set<Object>>();
+        }
+
+        // Run Data-Dependence Tests for entire nest and return the DDG if
+        // everything went OK
+        private DDGraph test() {
+            return runDDTest(loop, loopArrayAccessMap, loopInfoMap,
+                             aliasSetMap);
+        }
+
+        public DDGraph call() {
+            return test();
+        }
+    }
+
+    /**
+    * Collects loop information, array access information, and alias sets for
+    * the nest with the specified loop as the outermost loop.
+    */
+    private LoopNest collectNest(Loop loop) {
+        LoopNest ret = new LoopNest(loop);
         // Collect loop information and array access information
         LinkedList<Loop> nest = LoopTools.calculateInnerLoopNest(loop);
         for (Loop l : nest) {
-            collectLoopInfo(l, loopInfoMap, loopArrayAccessMap);
+            collectLoopInfo(l, ret.loopInfoMap, ret.loopArrayAccessMap);
         }
-        // Run Data-Dependence Tests for entire nest and return the DDG if
-        // everything went OK
-        loopDDGraph = runDDTest(loop, loopArrayAccessMap, loopInfoMap);
-        return loopDDGraph;
+        for (Symbol name : ret.loopArrayAccessMap.keySet()) {
+            ret.aliasSetMap.put(name, collectAliasSet(loop, name));
+        }
+        return ret;
+    }
+
+    /**
+    * Returns the number of threads used for dependence testing, which is
+    * specified by the <b>ddt-threads</b> option and bounded by the number of
+    * loop nests.
+    */
+    private static int getNumThreads(int num_nests) {
+        int ret = 1;
+        String value = Driver.getOptionValue("ddt-threads");
+        if (value != null) {
+            try {
+                ret = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                PrintTools.printlnStatus(0, pass_name,
+                        "[WARNING] ignoring invalid ddt-threads", value);
+            }
+        }
+        if (ret <= 0) {
+            ret = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Math.min(ret, num_nests));
+    }
+
+    /**
+    * Analyzes the specified loop nests on a fork-join pool. Collection of nest
+    * information is performed serially and only the dependence tests run in
+    * parallel. The returned dependence graphs are in the order of the input
+    * loops so the merged graph does not depend on thread scheduling.
+    */
+    private List<DDGraph> analyzeLoopsInParallel(List<Loop> loops,
+                                                 int num_threads) {
+        double timer = Tools.getTime();
+        List<LoopNest> nests = new ArrayList<LoopNest>(loops.size());
+        for (Loop loop : loops) {
+            nests.add(collectNest(loop));
+        }
+        List<DDGraph> ret = new ArrayList<DDGraph>(loops.size());
+        ForkJoinPool pool = new ForkJoinPool(num_threads);
+        try {
+            for (Future<DDGraph> future : pool.invokeAll(nests)) {
+                ret.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            throw new InternalError("Interrupted dependence testing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new InternalError(cause.toString());
+        } finally {
+            pool.shutdown();
+        }
+        PrintTools.printlnStatus(1, pass_name, loops.size(),
+                "loop nests tested with", num_threads, "threads in",
+                String.format("%.2f seconds", Tools.getTime(timer)));
+        return ret;
     }
 
     /**
@@ -344,7 +473,8 @@ public class DDTDriver extends AnalysisPass {
     private DDGraph runDDTest(
             Loop loop,
             HashMap<Symbol, ArrayList<DDArrayAccessInfo>> loopArrayAccessMap,
-            HashMap<Loop, LoopInfo> loopInfoMap) {
+            HashMap<Loop, LoopInfo> loopInfoMap,
+            Map<Symbol, Set<Object>> aliasSetMap) {
         boolean depExists = false;
         ArrayList<DependenceVector> DVset = null;
         // Dependence graph to hold direction vectors for current loop nest
@@ -365,27 +495,7 @@ public class DDTDriver extends AnalysisPass {
             /////////////////////
             // ALIAS SET CHECK //
             /////////////////////
-            Set alias_set = new HashSet();
-            DFIterator<Statement> loop_iter =
-                    new DFIterator<Statement>(loop, Statement.class);
-            loop_iter.pruneOn(ExpressionStatement.class);
-            loop_iter.pruneOn(DeclarationStatement.class);
-            loop_iter.pruneOn(ReturnStatement.class);
-            while (loop_iter.hasNext()) {
-                Statement stmt = loop_iter.next();
-                if (stmt instanceof ExpressionStatement ||
-                    stmt instanceof DeclarationStatement ||
-                    stmt instanceof ReturnStatement) {
-                    Set aliases = alias_analysis.get_alias_set(stmt, name);
-                    if (aliases != null) {
-                        alias_set.addAll(aliases);
-                    }
-                }
-            }
-            // Add annotation for alias information
-            if (PrintTools.getVerbosity() >= 3) {
-                addAliasesAnnotation((Statement)loop, name, alias_set);
-            }
+            Set<Object> alias_set = aliasSetMap.get(name);
             if ((alias_set != null) && !(alias_set.isEmpty())) {
                 if (alias_set.contains("*")) {
                     // Add all other symbols to the second iterator
@@ -393,8 +503,7 @@ public class DDTDriver extends AnalysisPass {
                         arrayList2.addAll(loopArrayAccessMap.get(s));
                     }
                 } else {
-                    Set<Symbol> aliased_symbols = alias_set;
-                    for (Symbol s : aliased_symbols) {
+                    for (Object s : alias_set) {
                         if (loopArrayAccessMap.containsKey(s)) {
                             ArrayList<DDArrayAccessInfo> set =
                                     loopArrayAccessMap.get(s);
@@ -540,7 +649,37 @@ public class DDTDriver extends AnalysisPass {
         return loopDDGraph;
     }
 
-    private void addAliasesAnnotation(Statement loop, Symbol s, Set alias_set) {
+    /**
+    * Collects the alias set of the specified array name from the statements
+    * in the loop nest.
+    */
+    private Set<Object> collectAliasSet(Loop loop, Symbol name) {
+        Set<Object> alias_set = new HashSet<Object>();
+        DFIterator<Statement> loop_iter =
+                new DFIterator<Statement>(loop, Statement.class);
+        loop_iter.pruneOn(ExpressionStatement.class);
+        loop_iter.pruneOn(DeclarationStatement.class);
+        loop_iter.pruneOn(ReturnStatement.class);
+        while (loop_iter.hasNext()) {
+            Statement stmt = loop_iter.next();
+            if (stmt instanceof ExpressionStatement ||
+                stmt instanceof DeclarationStatement ||
+                stmt instanceof ReturnStatement) {
+                Set<?> aliases = alias_analysis.get_alias_set(stmt, name);
+                if (aliases != null) {
+                    alias_set.addAll(aliases);
+                }
+            }
+        }
+        // Add annotation for alias information
+        if (PrintTools.getVerbosity() >= 3) {
+            addAliasesAnnotation((Statement)loop, name, alias_set);
+        }
+        return alias_set;
+    }
+
+    private void addAliasesAnnotation(
+            Statement loop, Symbol s, Set<Object> alias_set) {
         String annot_string = "";
         annot_string += "Symbol: " + s.toString() + "\n";
         annot_string += "Alias_set: \n" + alias_set.toString();
@@ -7,10 +7,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Wrapper framework for executing specific data-dependence test on array
@@ -23,6 +26,8 @@ public class DDTestWrapper {
     // Common eligible nest for the two accesses which will provide the
     // dependence vector
     private LinkedList<Loop> loop_nest;
+    // Descriptor of loop_nest shared by all dependence vectors of the pair
+    private DependenceVector.Nest dv_nest;
     // Loop Info for all loops pertaining to these two accesses
     private HashMap<Loop, LoopInfo> loop_info;
     // Multiple dependence tests can be used for testing
@@ -32,10 +37,59 @@ public class DDTestWrapper {
     // Get Commandline input for which test must be run,
     // default = DDTEST_BANERJEE
     private int ddtest_type;
-    private static final Cache<List<Statement>, Boolean>
-            reachable_stmts = new Cache<List<Statement>, Boolean>();
-    private static final Cache<Loop, CFGraph>
-            body_graph = new Cache<Loop, CFGraph>();
+    private static final Cache<List<Statement>, Boolean> reachable_stmts =
+            new Cache<List<Statement>, Boolean>("reachable statements", 64);
+    // Control flow graphs of loop bodies, bounded also by the total number
+    // of nodes since a single graph can be large.
+    private static final int BODY_GRAPH_NODES = 1 << 16;
+    private static final Cache<Loop, CFGraph> body_graph =
+            new Cache<Loop, CFGraph>("loop body graphs", 64, BODY_GRAPH_NODES,
+            new Cache.Weigher<Loop, CFGraph>() {
+                public long weigh(Loop loop, CFGraph cfg) {
+                    return cfg.size();
+                }
+            });
+    // Memoized results of subscript-pair tests. Results of the Banerjee test
+    // depend only on the canonical form of the pair and are kept across
+    // passes; results of the Range test also depend on the range information
+    // at the statements and are dropped by invalidate().
+    private static final int MEMO_CAPACITY = 4096;
+    private static final Cache<List<Object>, TestResult>
+            pair_results = new Cache<List<Object>, TestResult>(
+            "subscript-pair results", MEMO_CAPACITY);
+    private static final Cache<List<Object>, TestResult>
+            range_results = new Cache<List<Object>, TestResult>(
+            "subscript-pair range results", MEMO_CAPACITY);
+    private static final AtomicInteger
+            memo_hits = new AtomicInteger(0), memo_misses = new AtomicInteger(0);
+
+    /**
+    * Result of a subscript-pair test: the complete direction vectors under
+    * which a dependence may exist, stored as packed directions by nest level.
+    */
+    private static class TestResult {
+        // False if the test was not eligible for the pair.
+        private final boolean eligible;
+        private final long[] vectors;
+
+        private TestResult(boolean eligible, List<DependenceVector> dvs) {
+            this.eligible = eligible;
+            vectors = new long[dvs.size()];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = dvs.get(i).getBits();
+            }
+        }
+
+        private ArrayList<DependenceVector>
+                getVectors(DependenceVector.Nest nest) {
+            ArrayList<DependenceVector> ret =
+                    new ArrayList<DependenceVector>(vectors.length);
+            for (long bits : vectors) {
+                ret.add(new DependenceVector(nest, bits));
+            }
+            return ret;
+        }
+    }
 
     /**
     * Constructs a new test wrapper with the specified pair of array accesses
@@ -49,6 +103,7 @@ public class DDTestWrapper {
         this.acc1 = a1;
         this.acc2 = a2;
         this.loop_nest = loop_nest;
+        this.dv_nest = new DependenceVector.Nest(loop_nest);
         this.loop_info = loopInfo;
         this.ddtest_type = Integer.parseInt(Driver.getOptionValue("ddt"));
     }
@@ -83,19 +138,20 @@ public class DDTestWrapper {
         DDTest ddtest = null;
         ArrayList<DependenceVector> returned_DVset;
         if (ddtest_type == DDTEST_OMEGA) {
-            // Currently, the Omega Test inclusion in Cetus is on hold. This 
-            // section of code is not meant to be used by Cetus users. 
-            // Remove the warning and exit call once Omega test inclusion 
-            // is complete 
-            // ddtest = new OmegaTest(getAcc1(),
-            //                        getAcc2(),
-            //                        getCommonEnclosingLoops(),
-            //                        getAllLoopsInfo());
-            throw new UnsupportedOperationException(
-                    "OMEGA test is not supported now");
+            ddtest = new OmegaTest(acc1, acc2, loop_nest, loop_info);
         }
         // else if .. add other whole array access tests here
+        if (!ddtest.isTestEligible()) {
+            // Conservatively assume dependence in all directions with
+            // respect to enclosing loops
+            DependenceVector dv = new DependenceVector(dv_nest);
+            if (!DVset.contains(dv)) {
+                DVset.add(dv);
+            }
+            return true;
+        }
         returned_DVset = testAllDependenceVectors(ddtest);
+        removeUnreachableVectors(returned_DVset);
         if (returned_DVset.size() == 0) {
             return false;
         } else {
@@ -142,8 +198,7 @@ public class DDTestWrapper {
             // For arrays with different dimensions that are said to be
             // aliased, conservatively assume dependence in all directions
             // with respect to enclosing loops
-            DependenceVector dv =
-                    new DependenceVector(loop_nest);
+            DependenceVector dv = new DependenceVector(dv_nest);
             if (!DVset.contains(dv)) {
                 DVset.add(dv);
             }
@@ -343,7 +398,7 @@ public class DDTestWrapper {
             if (diff.getValue() == 0) {
                 // Need to assign all possible combinations of DVs to this
                 // subscript pair
-                DependenceVector dv = new DependenceVector(loop_nest);
+                DependenceVector dv = new DependenceVector(dv_nest);
                 //for (Loop l : pair.getEnclosingLoopsList()) {
                 //  dv.setDirection(l, DependenceVector.equal);
                 //}
@@ -355,7 +410,7 @@ public class DDTestWrapper {
         } else {
             // Difference in expressions is symbolic, conservatively return
             // true
-            DependenceVector dv = new DependenceVector(loop_nest);
+            DependenceVector dv = new DependenceVector(dv_nest);
             DV.add(dv);
             return true;
         }
@@ -368,23 +423,27 @@ public class DDTestWrapper {
      */
     private boolean testMIV(SubscriptPair pair,
                             List<DependenceVector> dependence_vectors) {
-        DDTest ddtest = null;
-        ArrayList<DependenceVector> new_dv;
         if (ddtest_type == DDTEST_OMEGA) {
             // ERROR, how did we get here?
             PrintTools.println("Error in data dependence testing", 0);
             Tools.exit(0);
         }
-        // Add other subscript by subscript dependence tests here when required
-        // else if ...
-        // By default, use Banerjee
-        else if (ddtest_type == DDTEST_RANGE) {
-            ddtest = RangeTest.getInstance(pair);
-        } else if (ddtest_type == DDTEST_BANERJEE) {
-            ddtest = new BanerjeeTest(pair);
+        Cache<List<Object>, TestResult> memo =
+                (ddtest_type == DDTEST_RANGE) ? range_results : pair_results;
+        List<Object> key = getMemoKey(pair);
+        TestResult result = (key == null) ? null : memo.get(key);
+        if (result == null) {
+            result = runMIVTest(pair);
+            if (key != null) {
+                memo_misses.incrementAndGet();
+                memo.put(key, result);
+            }
+        } else {
+            memo_hits.incrementAndGet();
         }
-        if (ddtest.isTestEligible()) {
-            new_dv = testAllDependenceVectors(ddtest);
+        if (result.eligible) {
+            ArrayList<DependenceVector> new_dv = result.getVectors(dv_nest);
+            removeUnreachableVectors(new_dv);
             if (new_dv.size() == 0) {
                 return false;
             } else {
@@ -392,12 +451,142 @@ public class DDTestWrapper {
                 return true;
             }
         } else {
-            DependenceVector dv = new DependenceVector(loop_nest);
+            DependenceVector dv = new DependenceVector(dv_nest);
             dependence_vectors.add(dv);
             return true;
         }
     }
 
+    private TestResult runMIVTest(SubscriptPair pair) {
+        DDTest ddtest = null;
+        // Add other subscript by subscript dependence tests here when required
+        // else if ...
+        // By default, use Banerjee
+        if (ddtest_type == DDTEST_RANGE) {
+            ddtest = RangeTest.getInstance(pair);
+        } else if (ddtest_type == DDTEST_BANERJEE) {
+            ddtest = new BanerjeeTest(pair);
+        }
+        if (ddtest.isTestEligible()) {
+            return new TestResult(true, testAllDependenceVectors(ddtest));
+        } else {
+            return new TestResult(false, new ArrayList<DependenceVector>());
+        }
+    }
+
+    /**
+    * Returns the key of the specified subscript pair in the memo table, or
+    * null if the pair cannot be memoized. The key is a canonical form of the
+    * subscripts and the loop bounds and strides of the nest, in which the
+    * loop indices are named by their nest levels and other symbols by their
+    * order of appearance. For the Banerjee test, the key also records the
+    * loops that define each symbol since it decides the eligibility of the
+    * test; for the Range test, the key includes the statements and loops
+    * whose range information is used by the test.
+    */
+    private List<Object> getMemoKey(SubscriptPair pair) {
+        Map<Object, Integer> ids = new LinkedHashMap<Object, Integer>();
+        for (Loop loop : loop_nest) {
+            Expression index = loop_info.get(loop).getLoopIndex();
+            if (!(index instanceof Identifier)) {
+                return null;
+            }
+            getCanonicalId((Identifier)index, ids);
+        }
+        StringBuilder sb = new StringBuilder(80);
+        sb.append(ddtest_type).append(':').append(loop_nest.size());
+        for (Loop loop : loop_nest) {
+            LoopInfo info = loop_info.get(loop);
+            sb.append('|');
+            appendCanonicalForm(sb, info.getLoopLB(), ids);
+            sb.append(',');
+            appendCanonicalForm(sb, info.getLoopUB(), ids);
+            sb.append(',');
+            appendCanonicalForm(sb, info.getLoopIncrement(), ids);
+        }
+        sb.append('|');
+        appendCanonicalForm(sb, pair.getSubscript1(), ids);
+        sb.append('|');
+        appendCanonicalForm(sb, pair.getSubscript2(), ids);
+        List<Object> ret = new ArrayList<Object>(loop_nest.size() + 3);
+        if (ddtest_type == DDTEST_RANGE) {
+            ret.add(sb.toString());
+            ret.add(pair.getStatement1());
+            ret.add(pair.getStatement2());
+            ret.addAll(loop_nest);
+        } else {
+            for (Loop loop : loop_nest) {
+                Set<Symbol> defs = loop_info.get(loop).getDefSymbols();
+                if (defs == null) {
+                    return null;
+                }
+                sb.append('|');
+                for (Object id : ids.keySet()) {
+                    sb.append(defs.contains(id) ? '1' : '0');
+                }
+            }
+            ret.add(sb.toString());
+        }
+        return ret;
+    }
+
+    // Appends the expression with canonical names of identifiers.
+    private static void appendCanonicalForm(
+            StringBuilder sb, Expression e, Map<Object, Integer> ids) {
+        if (e == null) {
+            sb.append("null");
+            return;
+        }
+        if (e instanceof Identifier) {
+            sb.append('@').append(getCanonicalId((Identifier)e, ids));
+            return;
+        }
+        Expression clone = e.clone();
+        List<Identifier> names = new ArrayList<Identifier>();
+        DFIterator<Identifier> iter =
+                new DFIterator<Identifier>(clone, Identifier.class);
+        while (iter.hasNext()) {
+            names.add(iter.next());
+        }
+        for (Identifier name : names) {
+            name.swapWith(new NameID("@" + getCanonicalId(name, ids)));
+        }
+        sb.append(clone);
+    }
+
+    private static int getCanonicalId(Identifier id, Map<Object, Integer> ids) {
+        Object key = id.getSymbol();
+        if (key == null) {
+            key = id.getName();
+        }
+        Integer ret = ids.get(key);
+        if (ret == null) {
+            ret = ids.size();
+            ids.put(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+    * Drops the memoized test results that depend on range information; this
+    * method is called when the range information is invalidated.
+    */
+    public static void invalidate() {
+        range_results.clear();
+    }
+
+    /**
+    * Returns a summary of the memoized subscript-pair test results.
+    */
+    public static String getMemoStatistics() {
+        int hits = memo_hits.get(), misses = memo_misses.get();
+        int total = hits + misses;
+        return String.format("subscript-pair memo: %d hits, %d misses " +
+                "(%.1f%% hit rate), %d entries", hits, misses,
+                (total == 0) ? 0.0 : 100.0 * hits / total,
+                pair_results.size() + range_results.size());
+    }
+
     /** 
      * Test all combinations of dependence vectors for the enclosing loop nest,
      * prune on direction vectors for which no dependence exists.
@@ -406,7 +595,7 @@ public class DDTestWrapper {
             testAllDependenceVectors(DDTest ddtest) {
         ArrayList<DependenceVector> dv_list = new ArrayList<DependenceVector>();
         //create vector dv=(*,...,*);
-        DependenceVector dv = new DependenceVector(loop_nest); 
+        DependenceVector dv = new DependenceVector(dv_nest); 
         // test dependence vector tree starting at (*,*,*,....) vector
         if (ddtest.testDependence(dv)) {
             // Test entire tree only if dependence exists in the any(*)
@@ -450,6 +639,18 @@ public class DDTestWrapper {
         return ret;
     }
 
+    // Removes the vectors with "equal" directions for all loops if acc2 is
+    // not reachable from acc1; such access pairs do not follow the definition
+    // of data dependence.
+    private void removeUnreachableVectors(List<DependenceVector> dvs) {
+        Iterator<DependenceVector> iter = dvs.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().isEqual() && !accIsReachable()) {
+                iter.remove();
+            }
+        }
+    }
+
     private void testTree(DDTest ddtest,
                           DependenceVector dv,
                           int pos,
@@ -461,16 +662,10 @@ public class DDTestWrapper {
             Loop loop = loop_nest.get(pos);
             dv.setDirection(loop, dir);
             if (ddtest.testDependence(dv)) {
-                DependenceVector dv_clone = new DependenceVector(dv);
                 // Add to dependence vector list only if it does not contain
                 // the 'any' (*) direction for all given loops
-                if (!((dv_clone.getDirectionVector()).
-                        containsValue(DependenceVector.any))) {
-                    // Skips access pairs that do not follow the definition of
-                    // data dependence.
-                    if (!dv.isEqual() || accIsReachable()) {
-                        dv_list.add(dv_clone);
-                    }
+                if (!dv.containsDirection(DependenceVector.any)) {
+                    dv_list.add(new DependenceVector(dv));
                 }
                 // Dependence exists, hence test the child tree rooted at
                 // current dv
@@ -0,0 +1,292 @@
+package cetus.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class DataFlowGraph is a frozen, index-based view of a {@link DFAGraph}
+ * used for iterative data flow analysis. The nodes reachable from the root
+ * node are numbered from 0 in reverse post order (topological order), which
+ * is the same order computed by {@link DFAGraph#topologicalSort(DFANode)},
+ * and the unreachable nodes are numbered after the reachable ones. The
+ * successors and the predecessors of each node are stored in compressed
+ * arrays, and each edge has an index so an analysis can keep its per-node
+ * and per-edge facts in arrays instead of the data maps of {@link DFANode}.
+ * The view does not reflect any changes made to the graph after it was
+ * created.
+ */
+public class DataFlowGraph {
+
+    // Nodes indexed by their ids.
+    private final DFANode[] nodes;
+
+    // Map from nodes to their ids.
+    private final Map<DFANode, Integer> ids;
+
+    // Number of nodes reachable from the root node.
+    private final int num_reachable;
+
+    // Successors of node i are succs[succ_offset[i]..succ_offset[i+1]-1], and
+    // the index of an entry in succs is the index of the edge.
+    private final int[] succ_offset, succs;
+
+    // Predecessors of node i are preds[pred_offset[i]..pred_offset[i+1]-1],
+    // and pred_edges has the edge indices of the entries.
+    private final int[] pred_offset, preds, pred_edges;
+
+    /**
+     * Constructs a view of the specified graph with the given root node.
+     *
+     * @param graph the graph.
+     * @param root the starting node of depth-first search.
+     */
+    public DataFlowGraph(DFAGraph graph, DFANode root) {
+        int size = graph.size();
+        nodes = new DFANode[size];
+        ids = new HashMap<DFANode, Integer>(size * 2);
+        num_reachable = (root == null) ? 0 : numberReachable(root);
+        // Unreachable nodes are numbered in the order of the node list.
+        int id = num_reachable;
+        for (int i = 0; i < size; i++) {
+            DFANode node = graph.getNode(i);
+            if (!ids.containsKey(node)) {
+                nodes[id] = node;
+                ids.put(node, id++);
+            }
+        }
+        // Successors in the order of DFANode.getSuccs().
+        succ_offset = new int[size + 1];
+        int num_edges = 0;
+        for (int i = 0; i < size; i++) {
+            for (DFANode succ : nodes[i].getSuccs()) {
+                if (ids.containsKey(succ)) {
+                    num_edges++;
+                }
+            }
+        }
+        succs = new int[num_edges];
+        int[] num_preds = new int[size];
+        for (int i = 0, edge = 0; i < size; i++) {
+            succ_offset[i] = edge;
+            for (DFANode succ : nodes[i].getSuccs()) {
+                Integer succ_id = ids.get(succ);
+                if (succ_id != null) {
+                    succs[edge++] = succ_id;
+                    num_preds[succ_id]++;
+                }
+            }
+        }
+        succ_offset[size] = num_edges;
+        // Predecessors sorted by their ids.
+        pred_offset = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            pred_offset[i + 1] = pred_offset[i] + num_preds[i];
+        }
+        preds = new int[num_edges];
+        pred_edges = new int[num_edges];
+        int[] next = new int[size];
+        System.arraycopy(pred_offset, 0, next, 0, size);
+        for (int i = 0; i < size; i++) {
+            for (int edge = succ_offset[i]; edge < succ_offset[i+1]; edge++) {
+                int succ = succs[edge];
+                preds[next[succ]] = i;
+                pred_edges[next[succ]++] = edge;
+            }
+        }
+    }
+
+    /**
+     * Numbers the nodes reachable from the root in reverse post order with an
+     * explicit stack, visiting the successors in the same order as the
+     * recursive depth-first search in DFAGraph.
+     */
+    private int numberReachable(DFANode root) {
+        Set<DFANode> visited = new HashSet<DFANode>(nodes.length * 2);
+        DFANode[] post_order = new DFANode[nodes.length];
+        int num_post = 0;
+        List<DFANode> stack = new ArrayList<DFANode>();
+        List<Iterator<DFANode>> iters = new ArrayList<Iterator<DFANode>>();
+        stack.add(root);
+        iters.add(root.getSuccs().iterator());
+        visited.add(root);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            Iterator<DFANode> iter = iters.get(top);
+            if (iter.hasNext()) {
+                DFANode succ = iter.next();
+                if (visited.add(succ)) {
+                    stack.add(succ);
+                    iters.add(succ.getSuccs().iterator());
+                }
+            } else {
+                post_order[num_post++] = stack.remove(top);
+                iters.remove(top);
+            }
+        }
+        for (int i = 0; i < num_post; i++) {
+            DFANode node = post_order[num_post - 1 - i];
+            nodes[i] = node;
+            ids.put(node, i);
+        }
+        return num_post;
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return the number of nodes.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the number of nodes reachable from the root node, which are
+     * numbered from 0 to the returned number minus one.
+     *
+     * @return the number of reachable nodes.
+     */
+    public int getNumReachable() {
+        return num_reachable;
+    }
+
+    /**
+     * Checks if the specified node is reachable from the root node.
+     *
+     * @param id the node id.
+     * @return true if it is reachable.
+     */
+    public boolean isReachable(int id) {
+        return (id < num_reachable);
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the number of edges.
+     */
+    public int getNumEdges() {
+        return succs.length;
+    }
+
+    /**
+     * Returns the node with the specified id.
+     *
+     * @param id the node id.
+     * @return the node.
+     */
+    public DFANode getNode(int id) {
+        return nodes[id];
+    }
+
+    /**
+     * Returns the id of the specified node.
+     *
+     * @param node the node.
+     * @return the node id, or -1 if the node is not in the graph.
+     */
+    public int getId(DFANode node) {
+        Integer ret = ids.get(node);
+        return (ret == null) ? -1 : ret;
+    }
+
+    /**
+     * Returns the number of successors of the specified node.
+     *
+     * @param id the node id.
+     * @return the number of successors.
+     */
+    public int getNumSuccs(int id) {
+        return succ_offset[id+1] - succ_offset[id];
+    }
+
+    /**
+     * Returns the k-th successor of the specified node.
+     *
+     * @param id the node id.
+     * @param k the position of the successor.
+     * @return the id of the successor.
+     */
+    public int getSucc(int id, int k) {
+        return succs[succ_offset[id] + k];
+    }
+
+    /**
+     * Returns the index of the edge to the k-th successor of the specified
+     * node.
+     *
+     * @param id the node id.
+     * @param k the position of the successor.
+     * @return the edge index.
+     */
+    public int getSuccEdge(int id, int k) {
+        return succ_offset[id] + k;
+    }
+
+    /**
+     * Returns the number of predecessors of the specified node.
+     *
+     * @param id the node id.
+     * @return the number of predecessors.
+     */
+    public int getNumPreds(int id) {
+        return pred_offset[id+1] - pred_offset[id];
+    }
+
+    /**
+     * Returns the k-th predecessor of the specified node; the predecessors
+     * are ordered by their ids.
+     *
+     * @param id the node id.
+     * @param k the position of the predecessor.
+     * @return the id of the predecessor.
+     */
+    public int getPred(int id, int k) {
+        return preds[pred_offset[id] + k];
+    }
+
+    /**
+     * Returns the index of the edge from the k-th predecessor of the specified
+     * node.
+     *
+     * @param id the node id.
+     * @param k the position of the predecessor.
+     * @return the edge index.
+     */
+    public int getPredEdge(int id, int k) {
+        return pred_edges[pred_offset[id] + k];
+    }
+
+    /**
+     * Checks if the edge from a node to another is a back edge; i.e., both
+     * nodes are reachable and the target comes before the source in reverse
+     * post order. A self loop is not a back edge.
+     *
+     * @param from the id of the source node.
+     * @param to the id of the target node.
+     * @return true if it is a back edge.
+     */
+    public boolean isBackEdge(int from, int to) {
+        return (from < num_reachable && to < from);
+    }
+
+    /**
+     * Checks if the specified node has an incoming back edge.
+     *
+     * @param id the node id.
+     * @return true if it has a back edge from one of its predecessors.
+     */
+    public boolean hasBackEdge(int id) {
+        for (int k = pred_offset[id]; k < pred_offset[id+1]; k++) {
+            if (isBackEdge(preds[k], id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,13 +1,27 @@
-package cetus.analysis; 
+package cetus.analysis;
 
 import cetus.hir.Loop;
 
-import java.util.LinkedHashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
- * Stores and manipulates direction vectors for loop-based dependences
+ * Stores and manipulates direction vectors for loop-based dependences. The
+ * directions are packed into a {@code long} with {@link #BITS} bits per nest
+ * level, and the loops of the nest are described by a {@link Nest} that is
+ * shared by all vectors created for the same nest, so copying, merging and
+ * comparing vectors does not allocate. A nest can have at most
+ * {@link #MAX_DEPTH} loops; loops enclosing deeper nests are not eligible for
+ * dependence testing (see {@link LoopTools#checkDataDependenceEligibility}),
+ * so the dependence tests never create vectors for such nests.
  */
 public class DependenceVector {
     static final String[] depstr = {"*", "<", "=", ">"};
@@ -21,44 +35,220 @@ public class DependenceVector {
             {less, less, nil, nil},
             {equal, nil, equal, nil},
             {greater, nil, nil, greater}};
-    /* LinkedHashMap maintains ordering of loops within the vector map */
-    LinkedHashMap<Loop, Integer> directionVector;
+    /* Number of bits per nest level; a direction d is encoded as (d & 7) */
+    static final int BITS = 3;
+    /* Maximum number of loops in a nest */
+    static final int MAX_DEPTH = 64 / BITS;
+    private static final long FIELD = (1L << BITS) - 1;
+    private static final int NIL_CODE = nil & (int)FIELD;
+    /* Merged direction indexed by two encoded directions */
+    private static final int[][] merge_table = new int[1 << BITS][1 << BITS];
+    static {
+        for (int i = 0; i < merge_table.length; i++) {
+            for (int j = 0; j < merge_table.length; j++) {
+                merge_table[i][j] = NIL_CODE;
+            }
+        }
+        for (int i = any; i <= greater; i++) {
+            for (int j = any; j <= greater; j++) {
+                merge_table[i][j] = cartesian_prod[i][j] & (int)FIELD;
+            }
+        }
+    }
+
+    /**
+     * Describes the loops of a nest and their positions in the packed
+     * direction vector. A descriptor is immutable and is shared by all
+     * vectors of the same nest.
+     */
+    static final class Nest {
+        private final Loop[] loops;
+        private final Set<Loop> loop_set;
+        /* Mask of the bits used by this nest */
+        private final long mask;
+        /* Lowest and highest bit of every field used by this nest */
+        private final long lows, highs;
+
+        Nest(Collection<Loop> nest) {
+            if (nest.size() > MAX_DEPTH) {
+                throw new IllegalArgumentException("Loop nest deeper than " +
+                        MAX_DEPTH + " levels is not supported");
+            }
+            loops = nest.toArray(new Loop[nest.size()]);
+            loop_set = Collections.unmodifiableSet(
+                    new LinkedHashSet<Loop>(nest));
+            long m = 0, l = 0;
+            for (int i = 0; i < loops.length; i++) {
+                m |= FIELD << (i * BITS);
+                l |= 1L << (i * BITS);
+            }
+            mask = m;
+            lows = l;
+            highs = l << (BITS - 1);
+        }
+
+        int size() {
+            return loops.length;
+        }
+
+        Loop getLoop(int level) {
+            return loops[level];
+        }
+
+        int indexOf(Loop loop) {
+            for (int i = 0; i < loops.length; i++) {
+                if (loops[i] == loop) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        boolean matches(Nest other) {
+            if (this == other) {
+                return true;
+            }
+            if (loops.length != other.loops.length) {
+                return false;
+            }
+            for (int i = 0; i < loops.length; i++) {
+                if (loops[i] != other.loops[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Returns a new descriptor with the specified loop appended.
+        Nest extend(Loop loop) {
+            LinkedList<Loop> nest = new LinkedList<Loop>(loop_set);
+            nest.add(loop);
+            return new Nest(nest);
+        }
+
+        // Repeats the specified code in every field of this nest.
+        long replicate(int code) {
+            return lows * code;
+        }
+    }
+
+    private Nest nest;
+    private long bits;
     private boolean valid = true;
 
     public DependenceVector(LinkedList <Loop> nest) {
+        this(new Nest(nest));
+    }
+
+    /**
+     * Creates a vector with the any (*) direction for every loop in the
+     * specified nest.
+     */
+    DependenceVector(Nest nest) {
         this.valid = true;
-        directionVector = new LinkedHashMap<Loop,Integer>();
-        for (Loop loop: nest) {
-            directionVector.put(loop, 0); //any value
-        }
+        this.nest = nest;
+        this.bits = 0; // any value
+    }
+
+    /**
+     * Creates a vector of the specified nest with the packed directions
+     * returned by {@link #getBits()}.
+     */
+    DependenceVector(Nest nest, long bits) {
+        this.valid = true;
+        this.nest = nest;
+        this.bits = bits;
     }
-    
+
     public DependenceVector(DependenceVector dv) {
         this.copyVector (dv);
     }
 
     public boolean equals(Object o) {
-        return o != null &&
-                o instanceof DependenceVector &&
-                directionVector.equals(((DependenceVector)o).directionVector);
+        if (o == null || !(o instanceof DependenceVector)) {
+            return false;
+        }
+        DependenceVector other = (DependenceVector)o;
+        if (nest.matches(other.nest)) {
+            return bits == other.bits;
+        }
+        // Same loops in a different order
+        if (nest.size() != other.nest.size()) {
+            return false;
+        }
+        for (int i = 0; i < nest.size(); i++) {
+            Loop loop = nest.getLoop(i);
+            if (other.nest.indexOf(loop) < 0 ||
+                getDirectionAt(i) != other.getDirection(loop)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public LinkedHashMap<Loop,Integer> getDirectionVector() {
-        return directionVector;
+    /** Returns the same hash code as the map from loops to directions */
+    public int hashCode() {
+        int ret = 0;
+        for (int i = 0; i < nest.size(); i++) {
+            ret += nest.getLoop(i).hashCode() ^ getDirectionAt(i);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a read-only map view of this vector, from loops in nest order
+     * to their directions.
+     */
+    public Map<Loop,Integer> getDirectionVector() {
+        return new DirectionMap();
     }
-    
+
+    /**
+     * Returns the direction for the specified loop, or {@code nil} if the
+     * loop is not in this vector.
+     */
     public int getDirection (Loop loop) {
-        return directionVector.get(loop);
+        int level = nest.indexOf(loop);
+        return (level < 0) ? nil : getDirectionAt(level);
     }
-    
+
+    /**
+     * Returns the direction string ("*", "<", "=", or ">") for the specified
+     * loop, or an empty string if the loop has no direction in this vector.
+     */
+    public String getDirectionString(Loop loop) {
+        int direction = getDirection(loop);
+        return (direction >= 0) ? depstr[direction] : "";
+    }
+
+    private int getDirectionAt(int level) {
+        int code = (int)((bits >>> (level * BITS)) & FIELD);
+        return (code == NIL_CODE) ? nil : code;
+    }
+
+    /** Returns the packed directions of this vector */
+    long getBits() {
+        return bits;
+    }
+
     public Set<Loop> getLoops() {
-        return directionVector.keySet();
+        return nest.loop_set;
     }
-    
+
     public void setDirection(Loop loop, int direction) {
-        directionVector.put(loop,direction);
+        int level = nest.indexOf(loop);
+        if (level < 0) {
+            nest = nest.extend(loop);
+            level = nest.size() - 1;
+        }
+        setDirectionAt(level, direction & (int)FIELD);
     }
-    
+
+    private void setDirectionAt(int level, int code) {
+        int shift = level * BITS;
+        bits = (bits & ~(FIELD << shift)) | ((long)code << shift);
+    }
+
     public boolean isValid() {
         return this.valid;
     }
@@ -69,27 +259,34 @@ public class DependenceVector {
 
     public void copyVector(DependenceVector dv) {
         this.valid = dv.valid;
-        directionVector = new LinkedHashMap<Loop,Integer>();
-        for (Loop loop: dv.getLoops()) {
-            directionVector.put(loop, dv.getDirection(loop));
-        }
+        this.nest = dv.nest;
+        this.bits = dv.bits;
     }
 
     public void mergeWith(DependenceVector other_vector) {
-        int new_dir;
-        for (Loop l : other_vector.getLoops()) {
-            if (directionVector.containsKey(l)) {
-                int this_dir = this.getDirection(l);
-                int that_dir = other_vector.getDirection(l);
-                if (this_dir != DependenceVector.nil) {
-                    new_dir = cartesian_prod[this_dir][that_dir];
-                } else {
-                    new_dir = DependenceVector.nil;
-                }
-                if (new_dir == DependenceVector.nil) valid = false;
-                this.directionVector.put(l, new_dir);
+        if (nest.matches(other_vector.nest)) {
+            long merged = 0;
+            for (int i = 0; i < nest.size(); i++) {
+                int shift = i * BITS;
+                int code = merge_table[(int)((bits >>> shift) & FIELD)]
+                        [(int)((other_vector.bits >>> shift) & FIELD)];
+                if (code == NIL_CODE) valid = false;
+                merged |= (long)code << shift;
+            }
+            bits = merged;
+            return;
+        }
+        for (int i = 0; i < other_vector.nest.size(); i++) {
+            Loop l = other_vector.nest.getLoop(i);
+            int that_dir = other_vector.getDirectionAt(i) & (int)FIELD;
+            int level = nest.indexOf(l);
+            if (level >= 0) {
+                int this_dir = getDirectionAt(level) & (int)FIELD;
+                int new_dir = merge_table[this_dir][that_dir];
+                if (new_dir == NIL_CODE) valid = false;
+                setDirectionAt(level, new_dir);
             } else {
-                this.directionVector.put(l, other_vector.getDirection(l));
+                setDirection(l, that_dir);
             }
         }
     }
@@ -99,76 +296,83 @@ public class DependenceVector {
     * all nesting levels.
     */
     public boolean isEqual() {
-        boolean ret = true;
-        for (Loop loop : directionVector.keySet()) {
-            if (directionVector.get(loop) != equal) {
-                ret = false;
-                break;
-            }
-        }
-        return ret;
+        return bits == nest.replicate(equal);
+    }
+
+    /**
+     * Checks if any nesting level has the specified direction.
+     * @param direction the direction to look for.
+     * @return true if the direction is found.
+     */
+    public boolean containsDirection(int direction) {
+        // Fields equal to the direction become zero; unused fields are set.
+        long x = (bits ^ nest.replicate(direction & (int)FIELD)) | ~nest.mask;
+        return ((x - nest.lows) & ~x & nest.highs) != 0;
     }
-    
+
+    /**
+     * Checks if the dependence is carried by any loop in the nest, i.e., if
+     * any nesting level has the any (*), less or greater direction.
+     */
+    public boolean isLoopCarried() {
+        return (containsDirection(any) || containsDirection(less) ||
+                containsDirection(greater));
+    }
+
     public boolean plausibleVector() {
-        boolean vectorValid = true;
-        Set<Loop> loopNest = this.directionVector.keySet();
-        for (Loop loop : loopNest) {
+        for (int i = 0; i < nest.size(); i++) {
+            int direction = getDirectionAt(i);
             //
             // Following invalid possibilities:
             // (>,...) , (=,=,>,...) , (*,>,...)
             //
-            if (this.directionVector.get(loop) == DependenceVector.greater) {
-                vectorValid = false;
-                break;
+            if (direction == DependenceVector.greater) {
+                return false;
             }
             //
             // Else if following valid possibilities:
             // (<,...) , (=,<,...) , (*,<,...)
             //
-            else if (this.directionVector.get(loop) == DependenceVector.less) {
-                vectorValid = true;
-                break;
+            else if (direction == DependenceVector.less) {
+                return true;
             }
             //
             // Else we need to further traverse the directionVector
             // (=,...) , (*,...)
             //
-            else {
-            }
         }
-        return vectorValid;
+        return true;
     }
-    
+
     public DependenceVector reverseVector() {
         DependenceVector newDV = new DependenceVector(this);
-        Set<Loop> loopKey = (this.directionVector).keySet();
-        for(Loop loop : loopKey) {
-            switch(this.directionVector.get(loop)) {
+        for (int i = 0; i < nest.size(); i++) {
+            switch (getDirectionAt(i)) {
             case DependenceVector.any:
             case DependenceVector.equal:
             case DependenceVector.nil:
                 break;
             case DependenceVector.less:
-                newDV.setDirection(loop, DependenceVector.greater);
+                newDV.setDirectionAt(i, DependenceVector.greater);
                 break;
             case DependenceVector.greater:
-                newDV.setDirection(loop, DependenceVector.less);
+                newDV.setDirectionAt(i, DependenceVector.less);
                 break;
             }
         }
         return newDV;
     }
-    
+
     public String VectorToString() {
         if (this.valid) {
-            String dirvecstr = new String();
-            Set<Loop> nest = this.directionVector.keySet();
-            for (Loop loop: nest) {
-                if(directionVector.get(loop) >= 0) {
-                    dirvecstr += this.depstr[directionVector.get(loop)];
+            StringBuilder dirvecstr = new StringBuilder(nest.size());
+            for (int i = 0; i < nest.size(); i++) {
+                int direction = getDirectionAt(i);
+                if (direction >= 0) {
+                    dirvecstr.append(depstr[direction]);
                 }
             }
-            return dirvecstr;
+            return dirvecstr.toString();
         } else {
             return ".";
         }
@@ -177,4 +381,69 @@ public class DependenceVector {
     public String toString() {
         return VectorToString();
     }
+
+    /** Read-only map view of the packed direction vector */
+    private class DirectionMap extends AbstractMap<Loop, Integer> {
+        @Override
+        public int size() {
+            return nest.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return (key instanceof Loop && nest.indexOf((Loop)key) >= 0);
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            return (value instanceof Integer &&
+                    containsDirection((Integer)value));
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof Loop)) {
+                return null;
+            }
+            int level = nest.indexOf((Loop)key);
+            return (level < 0) ? null : getDirectionAt(level);
+        }
+
+        @Override
+        public Set<Map.Entry<Loop, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<Loop, Integer>>() {
+                @Override
+                public int size() {
+                    return nest.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<Loop, Integer>> iterator() {
+                    return new Iterator<Map.Entry<Loop, Integer>>() {
+                        private int level = 0;
+
+                        public boolean hasNext() {
+                            return level < nest.size();
+                        }
+
+                        public Map.Entry<Loop, Integer> next() {
+                            if (level >= nest.size()) {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<Loop, Integer> entry =
+                                    new AbstractMap.SimpleImmutableEntry
+                                    <Loop, Integer>(nest.getLoop(level),
+                                    getDirectionAt(level));
+                            level++;
+                            return entry;
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+    }
 }
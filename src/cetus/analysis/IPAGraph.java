@@ -8,8 +8,12 @@ import cetus.hir.PrintTools;
 import cetus.hir.Traversable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Class IPAGraph provides a call graph for interprocedural analysis.
@@ -35,6 +39,16 @@ public class IPAGraph extends DFAGraph {
     // Exception code.
     private int exception;
 
+    // Strongly connected component of each node in topological order, which
+    // is computed on demand by buildWavefronts().
+    private int[] scc_ids;
+
+    // Members of each SCC in topological order.
+    private List<int[]> scc_members;
+
+    // SCCs at each level of the wavefront.
+    private List<int[]> scc_levels;
+
     /**
     * Constructs a new IPAGraph with the given program and performs topological
     * ordering of the graph.
@@ -236,6 +250,171 @@ public class IPAGraph extends DFAGraph {
         }
     }
 
+    /**
+    * Returns the strongly connected component (SCC) that contains the node
+    * having the given order. SCCs are numbered in topological order of the
+    * condensed call graph; i.e., a caller's SCC is numbered before its
+    * callees' SCCs.
+    * @param order the order of the node.
+    * @return the SCC number, or -1 for an unreachable node.
+    */
+    public int getSCCId(int order) {
+        buildWavefronts();
+        if (order >= 0 && order < scc_ids.length) {
+            return scc_ids[order];
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+    * Returns the orders of the nodes in the specified SCC in increasing order.
+    * @param scc_id the SCC number.
+    * @return the array of node orders.
+    */
+    public int[] getSCCMembers(int scc_id) {
+        buildWavefronts();
+        return scc_members.get(scc_id);
+    }
+
+    /**
+    * Returns the number of levels of the wavefront. The level of an SCC is the
+    * length of the longest path from the root SCC in the condensed call graph,
+    * so there is no call edge between two SCCs of the same level.
+    */
+    public int getNumLevels() {
+        buildWavefronts();
+        return scc_levels.size();
+    }
+
+    /**
+    * Returns the SCCs of the specified level in increasing order.
+    * @param level the level of the wavefront.
+    * @return the array of SCC numbers.
+    */
+    public int[] getSCCsAtLevel(int level) {
+        buildWavefronts();
+        return scc_levels.get(level);
+    }
+
+    // Condenses the reachable part of the graph into SCCs with Tarjan's
+    // algorithm, and groups the SCCs into levels of the wavefront.
+    private synchronized void buildWavefronts() {
+        if (scc_ids != null) {
+            return;
+        }
+        int n = toporder.size();
+        Map<DFANode, Integer> orders = new HashMap<DFANode, Integer>(n * 2);
+        for (int i = 0; i < n; i++) {
+            orders.put(toporder.get(i), i);
+        }
+        int[][] succs = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Set<DFANode> node_succs = toporder.get(i).getSuccs();
+            int[] succ_orders = new int[node_succs.size()];
+            int num_succs = 0;
+            for (DFANode succ : node_succs) {
+                Integer succ_order = orders.get(succ);
+                if (succ_order != null) {
+                    succ_orders[num_succs++] = succ_order;
+                }
+            }
+            succs[i] = Arrays.copyOf(succ_orders, num_succs);
+        }
+        // Tarjan's algorithm with an explicit call stack; SCCs are found in
+        // reverse topological order.
+        int[] index = new int[n], lowlink = new int[n], comp = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] on_stack = new boolean[n];
+        int[] stack = new int[n], call_node = new int[n], call_pos = new int[n];
+        int sp = 0, num_index = 0, num_sccs = 0;
+        for (int start = 0; start < n; start++) {
+            if (index[start] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            call_node[0] = start;
+            call_pos[0] = 0;
+            index[start] = lowlink[start] = num_index++;
+            stack[sp++] = start;
+            on_stack[start] = true;
+            while (depth >= 0) {
+                int v = call_node[depth];
+                if (call_pos[depth] < succs[v].length) {
+                    int w = succs[v][call_pos[depth]++];
+                    if (index[w] < 0) {
+                        index[w] = lowlink[w] = num_index++;
+                        stack[sp++] = w;
+                        on_stack[w] = true;
+                        call_node[++depth] = w;
+                        call_pos[depth] = 0;
+                    } else if (on_stack[w] && index[w] < lowlink[v]) {
+                        lowlink[v] = index[w];
+                    }
+                    continue;
+                }
+                if (lowlink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        on_stack[w] = false;
+                        comp[w] = num_sccs;
+                    } while (w != v);
+                    num_sccs++;
+                }
+                if (--depth >= 0) {
+                    int u = call_node[depth];
+                    if (lowlink[v] < lowlink[u]) {
+                        lowlink[u] = lowlink[v];
+                    }
+                }
+            }
+        }
+        // Renumber the SCCs in topological order.
+        int[] ids = new int[n];
+        int[] sizes = new int[num_sccs];
+        for (int i = 0; i < n; i++) {
+            ids[i] = num_sccs - 1 - comp[i];
+            sizes[ids[i]]++;
+        }
+        List<int[]> members = new ArrayList<int[]>(num_sccs);
+        for (int s = 0; s < num_sccs; s++) {
+            members.add(new int[sizes[s]]);
+            sizes[s] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            members.get(ids[i])[sizes[ids[i]]++] = i;
+        }
+        // Longest path from the root SCC in the condensed graph.
+        int[] level = new int[num_sccs];
+        int num_levels = (num_sccs > 0) ? 1 : 0;
+        for (int s = 0; s < num_sccs; s++) {
+            for (int v : members.get(s)) {
+                for (int w : succs[v]) {
+                    if (ids[w] != s && level[ids[w]] <= level[s]) {
+                        level[ids[w]] = level[s] + 1;
+                        num_levels = Math.max(num_levels, level[s] + 2);
+                    }
+                }
+            }
+        }
+        int[] level_sizes = new int[num_levels];
+        for (int s = 0; s < num_sccs; s++) {
+            level_sizes[level[s]]++;
+        }
+        List<int[]> levels = new ArrayList<int[]>(num_levels);
+        for (int l = 0; l < num_levels; l++) {
+            levels.add(new int[level_sizes[l]]);
+            level_sizes[l] = 0;
+        }
+        for (int s = 0; s < num_sccs; s++) {
+            levels.get(level[s])[level_sizes[level[s]]++] = s;
+        }
+        scc_members = members;
+        scc_levels = levels;
+        scc_ids = ids;
+    }
+
     /** Returns statisitcs of the graph */
     public String getReport() {
         int num_reachable_nodes = 0;
@@ -273,6 +273,35 @@ public class IPANode extends DFANode {
         return ((exception & WITHIN_CYCLE) != 0);
     }
 
+    /**
+    * Returns the data mapped by the key. The satellite data of a node are
+    * accessed under the lock of the node since the parallel solver of
+    * {@link IPAnalysis} lets the callers of the node update the data while
+    * another procedure is reading them.
+    */
+    @Override
+    public synchronized <T> T getData(String key) {
+        return super.<T>getData(key);
+    }
+
+    /** Returns the first data found with the list of keys. */
+    @Override
+    public synchronized <T> T getData(List<String> keys) {
+        return super.<T>getData(keys);
+    }
+
+    /** Associates the given data with the key. */
+    @Override
+    public synchronized void putData(String key, Object data) {
+        super.putData(key, data);
+    }
+
+    /** Removes the data mapped by the key. */
+    @Override
+    public synchronized void removeData(String key) {
+        super.removeData(key);
+    }
+
     /** Increments the number of visits to this node. */
     protected IPANode countVisits() {
         num_visits++;
@@ -1,16 +1,24 @@
 package cetus.analysis; 
 
+import cetus.exec.Driver;
 import cetus.hir.*;
 import cetus.transforms.NormalizeReturn;
 import cetus.transforms.TransformPass;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Class IPAnalysis provides common framework for interprocedural analysis
  * passes. The following features are supported now.
  *   - Generation of call graphs.
  *   - Three solvers -- top-down, bottom-up, and worklist.
+ *   - Parallel wavefront solver over the strongly connected components of
+ *     the call graph, which replaces the above solvers if the
+ *     <b>ipa-threads</b> option is greater than one.
  *
  * These abstract methods need to be implemented in the child class.
  *   - analyzeProcedure(IPANode node) -- procedure analysis
@@ -208,7 +216,10 @@ public abstract class IPAnalysis extends AnalysisPass {
     * Computes the data using the given type of approach.
     */
     protected void compute() {
-        if (option.contains(Option.CONTEXT1)) {
+        int num_threads = getNumThreads();
+        if (num_threads > 1) {
+            computeWavefront(num_threads);
+        } else if (option.contains(Option.CONTEXT1)) {
             if (option.contains(Option.WORKLIST)) {
                 computeWorkListContext();
             } else if (option.contains(Option.TOPDOWN)) {
@@ -454,6 +465,173 @@ public abstract class IPAnalysis extends AnalysisPass {
         PrintTools.printlnStatus(3, name, "Total visits =", total_visits);
     }
 
+    /**
+    * Returns the number of threads used by the solver, which is specified by
+    * the <b>ipa-threads</b> option and bounded by the number of procedures.
+    */
+    private int getNumThreads() {
+        int ret = 1;
+        String value = Driver.getOptionValue("ipa-threads");
+        if (value != null) {
+            try {
+                ret = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                PrintTools.printlnStatus(0, name,
+                        "[WARNING] ignoring invalid ipa-threads", value);
+            }
+        }
+        if (ret <= 0) {
+            ret = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Math.min(ret, callgraph.getLastOrder() + 1));
+    }
+
+    /**
+    * Drives parallel wavefront iteration. The call graph is condensed into
+    * strongly connected components (SCCs), which are grouped into levels that
+    * have no call edges between the SCCs of the same level. The levels are
+    * swept in the preferred direction, and the SCCs of a level that contain
+    * nodes to be visited are solved concurrently, each one iterating to the
+    * fixed point within the SCC with its own work list. Changes propagated out
+    * of an SCC mark the affected nodes, which are visited when the sweep
+    * reaches their levels; the sweeps continue until no node is marked.
+    * Updates of the interprocedural data are serialized on the call graph
+    * while the procedures are analyzed concurrently. The top-down and
+    * bottom-up solvers start with all the nodes marked, and the work-list
+    * solver starts with the preferred node only.
+    */
+    private void computeWavefront(int num_threads) {
+        final boolean topdown = option.contains(Option.TOPDOWN);
+        final BitSet marked = new BitSet();
+        if (!option.contains(Option.WORKLIST)) {
+            marked.set(0, callgraph.getLastOrder() + 1);
+        } else if (topdown) {
+            marked.set(0);
+        } else {
+            marked.set(callgraph.getLastOrder());
+        }
+        int num_levels = callgraph.getNumLevels();
+        int total_visits = 0, num_sweeps = 0;
+        ForkJoinPool pool = new ForkJoinPool(num_threads);
+        try {
+            while (!marked.isEmpty()) {
+                num_sweeps++;
+                for (int i = 0; i < num_levels; i++) {
+                    int level = (topdown) ? i : num_levels - 1 - i;
+                    List<Callable<Integer>> tasks =
+                            new ArrayList<Callable<Integer>>();
+                    for (final int scc_id : callgraph.getSCCsAtLevel(level)) {
+                        final TreeSet<Integer> work_list =
+                                new TreeSet<Integer>();
+                        for (int member : callgraph.getSCCMembers(scc_id)) {
+                            if (marked.get(member)) {
+                                marked.clear(member);
+                                work_list.add(member);
+                            }
+                        }
+                        if (!work_list.isEmpty()) {
+                            tasks.add(new Callable<Integer>() {
+                                public Integer call() {
+                                    return solveSCC(scc_id, work_list, marked);
+                                }
+                            });
+                        }
+                    }
+                    for (Future<Integer> future : pool.invokeAll(tasks)) {
+                        total_visits += future.get();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new InternalError("Interrupted interprocedural analysis");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new InternalError(cause.toString());
+        } finally {
+            pool.shutdown();
+        }
+        PrintTools.printlnStatus(3, name, "Total visits =", total_visits,
+                "in", num_sweeps, "sweeps with", num_threads, "threads");
+    }
+
+    /**
+    * Iterates to the fixed point within the specified SCC starting from the
+    * nodes in the work list, and marks the nodes outside the SCC that are
+    * affected by the changes.
+    * @param scc_id the SCC being solved.
+    * @param work_list the nodes of the SCC to be visited.
+    * @param marked the nodes to be visited in the following levels.
+    * @return the number of visits.
+    */
+    private int solveSCC(int scc_id, TreeSet<Integer> work_list,
+                         BitSet marked) {
+        boolean context = option.contains(Option.CONTEXT1);
+        int num_visits = 0;
+        while (!work_list.isEmpty()) {
+            // Worklist solver chooses the preferred the node first.
+            int node_id = (option.contains(Option.TOPDOWN)) ?
+                    work_list.pollFirst() : work_list.pollLast();
+            num_visits++;
+            IPANode node = callgraph.getNode(node_id);
+            if (context) {
+                synchronized (callgraph) {
+                    resetContexts(node);
+                }
+            }
+            // Enters this loop only if it is the main procedure or there are
+            // jobs to be done.
+            while (!context || node_id == 0 || hasNextContext(node)) {
+                if (context && hasNextContext(node)) {
+                    setNextContext(node);
+                }
+                analyzeProcedure(node.countVisits());
+                synchronized (callgraph) {
+                    // Updates forward data.
+                    if (option.contains(Option.FORWARD)) {
+                        for (CallSite call_site : updateCalls(node)) {
+                            IPANode callee = call_site.getCallee();
+                            if (context && callee != null) {
+                                getContexts(callee).add(call_site);
+                            }
+                            markNode(callgraph.getTopOrder(callee), scc_id,
+                                    work_list, marked);
+                        }
+                    }
+                    // Updates backward data.
+                    if (option.contains(Option.BACKWARD) &&
+                        updateReturn(node)) {
+                        for (IPANode caller : node.getCallers()) {
+                            markNode(callgraph.getTopOrder(caller), scc_id,
+                                    work_list, marked);
+                        }
+                    }
+                }
+                if (!context || node_id == 0) {
+                    break;
+                }
+            }
+        }
+        return num_visits;
+    }
+
+    // Adds the node to the work list if it is in the SCC being solved, or
+    // marks it to be visited later otherwise.
+    private void markNode(int node_id, int scc_id,
+                          TreeSet<Integer> work_list, BitSet marked) {
+        if (node_id < 0) {
+            return;
+        } else if (callgraph.getSCCId(node_id) == scc_id) {
+            work_list.add(node_id);
+        } else {
+            marked.set(node_id);
+        }
+    }
+
     /**
     * Returns the name of this analysis.
     */
@@ -1,5 +1,6 @@
 package cetus.analysis;
  
+import cetus.exec.Driver;
 import cetus.hir.*;
 
 import java.util.*;
@@ -13,6 +14,11 @@ import java.util.*;
 * paper are not supported, the analysis provides single-depth
 * context-sensitivity (differentiates call sites) and supports most features
 * presented in the paper.
+* <p>
+* The analysis gives up and reports the points-to universe if the program has
+* more statements than the <b>alias-size-limit</b> option allows or if it runs
+* longer than the <b>alias-time-limit</b> option allows; {@link AliasAnalysis}
+* then switches to {@link UnificationAliasAnalysis}.
 */
 public class IPPointsToAnalysis extends IPAnalysis {
 
@@ -20,6 +26,16 @@ public class IPPointsToAnalysis extends IPAnalysis {
     private static final Map<Statement, Domain> points_to_maps =
             new HashMap<Statement, Domain>();
 
+    // Procedures whose relations were invalidated.
+    private static final Set<Procedure> stale_procedures =
+            new HashSet<Procedure>();
+
+    // True if the last analysis stopped due to the size or time limit.
+    private static boolean over_budget = false;
+
+    // Time by which the analysis should finish; zero means no limit.
+    private long deadline;
+
     // Storage for global stack.
     private Set<Symbol> global_stack;
 
@@ -93,6 +109,11 @@ public class IPPointsToAnalysis extends IPAnalysis {
                 "create", "fcntl", "open", "openat"));
     }
 
+    /** Thrown when the analysis runs out of the time limit. */
+    private static class OverBudget extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
     /** Priority for the mapping process */
     private static enum Priority {
 
@@ -192,12 +213,13 @@ public class IPPointsToAnalysis extends IPAnalysis {
         * Returns an abstract locations represented by the given expression
         * {@code e} and the statement {@code s}. It performs the same operations
         * as {@link #getLocation(Expression)} does but use {@code s} as a tag
-        * for the location to be returned.
+        * for the location to be returned. The registry of the locations is
+        * locked since procedures may be analyzed concurrently.
         * @param e the expression from which the abstract location is created.
         * @param s the statement to be used as a tag for the location.
         * @return the abstract location associated with the given input.
         */
-        public static AbstractLocation
+        public static synchronized AbstractLocation
                 getLocation(Expression e, Statement s) {
             // Check for the fixed location.
             if (FIXED.getLocation(e) != null) {
@@ -373,6 +395,10 @@ public class IPPointsToAnalysis extends IPAnalysis {
         name = pass_name;
         abstract_sites = new LinkedList<Statement>();
         abstract_locations = new LinkedList<AbstractLocation>();
+        int time_limit = getLimit("alias-time-limit");
+        if (time_limit > 0) {
+            deadline = System.nanoTime() + time_limit * 1000000000L;
+        }
     }
 
     /**
@@ -382,6 +408,11 @@ public class IPPointsToAnalysis extends IPAnalysis {
     * @return the points-to relations map for the procedure.
     */
     public static Domain getPointsToRelations(Statement stmt) {
+        // The result is stale ==> invokes a new analysis pass.
+        if (!stale_procedures.isEmpty() &&
+            stale_procedures.contains(stmt.getProcedure())) {
+            clearPointsToRelations();
+        }
         // The result does not exist ==> invokes a new analysis pass.
         updatePointsToRelations(IRTools.getAncestorOfType(stmt, Program.class));
         return points_to_maps.get(stmt);
@@ -393,6 +424,27 @@ public class IPPointsToAnalysis extends IPAnalysis {
     */
     public static void clearPointsToRelations() {
         points_to_maps.clear();
+        stale_procedures.clear();
+    }
+
+    /**
+    * Invalidates the analysis result for the specified procedures. The
+    * relations of the other procedures are kept, and the program is analyzed
+    * again when the relations of the specified procedures are requested.
+    * @param procs the modified procedures and their dependents.
+    */
+    public static void clearPointsToRelations(Set<Procedure> procs) {
+        if (points_to_maps.isEmpty()) {
+            return;
+        }
+        Iterator<Statement> iter = points_to_maps.keySet().iterator();
+        while (iter.hasNext()) {
+            Procedure proc = iter.next().getProcedure();
+            if (proc == null || procs.contains(proc)) {
+                iter.remove();
+            }
+        }
+        stale_procedures.addAll(procs);
     }
 
     /**
@@ -402,9 +454,64 @@ public class IPPointsToAnalysis extends IPAnalysis {
     */
     public static void updatePointsToRelations(Program program) {
         if (points_to_maps.isEmpty()) {
+            stale_procedures.clear();
+            over_budget = false;
+            int size_limit = getLimit("alias-size-limit");
+            if (size_limit > 0) {
+                int size = 0;
+                DFIterator<Statement> iter =
+                        new DFIterator<Statement>(program, Statement.class);
+                while (iter.hasNext() && size <= size_limit) {
+                    iter.next();
+                    size++;
+                }
+                if (size > size_limit) {
+                    PrintTools.printlnStatus(0, pass_name,
+                            "Stops due to program size over", size_limit,
+                            "statements");
+                    stopAnalysis(program);
+                    return;
+                }
+            }
             IPAnalysis analysis = new IPPointsToAnalysis(program);
-            analysis.start();
+            try {
+                analysis.start();
+            } catch (OverBudget e) {
+                PrintTools.printlnStatus(0, pass_name,
+                        "Stops due to analysis time over",
+                        getLimit("alias-time-limit"), "seconds");
+                stopAnalysis(program);
+            }
+        }
+    }
+
+    // Replaces the result with the universe after exceeding the limits.
+    private static void stopAnalysis(Program program) {
+        points_to_maps.clear();
+        points_to_maps.putAll(PointsToAnalysis.createUniverseMap(program));
+        over_budget = true;
+    }
+
+    // Returns the limit specified by the option, or zero if there is none.
+    private static int getLimit(String option) {
+        String value = Driver.getOptionValue(option);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                PrintTools.printlnStatus(0, pass_name,
+                        "[WARNING] ignoring invalid", option, value);
+            }
         }
+        return 0;
+    }
+
+    /**
+    * Checks if the current points-to analysis result was given up due to the
+    * size or time limit of the analysis.
+    */
+    public static boolean isOverBudget() {
+        return over_budget;
     }
 
     /**
@@ -485,6 +592,9 @@ public class IPPointsToAnalysis extends IPAnalysis {
     */
     @SuppressWarnings("unchecked")
     public void analyzeProcedure(IPANode node) {
+        if (deadline != 0 && System.nanoTime() > deadline) {
+            throw new OverBudget();
+        }
         Map<Statement, Domain> result =
                 PointsToAnalysis.getPointsToRelations(node);
         putPTDMap(result, node);
@@ -853,6 +963,29 @@ public class IPPointsToAnalysis extends IPAnalysis {
                 safe_library_calls.contains(fcall.getName().toString()));
     }
 
+    /**
+    * Returns the position of the argument whose pointed-to object is returned
+    * by the given library call.
+    * @param fcall the library call to be examined.
+    * @return the position of the argument starting from one, zero if the call
+    * returns a pointer to a new object, or -1 if the call is not known to
+    * return a pointer.
+    */
+    static int getLibraryReturnPosition(FunctionCall fcall) {
+        String fname = fcall.getName().toString();
+        if (return_to_new.contains(fname)) {
+            return 0;
+        } else if (return_to_arg1.contains(fname)) {
+            return 1;
+        } else if (return_to_arg2.contains(fname)) {
+            return 2;
+        } else if (return_to_arg3.contains(fname)) {
+            return 3;
+        } else {
+            return -1;
+        }
+    }
+
     /**
     * Adds key:value mapping in the map_info.
     * @param key the variable used as key (invisible variable).
@@ -1,9 +1,14 @@
 package cetus.analysis; 
 
+import cetus.hir.DataFlowTools;
 import cetus.hir.Expression;
+import cetus.hir.ForLoop;
 import cetus.hir.Loop;
+import cetus.hir.Symbol;
 
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Set;
 
 /**
  * Represents loop-related information
@@ -15,6 +20,8 @@ public class LoopInfo {
     private Expression indexVar;
     private LinkedList<Loop> loopNest;
     //set of all enclosing outermost loops and the loop itself
+    private Loop loop;
+    private Set<Symbol> defSymbols; // computed on demand
     
     public LoopInfo () {
         this.upperBound = null;
@@ -22,6 +29,8 @@ public class LoopInfo {
         this.increment = null;
         this.indexVar = null;
         this.loopNest = null;
+        this.loop = null;
+        this.defSymbols = null;
     }
     
     /**
@@ -35,6 +44,8 @@ public class LoopInfo {
         this.increment = LoopTools.getIncrementExpression(loop);
         this.indexVar = LoopTools.getIndexVariable(loop);
         this.loopNest = LoopTools.calculateLoopNest(loop);
+        this.loop = loop;
+        this.defSymbols = null;
     }
     
     /* Access functions */
@@ -69,6 +80,22 @@ public class LoopInfo {
     public LinkedList getNest() {
         return loopNest;
     }
+
+    /**
+     * Returns the symbols defined in the step and the body of the loop, i.e.,
+     * the symbols that are not invariant in the loop. The set is computed
+     * once per loop information object.
+     * @return the set of defined symbols, or null if the loop is unknown.
+     */
+    public Set<Symbol> getDefSymbols() {
+        if (defSymbols == null && loop instanceof ForLoop) {
+            Set<Symbol> ret = new HashSet<Symbol>(
+                    DataFlowTools.getDefSymbol(((ForLoop)loop).getStep()));
+            ret.addAll(DataFlowTools.getDefSymbol(loop.getBody()));
+            defSymbols = ret;
+        }
+        return defSymbols;
+    }
     
     public String toString() {
         StringBuilder sb = new StringBuilder();
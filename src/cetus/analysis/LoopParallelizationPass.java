@@ -1,6 +1,7 @@
 package cetus.analysis; 
 
 import cetus.exec.Driver;
+import cetus.exec.IncrementalState;
 import cetus.hir.*;
 import cetus.transforms.TransformPass;
 import cetus.transforms.ReductionTransform;
@@ -86,7 +87,10 @@ public class LoopParallelizationPass extends AnalysisPass {
         DFIterator<Loop> iter = new DFIterator<Loop>(program, Loop.class);
         iter.pruneOn(Loop.class);
         while (iter.hasNext()) {
-            parallelizeLoopNest(iter.next());
+            Loop loop = iter.next();
+            if (!IncrementalState.isReused((Statement)loop)) {
+                parallelizeLoopNest(loop);
+            }
         }
     }
 
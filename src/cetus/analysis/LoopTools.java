@@ -972,9 +972,29 @@ public class LoopTools {
                     "Loop contains indeterminate symbolic increment", 4);
             return false;
         }
+        // Direction vectors encode a limited number of nest levels
+        if (getNestDepth(loop) > DependenceVector.MAX_DEPTH) {
+            PrintTools.println("Loop contains too deep a nest", 4);
+            return false;
+        }
         return true;
     }
 
+    /**
+    * Returns the number of loops on the longest path from the specified loop
+    * to its innermost loops, including the loop itself.
+    */
+    private static int getNestDepth(Loop loop) {
+        int ret = 0;
+        DFIterator<Loop> iter =
+                new DFIterator<Loop>(loop.getBody(), Loop.class);
+        iter.pruneOn(Loop.class);
+        while (iter.hasNext()) {
+            ret = Math.max(ret, getNestDepth(iter.next()));
+        }
+        return ret + 1;
+    }
+
     /**
     * Returns true if the loop increment is an integer constant value. If
     * symbolic, uses range information to determine if it is an integer
@@ -66,6 +66,10 @@ public class NormalExpression implements Comparable,
     // List of children
     private ArrayList list;
 
+    // Simplified forms of integer polynomials keyed by their canonical terms.
+    private static final Cache<NormalTerm, Expression> simplified_terms =
+            new Cache<NormalTerm, Expression>("normal terms", 1024);
+
     /**
     * Returns a normalized(simplified) expression of an {@link Expression}.
     * It is important to notice that this method returns a normalized form and
@@ -98,11 +102,60 @@ public class NormalExpression implements Comparable,
     * <li>"LOGIC", logical expression simplification
     * </ul>
     *
+    * Integer polynomials of identifiers are simplified once per canonical
+    * {@link NormalTerm} with the "SIMP" option, and the same polynomial
+    * written in another form reuses the cached result.
+    *
     * @param e   the {@link Expression} object to be normalized.
     * @param opt the normalization option.
     * @return    the normalized form of the expression e.
     */
     public static Expression simplify(Expression e, String opt) {
+        if (!opt.equals("SIMP")) {
+            return normalize(e, opt);
+        }
+        Map<String, Identifier> ids = new HashMap<String, Identifier>();
+        NormalTerm term = NormalTerm.valueOf(e, ids);
+        if (term == null) {
+            return normalize(e, opt);
+        }
+        Expression ret = getSimplified(term, ids);
+        if (ret == null) {
+            ret = normalize(e, opt);
+            simplified_terms.put(term, ret.clone());
+        }
+        return ret;
+    }
+
+    // Returns the cached simplified form of the term with the identifiers
+    // bound to the ones in the current input.
+    private static Expression
+            getSimplified(NormalTerm term, Map<String, Identifier> ids) {
+        Expression simplified = simplified_terms.get(term);
+        if (simplified == null) {
+            return null;
+        }
+        Expression ret = simplified.clone();
+        List<Identifier> vars = new ArrayList<Identifier>();
+        DFIterator<Identifier> iter =
+                new DFIterator<Identifier>(ret, Identifier.class);
+        while (iter.hasNext()) {
+            vars.add(iter.next());
+        }
+        for (Identifier var : vars) {
+            Identifier id = ids.get(var.getName());
+            if (id == null) {
+                return null;
+            } else if (var == ret) {
+                return id.clone();
+            }
+            var.swapWith(id.clone());
+        }
+        return ret;
+    }
+
+    // Normalizes the expression with the option.
+    private static Expression normalize(Expression e, String opt) {
         Expression ret = e.clone();
         simpFromBottom(ret, opt);
         if (!IRTools.containsSideEffect(ret)) {
@@ -1033,8 +1086,8 @@ public class NormalExpression implements Comparable,
         op = OP.setOP(eop);
         if (eop == BinaryOperator.SUBTRACT) {
             op = OP.ADD;
-            erhs = new BinaryExpression(
-                    new IntegerLiteral(-1), BinaryOperator.MULTIPLY, erhs);
+            erhs = new BinaryExpression(new IntegerLiteral(-1),
+                    BinaryOperator.MULTIPLY, erhs.clone());
         }
         if (op.equals(OP.UNIT)) {
             list.add(e);
@@ -0,0 +1,374 @@
+package cetus.analysis;
+
+import cetus.hir.*;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Class NormalTerm is the canonical form of an integer polynomial used by
+ * {@link NormalExpression}. A term is an immutable sum of products of
+ * variables with nonzero integer coefficients, and its products are kept
+ * sorted so that two polynomials are equal if and only if their terms have
+ * the same monomials and coefficients. Terms are hash-consed: every term is
+ * created through a table of canonical terms, so structurally equal terms are
+ * the same object and the equality of two terms is a reference check. The
+ * table refers to the terms weakly, and a term is removed from the table once
+ * it is not used by any client, e.g., by the cache of simplified expressions
+ * in {@link NormalExpression}.
+ * <p>
+ * Terms are created only from expressions made of integer literals,
+ * identifiers, and the operators {@code +}, {@code -}, and {@code *}; other
+ * expressions are left to the general simplifier. The conversion also rejects
+ * expressions whose coefficients may grow beyond the range of {@code int}
+ * while they are simplified, since the simplifier computes the literals with
+ * {@code double} and {@code int} values.
+ */
+final class NormalTerm {
+
+    // Largest magnitude of the coefficients handled by the terms.
+    private static final long MAX_MAGNITUDE = Integer.MAX_VALUE;
+
+    // Monomials in canonical order; a monomial is the sorted array of the
+    // names of its variables, and a variable appears as many times as its
+    // power. The constant monomial is the empty array.
+    private final String[][] monomials;
+
+    // Nonzero coefficients of the monomials.
+    private final long[] coefs;
+
+    // Structural hash code used by the table of canonical terms.
+    private final int hash;
+
+    // Comparator for the canonical order of monomials; lower degrees first.
+    private static final Comparator<String[]> monomial_order =
+            new Comparator<String[]>() {
+        public int compare(String[] m1, String[] m2) {
+            if (m1.length != m2.length) {
+                return (m1.length < m2.length) ? -1 : 1;
+            }
+            for (int i = 0; i < m1.length; i++) {
+                int ret = m1[i].compareTo(m2[i]);
+                if (ret != 0) {
+                    return ret;
+                }
+            }
+            return 0;
+        }
+    };
+
+    private NormalTerm(String[][] monomials, long[] coefs) {
+        this.monomials = monomials;
+        this.coefs = coefs;
+        int h = 17;
+        for (int i = 0; i < monomials.length; i++) {
+            h = 31 * h + Arrays.hashCode(monomials[i]);
+            h = 31 * h + (int)(coefs[i] ^ (coefs[i] >>> 32));
+        }
+        hash = h;
+    }
+
+    /**
+    * Returns the canonical term of the specified expression if it is an
+    * integer polynomial of identifiers.
+    * @param e the expression to be converted.
+    * @param ids the map from names to the identifiers found in the
+    * expression, which is filled by this method.
+    * @return the canonical term, or null if the expression is not an integer
+    * polynomial, its coefficients may overflow, or two different symbols
+    * share a name in the expression.
+    */
+    static NormalTerm valueOf(Expression e, Map<String, Identifier> ids) {
+        return parse(e, ids, new long[1]);
+    }
+
+    // Converts the expression to a term while computing the magnitude of the
+    // expression, i.e., the value of the expression after replacing every
+    // literal with its absolute value, every variable with one, and every
+    // subtraction with an addition. The magnitude bounds any coefficient
+    // computed while the expression is expanded and folded.
+    private static NormalTerm
+            parse(Expression e, Map<String, Identifier> ids, long[] magnitude) {
+        NormalTerm ret = null;
+        if (e instanceof IntegerLiteral) {
+            long value = ((IntegerLiteral)e).getValue();
+            // Literals with suffixes or other radixes are not handled.
+            if (!e.toString().equals(Long.toString(value)) ||
+                value < -MAX_MAGNITUDE || value > MAX_MAGNITUDE) {
+                return null;
+            }
+            magnitude[0] = Math.abs(value);
+            ret = getConstant(value);
+        } else if (e instanceof Identifier) {
+            Identifier id = (Identifier)e;
+            Identifier prev = ids.get(id.getName());
+            if (prev == null) {
+                ids.put(id.getName(), id);
+            } else if (prev.getSymbol() != id.getSymbol()) {
+                return null;
+            }
+            magnitude[0] = 1;
+            ret = getVariable(id.getName());
+        } else if (e instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression)e;
+            BinaryOperator op = be.getOperator();
+            if (op != BinaryOperator.ADD && op != BinaryOperator.SUBTRACT &&
+                op != BinaryOperator.MULTIPLY) {
+                return null;
+            }
+            NormalTerm lhs = parse(be.getLHS(), ids, magnitude);
+            if (lhs == null) {
+                return null;
+            }
+            long lhs_magnitude = magnitude[0];
+            NormalTerm rhs = parse(be.getRHS(), ids, magnitude);
+            if (rhs == null) {
+                return null;
+            }
+            if (op == BinaryOperator.MULTIPLY) {
+                magnitude[0] *= lhs_magnitude;
+            } else {
+                magnitude[0] += lhs_magnitude;
+            }
+            if (magnitude[0] > MAX_MAGNITUDE) {
+                return null;
+            }
+            if (op == BinaryOperator.ADD) {
+                ret = lhs.add(rhs);
+            } else if (op == BinaryOperator.SUBTRACT) {
+                ret = lhs.add(rhs.negate());
+            } else {
+                ret = lhs.multiply(rhs);
+            }
+        } else if (e instanceof UnaryExpression) {
+            UnaryExpression ue = (UnaryExpression)e;
+            UnaryOperator op = ue.getOperator();
+            if (op != UnaryOperator.MINUS && op != UnaryOperator.PLUS) {
+                return null;
+            }
+            ret = parse(ue.getExpression(), ids, magnitude);
+            if (ret != null && op == UnaryOperator.MINUS) {
+                ret = ret.negate();
+            }
+        }
+        return ret;
+    }
+
+    /**
+    * Returns the canonical term of the specified constant.
+    */
+    static NormalTerm getConstant(long value) {
+        if (value == 0) {
+            return intern(new NormalTerm(new String[0][], new long[0]));
+        }
+        return intern(new NormalTerm(
+                new String[][] {new String[0]}, new long[] {value}));
+    }
+
+    /**
+    * Returns the canonical term of the specified variable.
+    */
+    static NormalTerm getVariable(String name) {
+        return intern(new NormalTerm(
+                new String[][] {new String[] {name}}, new long[] {1}));
+    }
+
+    /**
+    * Returns the sum of this term and the specified term.
+    */
+    NormalTerm add(NormalTerm other) {
+        if (other.monomials.length == 0) {
+            return this;
+        } else if (monomials.length == 0) {
+            return other;
+        }
+        int size = monomials.length + other.monomials.length;
+        String[][] ret_monomials = new String[size][];
+        long[] ret_coefs = new long[size];
+        int i = 0, j = 0, k = 0;
+        while (i < monomials.length || j < other.monomials.length) {
+            int rel = (i == monomials.length) ? 1 :
+                    (j == other.monomials.length) ? -1 :
+                    monomial_order.compare(monomials[i], other.monomials[j]);
+            if (rel < 0) {
+                ret_monomials[k] = monomials[i];
+                ret_coefs[k++] = coefs[i++];
+            } else if (rel > 0) {
+                ret_monomials[k] = other.monomials[j];
+                ret_coefs[k++] = other.coefs[j++];
+            } else {
+                long coef = coefs[i] + other.coefs[j];
+                if (coef != 0) {
+                    ret_monomials[k] = monomials[i];
+                    ret_coefs[k++] = coef;
+                }
+                i++;
+                j++;
+            }
+        }
+        return intern(new NormalTerm(Arrays.copyOf(ret_monomials, k),
+                                     Arrays.copyOf(ret_coefs, k)));
+    }
+
+    /**
+    * Returns the product of this term and the specified term.
+    */
+    NormalTerm multiply(NormalTerm other) {
+        Map<String[], Long> products = new TreeMap<String[], Long>(
+                monomial_order);
+        for (int i = 0; i < monomials.length; i++) {
+            for (int j = 0; j < other.monomials.length; j++) {
+                String[] monomial = new String[
+                        monomials[i].length + other.monomials[j].length];
+                System.arraycopy(monomials[i], 0,
+                        monomial, 0, monomials[i].length);
+                System.arraycopy(other.monomials[j], 0,
+                        monomial, monomials[i].length,
+                        other.monomials[j].length);
+                Arrays.sort(monomial);
+                long coef = coefs[i] * other.coefs[j];
+                Long prev = products.get(monomial);
+                products.put(monomial, (prev == null) ? coef : prev + coef);
+            }
+        }
+        List<String[]> ret_monomials = new ArrayList<String[]>();
+        List<Long> ret_coefs = new ArrayList<Long>();
+        for (Map.Entry<String[], Long> product : products.entrySet()) {
+            if (product.getValue() != 0) {
+                ret_monomials.add(product.getKey());
+                ret_coefs.add(product.getValue());
+            }
+        }
+        long[] coef_array = new long[ret_coefs.size()];
+        for (int i = 0; i < coef_array.length; i++) {
+            coef_array[i] = ret_coefs.get(i);
+        }
+        return intern(new NormalTerm(
+                ret_monomials.toArray(new String[0][]), coef_array));
+    }
+
+    /**
+    * Returns the negation of this term.
+    */
+    NormalTerm negate() {
+        long[] ret_coefs = new long[coefs.length];
+        for (int i = 0; i < coefs.length; i++) {
+            ret_coefs[i] = -coefs[i];
+        }
+        return intern(new NormalTerm(monomials, ret_coefs));
+    }
+
+    /**
+    * Returns the string form of the term (for debugging).
+    */
+    @Override
+    public String toString() {
+        if (monomials.length == 0) {
+            return "0";
+        }
+        StringBuilder str = new StringBuilder(16 * monomials.length);
+        for (int i = 0; i < monomials.length; i++) {
+            if (coefs[i] >= 0 && i > 0) {
+                str.append("+");
+            }
+            str.append(coefs[i]);
+            for (String var : monomials[i]) {
+                str.append("*").append(var);
+            }
+        }
+        return str.toString();
+    }
+
+    // Checks if the two terms have the same monomials and coefficients.
+    private boolean isSameAs(NormalTerm other) {
+        if (hash != other.hash || monomials.length != other.monomials.length) {
+            return false;
+        }
+        for (int i = 0; i < monomials.length; i++) {
+            if (coefs[i] != other.coefs[i] ||
+                !Arrays.equals(monomials[i], other.monomials[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+//------------------------------------------------------------------------------
+// Table of canonical terms.
+//------------------------------------------------------------------------------
+    /** Weakly referenced canonical term. */
+    private static class Entry extends WeakReference<NormalTerm> {
+        private final int hash;
+        private Entry next;
+
+        private Entry(NormalTerm term, Entry next) {
+            super(term, queue);
+            this.hash = term.hash;
+            this.next = next;
+        }
+    }
+
+    private static final ReferenceQueue<NormalTerm> queue =
+            new ReferenceQueue<NormalTerm>();
+
+    private static Entry[] table = new Entry[256];
+
+    private static int size = 0;
+
+    // Returns the canonical term that is structurally equal to the given term,
+    // which becomes the canonical one if there is no such term in the table.
+    private static synchronized NormalTerm intern(NormalTerm term) {
+        expunge();
+        int index = term.hash & (table.length-1);
+        for (Entry e = table[index]; e != null; e = e.next) {
+            NormalTerm canonical = e.get();
+            if (canonical != null && canonical.isSameAs(term)) {
+                return canonical;
+            }
+        }
+        table[index] = new Entry(term, table[index]);
+        if (++size > table.length * 3 / 4) {
+            resize();
+        }
+        return term;
+    }
+
+    // Removes the entries of the collected terms.
+    private static void expunge() {
+        Reference<? extends NormalTerm> ref;
+        while ((ref = queue.poll()) != null) {
+            Entry dead = (Entry)ref;
+            int index = dead.hash & (table.length-1);
+            Entry prev = null;
+            for (Entry e = table[index]; e != null; e = e.next) {
+                if (e == dead) {
+                    if (prev == null) {
+                        table[index] = e.next;
+                    } else {
+                        prev.next = e.next;
+                    }
+                    size--;
+                    break;
+                }
+                prev = e;
+            }
+        }
+    }
+
+    private static void resize() {
+        Entry[] old_table = table;
+        table = new Entry[old_table.length * 2];
+        for (Entry head : old_table) {
+            Entry e = head;
+            while (e != null) {
+                Entry next = e.next;
+                int index = e.hash & (table.length-1);
+                e.next = table[index];
+                table[index] = e;
+                e = next;
+            }
+        }
+    }
+}
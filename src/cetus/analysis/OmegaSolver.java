@@ -0,0 +1,610 @@
+package cetus.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Integer feasibility solver for systems of linear equalities and
+ * inequalities, following the approach of the Omega test. Equalities are
+ * eliminated exactly with unimodular changes of variables, and inequalities
+ * are eliminated with Fourier-Motzkin elimination using the real shadow to
+ * disprove and the dark shadow to prove integer solutions, searching the gap
+ * between the two shadows when they disagree. Problems that exceed the work
+ * budget are reported as {@link #UNKNOWN}, which dependence testing treats
+ * conservatively.
+ * <p>
+ * A constraint over n variables is stored as an array of n+1 coefficients
+ * whose last element is the constant term; an equality means
+ * {@code sum(a[i]*x[i]) + a[n] == 0} and an inequality means
+ * {@code sum(a[i]*x[i]) + a[n] >= 0}. The solver keeps an affine definition
+ * of every original variable in terms of the current variables so
+ * constraints over the original variables can be added after equalities were
+ * eliminated, which allows a simplified base problem to be reused by
+ * {@link #copy(int)}.
+ */
+public class OmegaSolver {
+
+    /** The problem has no integer solution */
+    public static final int INFEASIBLE = 0;
+
+    /** The problem has an integer solution */
+    public static final int FEASIBLE = 1;
+
+    /** The solver could not decide the problem within its budget */
+    public static final int UNKNOWN = 2;
+
+    // Cost added to inexact eliminations when choosing a variable.
+    private static final long INEXACT_COST = 1L << 30;
+
+    /** Remaining work shared by a problem and its shadow problems */
+    private static class Budget {
+        private int remaining;
+
+        private Budget(int remaining) {
+            this.remaining = remaining;
+        }
+    }
+
+    /** Thrown when the budget is exhausted or an arithmetic overflow occurs */
+    private static class GiveUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Number of variables.
+    private final int num_vars;
+    // Affine definitions of the original variables in the current variables.
+    private long[][] defs;
+    // Equalities and inequalities over the current variables.
+    private List<long[]> eqs, geqs;
+    // False if the problem was found infeasible.
+    private boolean feasible;
+    // True if the solver gave up while simplifying the problem.
+    private boolean gave_up;
+    private Budget budget;
+
+    /**
+    * Creates an empty problem with the specified number of variables.
+    * @param num_vars the number of variables.
+    * @param budget the maximum number of constraints and variable
+    * substitutions the solver may create while solving this problem.
+    */
+    public OmegaSolver(int num_vars, int budget) {
+        this.num_vars = num_vars;
+        defs = new long[num_vars][];
+        for (int i = 0; i < num_vars; i++) {
+            defs[i] = new long[num_vars + 1];
+            defs[i][i] = 1;
+        }
+        eqs = new ArrayList<long[]>();
+        geqs = new ArrayList<long[]>();
+        feasible = true;
+        gave_up = false;
+        this.budget = new Budget(budget);
+    }
+
+    /**
+    * Returns a copy of this problem with a new work budget.
+    * @param budget the work budget of the copy.
+    */
+    public OmegaSolver copy(int budget) {
+        OmegaSolver ret = new OmegaSolver(num_vars, budget);
+        ret.defs = copyRows(Arrays.asList(defs)).toArray(new long[0][]);
+        ret.eqs = copyRows(eqs);
+        ret.geqs = copyRows(geqs);
+        ret.feasible = feasible;
+        ret.gave_up = gave_up;
+        return ret;
+    }
+
+    /** Returns the number of variables of this problem */
+    public int getNumVariables() {
+        return num_vars;
+    }
+
+    /**
+    * Adds the equality {@code sum(coefs[i]*x[i]) + constant == 0} over the
+    * original variables.
+    */
+    public void addEquality(long[] coefs, long constant) {
+        try {
+            eqs.add(translate(coefs, constant));
+        } catch (GiveUp e) {
+            gave_up = true;
+        }
+    }
+
+    /**
+    * Adds the inequality {@code sum(coefs[i]*x[i]) + constant >= 0} over the
+    * original variables.
+    */
+    public void addInequality(long[] coefs, long constant) {
+        try {
+            geqs.add(translate(coefs, constant));
+        } catch (GiveUp e) {
+            gave_up = true;
+        }
+    }
+
+    /**
+    * Normalizes the constraints and eliminates the equalities without
+    * deciding the problem; this is useful before reusing the problem for
+    * several queries.
+    * @return false if the problem was found infeasible.
+    */
+    public boolean simplify() {
+        try {
+            feasible = feasible && normalize() && eliminateEqualities();
+        } catch (GiveUp e) {
+            // The constraints may be partially transformed.
+            gave_up = true;
+        }
+        return feasible;
+    }
+
+    /**
+    * Decides whether this problem has an integer solution. The problem is
+    * modified by the solver.
+    * @return {@link #FEASIBLE}, {@link #INFEASIBLE}, or {@link #UNKNOWN}.
+    */
+    public int solve() {
+        if (!feasible) {
+            return INFEASIBLE;
+        } else if (gave_up) {
+            return UNKNOWN;
+        }
+        try {
+            int ret = eliminate();
+            if (ret == INFEASIBLE) {
+                feasible = false;
+            }
+            return ret;
+        } catch (GiveUp e) {
+            return UNKNOWN;
+        }
+    }
+
+    // Translates a constraint over the original variables to the current
+    // variables.
+    private long[] translate(long[] coefs, long constant) {
+        long[] ret = new long[num_vars + 1];
+        ret[num_vars] = constant;
+        for (int i = 0; i < num_vars; i++) {
+            if (coefs[i] != 0) {
+                for (int j = 0; j <= num_vars; j++) {
+                    ret[j] = add(ret[j], mul(coefs[i], defs[i][j]));
+                }
+            }
+        }
+        return ret;
+    }
+
+    // Eliminates constraints until the problem is decided.
+    private int eliminate() {
+        while (true) {
+            if (!normalize() || !eliminateEqualities()) {
+                return INFEASIBLE;
+            }
+            if (geqs.isEmpty()) {
+                return FEASIBLE;
+            }
+            int var = chooseVariable();
+            if (var < 0) {
+                // Only constant constraints remain and they were checked.
+                return FEASIBLE;
+            }
+            List<long[]> lowers = new ArrayList<long[]>();
+            List<long[]> uppers = new ArrayList<long[]>();
+            List<long[]> others = new ArrayList<long[]>();
+            boolean exact_lower = true, exact_upper = true;
+            for (long[] c : geqs) {
+                if (c[var] > 0) {
+                    lowers.add(c);
+                    exact_lower &= (c[var] == 1);
+                } else if (c[var] < 0) {
+                    uppers.add(c);
+                    exact_upper &= (c[var] == -1);
+                } else {
+                    others.add(c);
+                }
+            }
+            // An unbounded variable satisfies its constraints for any values
+            // of the other variables.
+            if (lowers.isEmpty() || uppers.isEmpty()) {
+                geqs = others;
+                continue;
+            }
+            charge(lowers.size() * uppers.size());
+            if (exact_lower || exact_upper) {
+                others.addAll(combine(lowers, uppers, var, false));
+                geqs = others;
+                continue;
+            }
+            // Inexact elimination: the real shadow disproves and the dark
+            // shadow proves integer solutions.
+            OmegaSolver real = copyWith(others, combine(lowers, uppers, var,
+                                                        false));
+            if (real.eliminate() == INFEASIBLE) {
+                return INFEASIBLE;
+            }
+            OmegaSolver dark = copyWith(others, combine(lowers, uppers, var,
+                                                        true));
+            if (dark.eliminate() == FEASIBLE) {
+                return FEASIBLE;
+            }
+            return splinter(lowers, uppers, var);
+        }
+    }
+
+    // Searches the integer solutions between the real and the dark shadows.
+    // Any such solution satisfies a*x + L == i for some lower bound
+    // a*x + L >= 0 and 0 <= i <= (b_max*a - a - b_max)/b_max, where b_max is
+    // the largest coefficient of the upper bounds.
+    private int splinter(List<long[]> lowers, List<long[]> uppers, int var) {
+        long b_max = 0;
+        for (long[] upper : uppers) {
+            b_max = Math.max(b_max, -upper[var]);
+        }
+        int ret = INFEASIBLE;
+        for (long[] lower : lowers) {
+            long a = lower[var];
+            long limit = floorDiv(add(mul(b_max, a), -add(a, b_max)), b_max);
+            for (long i = 0; i <= limit; i++) {
+                OmegaSolver problem =
+                        copyWith(geqs, new ArrayList<long[]>());
+                long[] eq = lower.clone();
+                eq[num_vars] = add(eq[num_vars], -i);
+                problem.eqs.add(eq);
+                int result = problem.eliminate();
+                if (result == FEASIBLE) {
+                    return FEASIBLE;
+                } else if (result == UNKNOWN) {
+                    ret = UNKNOWN;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private OmegaSolver copyWith(List<long[]> others, List<long[]> shadow) {
+        OmegaSolver ret = new OmegaSolver(num_vars, 0);
+        ret.budget = budget;
+        ret.geqs = copyRows(others);
+        ret.geqs.addAll(shadow);
+        return ret;
+    }
+
+    // Combines every lower bound with every upper bound of the variable.
+    // For a*x + L >= 0 and -b*x + U >= 0 (a,b > 0), the real shadow is
+    // b*L + a*U >= 0 and the dark shadow is b*L + a*U >= (a-1)*(b-1).
+    private List<long[]> combine(List<long[]> lowers, List<long[]> uppers,
+                                 int var, boolean dark) {
+        List<long[]> ret = new ArrayList<long[]>(lowers.size()*uppers.size());
+        for (long[] lower : lowers) {
+            long a = lower[var];
+            for (long[] upper : uppers) {
+                long b = -upper[var];
+                long[] c = new long[num_vars + 1];
+                for (int i = 0; i <= num_vars; i++) {
+                    c[i] = add(mul(b, lower[i]), mul(a, upper[i]));
+                }
+                c[var] = 0;
+                if (dark) {
+                    c[num_vars] = add(c[num_vars], mul(1 - a, b - 1));
+                }
+                ret.add(c);
+            }
+        }
+        return ret;
+    }
+
+    // Chooses the variable to eliminate; exact eliminations are preferred,
+    // then the ones that create fewer constraints.
+    private int chooseVariable() {
+        int ret = -1;
+        long best = Long.MAX_VALUE;
+        for (int var = 0; var < num_vars; var++) {
+            int num_lowers = 0, num_uppers = 0;
+            boolean exact_lower = true, exact_upper = true;
+            for (long[] c : geqs) {
+                if (c[var] > 0) {
+                    num_lowers++;
+                    exact_lower &= (c[var] == 1);
+                } else if (c[var] < 0) {
+                    num_uppers++;
+                    exact_upper &= (c[var] == -1);
+                }
+            }
+            if (num_lowers + num_uppers == 0) {
+                continue;
+            }
+            long cost = (long)num_lowers * num_uppers - num_lowers -
+                    num_uppers;
+            if (!exact_lower && !exact_upper) {
+                cost += INEXACT_COST;
+            }
+            if (cost < best) {
+                best = cost;
+                ret = var;
+            }
+        }
+        return ret;
+    }
+
+    // Normalizes the constraints: divides by the gcd of the coefficients,
+    // tightens the constant of inequalities, removes redundant inequalities,
+    // and detects contradictory and implied equality pairs.
+    private boolean normalize() {
+        for (int i = 0; i < eqs.size(); i++) {
+            long[] c = eqs.get(i);
+            long g = gcd(c);
+            if (g == 0) {
+                if (c[num_vars] != 0) {
+                    return false;
+                }
+                eqs.remove(i--);
+            } else if (c[num_vars] % g != 0) {
+                return false;
+            } else {
+                divide(c, g, false);
+            }
+        }
+        // Inequalities keyed by their coefficients, keeping the tightest one.
+        Map<Key, long[]> tightest = new HashMap<Key, long[]>();
+        List<long[]> normalized = new ArrayList<long[]>(geqs.size());
+        for (long[] c : geqs) {
+            long g = gcd(c);
+            if (g == 0) {
+                if (c[num_vars] < 0) {
+                    return false;
+                }
+                continue;
+            }
+            divide(c, g, true);
+            Key key = new Key(c, 1);
+            long[] prev = tightest.get(key);
+            if (prev == null) {
+                tightest.put(key, c);
+                normalized.add(c);
+            } else if (c[num_vars] < prev[num_vars]) {
+                prev[num_vars] = c[num_vars];
+            }
+        }
+        geqs = new ArrayList<long[]>(normalized.size());
+        for (long[] c : normalized) {
+            long[] opposite = tightest.get(new Key(c, -1));
+            if (opposite != null) {
+                long sum = c[num_vars] + opposite[num_vars];
+                if (sum < 0) {
+                    return false;
+                } else if (sum == 0) {
+                    // c >= 0 and -c >= 0 imply c == 0
+                    if (tightest.remove(new Key(c, 1)) != null) {
+                        eqs.add(c);
+                    }
+                    continue;
+                }
+            }
+            if (tightest.containsKey(new Key(c, 1))) {
+                geqs.add(c);
+            }
+        }
+        return true;
+    }
+
+    // Eliminates all equalities; returns false if one has no integer
+    // solution.
+    private boolean eliminateEqualities() {
+        while (!eqs.isEmpty()) {
+            long[] eq = eqs.remove(eqs.size() - 1);
+            while (true) {
+                int k = -1, num_nonzeros = 0;
+                for (int i = 0; i < num_vars; i++) {
+                    if (eq[i] != 0) {
+                        num_nonzeros++;
+                        if (k < 0 || Math.abs(eq[i]) < Math.abs(eq[k])) {
+                            k = i;
+                        }
+                    }
+                }
+                if (k < 0) {
+                    if (eq[num_vars] != 0) {
+                        return false;
+                    }
+                    break;
+                }
+                if (num_nonzeros == 1) {
+                    if (eq[num_vars] % eq[k] != 0) {
+                        return false;
+                    }
+                    substitute(k, -eq[num_vars] / eq[k]);
+                    break;
+                }
+                // Reduces the other coefficients modulo eq[k] by the change
+                // of variables x[k] = x'[k] - q*x[j].
+                for (int j = 0; j < num_vars; j++) {
+                    if (j != k && eq[j] != 0) {
+                        long q = floorDiv(eq[j], eq[k]);
+                        changeVariable(k, j, q, eq);
+                    }
+                }
+            }
+            if (!normalize()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Applies the change of variables x[k] = x'[k] - q*x[j] to every row.
+    private void changeVariable(int k, int j, long q, long[] eq) {
+        charge(1);
+        changeColumn(eq, k, j, q);
+        for (long[] c : eqs) {
+            changeColumn(c, k, j, q);
+        }
+        for (long[] c : geqs) {
+            changeColumn(c, k, j, q);
+        }
+        for (long[] c : defs) {
+            changeColumn(c, k, j, q);
+        }
+    }
+
+    private static void changeColumn(long[] c, int k, int j, long q) {
+        if (c[k] != 0) {
+            c[j] = add(c[j], mul(-q, c[k]));
+        }
+    }
+
+    // Substitutes the constant value for the variable in every row.
+    private void substitute(int var, long value) {
+        charge(1);
+        for (long[] c : eqs) {
+            substituteColumn(c, var, value);
+        }
+        for (long[] c : geqs) {
+            substituteColumn(c, var, value);
+        }
+        for (long[] c : defs) {
+            substituteColumn(c, var, value);
+        }
+    }
+
+    private void substituteColumn(long[] c, int var, long value) {
+        if (c[var] != 0) {
+            c[num_vars] = add(c[num_vars], mul(c[var], value));
+            c[var] = 0;
+        }
+    }
+
+    private void charge(int work) {
+        budget.remaining -= work;
+        if (budget.remaining < 0) {
+            throw new GiveUp();
+        }
+    }
+
+    // Returns the gcd of the coefficients, excluding the constant.
+    private long gcd(long[] c) {
+        long ret = 0;
+        for (int i = 0; i < num_vars && ret != 1; i++) {
+            if (c[i] != 0) {
+                ret = gcd(ret, Math.abs(c[i]));
+            }
+        }
+        return ret;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // Divides the coefficients by g; the constant of an inequality is
+    // rounded down.
+    private void divide(long[] c, long g, boolean floor) {
+        if (g == 1) {
+            return;
+        }
+        for (int i = 0; i < num_vars; i++) {
+            c[i] /= g;
+        }
+        c[num_vars] = (floor) ? floorDiv(c[num_vars], g) : c[num_vars] / g;
+    }
+
+    private static long floorDiv(long a, long b) {
+        long q = a / b;
+        if ((a % b != 0) && ((a < 0) != (b < 0))) {
+            q--;
+        }
+        return q;
+    }
+
+    private static long add(long a, long b) {
+        long ret = a + b;
+        if (((a ^ ret) & (b ^ ret)) < 0) {
+            throw new GiveUp();
+        }
+        return ret;
+    }
+
+    private static long mul(long a, long b) {
+        long ret = a * b;
+        if (a != 0 && (ret / a != b || (a == -1 && b == Long.MIN_VALUE))) {
+            throw new GiveUp();
+        }
+        return ret;
+    }
+
+    private static List<long[]> copyRows(List<long[]> rows) {
+        List<long[]> ret = new ArrayList<long[]>(rows.size());
+        for (long[] row : rows) {
+            ret.add(row.clone());
+        }
+        return ret;
+    }
+
+    /** Coefficients of a constraint, optionally negated, as a hash key */
+    private class Key {
+        private final long[] c;
+        private final int sign;
+
+        private Key(long[] c, int sign) {
+            this.c = c;
+            this.sign = sign;
+        }
+
+        @Override
+        public int hashCode() {
+            int ret = 0;
+            for (int i = 0; i < num_vars; i++) {
+                ret = 31 * ret + (int)(sign * c[i]);
+            }
+            return ret;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)o;
+            for (int i = 0; i < num_vars; i++) {
+                if (sign * c[i] != other.sign * other.c[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Returns the constraints of this problem in a readable form */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(80);
+        for (long[] c : eqs) {
+            appendConstraint(sb, c, " == 0");
+        }
+        for (long[] c : geqs) {
+            appendConstraint(sb, c, " >= 0");
+        }
+        return sb.toString();
+    }
+
+    private void appendConstraint(StringBuilder sb, long[] c, String rel) {
+        sb.append("{");
+        for (int i = 0; i < num_vars; i++) {
+            if (c[i] != 0) {
+                sb.append(" ").append(c[i]).append("*x").append(i);
+            }
+        }
+        sb.append(" ").append(c[num_vars]).append(rel).append(" }");
+    }
+}
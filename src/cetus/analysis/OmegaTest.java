@@ -1,69 +1,309 @@
-package cetus.analysis; 	
+package cetus.analysis;
 
+import cetus.hir.ArrayAccess;
+import cetus.hir.BinaryExpression;
+import cetus.hir.BinaryOperator;
 import cetus.hir.Expression;
+import cetus.hir.Identifier;
 import cetus.hir.IntegerLiteral;
 import cetus.hir.Loop;
 import cetus.hir.PrintTools;
+import cetus.hir.Symbol;
+import cetus.hir.UnaryExpression;
+import cetus.hir.UnaryOperator;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-
-public class OmegaTest implements DDTest 
+/**
+ * Omega Test performs exact data-dependence testing for a pair of array
+ * accesses by deciding whether the integer linear system formed by all
+ * subscript equations, the loop bounds and strides of both iterations, and
+ * the direction constraints has an integer solution. The system over the
+ * source and sink iterations is built and simplified once per access pair,
+ * and each direction vector adds only its direction constraints before the
+ * problem is handed to {@link OmegaSolver}. Symbols that are not modified in
+ * the loop nest are symbolic constants shared by both iterations; other
+ * symbols are unconstrained and independent for each iteration. Problems the
+ * solver cannot decide within its work budget are assumed dependent.
+ */
+public class OmegaTest implements DDTest
 {
-	/* Private member storage for access by native methods */
-	Expression a1, a2;
+	/* Work budget of a single query */
+	private static final int QUERY_BUDGET = 2000;
+
+	/* Common enclosing loops and their information */
 	LinkedList<Loop> enclosing_nest;
 	HashMap<Loop, LoopInfo> loop_information;
 
-	/* Data required for Omega Test Interface creation */
+	/* Steps of the common loops; the sign decides the iteration order */
 	long[] common_loop_steps;
 	int loop_nest_size;
-	
-	/* Constant coefficients in the affine subscript expressions as identified
-	 * by normalising the expression */	
-	Expression const1, const2;
+
+	/* Variables of the problem: the source iteration of the common loops
+	 * takes the first loop_nest_size variables and the sink iteration the
+	 * next loop_nest_size variables */
+	private int num_vars;
+	/* Shared variables of the symbolic constants */
+	private Map<Object, Integer> shared_vars;
+	/* Variables of the other symbols for the source and sink sides */
+	private List<Map<Object, Integer>> local_vars;
+	/* Symbols defined in the outermost common loop */
+	private Set<Symbol> nest_defs;
+
+	/* Problem without direction constraints, with equalities eliminated */
+	private OmegaSolver base;
+
 	boolean eligible_for_test;
 
+	/** Affine expression over the problem variables */
+	private static class Affine {
+		private final Map<Integer, Long> coefs = new HashMap<Integer, Long>();
+		private long constant;
+
+		private Affine(long constant) {
+			this.constant = constant;
+		}
+
+		private Affine(int var, long coef) {
+			this.constant = 0;
+			coefs.put(var, coef);
+		}
+
+		private boolean isConstant() {
+			return coefs.isEmpty();
+		}
+
+		private Affine add(Affine other, long factor) {
+			Affine ret = new Affine(
+					add(constant, multiply(factor, other.constant)));
+			ret.coefs.putAll(coefs);
+			for (Map.Entry<Integer, Long> e : other.coefs.entrySet()) {
+				Long prev = ret.coefs.get(e.getKey());
+				long value = add((prev == null) ? 0 : prev,
+						multiply(factor, e.getValue()));
+				if (value == 0) {
+					ret.coefs.remove(e.getKey());
+				} else {
+					ret.coefs.put(e.getKey(), value);
+				}
+			}
+			return ret;
+		}
+
+		private Affine scale(long factor) {
+			return new Affine(0).add(this, factor);
+		}
+
+		private static long add(long a, long b) {
+			long ret = a + b;
+			if (((a ^ ret) & (b ^ ret)) < 0)
+				throw new ArithmeticException("long overflow");
+			return ret;
+		}
+
+		private static long multiply(long a, long b) {
+			long ret = a * b;
+			if (a != 0 && (ret / a != b || (a == -1 && b == Long.MIN_VALUE)))
+				throw new ArithmeticException("long overflow");
+			return ret;
+		}
+
+		private long[] toArray(int num_vars) {
+			long[] ret = new long[num_vars];
+			for (Map.Entry<Integer, Long> e : coefs.entrySet()) {
+				ret[e.getKey()] = e.getValue();
+			}
+			return ret;
+		}
+	}
+
 	public OmegaTest (DDArrayAccessInfo a1,
 						DDArrayAccessInfo a2,
 						LinkedList<Loop> common_enclosing_loops,
 						HashMap<Loop, LoopInfo> loopInfo)
 	{
-		long A = 0, B = 0, C = 0;
-		long U = 0, L = 0, N = 0;
-		
-		this.enclosing_nest = common_enclosing_loops; 
+		this.enclosing_nest = common_enclosing_loops;
 		this.loop_information = loopInfo;
+		this.loop_nest_size = enclosing_nest.size();
+		this.common_loop_steps = new long[loop_nest_size];
+		this.num_vars = 2 * loop_nest_size;
+		this.shared_vars = new HashMap<Object, Integer>();
+		this.local_vars = new ArrayList<Map<Object, Integer>>(2);
+		local_vars.add(new HashMap<Object, Integer>());
+		local_vars.add(new HashMap<Object, Integer>());
+		this.nest_defs = null;
+		this.base = null;
+		this.eligible_for_test = false;
 
-		/* Build data structures to store information that will be needed by the Omega test
-		 * interface */
-		this.common_loop_steps = new long[enclosing_nest.size()];
+		ArrayAccess access1 = a1.getArrayAccess();
+		ArrayAccess access2 = a2.getArrayAccess();
+		if (loop_nest_size == 0 ||
+			access1.getNumIndices() != access2.getNumIndices())
+			return;
+		nest_defs = loop_information.get(enclosing_nest.getFirst())
+				.getDefSymbols();
+		if (nest_defs == null)
+			return;
+		try
+		{
+			buildProblem(access1, access2);
+		}
+		catch (ArithmeticException e)
+		{
+			// Constants too large for exact arithmetic
+			this.base = null;
+			this.eligible_for_test = false;
+		}
+	}
+
+	/* Builds the problem without direction constraints */
+	private void buildProblem(ArrayAccess access1, ArrayAccess access2)
+	{
+		List<Affine> eqs = new ArrayList<Affine>();
+		List<Affine> geqs = new ArrayList<Affine>();
+		// Subscript equations
+		for (int dim = 0; dim < access1.getNumIndices(); dim++)
+		{
+			Affine f = toAffine(access1.getIndex(dim), 0);
+			Affine g = toAffine(access2.getIndex(dim), 1);
+			if (f == null || g == null)
+				return;
+			eqs.add(f.add(g, -1));
+		}
+		// Loop bounds and strides of the source and sink iterations
 		int loop_id = 0;
 		for (Loop loop: enclosing_nest)
 		{
-				LoopInfo info = loop_information.get(loop);
-				Expression n = info.getLoopIncrement();
-				if (n instanceof IntegerLiteral)
-					N = ((IntegerLiteral)n).getValue();
-				else
-					N = 0;
-				this.common_loop_steps[loop_id] = N;
-				loop_id++;
+			LoopInfo info = loop_information.get(loop);
+			Expression n = info.getLoopIncrement();
+			if (!(n instanceof IntegerLiteral) ||
+				((IntegerLiteral)n).getValue() == 0)
+				return;
+			long N = ((IntegerLiteral)n).getValue();
+			this.common_loop_steps[loop_id] = N;
+			for (int side = 0; side < 2; side++)
+			{
+				Affine x = new Affine(getIndexVariable(loop_id, side), 1);
+				Affine lb = toAffine(info.getLoopLB(), side);
+				Affine ub = toAffine(info.getLoopUB(), side);
+				long sign = (N > 0) ? 1 : -1;
+				// A non-affine bound is left out of the problem instead of
+				// making the pair ineligible. Dropping constraints only adds
+				// solutions, so the test stays conservative while it still
+				// uses the subscripts and the other bounds.
+				if (lb != null)
+					geqs.add(x.add(lb, -1).scale(sign));
+				if (ub != null)
+				{
+					geqs.add(ub.add(x, -1).scale(sign));
+				}
+				if (Math.abs(N) > 1 && lb != null)
+				{
+					// x = lb + N*t, t >= 0
+					int t = num_vars++;
+					eqs.add(x.add(lb, -1).add(new Affine(t, N), -1));
+					geqs.add(new Affine(t, 1));
+				}
+			}
+			loop_id++;
 		}
-		this.loop_nest_size = enclosing_nest.size();
-		
-		/* JNI Interface to Omega Library, see ./omega_lib/omega_test_interf.c */
-		omega_interf_initialize();		
+
+		base = new OmegaSolver(num_vars, QUERY_BUDGET);
+		for (Affine c : eqs)
+			base.addEquality(c.toArray(num_vars), c.constant);
+		for (Affine c : geqs)
+			base.addInequality(c.toArray(num_vars), c.constant);
+		base.simplify();
+		this.eligible_for_test = true;
+		PrintTools.println("Omega test problem: " + base, 3);
 	}
-	
-	/* JNI Interface functions for omega test */
-	private native boolean omega_test();
-	private native void omega_interf_initialize();
-	static {
-		System.loadLibrary("Omega");
+
+	/* Returns the variable of the index of the common loop for the side */
+	private int getIndexVariable(int loop_id, int side)
+	{
+		return side * loop_nest_size + loop_id;
+	}
+
+	/* Returns the variable for the identifier on the specified side */
+	private int getVariable(Identifier id, int side)
+	{
+		Symbol symbol = id.getSymbol();
+		int loop_id = 0;
+		for (Loop loop : enclosing_nest)
+		{
+			Expression index = loop_information.get(loop).getLoopIndex();
+			if (index instanceof Identifier && symbol != null &&
+				((Identifier)index).getSymbol() == symbol)
+				return getIndexVariable(loop_id, side);
+			loop_id++;
+		}
+		Map<Object, Integer> vars = shared_vars;
+		Object key = symbol;
+		if (symbol == null || nest_defs.contains(symbol))
+		{
+			vars = local_vars.get(side);
+			key = (symbol == null) ? id.getName() : symbol;
+		}
+		Integer ret = vars.get(key);
+		if (ret == null)
+		{
+			ret = num_vars++;
+			vars.put(key, ret);
+		}
+		return ret;
 	}
-	
+
+	/* Converts the expression to an affine form; returns null if the
+	 * expression is not affine with integer coefficients */
+	private Affine toAffine(Expression e, int side)
+	{
+		if (e instanceof IntegerLiteral)
+		{
+			return new Affine(((IntegerLiteral)e).getValue());
+		}
+		else if (e instanceof Identifier)
+		{
+			return new Affine(getVariable((Identifier)e, side), 1);
+		}
+		else if (e instanceof UnaryExpression)
+		{
+			UnaryExpression ue = (UnaryExpression)e;
+			Affine operand = toAffine(ue.getExpression(), side);
+			if (operand == null)
+				return null;
+			if (ue.getOperator() == UnaryOperator.MINUS)
+				return operand.scale(-1);
+			else if (ue.getOperator() == UnaryOperator.PLUS)
+				return operand;
+		}
+		else if (e instanceof BinaryExpression)
+		{
+			BinaryExpression be = (BinaryExpression)e;
+			BinaryOperator op = be.getOperator();
+			if (op != BinaryOperator.ADD && op != BinaryOperator.SUBTRACT &&
+				op != BinaryOperator.MULTIPLY)
+				return null;
+			Affine lhs = toAffine(be.getLHS(), side);
+			Affine rhs = toAffine(be.getRHS(), side);
+			if (lhs == null || rhs == null)
+				return null;
+			if (op == BinaryOperator.ADD)
+				return lhs.add(rhs, 1);
+			else if (op == BinaryOperator.SUBTRACT)
+				return lhs.add(rhs, -1);
+			else if (lhs.isConstant())
+				return rhs.scale(lhs.constant);
+			else if (rhs.isConstant())
+				return lhs.scale(rhs.constant);
+		}
+		return null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see cetus.analysis.DDTest#isTestEligible()
@@ -72,17 +312,63 @@ public class OmegaTest implements DDTest
 	{
 		return this.eligible_for_test;
 	}
-	
+
 	/*
 	 * (non-Javadoc)
 	 * @see cetus.analysis.DDTest#testDependence(cetus.analysis.SubscriptPair, cetus.analysis.DependenceVector)
 	 */
 	public boolean testDependence(DependenceVector dependence_vector)
 	{
-		return true;
+		OmegaSolver problem = base.copy(QUERY_BUDGET);
+		int loop_id = 0;
+		for (Loop loop : enclosing_nest)
+		{
+			long[] coefs = new long[num_vars];
+			// Iterations of loops with negative steps run in decreasing order
+			long sign = (common_loop_steps[loop_id] > 0) ? 1 : -1;
+			int src = getIndexVariable(loop_id, 0);
+			int sink = getIndexVariable(loop_id, 1);
+			switch (dependence_vector.getDirection(loop))
+			{
+			case DependenceVector.equal:
+				coefs[src] = 1;
+				coefs[sink] = -1;
+				problem.addEquality(coefs, 0);
+				break;
+			case DependenceVector.less:
+				coefs[src] = -sign;
+				coefs[sink] = sign;
+				problem.addInequality(coefs, -1);
+				break;
+			case DependenceVector.greater:
+				coefs[src] = sign;
+				coefs[sink] = -sign;
+				problem.addInequality(coefs, -1);
+				break;
+			default:
+				break;
+			}
+			loop_id++;
+		}
+		int result = problem.solve();
+		if (result == OmegaSolver.INFEASIBLE)
+		{
+			PrintTools.println("Dependence does not exist", 2);
+			printDirectionVector(dependence_vector.getDirectionVector(),
+					enclosing_nest);
+			return false;
+		}
+		else
+		{
+			PrintTools.println("Dependence exists" +
+					((result == OmegaSolver.UNKNOWN) ? " (assumed)" : ""), 2);
+			printDirectionVector(dependence_vector.getDirectionVector(),
+					enclosing_nest);
+			return true;
+		}
 	}
-	
-	public void printDirectionVector(HashMap<Loop,Integer> dv, LinkedList<Loop> nest)
+
+	public void printDirectionVector(Map<Loop,Integer> dv, LinkedList<Loop> nest)
 	{
 		PrintTools.print("(", 2);
 		for (int i=0; i< nest.size(); i++)
@@ -92,10 +378,9 @@ public class OmegaTest implements DDTest
 		}
 		PrintTools.println(")", 2);
 	}
-	
+
 	public LinkedList<Loop> getCommonEnclosingLoops()
 	{
 		return this.enclosing_nest;
 	}
 }
-
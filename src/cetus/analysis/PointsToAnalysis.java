@@ -1697,7 +1697,7 @@ public class PointsToAnalysis extends AnalysisPass {
     * @param t The traversable inside of which this assignment must happen
     * @return The universe map 
     */
-    protected static Map createUniverseMap(Traversable t) {
+    protected static Map<Statement, Domain> createUniverseMap(Traversable t) {
         DFIterator<Statement> iter =
                 new DFIterator<Statement>(t, Statement.class);
         Domain universe = Universe.getUniverse();
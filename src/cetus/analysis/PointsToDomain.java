@@ -15,21 +15,146 @@ import java.util.*;
  * <p>
  * Relationships inside of this domain are represented by 
  * {@link PointsToRel}.
+ * <p>
+ * The domain is a map from pointer symbols to their relationships in
+ * insertion order. Copies of a domain share the underlying table until one of
+ * them is modified, so {@link #clone()} takes constant time, and the
+ * relationship sets in the table are never modified once they are stored, so
+ * a modified copy still shares the sets of the unchanged symbols. Operations
+ * on two domains skip the symbols whose sets are shared by both domains. The
+ * sets returned by {@link #get(Object)} must not be modified, and the
+ * relationships stored in a domain must not be modified either.
  * 
  * @see PointsToRel
  * @see Domain
  */
-public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>> 
+public class PointsToDomain extends AbstractMap<Symbol,HashSet<PointsToRel>>
                             implements Domain {
 
-    // Just to prevent javac from complaining.
-    private static final long serialVersionUID = 15L;
+    // Relationship sets of the pointer symbols, which may be shared with the
+    // copies of this domain.
+    private Table table;
+
+    /** Table shared by copies of a domain until one of them is modified. */
+    private static final class Table
+            extends LinkedHashMap<Symbol,HashSet<PointsToRel>> {
+        private static final long serialVersionUID = 1L;
+        // Set when the table is shared with another domain; a shared table is
+        // never modified.
+        private volatile boolean shared;
+
+        private Table() {
+            super();
+        }
+
+        private Table(Table other) {
+            super(other);
+        }
+    }
+
+    /**
+     * Set of relationships owned by a table, which can be modified in place
+     * only while the owner is not shared; a set without owner is read-only.
+     */
+    private static final class RelSet extends LinkedHashSet<PointsToRel> {
+        private static final long serialVersionUID = 1L;
+        private Table owner;
+        // 1 if the pointed-to symbols are distinct, 0 if not, -1 if unknown.
+        private int distinct_tails;
+
+        private RelSet(Table owner) {
+            super();
+            this.owner = owner;
+            distinct_tails = -1;
+        }
+
+        private RelSet(Table owner, Collection<PointsToRel> rels) {
+            this(owner);
+            for (PointsToRel rel : rels) {
+                addInternal(rel);
+            }
+        }
+
+        private boolean isWritable(Table table) {
+            return (owner == table && !table.shared);
+        }
+
+        private boolean addInternal(PointsToRel rel) {
+            distinct_tails = -1;
+            return super.add(rel);
+        }
+
+        private boolean removeInternal(Object o) {
+            distinct_tails = -1;
+            return super.remove(o);
+        }
+
+        private void checkWritable() {
+            if (owner == null || owner.shared) {
+                throw new UnsupportedOperationException(
+                        "Shared relationships in PointsToDomain are read-only");
+            }
+        }
+
+        @Override
+        public boolean add(PointsToRel rel) {
+            checkWritable();
+            return addInternal(rel);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            checkWritable();
+            return removeInternal(o);
+        }
+
+        @Override
+        public void clear() {
+            checkWritable();
+            distinct_tails = -1;
+            super.clear();
+        }
+
+        @Override
+        public Iterator<PointsToRel> iterator() {
+            final Iterator<PointsToRel> iter = super.iterator();
+            return new Iterator<PointsToRel>() {
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+                public PointsToRel next() {
+                    return iter.next();
+                }
+                public void remove() {
+                    checkWritable();
+                    distinct_tails = -1;
+                    iter.remove();
+                }
+            };
+        }
+
+        // Checks if no two relationships have the same pointed-to symbol.
+        private boolean hasDistinctTails() {
+            if (distinct_tails < 0) {
+                Set<Symbol> tails = new HashSet<Symbol>();
+                distinct_tails = 1;
+                for (PointsToRel rel : this) {
+                    if (!tails.add(rel.getPointedToSymbol())) {
+                        distinct_tails = 0;
+                        break;
+                    }
+                }
+            }
+            return (distinct_tails == 1);
+        }
+    }
 
     /**
      * Create an empty Domain constructor
      */
     public PointsToDomain() {
         super();
+        table = new Table();
     }
 
     /**
@@ -37,24 +162,170 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
      * @param p_rel
      */
     public PointsToDomain(PointsToRel p_rel) {
-        super();
+        this();
         addRel(p_rel);
     }
 
+    // Constructs a domain that shares the specified table.
+    private PointsToDomain(Table table) {
+        super();
+        table.shared = true;
+        this.table = table;
+    }
+
     /**
-     * Provides deep clone
+     * Returns a copy of this domain, which shares the relationships with this
+     * domain until either of them is modified.
      */
     @Override
     public PointsToDomain clone() {
-        PointsToDomain cloned = new PointsToDomain();
-        for (Symbol s : this.keySet()) {
-            HashSet<PointsToRel> new_rels = new LinkedHashSet<PointsToRel>();
-            for (PointsToRel rel : this.get(s)) {
-                new_rels.add(rel.clone());
+        return new PointsToDomain(table);
+    }
+
+    // Returns the table that can be modified, copying the shared table.
+    private Table getWritableTable() {
+        if (table.shared) {
+            table = new Table(table);
+        }
+        return table;
+    }
+
+    // Stores the set of relationships in the specified table; a set owned by
+    // another table becomes read-only, and a foreign set is copied.
+    private static HashSet<PointsToRel>
+            store(Table table, Symbol key, HashSet<PointsToRel> rels) {
+        if (rels instanceof RelSet) {
+            RelSet rel_set = (RelSet)rels;
+            if (rel_set.owner != table) {
+                rel_set.owner = null;
+            }
+        } else {
+            rels = new RelSet(null, rels);
+        }
+        return table.put(key, rels);
+    }
+
+    @Override
+    public HashSet<PointsToRel> get(Object key) {
+        return table.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return table.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    /**
+     * Associates the symbol with the given set of relationships, which must
+     * not be modified after this call.
+     */
+    @Override
+    public HashSet<PointsToRel> put(Symbol key, HashSet<PointsToRel> rels) {
+        return store(getWritableTable(), key, rels);
+    }
+
+    @Override
+    public HashSet<PointsToRel> remove(Object key) {
+        if (!table.containsKey(key)) {
+            return null;
+        }
+        return getWritableTable().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        table = new Table();
+    }
+
+    @Override
+    public Set<Symbol> keySet() {
+        return new AbstractSet<Symbol>() {
+            public Iterator<Symbol> iterator() {
+                final Iterator<Map.Entry<Symbol,HashSet<PointsToRel>>> iter =
+                        entrySet().iterator();
+                return new Iterator<Symbol>() {
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+                    public Symbol next() {
+                        return iter.next().getKey();
+                    }
+                    public void remove() {
+                        iter.remove();
+                    }
+                };
+            }
+            public int size() {
+                return table.size();
+            }
+            public boolean contains(Object o) {
+                return table.containsKey(o);
+            }
+            public boolean remove(Object o) {
+                return (PointsToDomain.this.remove(o) != null);
+            }
+            public void clear() {
+                PointsToDomain.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns the view of the mappings; the entries do not support
+     * {@code setValue}, but the iterator supports removal.
+     */
+    @Override
+    public Set<Map.Entry<Symbol,HashSet<PointsToRel>>> entrySet() {
+        return new AbstractSet<Map.Entry<Symbol,HashSet<PointsToRel>>>() {
+            public Iterator<Map.Entry<Symbol,HashSet<PointsToRel>>>
+                    iterator() {
+                return new EntryIterator();
+            }
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the table at the time of creation; a removal copies the
+     * table if it is shared, and the iteration continues on the old table.
+     */
+    private class EntryIterator
+            implements Iterator<Map.Entry<Symbol,HashSet<PointsToRel>>> {
+        private final Table iterated = table;
+        private final Iterator<Map.Entry<Symbol,HashSet<PointsToRel>>> iter =
+                iterated.entrySet().iterator();
+        private Symbol last;
+
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        public Map.Entry<Symbol,HashSet<PointsToRel>> next() {
+            Map.Entry<Symbol,HashSet<PointsToRel>> entry = iter.next();
+            last = entry.getKey();
+            return new AbstractMap.SimpleImmutableEntry
+                    <Symbol,HashSet<PointsToRel>>(entry);
+        }
+
+        public void remove() {
+            if (table == iterated && !iterated.shared) {
+                iter.remove();
+            } else {
+                PointsToDomain.this.remove(last);
             }
-            cloned.put(s, new_rels);
         }
-        return cloned;
     }
 
     /**
@@ -64,17 +335,21 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
     public boolean equals(Domain other) {
         boolean is_equal = false;
         if (other instanceof PointsToDomain) {
-            Set<Symbol> s1_set = this.keySet();
-            Set<Symbol> s2_set = ((PointsToDomain)other).keySet();
+            Table other_table = ((PointsToDomain)other).table;
+            if (table == other_table) {
+                return true;
+            }
+            Set<Symbol> s1_set = table.keySet();
+            Set<Symbol> s2_set = other_table.keySet();
             // compare their keysets, if equal, test equality of
             // points to relationships for each symbol
             if (s1_set.isEmpty() && s2_set.isEmpty()) {
                 is_equal = true;
             } else if (s1_set.equals(s2_set)) {
                 for (Symbol s1 : s1_set) {
-                    HashSet rel1_set = this.get(s1);
-                    HashSet rel2_set = ((PointsToDomain)other).get(s1);
-                    if (rel1_set.equals(rel2_set)) {
+                    HashSet rel1_set = table.get(s1);
+                    HashSet rel2_set = other_table.get(s1);
+                    if (rel1_set == rel2_set || rel1_set.equals(rel2_set)) {
                         is_equal = true;
                     } else {
                         is_equal = false;
@@ -91,12 +366,22 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
      * @param p_rel Relationship to be added
      */
     public void addRel(PointsToRel p_rel) {
-        HashSet<PointsToRel> value = this.remove(p_rel.getPointerSymbol());
-        if (value == null) {
-            value = new LinkedHashSet<PointsToRel>();
+        Table writable = getWritableTable();
+        Symbol key = p_rel.getPointerSymbol();
+        HashSet<PointsToRel> value = writable.remove(key);
+        RelSet rel_set;
+        if (value instanceof RelSet && ((RelSet)value).isWritable(writable)) {
+            rel_set = (RelSet)value;
+        } else if (value == null) {
+            rel_set = new RelSet(writable);
+        } else if (value.contains(p_rel)) {
+            writable.put(key, value);
+            return;
+        } else {
+            rel_set = new RelSet(writable, value);
         }
-        value.add(p_rel);
-        put(p_rel.getPointerSymbol(), value);
+        rel_set.addInternal(p_rel);
+        writable.put(key, rel_set);
     }
 
     /**
@@ -118,14 +403,22 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
             if (this.isEmpty()) {
                 return other_ptd.clone();
             }
-            for (Symbol s : other_ptd.keySet()) {
-                if (this.containsKey(s)) {
-                    HashSet<PointsToRel> p1_set = this.get(s);
-                    HashSet<PointsToRel> p2_set = other_ptd.get(s);
-                    HashSet<PointsToRel> merged_set =
-                            new LinkedHashSet<PointsToRel>();
-                    merged_set.addAll(this.get(s));
-                    merged_set.addAll(other_ptd.get(s));
+            for (Symbol s : other_ptd.table.keySet()) {
+                HashSet<PointsToRel> p1_set = table.get(s);
+                HashSet<PointsToRel> p2_set = other_ptd.table.get(s);
+                if (p1_set == null) {
+                    ((PointsToDomain)ret).put(s, p2_set);
+                    continue;
+                }
+                HashSet<PointsToRel> merged_set;
+                if (p1_set == p2_set && ((RelSet)p1_set).hasDistinctTails()) {
+                    // Each relationship is merged only with itself.
+                    merged_set = p1_set;
+                } else {
+                    RelSet rel_set = new RelSet(null, p1_set);
+                    for (PointsToRel p2 : p2_set) {
+                        rel_set.addInternal(p2);
+                    }
                     for (PointsToRel p1 : p1_set) {
                         for (PointsToRel p2 : p2_set) {
                             Symbol head1 = p1.getPointerSymbol();
@@ -135,25 +428,20 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
                             // Found a pair of points to relationships with the
                             // same head and tail symbols
                             if (head1.equals(head2) && tail1.equals(tail2)) {
-                                merged_set.remove(p1);
-                                merged_set.remove(p2);
+                                rel_set.removeInternal(p1);
+                                rel_set.removeInternal(p2);
                                 PointsToRel merged_p = p1.mergeRel(p2);
-                                merged_set.add(merged_p);
+                                rel_set.addInternal(merged_p);
                             }
                         }
                     }
-                    HashSet<PointsToRel> merged_set_new = 
-                            new LinkedHashSet<PointsToRel>();
-                    for (PointsToRel rel : merged_set) {
-                        PointsToRel new_rel = rel.clone();
-                        merged_set_new.add(new_rel);
-                    }
-                    ((PointsToDomain)ret).remove(s);
-                    ((PointsToDomain)ret).put(s, merged_set_new);
-                } else {
-                    PointsToDomain temp = other_ptd.clone();
-                    ((PointsToDomain)ret).put(s, temp.get(s));
+                    // The new set is owned by the result.
+                    rel_set.owner =
+                            ((PointsToDomain)ret).getWritableTable();
+                    merged_set = rel_set;
                 }
+                ((PointsToDomain)ret).remove(s);
+                ((PointsToDomain)ret).put(s, merged_set);
             }
         } else if (other instanceof NullDomain) {
             // Do nothing, return this domain itself
@@ -190,7 +478,7 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
             PointsToDomain possible_set = new PointsToDomain();
             // Obtain the definite set
             PointsToDomain intersection = (PointsToDomain)s1.intersect(s2);
-            for (Symbol s : intersection.keySet()) {
+            for (Symbol s : intersection.table.keySet()) {
                 HashSet<PointsToRel> rel_set = intersection.get(s);
                 for (PointsToRel p_rel : rel_set) {
                     if (p_rel.isDefinite()) {
@@ -198,23 +486,22 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
                     }
                 }
             }
-            // Obtain the possible set
+            // Obtain the possible set; the relationships are shared with the
+            // input domains, so the definite ones are replaced with new ones.
             PointsToDomain union = (PointsToDomain)s1.union(s2);
-            for (Symbol s : union.keySet()) {
+            for (Symbol s : union.table.keySet()) {
                 HashSet<PointsToRel> rel_set = union.get(s);
                 HashSet<PointsToRel> definite_rels = definite_set.get(s);
                 if (definite_rels == null) {
                     for(PointsToRel p_rel : rel_set) {
-                        p_rel.setPossible();
-                        possible_set.addRel(p_rel);
+                        possible_set.addRel(toPossible(p_rel));
                     }
                 } else {
                     for (PointsToRel p_rel : rel_set) {
                         Symbol tail = p_rel.getPointedToSymbol();
                         for (PointsToRel def_rel : definite_rels) {
                             if (!(tail.equals(def_rel.getPointedToSymbol()))) {
-                                p_rel.setPossible();
-                                possible_set.addRel(p_rel);
+                                possible_set.addRel(toPossible(p_rel));
                             }
                         }
                     }
@@ -234,6 +521,15 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
         return merged;
     }
 
+    // Returns the possible version of the specified relationship.
+    private static PointsToRel toPossible(PointsToRel rel) {
+        if (rel.isDefinite()) {
+            return new PointsToRel(
+                    rel.getPointerSymbol(), rel.getPointedToSymbol(), false);
+        }
+        return rel;
+    }
+
     /**
      * Extract all pointer relationships that are 
      * identical in the other points-to domain and 
@@ -244,18 +540,20 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
         if (other instanceof PointsToDomain) {
             PointsToDomain other_ptd = (PointsToDomain)other;
             ret = new PointsToDomain();
-            Set<Symbol> s1_set = other_ptd.keySet();
+            Set<Symbol> s1_set = other_ptd.table.keySet();
             for (Symbol s1 : s1_set) {
-                HashSet<PointsToRel> rel1_set = other_ptd.get(s1);
-                HashSet<PointsToRel> rel2_set = this.get(s1);
-                if (rel1_set != null && rel2_set != null) {
+                HashSet<PointsToRel> rel1_set = other_ptd.table.get(s1);
+                HashSet<PointsToRel> rel2_set = table.get(s1);
+                if (rel1_set == rel2_set) {
+                    // Each relationship intersects only with itself.
+                    if (!rel1_set.isEmpty()) {
+                        store(ret.table, s1, rel1_set);
+                    }
+                } else if (rel1_set != null && rel2_set != null) {
                     for (PointsToRel p1_rel : rel1_set) {
-                        for (PointsToRel p2_rel : rel2_set) {
-                            if (p1_rel.equals(p2_rel)) {
-                                // Found an intersecting relationship
-                                PointsToRel intersect_rel = p1_rel.clone();
-                                ret.addRel(intersect_rel);
-                            }
+                        if (rel2_set.contains(p1_rel)) {
+                            // Found an intersecting relationship
+                            ret.addRel(p1_rel);
                         }
                     }
                 }
@@ -284,24 +582,33 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
         if (other instanceof PointsToDomain) {
             PointsToDomain other_ptd = (PointsToDomain)other;
             ret = this.clone();
-            Set<Symbol> keys = other_ptd.keySet();
+            Set<Symbol> keys = other_ptd.table.keySet();
             for (Symbol s : keys) {
-                HashSet<PointsToRel> other_p_rel = other_ptd.get(s);
-                HashSet<PointsToRel> this_p_rel = this.get(s);
-                if (this_p_rel != null) {
-                    for (PointsToRel p1_rel : other_p_rel) {
-                        for (PointsToRel p2_rel : this_p_rel) {
-                            if (p1_rel.equals(p2_rel)) {
-                                HashSet<PointsToRel> ret_p_rel = ret.get(s);
-                                ret_p_rel.remove(p2_rel);
-                                if (ret_p_rel.isEmpty()) {
-                                    ret.remove(s);
-                                }
-                            }
+                HashSet<PointsToRel> other_p_rel = other_ptd.table.get(s);
+                HashSet<PointsToRel> this_p_rel = table.get(s);
+                if (this_p_rel == null) {
+                    continue;
+                }
+                RelSet ret_p_rel = null;
+                if (this_p_rel.isEmpty()) {
+                    continue;
+                } else if (this_p_rel != other_p_rel) {
+                    ret_p_rel = new RelSet(null);
+                    for (PointsToRel p_rel : this_p_rel) {
+                        if (!other_p_rel.contains(p_rel)) {
+                            ret_p_rel.addInternal(p_rel);
                         }
                     }
+                    if (ret_p_rel.size() == this_p_rel.size()) {
+                        continue;
+                    }
+                }
+                if (ret_p_rel == null || ret_p_rel.isEmpty()) {
+                    ret.remove(s);
+                } else {
+                    ret_p_rel.owner = ret.getWritableTable();
+                    ret.put(s, ret_p_rel);
                 }
-                //((PointsToDomain)ret).remove(s);
             }
         }
         // If other is Universe, it contains points to 
@@ -333,9 +640,9 @@ public class PointsToDomain extends LinkedHashMap<Symbol,HashSet<PointsToRel>>
      */
     public Domain killSet(Set<Symbol> exps) {
         PointsToDomain kill_set = new PointsToDomain();
-        for (Symbol s : this.keySet()) {
+        for (Symbol s : table.keySet()) {
             if (exps.contains(s)) {
-                kill_set.put(s, this.get(s));
+                store(kill_set.table, s, table.get(s));
             }
         }
         return kill_set;
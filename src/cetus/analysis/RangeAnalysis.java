@@ -4,6 +4,7 @@ import cetus.exec.Driver;
 import cetus.hir.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * RangeAnalysis performs symbolic range propagation for the programs by
@@ -48,6 +49,13 @@ import java.util.*;
  * RangeDomain range_domain = range_map.get(statement);
  * // range_domain now contains the set of value ranges for the statement.
  * </pre>
+ * With the sparse option ({@code -range=4}), nodes that neither define
+ * variables nor constrain them share the incoming range domain of their
+ * single predecessor instead of merging and copying it, and
+ * {@link #query(Statement)} keeps the unfiltered per-statement domains of a
+ * procedure and materializes the filtered domain of a statement only when the
+ * statement is queried. The computed ranges are the same as the ones from the
+ * default intra-procedural analysis.
  * Following example shows a function and its range map created after the
  * range analysis.
  * <pre>
@@ -87,6 +95,8 @@ public class RangeAnalysis extends AnalysisPass
     public static final int RANGE_INTER = 2;
     /** Option for enforcing use of range pragma and constraint */
     public static final int RANGE_PRAGMA = 3; // TODO: publishable?
+    /** Option for sparse intra-procedural analysis with lazy queries */
+    public static final int RANGE_SPARSE = 4;
     /** Range analysis option */
     private static int option;
     /** Read-only Literals */
@@ -117,12 +127,16 @@ public class RangeAnalysis extends AnalysisPass
     }
 
     /**
-    * Interprocedural input.
+    * Interprocedural input, which is local to the thread analyzing the
+    * procedure since the interprocedural solver may analyze several procedures
+    * at the same time.
     * ip_node: the procedure node to be processed.
     * ip_cfg : the procedure control flow graph to be processed.
     */
-    private static IPANode ip_node = null;
-    private static CFGraph ip_cfg = null;
+    private static final ThreadLocal<IPANode> ip_node =
+            new ThreadLocal<IPANode>();
+    private static final ThreadLocal<CFGraph> ip_cfg =
+            new ThreadLocal<CFGraph>();
 
     /** Result of interprocedural range analysis. */
     private static Map<Procedure, Map<Statement, RangeDomain>> ip_ranges = null;
@@ -135,9 +149,30 @@ public class RangeAnalysis extends AnalysisPass
     * invalidation if a transformation pass is called
     */
     private static final Map<Statement, RangeDomain> range_domains =
-            new HashMap<Statement, RangeDomain>();
+            new ConcurrentHashMap<Statement, RangeDomain>();
     private static final RangeDomain empty_range = new RangeDomain();
 
+    /**
+    * Unfiltered range domains of the procedures analyzed in the sparse mode,
+    * from which the filtered domain of a statement is created upon a query.
+    */
+    private static final Map<Procedure, SparseRanges> sparse_ranges =
+            new HashMap<Procedure, SparseRanges>();
+
+    /** Unfiltered range domains of a procedure with the scopes seen so far. */
+    private static class SparseRanges {
+        // Map from statements to the range domains shared by the statements
+        // connected with copy nodes.
+        private final Map<Statement, RangeDomain> ranges;
+        // Visible symbols of the symbol tables enclosing queried statements.
+        private final Map<SymbolTable, Set<Symbol>> scopes;
+
+        private SparseRanges(Map<Statement, RangeDomain> ranges) {
+            this.ranges = ranges;
+            scopes = new HashMap<SymbolTable, Set<Symbol>>();
+        }
+    }
+
     // TODO: experimental code
     private static final Set<String> safe_functions = new HashSet<String>();
     static {
@@ -258,6 +293,29 @@ public class RangeAnalysis extends AnalysisPass
     private static Map<Statement, RangeDomain>
             getRangeMap(Traversable root, CFGraph cfg) {
         // Step 1: Filters nodes without any associated statement.
+        Map<Statement, RangeDomain> ret = collectRanges(cfg);
+        // Domains shared by copy nodes are filtered separately.
+        if (option == RANGE_SPARSE) {
+            Set<RangeDomain> shared = Collections.newSetFromMap(
+                    new IdentityHashMap<RangeDomain, Boolean>());
+            for (Map.Entry<Statement, RangeDomain> entry : ret.entrySet()) {
+                if (!shared.add(entry.getValue())) {
+                    entry.setValue(new RangeDomain(entry.getValue()));
+                }
+            }
+        }
+        // Step 2: Filters potentially unsafe range information. This is
+        // required because CFGraph and Traversable cannot exchangeable each
+        // other 100%, in terms of scope information.
+        filterUnsafeRanges(root, ret);
+        return ret;
+    }
+
+    /**
+    * Collects the range domains of the statements from the specified control
+    * flow graph decorated with value ranges.
+    */
+    private static Map<Statement, RangeDomain> collectRanges(CFGraph cfg) {
         Map<Statement, RangeDomain> ret = new HashMap<Statement, RangeDomain>();
         for (int i = 0; i < cfg.size(); i++) {
             DFANode node = cfg.getNode(i);
@@ -268,10 +326,6 @@ public class RangeAnalysis extends AnalysisPass
                 ret.put((Statement)o, rd);
             }
         }
-        // Step 2: Filters potentially unsafe range information. This is
-        // required because CFGraph and Traversable cannot exchangeable each
-        // other 100%, in terms of scope information.
-        filterUnsafeRanges(root, ret);
         return ret;
     }
 
@@ -297,22 +351,33 @@ public class RangeAnalysis extends AnalysisPass
             outer = IRTools.getAncestorOfType(outer, SymbolTable.class);
         }
         for (Statement stmt : ranges.keySet()) {
-            RangeDomain rd = ranges.get(stmt);
-            Iterator<Symbol> var_iter = rd.getSymbols().iterator();
-            while (var_iter.hasNext()) {
-                Symbol var = var_iter.next();
-                if (isPointer(var) || !isWithinScope(stmt, var, scopes)) {
-                    var_iter.remove();
-                } else {
-                    DFIterator<Identifier> id_iter = new DFIterator<Identifier>(
-                            rd.getRange(var), Identifier.class);
-                    while (id_iter.hasNext()) {
-                        Symbol id_symbol = id_iter.next().getSymbol();
-                        if (isPointer(id_symbol) ||
-                            !isWithinScope(stmt, id_symbol, scopes)) {
-                            var_iter.remove();
-                            break;
-                        }
+            filterUnsafeRanges(stmt, ranges.get(stmt), scopes);
+        }
+    }
+
+    /**
+    * Removes any range information of the statement that is not within a
+    * valid scope or does contain pointer types.
+    * @param stmt the statement.
+    * @param rd the computed ranges for the statement.
+    * @param scopes the visible symbols of the enclosing symbol tables.
+    */
+    private static void filterUnsafeRanges(Statement stmt, RangeDomain rd,
+            Map<SymbolTable, Set<Symbol>> scopes) {
+        Iterator<Symbol> var_iter = rd.getSymbols().iterator();
+        while (var_iter.hasNext()) {
+            Symbol var = var_iter.next();
+            if (isPointer(var) || !isWithinScope(stmt, var, scopes)) {
+                var_iter.remove();
+            } else {
+                DFIterator<Identifier> id_iter = new DFIterator<Identifier>(
+                        rd.getRange(var), Identifier.class);
+                while (id_iter.hasNext()) {
+                    Symbol id_symbol = id_iter.next().getSymbol();
+                    if (isPointer(id_symbol) ||
+                        !isWithinScope(stmt, id_symbol, scopes)) {
+                        var_iter.remove();
+                        break;
                     }
                 }
             }
@@ -542,6 +607,10 @@ public class RangeAnalysis extends AnalysisPass
                         ": Returning empty ranges as requested......");
                 ret = getEmptyRanges(symtab);
                 break;
+            case RANGE_SPARSE:
+                PrintTools.printlnStatus(1, tag, proc_name,
+                        ": Computing sparse local ranges......");
+                break;
             case RANGE_PRAGMA: // only intra analysis is possible for this mode
             case RANGE_INTRA:
             default:
@@ -557,20 +626,7 @@ public class RangeAnalysis extends AnalysisPass
             }
         }
 
-        Traversable root = symtab;
-        while (root != null && root.getClass() != Program.class)
-            root = root.getParent();
-
-        CFGraph cfg = new CFGraph(symtab);
-        cfg.normalize();
-        cfg.topologicalSort(cfg.getNodeWith("stmt", "ENTRY"));
-        iterateToFixpoint(cfg, true);
-        iterateToFixpoint(cfg, false);
-        if (debug >= 3) {
-            System.err.println(cfg.toDot("top-order,ranges,ir,tag", 3));
-        }
-
-        ret = getRangeMap(symtab, cfg);
+        ret = getRangeMap(symtab, getLocalRangeCFG(symtab));
 
         // Inserts an empty range if there is no associated range domain.
         RangeDomain empty = new RangeDomain();
@@ -588,6 +644,24 @@ public class RangeAnalysis extends AnalysisPass
         return ret;
     }
 
+    /**
+    * Performs intra-procedural range analysis for the symbol table and returns
+    * the control flow graph decorated with value ranges.
+    */
+    private static CFGraph getLocalRangeCFG(SymbolTable symtab) {
+        CFGraph cfg = new CFGraph(symtab);
+        cfg.normalize();
+        DFANode entry = cfg.getNodeWith("stmt", "ENTRY");
+        cfg.topologicalSort(entry);
+        DataFlowGraph dfg = new DataFlowGraph(cfg, entry);
+        iterateToFixpoint(cfg, dfg, true);
+        iterateToFixpoint(cfg, dfg, false);
+        if (debug >= 3) {
+            System.err.println(cfg.toDot("top-order,ranges,ir,tag", 3));
+        }
+        return cfg;
+    }
+
     /**
     * Returns the fine-grain result of range analysis with the given
     * interprocedural input. "node" represents a procedure whose IPA results are
@@ -597,20 +671,21 @@ public class RangeAnalysis extends AnalysisPass
     * inside a procedure.
     */
     protected static CFGraph getRangeCFG(IPANode node) {
-        ip_node = node;
+        ip_node.set(node);
         debug = PrintTools.getVerbosity();
         CFGraph ret = new CFGraph(node.getProcedure());
         ret.normalize();
         DFANode entry_node = ret.getEntry();
         ret.topologicalSort(entry_node);
-        ip_cfg = ret;
+        ip_cfg.set(ret);
         Domain in0 = node.in();
         if (in0 instanceof RangeDomain)
             entry_node.putData("ranges", ((RangeDomain)in0).clone());
-        iterateToFixpoint(ret, true);
-        iterateToFixpoint(ret, false);
-        ip_node = null;
-        ip_cfg = null;
+        DataFlowGraph dfg = new DataFlowGraph(ret, entry_node);
+        iterateToFixpoint(ret, dfg, true);
+        iterateToFixpoint(ret, dfg, false);
+        ip_node.remove();
+        ip_cfg.remove();
         return ret;
     }
 
@@ -647,7 +722,8 @@ public class RangeAnalysis extends AnalysisPass
             return new RangeDomain();
         CFGraph cfg = new CFGraph(stmt);
         cfg.normalize();
-        cfg.topologicalSort(cfg.getNodeWith("stmt", "ENTRY"));
+        DFANode entry = cfg.getNodeWith("stmt", "ENTRY");
+        cfg.topologicalSort(entry);
         DFANode last = cfg.getNodeWith("top-order", new Integer(cfg.size()-1));
         DFANode exit = new DFANode("stmt", "EXIT");
         exit.putData("top-order", new Integer(cfg.size()));
@@ -655,7 +731,7 @@ public class RangeAnalysis extends AnalysisPass
         // Exit node is necessary because Range Analysis computes only in-range.
         // Maybe CFGraph needs flow exit always but it breaks the range
         // analysis, so it needs to be revisited later.
-        iterateToFixpoint(cfg, true);
+        iterateToFixpoint(cfg, new DataFlowGraph(cfg, entry), true);
         RangeDomain ret = exit.getData("ranges");
         if (ret == null)
             ret = new RangeDomain();
@@ -684,50 +760,60 @@ public class RangeAnalysis extends AnalysisPass
         return false;
     }
 
-    // Marks the node having a back edge by comparing topological order
-    private static void setBackedge(DFANode node) {
-        int my_order = (Integer)node.getData("top-order");
-        for (DFANode pred : node.getPreds()) {
-            if (my_order < (Integer)pred.getData("top-order")) {
-                node.putData("has-backedge", new Boolean(true));
-                break;
-            }
-        }
-    }
-
-    // Fixpoint iteration
-    private static void iterateToFixpoint(CFGraph g, boolean widen) {
-        TreeMap<Integer, DFANode> work_list = new TreeMap<Integer, DFANode> ();
+    // Fixpoint iteration; the node ids of the data flow graph are the
+    // topological order of the nodes, so the work list is a bit set of ids.
+    private static void
+            iterateToFixpoint(CFGraph g, DataFlowGraph dfg, boolean widen) {
+        BitSet work_list = new BitSet(dfg.getNumReachable());
+        BitSet copy_nodes =
+                (option == RANGE_SPARSE) ? getCopyNodes(g, dfg) : null;
         // Add the entry node to the work list for widening phase.
         if (widen) {
-            DFANode entry = g.getNodeWith("stmt", "ENTRY");
+            DFANode entry = dfg.getNode(0);
             if (entry.getData("ranges") == null)
                 entry.putData("ranges", new RangeDomain());
-            work_list.put((Integer) entry.getData("top-order"), entry);
+            work_list.set(0);
         } else {
         // Add the widened nodes to the work list for narrowing phase.
-            for (int i = 0; i < g.size(); ++i) {
-                DFANode widened = g.getNode(i);
-                if (widened.getData("has-backedge") != null) {
-                    work_list.put((Integer)widened.getData("top-order"),
-                                  widened);
+            for (int i = 0; i < dfg.getNumReachable(); ++i) {
+                if (dfg.hasBackEdge(i) &&
+                    dfg.getNode(i).getData("num-visits") != null) {
+                    work_list.set(i);
                 }
             }
         }
-        while (work_list.size() > 0) {
+        int node_num;
+        while ((node_num = work_list.nextSetBit(0)) >= 0) {
             // Get the first node in topological order from the work list.
-            Integer node_num = work_list.firstKey();
-            DFANode node = work_list.remove(node_num);
+            work_list.clear(node_num);
+            DFANode node = dfg.getNode(node_num);
+            boolean has_backedge = dfg.hasBackEdge(node_num);
             // Record number of iterations for each node.
             Integer visits = node.getData("num-visits");
             if (visits == null) {
                 node.putData("num-visits", new Integer(1));
-                setBackedge(node);
             } else {
                 node.putData("num-visits", new Integer(visits + 1));
             }
             PrintTools.printlnStatus(3, tag, "Visited Node#", node_num);
             PrintTools.printlnStatus(3, tag, "  IR =",CFGraph.getIR(node));
+            // Copy nodes pass the state of the predecessor as it is.
+            if (copy_nodes != null && copy_nodes.get(node_num)) {
+                DFANode pred = dfg.getNode(dfg.getPred(node_num, 0));
+                RangeDomain ranges_in = node.getPredData(pred);
+                RangeDomain prev_ranges = node.getData("ranges");
+                if (ranges_in != null && prev_ranges != ranges_in &&
+                    (prev_ranges == null || !prev_ranges.equals(ranges_in))) {
+                    node.putData("ranges", ranges_in);
+                    for (DFANode succ : node.getSuccs()) {
+                        succ.putPredData(node, ranges_in);
+                    }
+                    for (int k = 0; k < dfg.getNumSuccs(node_num); k++) {
+                        work_list.set(dfg.getSucc(node_num, k));
+                    }
+                }
+                continue;
+            }
             // Merge incoming states from predecessors.
             RangeDomain curr_ranges = null;
             for (DFANode pred : node.getPreds()) {
@@ -747,7 +833,7 @@ public class RangeAnalysis extends AnalysisPass
             enterScope(node, curr_ranges);
             // Widening/Narrowing operations.
             RangeDomain prev_ranges = node.getData("ranges");
-            if (prev_ranges != null && node.getData("has-backedge") != null) {
+            if (prev_ranges != null && has_backedge) {
                 if (widen) {
                     Set<Symbol> widener = node.getData("loop-variants");
                     // Selective widening only with loop-variant symbols.
@@ -786,19 +872,51 @@ public class RangeAnalysis extends AnalysisPass
                 // Clean up after exiting a scope.
                 exitScope(node);
                 // Process successors.
-                for (DFANode succ : node.getSuccs()) {
+                for (int k = 0; k < dfg.getNumSuccs(node_num); k++) {
+                    int succ_num = dfg.getSucc(node_num, k);
+                    Object succ_in = dfg.getNode(succ_num).getPredData(node);
                     // Do not add successors for infeasible paths
-                    if (succ.getPredData(node) != null) {
-                        work_list.put((Integer)succ.getData("top-order"), succ);
+                    if (succ_in != null) {
+                        work_list.set(succ_num);
                         PrintTools.printlnStatus(3, tag, "  OUT#",
-                                succ.getData("top-order"), "=",
-                                succ.getPredData(node));
+                                succ_num, "=", succ_in);
                     }
                 }
             }
         }
     }
 
+    // Returns the set of nodes that only copy the state of their single
+    // predecessor to the successors; these nodes do not enter or exit a scope
+    // and are processed by updateSafeNode() in the dense mode.
+    private static BitSet getCopyNodes(CFGraph g, DataFlowGraph dfg) {
+        BitSet ret = new BitSet(dfg.getNumReachable());
+        DFANode entry = g.getEntry();
+        for (int i = 1; i < dfg.getNumReachable(); i++) {
+            DFANode node = dfg.getNode(i);
+            if (node == entry || dfg.getNumPreds(i) != 1 ||
+                dfg.hasBackEdge(i) ||
+                node.getData("symbol-entry") != null ||
+                node.getData("symbol-exit") != null) {
+                continue;
+            }
+            Object o = CFGraph.getIR(node);
+            if (o instanceof ExpressionStatement) {
+                o = ((ExpressionStatement)o).getExpression();
+            }
+            if (o instanceof AssignmentExpression ||
+                o instanceof BinaryExpression ||
+                o instanceof SwitchStatement ||
+                o instanceof Traversable && (
+                IRTools.containsClass((Traversable)o, VaArgExpression.class) ||
+                IRTools.containsClass((Traversable)o, FunctionCall.class))) {
+                continue;
+            }
+            ret.set(i);
+        }
+        return ret;
+    }
+
     // Add intialized values from the declarations.
     private static void enterScope(DFANode node, RangeDomain ranges) {
         SymbolTable st = node.getData("symbol-entry");
@@ -916,7 +1034,7 @@ public class RangeAnalysis extends AnalysisPass
                 return;
             }
             if (IRTools.containsClass(t, FunctionCall.class)) {
-                if (ip_node == null) {
+                if (ip_node.get() == null) {
                     updateFunctionCall(node);
                 } else {
                     updateFunctionCallWithIPA(node);
@@ -981,7 +1099,9 @@ public class RangeAnalysis extends AnalysisPass
     // Update function call's ranges using the interprocedural input.
     @SuppressWarnings("unchecked")
     private static void updateFunctionCallWithIPA(DFANode node) {
-        Map<CallSite, Domain> maymods = ip_node.getData(MayMod.tag + "CallOUT");
+        IPANode proc_node = ip_node.get();
+        Map<CallSite, Domain> maymods =
+                proc_node.getData(MayMod.tag + "CallOUT");
         Domain range = new RangeDomain((RangeDomain)node.getData("ranges"));
         Domain fc_gen = null;
         Traversable tr = (Traversable)CFGraph.getIR(node);
@@ -993,7 +1113,7 @@ public class RangeAnalysis extends AnalysisPass
                 new DFIterator<FunctionCall>(tr, FunctionCall.class);
         while (iter.hasNext()) {
             FunctionCall fc = iter.next();
-            CallSite call_site = ip_node.getCallSite(fc);
+            CallSite call_site = proc_node.getCallSite(fc);
             Domain maymod = maymods.get(call_site);
             if (maymod instanceof SetDomain) {
                 range.kill((Set<Symbol>)maymod);
@@ -1447,12 +1567,54 @@ public class RangeAnalysis extends AnalysisPass
                         "Range cannot be retrieved for an orphan statement.");
                 ret = empty_range;
             } else {
-                PrintTools.printlnStatus(1, tag,
-                        "Invoking range analysis for", proc.getName());
-                range_domains.putAll(getRanges(proc));
-                ret = range_domains.get(stmt);
+                // Range computation uses static fields, so only one thread
+                // may compute ranges at a time.
+                synchronized (range_domains) {
+                    ret = range_domains.get(stmt);
+                    if (ret == null && option == RANGE_SPARSE) {
+                        ret = querySparse(proc, stmt);
+                        range_domains.put(stmt, ret);
+                    } else if (ret == null) {
+                        PrintTools.printlnStatus(1, tag,
+                                "Invoking range analysis for", proc.getName());
+                        range_domains.putAll(getRanges(proc));
+                        ret = range_domains.get(stmt);
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+    * Returns the range domain of the statement in the sparse mode. The
+    * unfiltered range domains of the procedure are computed at the first
+    * query, and only the domain of the queried statement is filtered.
+    */
+    private static RangeDomain querySparse(Procedure proc, Statement stmt) {
+        SparseRanges sparse = sparse_ranges.get(proc);
+        if (sparse == null) {
+            PrintTools.printlnStatus(1, tag,
+                    "Invoking sparse range analysis for", proc.getName());
+            alias = new AliasAnalysis(
+                    IRTools.getAncestorOfType(proc, Program.class));
+            alias.start();
+            sparse = new SparseRanges(collectRanges(getLocalRangeCFG(proc)));
+            sparse_ranges.put(proc, sparse);
+        }
+        RangeDomain rd = sparse.ranges.get(stmt);
+        if (rd == null) {
+            return new RangeDomain();
+        }
+        SymbolTable symtab = IRTools.getAncestorOfType(stmt, SymbolTable.class);
+        while (symtab != null) {
+            if (!sparse.scopes.containsKey(symtab)) {
+                sparse.scopes.put(symtab, symtab.getSymbols());
             }
+            symtab = IRTools.getAncestorOfType(symtab, SymbolTable.class);
         }
+        RangeDomain ret = new RangeDomain(rd);
+        filterUnsafeRanges(stmt, ret, sparse.scopes);
         return ret;
     }
 
@@ -1461,7 +1623,42 @@ public class RangeAnalysis extends AnalysisPass
     * passes need to call this method.
     */
     public static void invalidate() {
-        range_domains.clear();
+        synchronized (range_domains) {
+            range_domains.clear();
+            sparse_ranges.clear();
+        }
+    }
+
+    /**
+    * Invalidates range domains of the statements in the specified procedures
+    * and of the statements no longer in the IR. The specified procedures
+    * should include the callers of the modified procedures since the ranges
+    * depend on the side effects of the callees. If interprocedural ranges
+    * were computed for any of the procedures, they are invalidated together
+    * with all range domains since the ranges of the callees depend on the
+    * callers.
+    * @param procs the procedures whose range domains are invalidated.
+    */
+    public static void invalidate(Set<Procedure> procs) {
+        if (ip_ranges != null) {
+            for (Procedure proc : procs) {
+                if (ip_ranges.containsKey(proc)) {
+                    ip_ranges = null;
+                    invalidate();
+                    return;
+                }
+            }
+        }
+        synchronized (range_domains) {
+            Iterator<Statement> iter = range_domains.keySet().iterator();
+            while (iter.hasNext()) {
+                Procedure proc = iter.next().getProcedure();
+                if (proc == null || procs.contains(proc)) {
+                    iter.remove();
+                }
+            }
+            sparse_ranges.keySet().removeAll(procs);
+        }
     }
 
     /**
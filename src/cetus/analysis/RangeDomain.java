@@ -48,7 +48,8 @@ public class RangeDomain implements Cloneable, Domain {
 
     // Global cache for expression comparison
     private static Cache<List<Object>, Relation> global_cache =
-            new Cache<List<Object>, Relation>(COMPARISON_CACHE_SIZE);
+            new Cache<List<Object>, Relation>(
+            "range comparisons", COMPARISON_CACHE_SIZE);
 
     // Debug level
     private static int debug =
@@ -46,15 +46,17 @@ public class RangeTest implements DDTest {
 
     // Loop variants cache
     private static Cache<Loop, Set<Symbol>>
-            loop_variants = new Cache<Loop, Set<Symbol>>();
+            loop_variants = new Cache<Loop, Set<Symbol>>("loop variants", 64);
 
     // Expression range cache.
     private static Cache<List<Object>, Expression>
-            expr_range_cache = new Cache<List<Object>, Expression>();
+            expr_range_cache = new Cache<List<Object>, Expression>(
+            "expression ranges", 64);
 
     // RangeTest cache.
     private static Cache<List<Traversable>, RangeTest>
-            rtest_cache = new Cache<List<Traversable>, RangeTest>();
+            rtest_cache = new Cache<List<Traversable>, RangeTest>(
+            "range tests", 64);
 
     // Tag
     private static final String tag = "[RangeTest]";
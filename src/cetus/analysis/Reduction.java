@@ -40,6 +40,7 @@
 package cetus.analysis;
 
 import cetus.exec.Driver;
+import cetus.exec.IncrementalState;
 import cetus.hir.*;
 import java.util.*;
 
@@ -87,6 +88,9 @@ public class Reduction extends AnalysisPass {
                 new DFIterator<ForLoop>(program, ForLoop.class);
         while (iter.hasNext()) {
             ForLoop loop = iter.next();
+            if (IncrementalState.isReused(loop)) {
+                continue;
+            }
             // find reduction variables in a loop
             Map<String, Set<Expression>> reduce_map = analyzeStatement(loop);
             // Insert reduction Annotation to the current loop
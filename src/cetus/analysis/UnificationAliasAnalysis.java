@@ -0,0 +1,772 @@
+package cetus.analysis;
+
+import cetus.hir.*;
+
+import java.util.*;
+
+/**
+* Unification-based alias analysis computes flow-insensitive and
+* context-insensitive alias sets for the whole program in almost linear time.
+* The algorithm is based on "Points-to analysis in almost linear time",
+* POPL'96 (Steensgaard). Memory locations are partitioned into equivalence
+* classes kept in a union-find structure, and each class has at most one
+* pointed-to class; an assignment between pointers unifies the classes pointed
+* to by both sides instead of adding points-to relations. Struct members and
+* array elements are not distinguished from their enclosing variables, and
+* heap objects are represented by one class per allocation site.
+* <p>
+* Calls through function pointers are resolved with the procedures in the
+* class pointed to by the function pointer, and the arguments passed to an
+* unknown procedure are unified with a class that represents all locations
+* reachable from the unknown code. The alias set of a variable consists of
+* the variables connected with it through the points-to relations between the
+* classes, which is the same grouping that {@link AliasAnalysis} derives from
+* the points-to relations of {@link IPPointsToAnalysis}. This analysis is used
+* when the interprocedural points-to analysis is too expensive for the input
+* program.
+*
+* @see AliasAnalysis
+* @see IPPointsToAnalysis
+*/
+public class UnificationAliasAnalysis extends AnalysisPass {
+
+    // Pass name
+    private static final String pass_name = "[UnificationAlias]";
+
+    // Absence of a class.
+    private static final int NONE = -1;
+
+    /**
+    * Result of the analysis; it maps each symbol to its alias set, which is
+    * shared by the members of the set. Symbols without aliases are not in the
+    * map. This is declared as static to be reused if reanalysis is not
+    * necessary.
+    */
+    private static Map<Symbol, Set<Symbol>> alias_sets;
+
+    // Union-find forest of the classes and the pointed-to class of each root.
+    private int[] parent, rank, pointee;
+
+    // Number of classes created so far.
+    private int num_classes;
+
+    // Class of the location of each symbol.
+    private final Map<Symbol, Integer> locations;
+
+    // Class of the locations pointed to by the return value of procedures.
+    private final Map<Procedure, Integer> returns;
+
+    // Procedures defined in the program.
+    private final Map<String, Procedure> procedures;
+
+    // Type definitions in the program and whether they may hold pointers.
+    private final Map<String, Symbol> typedefs;
+    private final Map<String, Boolean> pointer_typedefs;
+
+    // Classes of the procedures that are not defined in the program.
+    private final Set<Integer> external_functions;
+
+    // Calls through function pointers.
+    private final List<IndirectCall> indirect_calls;
+
+    // Class of the locations reachable from unknown procedures.
+    private int external;
+
+    // Procedure being visited.
+    private Procedure current_proc;
+
+    /** Call through a function pointer and the targets linked so far. */
+    private static class IndirectCall {
+        private final int callee;
+        private final int[] args;
+        private final int result;
+        private final Set<Procedure> targets;
+        private boolean external;
+
+        private IndirectCall(int callee, int[] args, int result) {
+            this.callee = callee;
+            this.args = args;
+            this.result = result;
+            targets = new HashSet<Procedure>();
+        }
+    }
+
+    /**
+    * Constructs a new unification-based alias analyzer.
+    * @param program the input program.
+    */
+    public UnificationAliasAnalysis(Program program) {
+        super(program);
+        parent = new int[64];
+        rank = new int[64];
+        pointee = new int[64];
+        locations = new HashMap<Symbol, Integer>();
+        returns = new HashMap<Procedure, Integer>();
+        procedures = new HashMap<String, Procedure>();
+        typedefs = new HashMap<String, Symbol>();
+        pointer_typedefs = new HashMap<String, Boolean>();
+        external_functions = new HashSet<Integer>();
+        indirect_calls = new ArrayList<IndirectCall>();
+    }
+
+    public String getPassName() {
+        return pass_name;
+    }
+
+    /**
+    * Returns the alias set of the given symbol, which includes the symbol
+    * itself. The program is analyzed if the result is invalid.
+    * @param program the program containing the symbol.
+    * @param symbol the symbol being queried.
+    * @return the alias set, or null if the symbol has no aliases.
+    */
+    public static synchronized Set<Symbol>
+            getAliasSet(Program program, Symbol symbol) {
+        updateAliasSets(program);
+        return alias_sets.get(symbol);
+    }
+
+    /**
+    * Computes the alias sets of the given program if the previous result is
+    * invalid.
+    * @param program the program to be analyzed.
+    */
+    public static synchronized void updateAliasSets(Program program) {
+        if (alias_sets == null) {
+            UnificationAliasAnalysis analysis =
+                    new UnificationAliasAnalysis(program);
+            analysis.start();
+        }
+    }
+
+    /**
+    * Invalidates the analysis result. A transformation pass should trigger
+    * this operation.
+    */
+    public static synchronized void invalidate() {
+        alias_sets = null;
+    }
+
+    /**
+    * Starts unification-based alias analysis.
+    */
+    public void start() {
+        double timer = Tools.getTime();
+        DFIterator<Procedure> proc_iter =
+                new DFIterator<Procedure>(program, Procedure.class);
+        proc_iter.pruneOn(Procedure.class);
+        while (proc_iter.hasNext()) {
+            Procedure proc = proc_iter.next();
+            procedures.put(proc.getSymbolName(), proc);
+        }
+        DFIterator<VariableDeclaration> decl_iter =
+                new DFIterator<VariableDeclaration>(
+                        program, VariableDeclaration.class);
+        decl_iter.pruneOn(VariableDeclaration.class);
+        while (decl_iter.hasNext()) {
+            VariableDeclaration decl = decl_iter.next();
+            if (decl.isTypedef()) {
+                for (Symbol symbol : decl.getDeclaredSymbols()) {
+                    typedefs.put(symbol.getSymbolName(), symbol);
+                }
+            }
+        }
+        external = newClass();
+        join(getPointee(external), external);
+        // Visits the top-level expressions, initializers, and return
+        // statements of the whole program in one pass.
+        DFIterator<Traversable> iter =
+                new DFIterator<Traversable>(program, Traversable.class);
+        iter.pruneOn(Expression.class);
+        iter.pruneOn(Declarator.class);
+        iter.pruneOn(ReturnStatement.class);
+        while (iter.hasNext()) {
+            Traversable t = iter.next();
+            if (t instanceof Procedure) {
+                current_proc = (Procedure)t;
+            } else if (t instanceof Expression) {
+                eval((Expression)t);
+            } else if (t instanceof VariableDeclarator ||
+                       t instanceof NestedDeclarator) {
+                Initializer init = ((Declarator)t).getInitializer();
+                if (init != null) {
+                    initialize((Symbol)t, init);
+                }
+            } else if (t instanceof ReturnStatement) {
+                Expression e = ((ReturnStatement)t).getExpression();
+                if (e != null) {
+                    int value = eval(e);
+                    if (value != NONE && current_proc != null &&
+                        isPointerType(current_proc.getReturnType())) {
+                        join(getReturn(current_proc), value);
+                    }
+                }
+            }
+        }
+        resolveIndirectCalls();
+        alias_sets = collectAliasSets();
+        PrintTools.printlnStatus(1, pass_name, num_classes, "classes,",
+                indirect_calls.size(), "indirect calls,", alias_sets.size(),
+                "aliased symbols in",
+                String.format("%.2f seconds", Tools.getTime(timer)));
+        if (PrintTools.getVerbosity() >= 3) {
+            Set<Set<Symbol>> printed = new HashSet<Set<Symbol>>();
+            for (Set<Symbol> alias_set : alias_sets.values()) {
+                if (printed.add(alias_set)) {
+                    PrintTools.printlnStatus(3, pass_name, "{",
+                            PrintTools.collectionToString(alias_set, ", "),
+                            "}");
+                }
+            }
+        }
+    }
+
+    // ========================================================================
+    // Union-find structure of the classes
+    // ========================================================================
+
+    // Creates a new class.
+    private int newClass() {
+        if (num_classes == parent.length) {
+            int length = parent.length * 2;
+            parent = Arrays.copyOf(parent, length);
+            rank = Arrays.copyOf(rank, length);
+            pointee = Arrays.copyOf(pointee, length);
+        }
+        int ret = num_classes++;
+        parent[ret] = ret;
+        rank[ret] = 0;
+        pointee[ret] = NONE;
+        return ret;
+    }
+
+    // Returns the representative of the class.
+    private int find(int c) {
+        int root = c;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[c] != root) {
+            int next = parent[c];
+            parent[c] = root;
+            c = next;
+        }
+        return root;
+    }
+
+    // Returns the class pointed to by the class, creating one if necessary.
+    private int getPointee(int c) {
+        int root = find(c);
+        if (pointee[root] == NONE) {
+            int ret = newClass();
+            pointee[root] = ret;
+            return ret;
+        }
+        return find(pointee[root]);
+    }
+
+    // Unifies the two classes and, recursively, their pointed-to classes.
+    private void join(int c1, int c2) {
+        LinkedList<int[]> work_list = new LinkedList<int[]>();
+        work_list.add(new int[] {c1, c2});
+        while (!work_list.isEmpty()) {
+            int[] pair = work_list.removeFirst();
+            int root1 = find(pair[0]), root2 = find(pair[1]);
+            if (root1 == root2) {
+                continue;
+            }
+            if (rank[root1] < rank[root2]) {
+                int temp = root1;
+                root1 = root2;
+                root2 = temp;
+            } else if (rank[root1] == rank[root2]) {
+                rank[root1]++;
+            }
+            parent[root2] = root1;
+            int pointee1 = pointee[root1], pointee2 = pointee[root2];
+            if (pointee1 == NONE) {
+                pointee[root1] = pointee2;
+            } else if (pointee2 != NONE) {
+                work_list.add(new int[] {pointee1, pointee2});
+            }
+        }
+    }
+
+    // ========================================================================
+    // Constraint generation
+    // ========================================================================
+
+    // Returns the class of the location of the symbol.
+    private int getLocation(Symbol symbol) {
+        Integer ret = locations.get(symbol);
+        if (ret == null) {
+            ret = newClass();
+            locations.put(symbol, ret);
+        }
+        return ret;
+    }
+
+    // Returns the class pointed to by the return value of the procedure.
+    private int getReturn(Procedure proc) {
+        Integer ret = returns.get(proc);
+        if (ret == null) {
+            ret = newClass();
+            returns.put(proc, ret);
+        }
+        return ret;
+    }
+
+    // Returns the procedure defined for the function symbol, or null.
+    private Procedure getProcedure(Symbol symbol) {
+        if (symbol instanceof Procedure) {
+            return (Procedure)symbol;
+        }
+        return procedures.get(symbol.getSymbolName());
+    }
+
+    // Checks if the symbol represents a function; function pointers are
+    // nested declarators and are handled as pointer variables.
+    private static boolean isFunction(Symbol symbol) {
+        return (symbol instanceof Procedure ||
+                symbol instanceof ProcedureDeclarator);
+    }
+
+    // Checks if the type specifiers may describe a pointer; structs and
+    // unknown types are assumed to contain pointers.
+    private boolean isPointerType(List<?> specs) {
+        if (specs == null) {
+            return true;
+        }
+        for (Object spec : specs) {
+            if (spec instanceof PointerSpecifier) {
+                return true;
+            } else if (spec instanceof UserSpecifier) {
+                UserSpecifier user = (UserSpecifier)spec;
+                if (user.isStructure() ||
+                    isPointerTypedef(user.getIDExpression().toString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Checks if the type definition may describe a pointer.
+    private boolean isPointerTypedef(String name) {
+        Boolean ret = pointer_typedefs.get(name);
+        if (ret == null) {
+            pointer_typedefs.put(name, Boolean.TRUE);   // in case of a cycle.
+            Symbol definition = typedefs.get(name);
+            ret = (definition == null || isPointerSymbol(definition));
+            pointer_typedefs.put(name, ret);
+        }
+        return ret;
+    }
+
+    // Checks if the symbol may hold a pointer; nested declarators, e.g.,
+    // function pointers, are assumed to be pointers.
+    private boolean isPointerSymbol(Symbol symbol) {
+        return (symbol instanceof NestedDeclarator ||
+                SymbolTools.isPointer(symbol) || SymbolTools.isArray(symbol) ||
+                isPointerType(symbol.getTypeSpecifiers()));
+    }
+
+    // Checks if the value of the expression may be a pointer.
+    private boolean isPointerValue(Expression e) {
+        if (e instanceof Identifier &&
+            ((Identifier)e).getSymbol() != null) {
+            return isPointerSymbol(((Identifier)e).getSymbol());
+        }
+        return isPointerType(SymbolTools.getExpressionType(e));
+    }
+
+    // Returns the number of array dimensions of the symbol.
+    private static int getNumDimensions(Symbol symbol) {
+        int ret = 0;
+        for (Object spec : symbol.getArraySpecifiers()) {
+            if (spec instanceof ArraySpecifier) {
+                ret += ((ArraySpecifier)spec).getNumDimensions();
+            }
+        }
+        return ret;
+    }
+
+    // Processes the initializer of the declared symbol.
+    private void initialize(Symbol symbol, Initializer init) {
+        boolean is_pointer = isPointerSymbol(symbol);
+        for (Traversable child : init.getChildren()) {
+            if (child instanceof Initializer) {
+                initialize(symbol, (Initializer)child);
+            } else if (child instanceof Expression) {
+                int value = eval((Expression)child);
+                if (value != NONE && is_pointer) {
+                    join(getPointee(getLocation(symbol)), value);
+                }
+            }
+        }
+    }
+
+    /**
+    * Returns the class of the location designated by the given expression,
+    * or NONE if it is not an lvalue. Subexpressions are also processed.
+    */
+    private int lvalue(Expression e) {
+        if (e instanceof Identifier) {
+            Symbol symbol = ((Identifier)e).getSymbol();
+            if (symbol == null) {
+                return NONE;
+            }
+            Procedure proc = (isFunction(symbol)) ? getProcedure(symbol) : null;
+            return getLocation((proc != null) ? proc : symbol);
+        } else if (e instanceof ArrayAccess) {
+            ArrayAccess access = (ArrayAccess)e;
+            for (Expression index : access.getIndices()) {
+                eval(index);
+            }
+            return eval(access.getArrayName());
+        } else if (e instanceof AccessExpression) {
+            AccessExpression access = (AccessExpression)e;
+            if (access.getOperator() == AccessOperator.MEMBER_ACCESS) {
+                return lvalue(access.getLHS());
+            } else {
+                return eval(access.getLHS());
+            }
+        } else if (e instanceof UnaryExpression &&
+                   ((UnaryExpression)e).getOperator() ==
+                   UnaryOperator.DEREFERENCE) {
+            return eval(((UnaryExpression)e).getExpression());
+        } else if (e instanceof Typecast) {
+            return lvalue(((Typecast)e).getExpression());
+        } else {
+            eval(e);
+            return NONE;
+        }
+    }
+
+    /**
+    * Returns the class of the locations pointed to by the value of the given
+    * expression, or NONE if the value is not a pointer. Side effects of the
+    * expression, i.e., assignments and calls, are processed.
+    */
+    private int eval(Expression e) {
+        if (e instanceof Identifier) {
+            Symbol symbol = ((Identifier)e).getSymbol();
+            if (symbol == null) {
+                return NONE;
+            } else if (isFunction(symbol)) {
+                // A function designator points to the function itself.
+                Procedure proc = getProcedure(symbol);
+                if (proc != null) {
+                    return getLocation(proc);
+                }
+                int ret = getLocation(symbol);
+                external_functions.add(ret);
+                return ret;
+            } else if (SymbolTools.isArray(symbol) &&
+                       !SymbolTools.isFormal(symbol)) {
+                return getLocation(symbol);
+            } else if (isPointerSymbol(symbol)) {
+                return getPointee(getLocation(symbol));
+            } else {
+                return NONE;
+            }
+        } else if (e instanceof AssignmentExpression) {
+            AssignmentExpression assign = (AssignmentExpression)e;
+            int value = eval(assign.getRHS());
+            int location = lvalue(assign.getLHS());
+            if (location == NONE || !isPointerValue(assign.getLHS())) {
+                return NONE;
+            }
+            if (assign.getOperator() == AssignmentOperator.NORMAL) {
+                if (value != NONE) {
+                    join(getPointee(location), value);
+                }
+                return value;
+            }
+            return getPointee(location);
+        } else if (e instanceof ArrayAccess) {
+            ArrayAccess access = (ArrayAccess)e;
+            int location = lvalue(access);
+            if (location == NONE) {
+                return NONE;
+            }
+            // Partial subscripts of an array decay to a pointer.
+            Symbol array = SymbolTools.getSymbolOf(access.getArrayName());
+            if (array != null && !SymbolTools.isFormal(array) &&
+                access.getNumIndices() < getNumDimensions(array)) {
+                return location;
+            }
+            return (isPointerValue(e)) ? getPointee(location) : NONE;
+        } else if (e instanceof AccessExpression) {
+            int location = lvalue(e);
+            if (location == NONE) {
+                return NONE;
+            }
+            Expression member = ((AccessExpression)e).getRHS();
+            if (member instanceof Identifier) {
+                Symbol symbol = ((Identifier)member).getSymbol();
+                if (symbol != null && SymbolTools.isArray(symbol)) {
+                    return location;
+                }
+            }
+            return (isPointerValue(e)) ? getPointee(location) : NONE;
+        } else if (e instanceof UnaryExpression) {
+            UnaryExpression ue = (UnaryExpression)e;
+            UnaryOperator op = ue.getOperator();
+            if (op == UnaryOperator.ADDRESS_OF) {
+                return lvalue(ue.getExpression());
+            } else if (op == UnaryOperator.DEREFERENCE) {
+                int location = lvalue(ue);
+                if (location == NONE || !isPointerValue(e)) {
+                    return NONE;
+                }
+                return getPointee(location);
+            } else if (op == UnaryOperator.PLUS ||
+                       op == UnaryOperator.POST_DECREMENT ||
+                       op == UnaryOperator.POST_INCREMENT ||
+                       op == UnaryOperator.PRE_DECREMENT ||
+                       op == UnaryOperator.PRE_INCREMENT) {
+                return eval(ue.getExpression());
+            } else {
+                eval(ue.getExpression());
+                return NONE;
+            }
+        } else if (e instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression)e;
+            int lhs = eval(be.getLHS());
+            int rhs = eval(be.getRHS());
+            BinaryOperator op = be.getOperator();
+            if (op == BinaryOperator.ADD) {
+                if (lhs != NONE && rhs != NONE) {
+                    join(lhs, rhs);
+                }
+                return (lhs != NONE) ? lhs : rhs;
+            } else if (op == BinaryOperator.SUBTRACT) {
+                // Difference of two pointers is an integer.
+                return (rhs == NONE) ? lhs : NONE;
+            } else {
+                return NONE;
+            }
+        } else if (e instanceof ConditionalExpression) {
+            ConditionalExpression ce = (ConditionalExpression)e;
+            eval(ce.getCondition());
+            int value1 = eval(ce.getTrueExpression());
+            int value2 = eval(ce.getFalseExpression());
+            if (value1 != NONE && value2 != NONE) {
+                join(value1, value2);
+            }
+            return (value1 != NONE) ? value1 : value2;
+        } else if (e instanceof CommaExpression) {
+            int ret = NONE;
+            for (Traversable child : e.getChildren()) {
+                ret = eval((Expression)child);
+            }
+            return ret;
+        } else if (e instanceof Typecast) {
+            return eval(((Typecast)e).getExpression());
+        } else if (e instanceof FunctionCall) {
+            return evalCall((FunctionCall)e);
+        } else if (e instanceof StringLiteral) {
+            return newClass();
+        } else if (e instanceof SizeofExpression) {
+            return NONE;
+        } else {
+            for (Traversable child : e.getChildren()) {
+                if (child instanceof Expression) {
+                    eval((Expression)child);
+                }
+            }
+            return NONE;
+        }
+    }
+
+    /**
+    * Processes the given function call and returns the class pointed to by
+    * its return value.
+    */
+    private int evalCall(FunctionCall fcall) {
+        int[] args = new int[fcall.getNumArguments()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = eval(fcall.getArgument(i));
+        }
+        Expression name = fcall.getName();
+        while (name instanceof UnaryExpression &&
+               ((UnaryExpression)name).getOperator() ==
+               UnaryOperator.DEREFERENCE) {
+            name = ((UnaryExpression)name).getExpression();
+        }
+        Symbol symbol = (name instanceof Identifier) ?
+                ((Identifier)name).getSymbol() : null;
+        if (symbol != null && isFunction(symbol)) {
+            Procedure proc = getProcedure(symbol);
+            if (proc != null) {
+                return linkCall(proc, args);
+            } else if (IPPointsToAnalysis.isSafeLibraryCall(fcall)) {
+                int position =
+                        IPPointsToAnalysis.getLibraryReturnPosition(fcall);
+                if (position == 0) {
+                    return newClass();
+                } else if (position > 0 && position <= args.length) {
+                    return args[position - 1];
+                } else {
+                    return NONE;
+                }
+            } else {
+                return linkUnknownCall(args);
+            }
+        }
+        // Calls through function pointers are resolved later.
+        int callee = eval(name);
+        if (callee == NONE) {
+            return linkUnknownCall(args);
+        }
+        IndirectCall call = new IndirectCall(callee, args, newClass());
+        indirect_calls.add(call);
+        return call.result;
+    }
+
+    // Unifies the arguments with the formal parameters of the procedure, and
+    // returns the class pointed to by its return value.
+    private int linkCall(Procedure proc, int[] args) {
+        List<?> params = proc.getParameters();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == NONE) {
+                continue;
+            }
+            Symbol param = null;
+            if (i < params.size() &&
+                params.get(i) instanceof VariableDeclaration) {
+                VariableDeclaration decl = (VariableDeclaration)params.get(i);
+                if (decl.getNumDeclarators() == 1 &&
+                    decl.getDeclarator(0) instanceof Symbol) {
+                    param = (Symbol)decl.getDeclarator(0);
+                }
+            }
+            if (param == null) {
+                // Variable arguments are treated as escaping to unknown code.
+                join(args[i], external);
+            } else if (isPointerSymbol(param)) {
+                join(getPointee(getLocation(param)), args[i]);
+            }
+        }
+        return (isPointerType(proc.getReturnType())) ? getReturn(proc) : NONE;
+    }
+
+    // Unifies the arguments and the return value of an unknown procedure with
+    // the locations reachable from unknown code.
+    private int linkUnknownCall(int[] args) {
+        for (int arg : args) {
+            if (arg != NONE) {
+                join(arg, external);
+            }
+        }
+        return external;
+    }
+
+    /**
+    * Links the calls through function pointers with the procedures pointed to
+    * by the function pointers until no more procedure is found. Linking a
+    * procedure may unify other function pointers with more procedures.
+    */
+    private void resolveIndirectCalls() {
+        boolean changed = !indirect_calls.isEmpty();
+        while (changed) {
+            changed = false;
+            Map<Integer, List<Procedure>> targets =
+                    new HashMap<Integer, List<Procedure>>();
+            for (Procedure proc : procedures.values()) {
+                Integer location = locations.get(proc);
+                if (location == null) {
+                    continue;   // the procedure is never used as a value.
+                }
+                int root = find(location);
+                List<Procedure> procs = targets.get(root);
+                if (procs == null) {
+                    procs = new ArrayList<Procedure>();
+                    targets.put(root, procs);
+                }
+                procs.add(proc);
+            }
+            Set<Integer> unknown_targets = new HashSet<Integer>();
+            for (int location : external_functions) {
+                unknown_targets.add(find(location));
+            }
+            unknown_targets.add(find(external));
+            for (IndirectCall call : indirect_calls) {
+                int root = find(call.callee);
+                List<Procedure> procs = targets.get(root);
+                if (procs != null) {
+                    for (Procedure proc : procs) {
+                        if (call.targets.add(proc)) {
+                            int value = linkCall(proc, call.args);
+                            if (value != NONE) {
+                                join(call.result, value);
+                            }
+                            changed = true;
+                        }
+                    }
+                }
+                if (!call.external && unknown_targets.contains(root)) {
+                    call.external = true;
+                    join(call.result, linkUnknownCall(call.args));
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // ========================================================================
+    // Alias sets
+    // ========================================================================
+
+    /**
+    * Groups the variables connected through the points-to relations between
+    * the classes, and returns the map from each variable to its group.
+    */
+    private Map<Symbol, Set<Symbol>> collectAliasSets() {
+        // Connected components of the points-to graph of the classes.
+        int[] component = new int[num_classes];
+        for (int i = 0; i < num_classes; i++) {
+            component[i] = i;
+        }
+        for (int i = 0; i < num_classes; i++) {
+            if (parent[i] == i && pointee[i] != NONE) {
+                int c1 = findComponent(component, i);
+                int c2 = findComponent(component, find(pointee[i]));
+                component[c1] = c2;
+            }
+        }
+        Map<Integer, Set<Symbol>> groups =
+                new HashMap<Integer, Set<Symbol>>();
+        for (Symbol symbol : locations.keySet()) {
+            if (isFunction(symbol)) {
+                continue;
+            }
+            int c = findComponent(component, find(locations.get(symbol)));
+            Set<Symbol> group = groups.get(c);
+            if (group == null) {
+                group = new LinkedHashSet<Symbol>();
+                groups.put(c, group);
+            }
+            group.add(symbol);
+        }
+        Map<Symbol, Set<Symbol>> ret = new HashMap<Symbol, Set<Symbol>>();
+        for (Set<Symbol> group : groups.values()) {
+            if (group.size() > 1) {
+                Set<Symbol> alias_set = Collections.unmodifiableSet(group);
+                for (Symbol symbol : group) {
+                    ret.put(symbol, alias_set);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static int findComponent(int[] component, int c) {
+        while (component[c] != c) {
+            component[c] = component[component[c]];
+            c = component[c];
+        }
+        return c;
+    }
+}
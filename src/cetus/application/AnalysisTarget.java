@@ -88,7 +88,7 @@ public class AnalysisTarget {
         return (Set<AnalysisTarget>) data.get("def_chain");
     }
 
-    public void addUseChain(AnalysisTarget use) {
+    public synchronized void addUseChain(AnalysisTarget use) {
         if (this.getDFANode().getData("param") != null) {
             if (this.getProcedure().equals(use.getProcedure()) == false) {
                 return;
@@ -102,7 +102,7 @@ public class AnalysisTarget {
         chain.add(use);
     }
 
-    public void addDefChain(AnalysisTarget def) {
+    public synchronized void addDefChain(AnalysisTarget def) {
         Set<AnalysisTarget> chain = getDefChain();
         if (chain == null) {
             chain = new HashSet<AnalysisTarget>();
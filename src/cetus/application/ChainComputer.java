@@ -1,5 +1,6 @@
 package cetus.application;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
@@ -16,7 +17,6 @@ import cetus.analysis.Domain;
 import cetus.analysis.IPPointsToAnalysis;
 import cetus.analysis.PointsToDomain;
 import cetus.analysis.PointsToRel;
-import cetus.application.ChainTools.MyType;
 import cetus.hir.ArrayAccess;
 import cetus.hir.BinaryExpression;
 import cetus.hir.ConditionalExpression;
@@ -47,6 +47,26 @@ public class ChainComputer implements Runnable {
     private Map<Procedure, Set<AnalysisTarget>> defTargetSetMap;
     private Map<Procedure, Set<AnalysisTarget>> useTargetSetMap;
 
+    // Procedures with at least twice this number of CFG nodes are split into
+    // sub-tasks of this number of nodes.
+    private static final int SUBTASK_SIZE = 512;
+
+    // Nodes and reaching definitions of a sub-task, null for the top task.
+    private List<DFANode> subtaskNodes;
+    private AnalysisTarget[] subtaskDefTargets;
+
+    // Chains found by a sub-task in the order they were found.
+    private List<PendingChain> pendingChains;
+
+    // A use chain of def (use is not null) or a def chain of useExpression.
+    private static class PendingChain {
+        AnalysisTarget def;
+        AnalysisTarget use;
+        Expression useExpression;
+        DFANode node;
+        Procedure proc;
+    }
+
 	public ChainComputer(
 			Procedure proc,
 			Map<Procedure, CFGraph> cfgMap,
@@ -62,11 +82,22 @@ public class ChainComputer implements Runnable {
 		this.defTargetSetMap = defTargetSetMap;
 		this.useTargetSetMap = useTargetSetMap;
 	}
+
+	// Creates a sub-task that computes the chains for the specified nodes.
+	private ChainComputer(ChainComputer parent, List<DFANode> nodeList, AnalysisTarget[] defTargetArray) {
+		this(parent.targetProc, parent.cfgMap, parent.globalDefSet, parent.globalUseSet, parent.defTargetSetMap, parent.useTargetSetMap);
+		this.subtaskNodes = nodeList;
+		this.subtaskDefTargets = defTargetArray;
+		this.pendingChains = new ArrayList<PendingChain>();
+	}
 	
 	@Override
 	public void run() {
-		// TODO Auto-generated method stub
-		computeChain();
+		if (subtaskNodes != null) {
+			computeChain(subtaskNodes, subtaskDefTargets, cfgMap.get(targetProc));
+		} else {
+			computeChain();
+		}
 	}
 	
 	private void computeChain() {
@@ -74,9 +105,32 @@ public class ChainComputer implements Runnable {
         AnalysisTarget[] defTargetArray = getDefTargetArray(targetProc);
         handleLocalStaticVariables(targetProc, defTargetArray);
         CFGraph cfg = cfgMap.get(targetProc);
+        List<DFANode> nodeList = new ArrayList<DFANode>(cfg.size());
         Iterator iter = cfg.iterator();
         while (iter.hasNext()) {
-            DFANode cfgNode = (DFANode) iter.next();
+            nodeList.add((DFANode) iter.next());
+        }
+        if (nodeList.size() < 2 * SUBTASK_SIZE) {
+            computeChain(nodeList, defTargetArray, cfg);
+        } else {
+            // The sub-tasks only record the chains they find, and the chains
+            // are added in the order of the nodes after all the sub-tasks
+            // finish so the result does not depend on the schedule.
+            List<ChainComputer> subtasks = new ArrayList<ChainComputer>();
+            for (int i = 0; i < nodeList.size(); i += SUBTASK_SIZE) {
+                List<DFANode> subList = nodeList.subList(i, Math.min(i + SUBTASK_SIZE, nodeList.size()));
+                subtasks.add(new ChainComputer(this, subList, defTargetArray));
+            }
+            TaskScheduler.invokeAll(subtasks);
+            for (ChainComputer subtask : subtasks) {
+                subtask.applyPendingChains();
+            }
+        }
+    	System.out.println("[ChainComputer.computeChain]End   proc: " + targetProc.getSymbolName() + ", time: " + (new Date()).toString());
+	}
+
+    private void computeChain(List<DFANode> nodeList, AnalysisTarget[] defTargetArray, CFGraph cfg) {
+        for (DFANode cfgNode : nodeList) {
             Object nodeIR = CFGraph.getIR(cfgNode);
             if (nodeIR instanceof VariableDeclarator) {
                 if (ChainTools.isDefinedArrayDeclarator((VariableDeclarator) nodeIR)) {
@@ -149,7 +203,7 @@ public class ChainComputer implements Runnable {
 	                                            for (AnalysisTarget target : inUSE) {
 	                                                for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                                         if (defTargetArray[i].getExpression().equals(idEx)) {
-                                                            defTargetArray[i].addUseChain(target);
+                                                            addUseChain(defTargetArray[i], target);
                                                             addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                                                         }
 	                                                }
@@ -162,7 +216,7 @@ public class ChainComputer implements Runnable {
 	                                        for (AnalysisTarget target : inUSE) {
 	                                            for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                                     if (defTargetArray[i].getExpression().equals(idEx)) {
-                                                        defTargetArray[i].addUseChain(target);
+                                                        addUseChain(defTargetArray[i], target);
                                                         addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                                                     }
 	                                            }
@@ -178,7 +232,7 @@ public class ChainComputer implements Runnable {
 	                                            for (AnalysisTarget target : inUSE) {
 	                                                for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                                         if (defTargetArray[i].getExpression().equals(idEx)) {
-                                                            defTargetArray[i].addUseChain(target);
+                                                            addUseChain(defTargetArray[i], target);
                                                             addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                                                         }
 	                                                }
@@ -191,7 +245,7 @@ public class ChainComputer implements Runnable {
 	                                        for (AnalysisTarget target : inUSE) {
 	                                            for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                                     if (defTargetArray[i].getExpression().equals(idEx)) {
-                                                        defTargetArray[i].addUseChain(target);
+                                                        addUseChain(defTargetArray[i], target);
                                                         addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                                                     }
 	                                            }
@@ -206,7 +260,7 @@ public class ChainComputer implements Runnable {
 	                                        for (AnalysisTarget target : inUSE) {
 	                                            for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                                     if (defTargetArray[i].getExpression().equals(idEx)) {
-                                                        defTargetArray[i].addUseChain(target);
+                                                        addUseChain(defTargetArray[i], target);
                                                         addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                                                     }
 	                                            }
@@ -219,7 +273,7 @@ public class ChainComputer implements Runnable {
 	                                    for (AnalysisTarget target : inUSE) {
 	                                        for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                                 if (defTargetArray[i].getExpression().equals(idEx)) {
-                                                    defTargetArray[i].addUseChain(target);
+                                                    addUseChain(defTargetArray[i], target);
                                                     addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                                                 }
 	                                        }
@@ -240,7 +294,7 @@ public class ChainComputer implements Runnable {
                             for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                 for (int idx = bitInUSE.nextSetBit(0); idx >= 0; idx = bitInUSE.nextSetBit(idx+1)) {
                                     if (defTargetArray[i].getExpression().equals(globalUseArray[idx].getExpression())) {
-                                        defTargetArray[i].addUseChain(globalUseArray[idx]);
+                                        addUseChain(defTargetArray[i], globalUseArray[idx]);
                                         addUseDefChain(defTargetArray[i], globalUseArray[idx].getExpression(), globalUseArray[idx].getDFANode(), globalUseArray[idx].getProcedure());
                                     }
                                 }
@@ -249,7 +303,7 @@ public class ChainComputer implements Runnable {
                             for (int i = globalDefInSet.nextSetBit(0); i >= 0; i = globalDefInSet.nextSetBit(i+1)) {
                                 for (int idx = bitInUSE.nextSetBit(0); idx >= 0; idx = bitInUSE.nextSetBit(idx+1)) {
                                     if (globalDefArray[i].getExpression().equals(globalUseArray[idx].getExpression())) {
-                                    	globalDefArray[i].addUseChain(globalUseArray[idx]);
+                                    	addUseChain(globalDefArray[i], globalUseArray[idx]);
                                         addUseDefChain(globalDefArray[i], globalUseArray[idx].getExpression(), globalUseArray[idx].getDFANode(), globalUseArray[idx].getProcedure());
                                     }
                                 }
@@ -265,7 +319,7 @@ public class ChainComputer implements Runnable {
                             for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                 for (int idx = bitInUSE.nextSetBit(0); idx >= 0; idx = bitInUSE.nextSetBit(idx+1)) {
                                     if (defTargetArray[i].getExpression().equals(globalUseArray[idx].getExpression())) {
-                                        defTargetArray[i].addUseChain(globalUseArray[idx]);
+                                        addUseChain(defTargetArray[i], globalUseArray[idx]);
                                         addUseDefChain(defTargetArray[i], globalUseArray[idx].getExpression(), globalUseArray[idx].getDFANode(), globalUseArray[idx].getProcedure());
                                     }
                                 }
@@ -286,7 +340,7 @@ public class ChainComputer implements Runnable {
                         for (AnalysisTarget target : inUSE) {
                             for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                 if (defTargetArray[i].getExpression().equals(param)) {
-                                    defTargetArray[i].addUseChain(target);
+                                    addUseChain(defTargetArray[i], target);
                                     addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                                 } else { // handle special case
                                 	if (ChainTools.isStructureAccess(target.getExpression(), target.getProcedure())) {
@@ -300,7 +354,7 @@ public class ChainComputer implements Runnable {
                 	            				continue;
                 	            			}
 //                	            			System.out.println("Add chain in special alias case: currentUse: " + target.getExpression() + ", reaching def: " + defTargetArray[i].getExpression());
-                                            defTargetArray[i].addUseChain(target);
+                                            addUseChain(defTargetArray[i], target);
                                             addUseDefChain(defTargetArray[i], target.getExpression(), target.getDFANode(), target.getProcedure());
                 	            		}
                	            		}
@@ -318,7 +372,7 @@ public class ChainComputer implements Runnable {
                     for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                         for (int idx = bitInUSE.nextSetBit(0); idx >= 0; idx = bitInUSE.nextSetBit(idx+1)) {
                             if (defTargetArray[i].getExpression().equals(globalUseArray[idx].getExpression())) {
-                                defTargetArray[i].addUseChain(globalUseArray[idx]);
+                                addUseChain(defTargetArray[i], globalUseArray[idx]);
                                 addUseDefChain(defTargetArray[i], globalUseArray[idx].getExpression(), globalUseArray[idx].getDFANode(), globalUseArray[idx].getProcedure());
                             }
                         }
@@ -326,8 +380,7 @@ public class ChainComputer implements Runnable {
                 }
             }
         }
-    	System.out.println("[ChainComputer.computeChain]End   proc: " + targetProc.getSymbolName() + ", time: " + (new Date()).toString());
-	}
+    }
 
     private AnalysisTarget[] getDefTargetArray(Procedure proc) {
         Set<AnalysisTarget> targetSet = defTargetSetMap.get(proc);
@@ -346,38 +399,62 @@ public class ChainComputer implements Runnable {
         return useTargetArray;
     }
 	
+    private void addUseChain(AnalysisTarget def, AnalysisTarget use) {
+        if (pendingChains == null) {
+            def.addUseChain(use);
+        } else {
+            PendingChain chain = new PendingChain();
+            chain.def = def;
+            chain.use = use;
+            pendingChains.add(chain);
+        }
+    }
+
     private void addUseDefChain(AnalysisTarget def, Expression use, DFANode node, Procedure proc) {
+        if (pendingChains == null) {
+            applyUseDefChain(def, use, node, proc);
+        } else {
+            PendingChain chain = new PendingChain();
+            chain.def = def;
+            chain.useExpression = use;
+            chain.node = node;
+            chain.proc = proc;
+            pendingChains.add(chain);
+        }
+    }
+
+    private void applyPendingChains() {
+        for (PendingChain chain : pendingChains) {
+            if (chain.use != null) {
+                chain.def.addUseChain(chain.use);
+            } else {
+                applyUseDefChain(chain.def, chain.useExpression, chain.node, chain.proc);
+            }
+        }
+        pendingChains = null;
+    }
+
+    private void applyUseDefChain(AnalysisTarget def, Expression use, DFANode node, Procedure proc) {
         if (def.getDFANode().getData("param") != null) {
             if (def.getProcedure().equals(proc) == false) {
                 return;
             }
         }
         Expression idEx = null;
-    	HashMap<MyType, Boolean> typeMap = ChainTools.typeCache.get(System.identityHashCode(use));
-    	boolean isArrayAccessWithConstantIndex;
-    	if (typeMap != null) {
-    		Boolean b = typeMap.get(MyType.ArrayWithConstantIndex);
-    		if (b != null) {
-    			isArrayAccessWithConstantIndex = b.booleanValue();
-    		} else {
-    			isArrayAccessWithConstantIndex = ChainTools.isArrayAccessWithConstantIndex(use);
-    		}
-    	} else {
-    		isArrayAccessWithConstantIndex = ChainTools.isArrayAccessWithConstantIndex(use);
-    	}
+    	boolean isArrayAccessWithConstantIndex = ChainTools.isArrayAccessWithConstantIndex(use);
         if (isArrayAccessWithConstantIndex) {
 //        if (ChainTools.isArrayAccessWithConstantIndex(use)) {
             idEx = use;
         } else {
             idEx = ChainTools.getIDExpression(use);
         }
-        Set<AnalysisTarget> useTargetSet = useTargetSetMap.get(proc);
-        if (useTargetSet == null) {
-            useTargetSet = new LinkedHashSet<AnalysisTarget>();
-            useTargetSetMap.put(proc, useTargetSet);
-        }
         boolean useFound = false;
         synchronized (useTargetSetMap) {
+            Set<AnalysisTarget> useTargetSet = useTargetSetMap.get(proc);
+            if (useTargetSet == null) {
+                useTargetSet = new LinkedHashSet<AnalysisTarget>();
+                useTargetSetMap.put(proc, useTargetSet);
+            }
             for (AnalysisTarget useTarget : useTargetSet) {
                 if (System.identityHashCode(useTarget.getExpression()) == System.identityHashCode(idEx)) {
                     useTarget.addDefChain(def);
@@ -403,7 +480,7 @@ public class ChainComputer implements Runnable {
             for (int i = 0; i < defSetArray.length; i++) {
                 if (ChainTools.hasSameToString(defSetArray[i].getExpression(), currentUse) &&
                         ChainTools.isDefInItself(cfgNode, defSetArray[i].getExpression(), currentUse)) {
-                    defSetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                    addUseChain(defSetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                     addUseDefChain(defSetArray[i], currentUse, cfgNode, proc);
                     defFound = true;
                     break;
@@ -413,7 +490,7 @@ public class ChainComputer implements Runnable {
             	BitSet inBitSet = cfgNode.getData("InSet");
             	for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                     if (ChainTools.hasSameToString(defSetArray[i].getExpression(), currentUse)) {
-                        defSetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                        addUseChain(defSetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                         addUseDefChain(defSetArray[i], currentUse, cfgNode, proc);
                     }
                 }
@@ -432,7 +509,7 @@ public class ChainComputer implements Runnable {
             for (int i = 0; i < defSetArray.length; i++) {
                 if (ChainTools.hasSameToString(defSetArray[i].getExpression(), currentUse) &&
                         ChainTools.isNestedDefInItself(cfgNode, defSetArray[i].getExpression(), currentUse)) {
-                    defSetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                    addUseChain(defSetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                     addUseDefChain(defSetArray[i], currentUse, cfgNode, proc);
                     defFound = true;
                     break;
@@ -442,7 +519,7 @@ public class ChainComputer implements Runnable {
             	BitSet inBitSet = cfgNode.getData("InSet");
             	for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                     if (ChainTools.hasSameToString(defSetArray[i].getExpression(), currentUse)) {
-                        defSetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                        addUseChain(defSetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                         addUseDefChain(defSetArray[i], currentUse, cfgNode, proc);
                     }
                 }
@@ -510,44 +587,11 @@ public class ChainComputer implements Runnable {
             DFANode cfgNode,
             Procedure proc) {
     	// check
-    	HashMap<MyType, Boolean> typeMap = ChainTools.typeCache.get(System.identityHashCode(currentUse));
-    	boolean isArrayAccessWithConstantIndex, isArrayAccessWithNoIndex,
-    			isArrayAccessWithPartiallyConstantIndex, isArrayAccessWithVariableIndex;
-    	if (typeMap != null) {
-    		Boolean b = typeMap.get(MyType.ArrayWithConstantIndex);
-    		// constanct idx
-    		if (b != null) {
-    			isArrayAccessWithConstantIndex = b.booleanValue();
-    		} else {
-    			isArrayAccessWithConstantIndex = ChainTools.isArrayAccessWithConstantIndex(currentUse);
-    		}
-    		// with no idx
-    		b = typeMap.get(MyType.ArrayWithNoIndex);
-    		if (b != null) {
-    			isArrayAccessWithNoIndex = b.booleanValue();
-    		} else {
-    			isArrayAccessWithNoIndex = ChainTools.isArrayAccessWithNoIndex(currentUse);
-    		}
-    		//
-    		b = typeMap.get(MyType.ArrayWithPartiallyConstantIndex);
-    		if (b != null) {
-    			isArrayAccessWithPartiallyConstantIndex = b.booleanValue();
-    		} else {
-    			isArrayAccessWithPartiallyConstantIndex = ChainTools.isArrayAccessWithPartiallyConstantIndex(currentUse);
-    		}
-    		//
-    		b = typeMap.get(MyType.ArrayWithVariableIndex);
-    		if (b != null) {
-    			isArrayAccessWithVariableIndex = b.booleanValue();
-    		} else {
-    			isArrayAccessWithVariableIndex = ChainTools.isArrayAccessWithVariableIndex(currentUse);
-    		}
-    	} else {
-    		isArrayAccessWithConstantIndex = ChainTools.isArrayAccessWithConstantIndex(currentUse);
-    		isArrayAccessWithNoIndex = ChainTools.isArrayAccessWithNoIndex(currentUse);
-    		isArrayAccessWithVariableIndex = ChainTools.isArrayAccessWithVariableIndex(currentUse);
-    		isArrayAccessWithPartiallyConstantIndex = ChainTools.isArrayAccessWithPartiallyConstantIndex(currentUse);
-    	}
+    	// the classification is cached in ChainTools.typeCache
+    	boolean isArrayAccessWithConstantIndex = ChainTools.isArrayAccessWithConstantIndex(currentUse);
+    	boolean isArrayAccessWithNoIndex = ChainTools.isArrayAccessWithNoIndex(currentUse);
+    	boolean isArrayAccessWithPartiallyConstantIndex = ChainTools.isArrayAccessWithPartiallyConstantIndex(currentUse);
+    	boolean isArrayAccessWithVariableIndex = ChainTools.isArrayAccessWithVariableIndex(currentUse);
     	//
         if (isArrayAccessWithNoIndex ||
         		isArrayAccessWithVariableIndex ||
@@ -558,7 +602,7 @@ public class ChainComputer implements Runnable {
         	BitSet inBitSet = cfgNode.getData("InSet");
         	for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                 if (ChainTools.hasSameArrayIdentifier(currentUse, defTargetArray[i].getExpression())) {
-                    defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                    addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                     addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                 }
             }
@@ -569,11 +613,11 @@ public class ChainComputer implements Runnable {
                 if (ChainTools.hasSameArrayIdentifier(currentUse, defTargetArray[i].getExpression())) {
                     if (ChainTools.isArrayAccessWithConstantIndex(defTargetArray[i].getExpression())) {
                         if (ChainTools.hasSameToString(currentUse, defTargetArray[i].getExpression())) {
-                            defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                            addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                             addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                         }
                     } else {
-                        defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                        addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                         addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                     }
                 }
@@ -598,14 +642,14 @@ public class ChainComputer implements Runnable {
                     // use: var->member, def: var->member case
                     if (ChainTools.isArrayAccessInStruct(currentUse, proc)) {
                         if (ChainTools.hasSameArrayAccessInStruct(defTargetArray[i].getExpression(), currentUse, proc)) {
-                            defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                            addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                             addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                         }
                     } else {
                         if (ChainTools.hasSameToString(
                                 ChainTools.getIDVariablePlusMemberInStruct(defTargetArray[i].getExpression()),
                                 ChainTools.getIDVariablePlusMemberInStruct(currentUse))) {
-                            defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                            addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                             addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                         }
                     }
@@ -613,7 +657,7 @@ public class ChainComputer implements Runnable {
                         ChainTools.getMemberOnlyInStruct(defTargetArray[i].getExpression()) == null) {
                     // use: var, def: var case
                     if (ChainTools.hasSameToString(defTargetArray[i].getExpression(), currentUse)) {
-                        defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                        addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                         addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                     }
                 } else if (ChainTools.getMemberOnlyInStruct(currentUse) != null &&
@@ -621,12 +665,12 @@ public class ChainComputer implements Runnable {
                     // use: var->member, def: var case
                     if (ChainTools.isArrayAccessInStruct(currentUse, proc)) {
                         if (ChainTools.hasSameArrayAccessInStruct(defTargetArray[i].getExpression(), currentUse, proc)) {
-                            defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                            addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                             addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                         }
                     } else {
                         if (ChainTools.hasSameStructureVariableIdentifier(defTargetArray[i].getExpression(), currentUse, proc)) {
-                            defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                            addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                             addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                         }
                     }
@@ -634,7 +678,7 @@ public class ChainComputer implements Runnable {
                         ChainTools.getMemberOnlyInStruct(defTargetArray[i].getExpression()) != null) {
                     // use: var, def: var->member case
                     if (ChainTools.hasSameStructureVariableIdentifier(defTargetArray[i].getExpression(), currentUse, proc)) {
-                        defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                        addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                         addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                     }
                 } else {
@@ -653,14 +697,14 @@ public class ChainComputer implements Runnable {
     	for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
             // handle exact matching
             if (ChainTools.hasSameToString(defTargetArray[i].getExpression(), currentUse)) {
-                defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                 addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
             } else if (defTargetArray[i].getExpression() instanceof ArrayAccess ||
                     defTargetArray[i].getExpression() instanceof UnaryExpression) {
                 // Handle the case of accessing array and pointer dereferencing
                 Expression id = ChainTools.getIDExpression(defTargetArray[i].getExpression());
                 if (ChainTools.hasSameToString(id, currentUse)) {
-                    defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                    addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                     addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                 }
             }
@@ -676,7 +720,7 @@ public class ChainComputer implements Runnable {
     	for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
             // handle exact matching
             if (ChainTools.hasSameToString(defTargetArray[i].getExpression(), currentUse)) {
-                defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                 addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
             } else {
                 // Handle the case of accessing array and pointer dereferencing
@@ -687,12 +731,12 @@ public class ChainComputer implements Runnable {
                 }
                 if (currentUse instanceof ArrayAccess) {
                     if (ChainTools.hasSameToString(defId, useId)) {
-                        defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                        addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                         addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                     }
                 } else {
                     if (ChainTools.hasSameToString(defId, currentUse)) {
-                        defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                        addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                         addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                     }
                 }
@@ -731,7 +775,7 @@ public class ChainComputer implements Runnable {
                             	for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                     Expression defID = ChainTools.getIDExpression(defTargetArray[i].getExpression());
                                     if (defID.toString().equals(aliasInstance.getPointerSymbol().getSymbolName())) {
-                                        defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                                        addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                                         addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                                     }
                                 }
@@ -740,7 +784,7 @@ public class ChainComputer implements Runnable {
                             	for (int i = inBitSet.nextSetBit(0); i >= 0; i = inBitSet.nextSetBit(i+1)) {
                                     Expression defID = ChainTools.getIDExpression(defTargetArray[i].getExpression());
                                     if (defID.toString().equals(aliasInstance.getPointedToSymbol().getSymbolName())) {
-                                        defTargetArray[i].addUseChain(new AnalysisTarget(currentUse, cfgNode, proc));
+                                        addUseChain(defTargetArray[i], new AnalysisTarget(currentUse, cfgNode, proc));
                                         addUseDefChain(defTargetArray[i], currentUse, cfgNode, proc);
                                     }
                                 }
@@ -864,7 +908,7 @@ public class ChainComputer implements Runnable {
         					List<Expression> useList = ChainTools.getUseList((Traversable)useNode.getData("ir"));
         					for (Expression ex: useList) {
         						if (defTargetArray[i].getExpression().equals(ex)) {
-			                        defTargetArray[i].addUseChain(new AnalysisTarget(ex, useNode, proc));
+			                        addUseChain(defTargetArray[i], new AnalysisTarget(ex, useNode, proc));
 			                        addUseDefChain(defTargetArray[i], ex, useNode, proc);
         						}
         					}
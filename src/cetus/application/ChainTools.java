@@ -14,7 +14,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -31,8 +30,7 @@ import java.util.logging.Logger;
  */
 public class ChainTools {
 	
-	public static HashMap<Integer, HashMap<MyType, Boolean>> typeCache 
-		= new HashMap<Integer, HashMap<MyType, Boolean>>(262144);
+	public static final ExpressionTypeCache typeCache = new ExpressionTypeCache();
 	public enum MyType {
 		Array, 
 		ArrayWithConstantIndex, 
@@ -327,19 +325,13 @@ public class ChainTools {
 //    	if (expression.isArrayAccessWithConstantIndex != null) {
 //    		return expression.isArrayAccessWithConstantIndex;
 //    	}
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.ArrayWithConstantIndex);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.ArrayWithConstantIndex);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         if (isArrayAccess(expression) == false || isArrayAccessWithNoIndex(expression)) {
 //        	expression.isArrayAccessWithConstantIndex = Boolean.FALSE;
-        	typeMap.put(MyType.ArrayWithConstantIndex, Boolean.FALSE);
+        	typeCache.put(expression, MyType.ArrayWithConstantIndex, false);
             return false;
         }
 //        DepthFirstIterator irIter = new DepthFirstIterator(expression);
@@ -405,14 +397,14 @@ public class ChainTools {
             }
             if (hasOnlyLiteral && arrayDim == actualDim) {
 //            	expression.isArrayAccessWithConstantIndex = Boolean.TRUE;
-            	typeMap.put(MyType.ArrayWithConstantIndex, Boolean.TRUE);
+            	typeCache.put(expression, MyType.ArrayWithConstantIndex, true);
                 return true;
             } else {
 //                if (hasOnlyLiteral && arrayDim != actualDim) {
 //                    throw new RuntimeException("hasOnlyLiteral && arrayDim != actualDim: " + expression.toString() + ", arrayDim: " + arrayDim + ", actualDim: " + actualDim + ", proc: " + IRTools.getParentProcedure(expression));
 //                }
 //            	expression.isArrayAccessWithConstantIndex = Boolean.FALSE;
-            	typeMap.put(MyType.ArrayWithConstantIndex, Boolean.TRUE);
+            	typeCache.put(expression, MyType.ArrayWithConstantIndex, true);
                 return false;
             }
         } else {
@@ -428,19 +420,13 @@ public class ChainTools {
 //    	if (expression.isArrayAccessWithPartiallyConstantIndex != null) {
 //    		return expression.isArrayAccessWithPartiallyConstantIndex;
 //    	}
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.ArrayWithPartiallyConstantIndex);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.ArrayWithPartiallyConstantIndex);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         if (isArrayAccess(expression) == false || isArrayAccessWithNoIndex(expression)) {
 //        	expression.isArrayAccessWithPartiallyConstantIndex = Boolean.FALSE;
-        	typeMap.put(MyType.ArrayWithPartiallyConstantIndex, Boolean.FALSE);
+        	typeCache.put(expression, MyType.ArrayWithPartiallyConstantIndex, false);
             return false;
         }
 //        DepthFirstIterator irIter = new DepthFirstIterator(expression);
@@ -496,11 +482,11 @@ public class ChainTools {
             }
             if (hasOnlyLiteral && arrayDim != actualDim) {
 //            	expression.isArrayAccessWithPartiallyConstantIndex = Boolean.TRUE;
-            	typeMap.put(MyType.ArrayWithPartiallyConstantIndex, Boolean.TRUE);
+            	typeCache.put(expression, MyType.ArrayWithPartiallyConstantIndex, true);
                 return true;
             } else {
 //            	expression.isArrayAccessWithPartiallyConstantIndex = Boolean.FALSE;
-            	typeMap.put(MyType.ArrayWithPartiallyConstantIndex, Boolean.FALSE);
+            	typeCache.put(expression, MyType.ArrayWithPartiallyConstantIndex, false);
                 return false;
             }
         } else {
@@ -516,19 +502,13 @@ public class ChainTools {
 //    	if (expression.isArrayAccessWithVariableIndex != null) {
 //    		return expression.isArrayAccessWithVariableIndex;
 //    	}
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.ArrayWithVariableIndex);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.ArrayWithVariableIndex);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         if (isArrayAccess(expression) == false || isArrayAccessWithNoIndex(expression)) {
 //        	expression.isArrayAccessWithVariableIndex = Boolean.FALSE;
-        	typeMap.put(MyType.ArrayWithVariableIndex, Boolean.FALSE);
+        	typeCache.put(expression, MyType.ArrayWithVariableIndex, false);
             return false;
         }
 //        DepthFirstIterator irIter = new DepthFirstIterator(expression);
@@ -561,7 +541,7 @@ public class ChainTools {
                 }
             }
 //            expression.isArrayAccessWithVariableIndex = hasVariable;
-            typeMap.put(MyType.ArrayWithVariableIndex, Boolean.valueOf(hasVariable));
+            typeCache.put(expression, MyType.ArrayWithVariableIndex, hasVariable);
             return hasVariable;
         } else {
             ChainTools.traverseIR((Traversable) o);
@@ -578,18 +558,12 @@ public class ChainTools {
 //    	}
 //    	expression.isArrayAccessWithNoIndex = isArrayAccess(expression) && !(expression instanceof ArrayAccess); 
 //        return expression.isArrayAccessWithNoIndex;
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.ArrayWithNoIndex);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.ArrayWithNoIndex);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
     	boolean bReturn = isArrayAccess(expression) && !(expression instanceof ArrayAccess);
-    	typeMap.put(MyType.ArrayWithNoIndex, Boolean.valueOf(bReturn));
+    	typeCache.put(expression, MyType.ArrayWithNoIndex, bReturn);
         return bReturn;
     }
 
@@ -600,15 +574,9 @@ public class ChainTools {
 //        if (expression.isArrayAccess != null) {
 //        	return expression.isArrayAccess.booleanValue();
 //        }
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.Array);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.Array);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         Symbol sym = SymbolTools.getSymbolOf(expression);
         if (sym != null) {
@@ -620,11 +588,11 @@ public class ChainTools {
                 List arraySpecList = vd.getArraySpecifiers();
                 if (arraySpecList != null) {
 //                	expression.isArrayAccess = Boolean.TRUE;
-                	typeMap.put(MyType.Array, Boolean.TRUE);
+                	typeCache.put(expression, MyType.Array, true);
                     return true;
                 } else {
 //                	expression.isArrayAccess = Boolean.FALSE;
-                	typeMap.put(MyType.Array, Boolean.TRUE);
+                	typeCache.put(expression, MyType.Array, true);
                     return false;
                 }
             } else if (parent instanceof NestedDeclarator) {
@@ -632,16 +600,16 @@ public class ChainTools {
                 List arraySpecList = vd.getArraySpecifiers();
                 if (arraySpecList != null) {
 //                	expression.isArrayAccess = Boolean.TRUE;
-                	typeMap.put(MyType.Array, Boolean.TRUE);
+                	typeCache.put(expression, MyType.Array, true);
                     return true;
                 } else {
 //                	expression.isArrayAccess = Boolean.FALSE;
-                	typeMap.put(MyType.Array, Boolean.FALSE);
+                	typeCache.put(expression, MyType.Array, false);
                     return false;
                 }
             } else {
 //            	expression.isArrayAccess = Boolean.FALSE;
-            	typeMap.put(MyType.Array, Boolean.FALSE);
+            	typeCache.put(expression, MyType.Array, false);
                 return false;
             }
         }
@@ -654,28 +622,22 @@ public class ChainTools {
 //    	if (expression.isArrayAccessInStruct != null) {
 //    		return expression.isArrayAccessInStruct;
 //    	}
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.ArrayInStruct);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.ArrayInStruct);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         if (isStructureAccess(expression, proc) == false) {
 //        	expression.isArrayAccessInStruct = Boolean.FALSE;
-        	typeMap.put(MyType.ArrayInStruct, Boolean.FALSE);
+        	typeCache.put(expression, MyType.ArrayInStruct, false);
             return false;
         }
         if (expression instanceof ArrayAccess) {
 //        	expression.isArrayAccessInStruct = Boolean.TRUE;
-        	typeMap.put(MyType.ArrayInStruct, Boolean.TRUE);
+        	typeCache.put(expression, MyType.ArrayInStruct, true);
             return true;
         } else {
 //        	expression.isArrayAccessInStruct = Boolean.FALSE;
-        	typeMap.put(MyType.ArrayInStruct, Boolean.FALSE);
+        	typeCache.put(expression, MyType.ArrayInStruct, false);
             return false;
         }
     }
@@ -976,15 +938,9 @@ public class ChainTools {
 //    	if (currentEx.isStructureAccessInParam != null) {
 //    		return currentEx.isStructureAccessInParam;
 //    	}
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.StructureInParam);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.StructureInParam);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         Set<Symbol> paramSym = SymbolTools.getParameterSymbols(proc);
         for (Symbol s : paramSym) {
@@ -992,12 +948,12 @@ public class ChainTools {
 //            	currentEx.isStructureAccessInParam = SymbolTools.isStruct(s, proc); 
 //                return currentEx.isStructureAccessInParam;
             	boolean rBool = SymbolTools.isStruct(s, proc); 
-            	typeMap.put(MyType.StructureInParam, Boolean.valueOf(rBool));
+            	typeCache.put(expression, MyType.StructureInParam, rBool);
                 return rBool;
             }
         }
 //        currentEx.isStructureAccessInParam = Boolean.FALSE;
-        typeMap.put(MyType.StructureInParam, Boolean.FALSE);
+        typeCache.put(expression, MyType.StructureInParam, false);
         return false;
     }
 
@@ -1008,15 +964,9 @@ public class ChainTools {
 //    	if (currentEx.isStructureAccessInDec != null) {
 //    		return currentEx.isStructureAccessInDec;
 //    	}
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.StructureInDec);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.StructureInDec);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         Set<Symbol> symSet = SymbolTools.getLocalSymbols(proc);
         for (Symbol s : symSet) {
@@ -1024,12 +974,12 @@ public class ChainTools {
 //            	currentEx.isStructureAccessInDec = SymbolTools.isStruct(s, proc); 
 //                return currentEx.isStructureAccessInDec;
             	boolean rBool = SymbolTools.isStruct(s, proc); 
-            	typeMap.put(MyType.StructureInDec, Boolean.valueOf(rBool));
+            	typeCache.put(expression, MyType.StructureInDec, rBool);
                 return rBool;
             }
         }
 //        currentEx.isStructureAccessInDec = Boolean.FALSE;
-        typeMap.put(MyType.StructureInDec, Boolean.FALSE);
+        typeCache.put(expression, MyType.StructureInDec, false);
         return false;
     }
 
@@ -1040,29 +990,23 @@ public class ChainTools {
 //        if (currentEx.isStructureAccess != null) {
 //        	return currentEx.isStructureAccess;
 //        }
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.Structure);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.Structure);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         if (SymbolTools.getSymbolOf(expression) == null) {
             if (isStructureAccessInParam(expression, proc)) {
 //            	currentEx.isStructureAccess = Boolean.TRUE;
-            	typeMap.put(MyType.Structure, Boolean.TRUE);
+            	typeCache.put(expression, MyType.Structure, true);
                 return true;
             } else {
                 if (isStructureAccessInDec(expression, proc)) {
 //                	currentEx.isStructureAccess = Boolean.TRUE;
-                	typeMap.put(MyType.Structure, Boolean.TRUE);
+                	typeCache.put(expression, MyType.Structure, true);
                     return true;
                 } else {
 //                	currentEx.isStructureAccess = Boolean.FALSE;
-                	typeMap.put(MyType.Structure, Boolean.FALSE);
+                	typeCache.put(expression, MyType.Structure, false);
                     return false;
                 }
             }
@@ -1070,7 +1014,7 @@ public class ChainTools {
 //        currentEx.isStructureAccess = SymbolTools.isStruct(SymbolTools.getSymbolOf(currentEx), proc); 
 //        return currentEx.isStructureAccess;
         Boolean rBool = SymbolTools.isStruct(SymbolTools.getSymbolOf(expression), proc); 
-    	typeMap.put(MyType.Structure, Boolean.valueOf(rBool));
+    	typeCache.put(expression, MyType.Structure, rBool);
         return rBool;
     }
 
@@ -1081,28 +1025,22 @@ public class ChainTools {
 //    	if (currentEx.isPointerAccess != null) {
 //    		return currentEx.isPointerAccess;
 //    	}
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.Pointer);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.Pointer);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
         Expression id = getIDExpression(expression);
         if (id != null && id instanceof Identifier) {
 //        	currentEx.isPointerAccess = SymbolTools.isPointer(((Identifier) id).getSymbol()); 
 //            return currentEx.isPointerAccess;
         	Boolean rBool = SymbolTools.isPointer(((Identifier) id).getSymbol()); 
-        	typeMap.put(MyType.Pointer, Boolean.valueOf(rBool));
+        	typeCache.put(expression, MyType.Pointer, rBool);
             return rBool;
         }
 //        currentEx.isPointerAccess = SymbolTools.isPointer(currentEx); 
 //        return currentEx.isPointerAccess;
     	Boolean rBool = SymbolTools.isPointer(expression); 
-    	typeMap.put(MyType.Pointer, Boolean.valueOf(rBool));
+    	typeCache.put(expression, MyType.Pointer, rBool);
         return rBool; 
     }
 
@@ -1403,18 +1341,12 @@ public class ChainTools {
 //    	}
 //    	ex.isGlobal = SymbolTools.isGlobal(SymbolTools.getSymbolOf(ex)); 
 //        return ex.isGlobal;
-    	HashMap<MyType, Boolean> typeMap = typeCache.get(System.identityHashCode(expression));
-    	if (typeMap != null) {
-    		Boolean boolVal = typeMap.get(MyType.Global);
-    		if (boolVal != null) {
-    			return boolVal;
-    		}
-    	} else {
-    		typeMap = new HashMap<MyType, Boolean>();
-    		typeCache.put(System.identityHashCode(expression), typeMap);
+    	Boolean boolVal = typeCache.get(expression, MyType.Global);
+    	if (boolVal != null) {
+    		return boolVal;
     	}
     	Boolean rBool = SymbolTools.isGlobal(SymbolTools.getSymbolOf(expression));
-    	typeMap.put(MyType.Global, Boolean.valueOf(rBool));
+    	typeCache.put(expression, MyType.Global, rBool);
         return rBool;
     }
 
@@ -1,8 +1,10 @@
 package cetus.application;
 
 import cetus.analysis.AnalysisPass;
+import cetus.analysis.BitVectorAnalysis;
 import cetus.analysis.CFGraph;
 import cetus.analysis.DFANode;
+import cetus.analysis.DataFlowGraph;
 import cetus.hir.PrintTools;
 import cetus.hir.Procedure;
 import cetus.hir.Program;
@@ -10,8 +12,6 @@ import cetus.hir.SwitchStatement;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -98,127 +98,85 @@ public abstract class DataFlowAnalysis extends AnalysisPass implements Runnable
         }
     }
 
+    /**
+     * Solves the data flow equation for the procedure with the GEN and KILL
+     * sets stored in the CFG nodes, and stores the results in the nodes with
+     * the keys "InSet" and "OutSet". The equation is solved with word-parallel
+     * bit vectors by {@link BitVectorAnalysis}.
+     */
     protected void calculateDataFlowEquation(Procedure proc, BitSet initSet) {
-        if (forward) {
-            calculateForwardDataFlowEquation(proc, initSet);
-        } else {
-            calculateBackwardDataFlowEquation(proc, initSet);
+        CFGraph cfg = cfgMap.get(proc);
+        if (PrintTools.getVerbosity() > 1) {
+            System.out.println((forward ? "## Forward Analysis.... for " :
+                    "## Backward Analysis... for ") + proc.getSymbolName());
         }
-    }
-
-    protected void calculateCombine(BitSet result, BitSet input) {
-        if (may) {
-            result.or(input);
-        } else {
-            result.and(input);
+        DataFlowGraph graph = new DataFlowGraph(cfg, cfg.getEntry());
+        int num_bits = Math.max(initSet.length(),
+                analysisTargetMap.get(proc).size());
+        for (int id = 0; id < graph.size(); id++) {
+            DFANode node = graph.getNode(id);
+            num_bits = Math.max(num_bits,
+                    ((BitSet)node.getData("GenSet")).length());
+            num_bits = Math.max(num_bits,
+                    ((BitSet)node.getData("KillSet")).length());
         }
-    }
-
-    protected void calculateFunction(BitSet result, BitSet input, BitSet genSet, BitSet killSet) {
-        result.or(input);
-        result.andNot(killSet);
-        result.or(genSet);
-    }
-
-    protected void calculateForwardDataFlowEquation(Procedure proc, BitSet initSet) {
-    	if (PrintTools.getVerbosity() > 1)
-    		System.out.println("## Forward Analysis.... for " + proc.getSymbolName());
-        // OUT = GEN U (IN - KILL)
-        LinkedList<DFANode> workList = new LinkedList<DFANode>();
-        Iterator cfgIter = cfgMap.get(proc).iterator();
-        DFANode entryNode = cfgMap.get(proc).getEntry();
-        // add all the node to worklist
-        while (cfgIter.hasNext()) {
-            DFANode dfaNode = (DFANode) cfgIter.next();
-            dfaNode.putData("OutSet", new BitSet(initSet.size()));
-            workList.add(dfaNode);
-        }
-        // set entry node with init data
-        entryNode.putData("InSet", (BitSet) initSet.clone());
-        workList.remove(entryNode);
-
-        while (workList.isEmpty() == false) {
-            DFANode currentNode = workList.removeFirst();
-            BitSet previousOutSet = (BitSet) ((BitSet) currentNode.getData("OutSet")).clone();
-            BitSet inSet = new BitSet(initSet.size());
-            if (may == false) { // must
-                inSet.flip(0, initSet.size());
+        BitVectorAnalysis solver =
+                new BitVectorAnalysis(graph, num_bits, forward, may) {
+            @Override
+            protected long transfer(long in, long gen, long kill) {
+                return calculateFunction(in, gen, kill);
             }
-            for (DFANode pred : currentNode.getPreds()) {
-                calculateCombine(inSet, (BitSet) pred.getData("OutSet"));
-            }
-            BitSet outSet = (BitSet) currentNode.getData("OutSet");
-            outSet.clear();
-            //
-            calculateFunction(outSet, inSet, (BitSet) currentNode.getData("GenSet"), (BitSet) currentNode.getData("KillSet"));
-            //
-            currentNode.putData("InSet", inSet);
-            currentNode.putData("OutSet", outSet);
-
-            if (previousOutSet.equals(outSet) == false) {
-                workList.addAll(currentNode.getSuccs());
+        };
+        solver.setBoundary(initSet);
+        solver.setInitial(initSet);
+        for (int id = 0; id < graph.size(); id++) {
+            DFANode node = graph.getNode(id);
+            // The boundary nodes keep the initial data; i.e., the entry node
+            // in forward analysis and the exit nodes in backward analysis.
+            boolean boundary = (forward) ?
+                    (id == 0) : (graph.getNumSuccs(id) == 0);
+            if (!boundary) {
+                solver.setGen(id, (BitSet)node.getData("GenSet"));
+                solver.setKill(id, (BitSet)node.getData("KillSet"));
             }
         }
-//        cleanupUnnecessaryData();
-        if (PrintTools.getVerbosity() > 2) {
-        	printDataFlowInformation(cfgMap.get(proc));
-        }
-    }
-    
-    abstract void cleanupUnnecessaryData();
-
-    protected void calculateBackwardDataFlowEquation(Procedure proc, BitSet initSet) {
-    	if (PrintTools.getVerbosity() > 1)
-    		System.out.println("## Backward Analysis... for " + proc.getSymbolName());
-        // IN = GEN U (OUT - KILL)
-        LinkedList<DFANode> workList = new LinkedList<DFANode>();
-        Iterator cfgIter = cfgMap.get(proc).iterator();
-        // add all node to the worklist
-        while (cfgIter.hasNext()) {
-            DFANode dfaNode = (DFANode) cfgIter.next();
-            dfaNode.putData("InSet", new BitSet(initSet.size()));
-            workList.addFirst(dfaNode);
-        }
-        // set exit node with init data
-        List<DFANode> exitNodeList = cfgMap.get(proc).getExitNodes();
-        for (DFANode exitNode : exitNodeList) {
-            exitNode.putData("OutSet", (BitSet) initSet.clone());
-            workList.remove(exitNode);
-        }
-
-        while (workList.isEmpty() == false) {
-            DFANode currentNode = workList.removeFirst();
-            BitSet previousInSet = (BitSet) ((BitSet) currentNode.getData("InSet")).clone();
-            BitSet outSet = (BitSet) initSet.clone();
-            if (may == false) { // must
-                outSet.flip(0, initSet.size());
-            }
-            for (DFANode succ : currentNode.getSuccs()) {
-                calculateCombine(outSet, (BitSet) succ.getData("InSet"));
-            }
-            BitSet inSet = (BitSet) currentNode.getData("InSet");
-            inSet.clear();
-            //
-            calculateFunction(inSet, outSet, (BitSet) currentNode.getData("GenSet"), (BitSet) currentNode.getData("KillSet"));
-            currentNode.putData("OutSet", outSet);
-            currentNode.putData("InSet", inSet);
-            if (previousInSet.equals(inSet) == false) {
-                workList.addAll(currentNode.getPreds());
+        solver.solve();
+        for (int id = 0; id < graph.size(); id++) {
+            DFANode node = graph.getNode(id);
+            if (forward) {
+                node.putData("InSet", solver.getIn(id));
+                node.putData("OutSet", solver.getOut(id));
+            } else {
+                // IN and OUT of the solver are in the flow direction.
+                node.putData("OutSet", solver.getIn(id));
+                node.putData("InSet", solver.getOut(id));
             }
         }
-        // delete unnecessary data
-        cfgIter = cfgMap.get(proc).iterator();
-        while (cfgIter.hasNext()) {
-            DFANode dfaNode = (DFANode) cfgIter.next();
-            dfaNode.removeData("InSet");
-            dfaNode.removeData("KillSet");
-            dfaNode.removeData("GenSet");
+        if (!forward) {
+            // delete unnecessary data
+            for (int id = 0; id < graph.size(); id++) {
+                DFANode node = graph.getNode(id);
+                node.removeData("InSet");
+                node.removeData("KillSet");
+                node.removeData("GenSet");
+            }
         }
         if (PrintTools.getVerbosity() > 2) {
-        	printDataFlowInformation(cfgMap.get(proc));
+        	printDataFlowInformation(cfg);
         }
     }
 
+    /**
+     * Applies the transfer function to a word of the bit sets;
+     * OUT = GEN U (IN - KILL) for forward analysis and
+     * IN = GEN U (OUT - KILL) for backward analysis.
+     */
+    protected long calculateFunction(long input, long genSet, long killSet) {
+        return (input & ~killSet) | genSet;
+    }
+
+    abstract void cleanupUnnecessaryData();
+
     protected void compute(Procedure proc) {
     	if (PrintTools.getVerbosity() > 1)
     		System.out.println("############## Executing Data Flow Analysis " + getPassName() + " for proc: " + proc.getSymbolName());
@@ -0,0 +1,210 @@
+package cetus.application;
+
+import cetus.application.ChainTools.MyType;
+import cetus.hir.Expression;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * This class caches the classification of expressions, e.g., whether an
+ * expression is an array access with constant indices, for the def-use chain
+ * computation. An entry is looked up by the identity of the expression, not
+ * by its identity hash code which may be shared by different expressions, and
+ * it refers to the expression weakly so the entry is removed once the
+ * expression is no longer reachable from the IR. The classification of an
+ * expression is a bit mask with a pair of bits per {@link MyType}: one bit
+ * tells if the type is known and the other holds the cached answer. The
+ * cache is split into segments with their own locks so the chain computation
+ * of different procedures can use it concurrently.
+ */
+public class ExpressionTypeCache {
+
+    // Number of segments; must be a power of two.
+    private static final int NUM_SEGMENTS = 16;
+
+    // Initial number of buckets per segment; must be a power of two.
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Segment[] segments;
+
+    /** Weakly referenced expression with its classification. */
+    private static class Entry extends WeakReference<Expression> {
+        private final int hash;
+        private int mask;
+        private Entry next;
+
+        private Entry(Expression expression, int hash, Entry next,
+                      ReferenceQueue<Expression> queue) {
+            super(expression, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    /** Hash table of entries guarded by its own lock. */
+    private static class Segment {
+        private final ReferenceQueue<Expression> queue =
+                new ReferenceQueue<Expression>();
+        private Entry[] table = new Entry[INITIAL_CAPACITY];
+        private int size;
+
+        private synchronized int getMask(Expression expression, int hash) {
+            for (Entry e = table[hash & (table.length-1)]; e != null;
+                    e = e.next) {
+                if (e.hash == hash && e.get() == expression) {
+                    return e.mask;
+                }
+            }
+            return 0;
+        }
+
+        private synchronized void setMask(Expression expression, int hash,
+                                          int clear_bits, int set_bits) {
+            expunge();
+            int index = hash & (table.length-1);
+            for (Entry e = table[index]; e != null; e = e.next) {
+                if (e.hash == hash && e.get() == expression) {
+                    e.mask = (e.mask & ~clear_bits) | set_bits;
+                    return;
+                }
+            }
+            Entry e = new Entry(expression, hash, table[index], queue);
+            e.mask = set_bits;
+            table[index] = e;
+            if (++size > table.length * 3 / 4) {
+                resize();
+            }
+        }
+
+        // Removes the entries of the collected expressions.
+        private void expunge() {
+            Reference<? extends Expression> ref;
+            while ((ref = queue.poll()) != null) {
+                Entry dead = (Entry)ref;
+                int index = dead.hash & (table.length-1);
+                Entry prev = null;
+                for (Entry e = table[index]; e != null; e = e.next) {
+                    if (e == dead) {
+                        if (prev == null) {
+                            table[index] = e.next;
+                        } else {
+                            prev.next = e.next;
+                        }
+                        size--;
+                        break;
+                    }
+                    prev = e;
+                }
+            }
+        }
+
+        private void resize() {
+            Entry[] old_table = table;
+            table = new Entry[old_table.length * 2];
+            for (Entry head : old_table) {
+                Entry e = head;
+                while (e != null) {
+                    Entry next = e.next;
+                    int index = e.hash & (table.length-1);
+                    e.next = table[index];
+                    table[index] = e;
+                    e = next;
+                }
+            }
+        }
+
+        private synchronized int size() {
+            expunge();
+            return size;
+        }
+
+        private synchronized void clear() {
+            while (queue.poll() != null)
+                ;
+            table = new Entry[INITIAL_CAPACITY];
+            size = 0;
+        }
+    }
+
+    /**
+     * Constructs an empty cache.
+     */
+    public ExpressionTypeCache() {
+        segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Spreads the identity hash code so both the segment index (high bits)
+    // and the bucket index (low bits) depend on all of its bits.
+    private static int hash(Expression expression) {
+        int h = System.identityHashCode(expression);
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private Segment getSegment(int hash) {
+        return segments[(hash >>> 28) & (NUM_SEGMENTS-1)];
+    }
+
+    private static int getKnownBit(MyType type) {
+        return 1 << (2 * type.ordinal());
+    }
+
+    private static int getValueBit(MyType type) {
+        return 1 << (2 * type.ordinal() + 1);
+    }
+
+    /**
+     * Returns the cached classification of the expression for the given type.
+     * @param expression the expression.
+     * @param type the type.
+     * @return the cached answer, or null if it is not cached.
+     */
+    public Boolean get(Expression expression, MyType type) {
+        int hash = hash(expression);
+        int mask = getSegment(hash).getMask(expression, hash);
+        if ((mask & getKnownBit(type)) == 0) {
+            return null;
+        }
+        return Boolean.valueOf((mask & getValueBit(type)) != 0);
+    }
+
+    /**
+     * Caches the classification of the expression for the given type.
+     * @param expression the expression.
+     * @param type the type.
+     * @param value the answer to be cached.
+     */
+    public void put(Expression expression, MyType type, boolean value) {
+        int hash = hash(expression);
+        int known_bit = getKnownBit(type), value_bit = getValueBit(type);
+        getSegment(hash).setMask(expression, hash, known_bit | value_bit,
+                (value) ? (known_bit | value_bit) : known_bit);
+    }
+
+    /**
+     * Returns the number of expressions in the cache.
+     * @return the number of live entries.
+     */
+    public int size() {
+        int ret = 0;
+        for (Segment segment : segments) {
+            ret += segment.size();
+        }
+        return ret;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+}
@@ -42,9 +42,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.BitSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 /**
  * This class performs the interprocedural Def-Use and Use-Def chain computation.
@@ -125,17 +122,12 @@ public class IPChainAnalysis extends AnalysisPass implements DefUseChain, UseDef
     
     private void generateCFGraphWithThread() {
         cfgMap = new HashMap<Procedure, CFGraph>();
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(procList.size());
+        TaskScheduler scheduler = new TaskScheduler("generateCFGraph");
         for (Procedure proc: procList) {
         	CFGBuilder builder = new CFGBuilder(cfgMap, proc);
-        	taskExecutor.execute(builder);
+        	scheduler.add(proc, TaskScheduler.getSize(proc), builder);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
     }
 
@@ -179,18 +171,13 @@ public class IPChainAnalysis extends AnalysisPass implements DefUseChain, UseDef
     private void performReachingDefinitionAnalysisWithThread() {
     	System.out.println("[performReachingDefinitionAnalysisWithThread]Begin");
         defTargetSetMap = Collections.synchronizedMap(new HashMap<Procedure, Set<AnalysisTarget>>());
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(procList.size());
+        TaskScheduler scheduler = new TaskScheduler("performReachingDefinitionAnalysis");
         for (Procedure proc: procList) {
             ReachingDefinitionAnalysis rdAnalysis = new ReachingDefinitionAnalysis(program, cfgMap, globalDefSet);
             rdAnalysis.setAnalysisTarget(proc, defTargetSetMap);
-        	taskExecutor.execute(rdAnalysis);
+        	scheduler.add(proc, cfgMap.get(proc).size(), rdAnalysis);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
         useTargetSetMap = Collections.synchronizedMap(new HashMap<Procedure, Set<AnalysisTarget>>());
     	System.out.println("[performReachingDefinitionAnalysisWithThread]End");
@@ -206,18 +193,13 @@ public class IPChainAnalysis extends AnalysisPass implements DefUseChain, UseDef
     
     public void computeChainsForAllProcsWithThreads() {
     	System.out.println("[IPChainAnalysis.computeChainsForAllProcs]Begin, time: " + (new Date()).toString());
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(procList.size());
+        TaskScheduler scheduler = new TaskScheduler("computeChains");
         for (Procedure proc: procList) {
 //          computeChainInProc(proc);
         	ChainComputer cc = new ChainComputer(proc, cfgMap, globalDefSet, globalUseSet, defTargetSetMap, useTargetSetMap);
-        	taskExecutor.execute(cc);
+        	scheduler.add(proc, cfgMap.get(proc).size(), cc);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
     	System.out.println("[IPChainAnalysis.computeChainsForAllProcs]End, time: " + (new Date()).toString());
     }
 
@@ -81,10 +81,8 @@ public class PSGRegionalKillSetAnlaysis extends DataFlowAnalysis {
     }
 
     @Override
-    protected void calculateFunction(BitSet result, BitSet input, BitSet genSet, BitSet killSet) {
-        result.or(input);
-        result.or(killSet);
-        result.andNot(genSet);
+    protected long calculateFunction(long input, long genSet, long killSet) {
+        return (input | killSet) & ~genSet;
     }
 
 	@Override
@@ -13,9 +13,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import cetus.analysis.CFGraph;
 import cetus.analysis.CallGraph;
@@ -456,18 +453,13 @@ public class ProgramSlicer {
 		}
 		
 		// split worklist
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(workList.size());
+        TaskScheduler scheduler = new TaskScheduler("startSlicing");
 		for (DFANode node: workList) {
 	        MiniSlicer mSlicer = new MiniSlicer();
 	        mSlicer.addToWorkList(node);
-	       	taskExecutor.execute(mSlicer);
-		}
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	       	scheduler.add("slice from " + CFGraph.getIR(node), 1, mSlicer);
 		}
+        scheduler.run();
 		
 		System.out.println("[ProgramSlicer] end startSlicing, time: " + (new Date()).toString());
 	}
@@ -601,17 +593,12 @@ public class ProgramSlicer {
 	
 	public void removeUnmarkedDFANodeWithThreads() {
 		System.out.println("[ProgramSlicer] begin removeUnmarkedDFANodeWithThreads, time: " + (new Date()).toString());
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(procSet.size());
+        TaskScheduler scheduler = new TaskScheduler("removeUnmarkedDFANode");
 		for (Procedure proc: procSet) {
 	        CodeRemover cRemover = new CodeRemover(proc);
-	       	taskExecutor.execute(cRemover);
-		}
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	       	scheduler.add(proc, TaskScheduler.getSize(proc), cRemover);
 		}
+        scheduler.run();
 		System.out.println("[ProgramSlicer] end removeUnmarkedDFANodeWithThreads, time: " + (new Date()).toString());
 	}
 	
@@ -37,9 +37,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 /**
  * This class performs the creation of program summary graph for executing
@@ -521,18 +518,13 @@ public class ProgramSummaryGraph {
     		System.out.println("##### Number of Procs: " + procList.size());
         // start of ThreadVersion
         targetListMap = new HashMap<Procedure, Set<AnalysisTarget>>();
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(procList.size());
+        TaskScheduler scheduler = new TaskScheduler("PSGReachingDefinitionAnalysis");
         for (Procedure proc: procList) {
             PSGReachingDefinitionAnalysis rdaRefParam = new PSGReachingDefinitionAnalysis(program, cfgMap, refParamMap, refParamIdxMap);
         	rdaRefParam.setAnalysisTarget(proc, targetListMap);
-        	taskExecutor.execute(rdaRefParam);
+        	scheduler.add(proc, cfgMap.get(proc).size(), rdaRefParam);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
 
         setRefDefInfoToPSG(targetListMap);
@@ -541,18 +533,13 @@ public class ProgramSummaryGraph {
         // PSG Upwards Exposed Uses Analysis for Reference Parameters
         // start of ThreadVersion
         targetListMap = new HashMap<Procedure, Set<AnalysisTarget>>();
-        taskExecutor = Executors.newFixedThreadPool(procList.size());
+        scheduler = new TaskScheduler("PSGUpwardsExposedUsesAnalysis");
         for (Procedure proc: procList) {
             PSGUpwardsExposedUsesAnalysis ueuaRefParam = new PSGUpwardsExposedUsesAnalysis(program, cfgMap, refParamMap, refParamIdxMap);
             ueuaRefParam.setAnalysisTarget(proc, targetListMap);
-        	taskExecutor.execute(ueuaRefParam);
+        	scheduler.add(proc, cfgMap.get(proc).size(), ueuaRefParam);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
 
         setRefUseInfoToPSG(targetListMap);
@@ -560,18 +547,13 @@ public class ProgramSummaryGraph {
         // PSG Reaching Definition Analysis for Reference Parameters
         // start of ThreadVersion
         targetListMap = new HashMap<Procedure, Set<AnalysisTarget>>();
-        taskExecutor = Executors.newFixedThreadPool(procList.size());
+        scheduler = new TaskScheduler("PSGReachingDefinitionAnalysis");
         for (Procedure proc: procList) {
             PSGReachingDefinitionAnalysis rdaRefParam = new PSGReachingDefinitionAnalysis(program, cfgMap, refParamMap, refParamIdxMap);
             rdaRefParam.setAnalysisTarget(proc, targetListMap);
-        	taskExecutor.execute(rdaRefParam);
+        	scheduler.add(proc, cfgMap.get(proc).size(), rdaRefParam);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
 
         setRefDefInfoToPSG(targetListMap);
@@ -588,34 +570,24 @@ public class ProgramSummaryGraph {
         // PSG Reaching Definition Analysis for Global Variables
         // start of ThreadVersion
         targetListMap = new HashMap<Procedure, Set<AnalysisTarget>>();
-        taskExecutor = Executors.newFixedThreadPool(procList.size());
+        scheduler = new TaskScheduler("PSGReachingDefinitionAnalysis");
         for (Procedure proc: procList) {
             PSGReachingDefinitionAnalysis rdaGlobalParam = new PSGReachingDefinitionAnalysis(program, cfgMap, globalSet, globalDefList, globalDefProcSet);
             rdaGlobalParam.setAnalysisTarget(proc, targetListMap);
-        	taskExecutor.execute(rdaGlobalParam);
+        	scheduler.add(proc, cfgMap.get(proc).size(), rdaGlobalParam);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
 
         setGlobalDefInfoToPSG(targetListMap);
 
-        taskExecutor = Executors.newFixedThreadPool(procList.size());
+        scheduler = new TaskScheduler("PSGRegionalKillSetAnlaysis");
         for (Procedure proc: procList) {
             PSGRegionalKillSetAnlaysis rksaGlobalParam = new PSGRegionalKillSetAnlaysis(program, cfgMap, targetListMap, globalProcSet);
             rksaGlobalParam.setAnalysisTarget(proc, targetListMap);
-        	taskExecutor.execute(rksaGlobalParam);
+        	scheduler.add(proc, cfgMap.get(proc).size(), rksaGlobalParam);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
 
         setGlobalKillSetInfoToPSG(targetListMap);
@@ -625,36 +597,26 @@ public class ProgramSummaryGraph {
         // PSG Upwards Exposed Uses Analysis for Global Variables
         // start of ThreadVersion
         targetListMap = new HashMap<Procedure, Set<AnalysisTarget>>();
-        taskExecutor = Executors.newFixedThreadPool(procList.size());
+        scheduler = new TaskScheduler("PSGUpwardsExposedUsesAnalysis");
         for (Procedure proc: procList) {
             PSGUpwardsExposedUsesAnalysis ueuaGlobalParam = new PSGUpwardsExposedUsesAnalysis(program, cfgMap, globalSet, globalUseList, globalUseProcSet);
             ueuaGlobalParam.setAnalysisTarget(proc, targetListMap);
-        	taskExecutor.execute(ueuaGlobalParam);
+        	scheduler.add(proc, cfgMap.get(proc).size(), ueuaGlobalParam);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
 
         setGlobalUseInfoToPSG(targetListMap);
 
         // start of ThreadVersion
         targetListMap = new HashMap<Procedure, Set<AnalysisTarget>>();
-        taskExecutor = Executors.newFixedThreadPool(procList.size());
+        scheduler = new TaskScheduler("PSGReachingGlobalProcSetAnalysis");
         for (Procedure proc: procList) {
             PSGReachingGlobalProcSetAnalysis rgpsa = new PSGReachingGlobalProcSetAnalysis(program, cfgMap, globalProcSet);
             rgpsa.setAnalysisTarget(proc, targetListMap);
-        	taskExecutor.execute(rgpsa);
+        	scheduler.add(proc, cfgMap.get(proc).size(), rgpsa);
         }
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+        scheduler.run();
         // end of ThreadVersion
 
         addReachingEdgeForGlobal(targetListMap);
@@ -2225,21 +2187,16 @@ public class ProgramSummaryGraph {
             node.putData("OUTuse", outUseBitSet);
         }        
     	// For reference
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(4);
+        TaskScheduler scheduler = new TaskScheduler("PSGPropagator");
         PSGPropagator propagator1 = new PSGPropagator(Mode.DEF_REF1);
-       	taskExecutor.execute(propagator1);
+       	scheduler.add("DEF_REF1", 1, propagator1);
        	PSGPropagator propagator2 = new PSGPropagator(Mode.USE_REF1);
-       	taskExecutor.execute(propagator2);
+       	scheduler.add("USE_REF1", 1, propagator2);
        	PSGPropagator propagator3 = new PSGPropagator(Mode.DEF_GLO1);
-       	taskExecutor.execute(propagator3);
+       	scheduler.add("DEF_GLO1", 1, propagator3);
        	PSGPropagator propagator4 = new PSGPropagator(Mode.USE_GLO1);
-       	taskExecutor.execute(propagator4);
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+       	scheduler.add("USE_GLO1", 1, propagator4);
+        scheduler.run();
 //		// For global
 //        taskExecutor = Executors.newFixedThreadPool(2);
 //        propagator = new PSGPropagator(Mode.DEF_GLO1);
@@ -2258,21 +2215,16 @@ public class ProgramSummaryGraph {
     private void propagatePhaseTwoWithThreads() {
     	System.out.println("[ProgramSummaryGraph] begin propagatePhaseTwoWithThreads, time: " + (new Date()).toString());
     	// For reference
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(4);
+        TaskScheduler scheduler = new TaskScheduler("PSGPropagator");
         PSGPropagator propagator1 = new PSGPropagator(Mode.DEF_REF2);
-       	taskExecutor.execute(propagator1);
+       	scheduler.add("DEF_REF2", 1, propagator1);
        	PSGPropagator propagator2 = new PSGPropagator(Mode.USE_REF2);
-       	taskExecutor.execute(propagator2);
+       	scheduler.add("USE_REF2", 1, propagator2);
        	PSGPropagator propagator3 = new PSGPropagator(Mode.DEF_GLO2);
-       	taskExecutor.execute(propagator3);
+       	scheduler.add("DEF_GLO2", 1, propagator3);
        	PSGPropagator propagator4 = new PSGPropagator(Mode.USE_GLO2);
-       	taskExecutor.execute(propagator4);
-        taskExecutor.shutdown();
-        try {
-			taskExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+       	scheduler.add("USE_GLO2", 1, propagator4);
+        scheduler.run();
 //		// For global
 //        taskExecutor = Executors.newFixedThreadPool(2);
 //        propagator = new PSGPropagator(Mode.DEF_GLO2);
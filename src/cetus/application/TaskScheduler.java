@@ -0,0 +1,212 @@
+package cetus.application;
+
+import cetus.exec.PassTelemetry;
+import cetus.hir.DFIterator;
+import cetus.hir.PrintTools;
+import cetus.hir.Procedure;
+import cetus.hir.Traversable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class runs the independent tasks of a phase, e.g., the analysis of
+ * each procedure, on a fork-join pool shared by all phases and sized to the
+ * number of available cores. The tasks are submitted in the order of
+ * decreasing weight so that the largest procedures start first and the
+ * smaller ones fill the idle workers at the end of the phase. A task may
+ * split itself further with {@link #invokeAll(List)}, and the split tasks
+ * are stolen by the idle workers. The time spent by each task is reported
+ * after the phase finishes.
+ */
+public class TaskScheduler {
+
+    // Pool shared by all phases.
+    private static ForkJoinPool pool;
+
+    // Number of slowest tasks printed at verbosity level 2.
+    private static final int NUM_SLOWEST_TASKS = 5;
+
+    // Name of the phase.
+    private final String phase;
+
+    // Tasks added to the phase.
+    private final List<Task> tasks;
+
+    /** Task with its weight and the time spent. */
+    private static class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String name;
+        private final Procedure proc;
+        private final long weight;
+        private final Runnable body;
+        private long nanos;
+
+        private Task(String name, Procedure proc, long weight, Runnable body) {
+            this.name = name;
+            this.proc = proc;
+            this.weight = weight;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            body.run();
+            nanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Constructs a scheduler for the specified phase.
+     * @param phase the name of the phase printed with the timings.
+     */
+    public TaskScheduler(String phase) {
+        this.phase = phase;
+        tasks = new ArrayList<Task>();
+    }
+
+    /**
+     * Returns the pool shared by all phases.
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    /**
+     * Adds a task for the specified procedure.
+     * @param proc the procedure processed by the task.
+     * @param weight the estimated cost of the task, e.g., the size of the CFG.
+     * @param body the task.
+     */
+    public void add(Procedure proc, long weight, Runnable body) {
+        tasks.add(new Task(proc.getSymbolName(), proc, weight, body));
+    }
+
+    /**
+     * Adds a task that is not associated with a procedure.
+     * @param name the name of the task printed with the timings.
+     * @param weight the estimated cost of the task.
+     * @param body the task.
+     */
+    public void add(String name, long weight, Runnable body) {
+        tasks.add(new Task(name, null, weight, body));
+    }
+
+    /**
+     * Runs all the tasks added to the phase and waits for their completion.
+     * Tasks with larger weights are started first, and tasks with the same
+     * weight are started in the order they were added. An exception thrown by
+     * a task is rethrown after all the other tasks finish.
+     */
+    public void run() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Task> sorted = new ArrayList<Task>(tasks);
+        Collections.sort(sorted, new Comparator<Task>() {
+            public int compare(Task t1, Task t2) {
+                return (t1.weight < t2.weight) ? 1 :
+                        ((t1.weight > t2.weight) ? -1 : 0);
+            }
+        });
+        ForkJoinPool fjp = getPool();
+        for (Task task : sorted) {
+            fjp.execute(task);
+        }
+        RuntimeException failure = null;
+        for (Task task : sorted) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        report(sorted, System.nanoTime() - start);
+        tasks.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Prints the timings of the tasks and adds the procedure times to the
+    // telemetry of the running pass.
+    private void report(List<Task> sorted, long elapsed) {
+        long total = 0;
+        for (Task task : sorted) {
+            total += task.nanos;
+            if (task.proc != null) {
+                PassTelemetry.addProcedureTime(task.proc, task.nanos);
+            }
+        }
+        PrintTools.printlnStatus(2, "[" + phase + "] " + sorted.size() +
+                " tasks on " + getPool().getParallelism() + " workers, " +
+                toMillis(elapsed) + " ms elapsed, " + toMillis(total) +
+                " ms in tasks");
+        List<Task> slowest = new ArrayList<Task>(sorted);
+        Collections.sort(slowest, new Comparator<Task>() {
+            public int compare(Task t1, Task t2) {
+                return (t1.nanos < t2.nanos) ? 1 :
+                        ((t1.nanos > t2.nanos) ? -1 : 0);
+            }
+        });
+        int num_printed = (PrintTools.getVerbosity() > 2) ?
+                slowest.size() : Math.min(slowest.size(), NUM_SLOWEST_TASKS);
+        for (int i = 0; i < num_printed; i++) {
+            Task task = slowest.get(i);
+            PrintTools.printlnStatus(2, "  " + task.name + ": " +
+                    toMillis(task.nanos) + " ms (weight " + task.weight + ")");
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1000000.0);
+    }
+
+    /**
+     * Runs the specified sub-tasks of a task and waits for their completion.
+     * The sub-tasks are forked to the shared pool if the caller is a task
+     * running on the pool; otherwise, they are run in order by the caller.
+     * @param bodies the sub-tasks.
+     */
+    public static void invokeAll(List<? extends Runnable> bodies) {
+        if (bodies.size() < 2 || !ForkJoinTask.inForkJoinPool()) {
+            for (Runnable body : bodies) {
+                body.run();
+            }
+            return;
+        }
+        List<Task> subtasks = new ArrayList<Task>(bodies.size());
+        for (Runnable body : bodies) {
+            subtasks.add(new Task(null, null, 0, body));
+        }
+        ForkJoinTask.invokeAll(subtasks);
+    }
+
+    /**
+     * Returns the number of IR nodes in the specified tree, which is used as
+     * the weight of a task that has no CFG yet.
+     * @param t the root of the tree.
+     * @return the number of nodes.
+     */
+    public static long getSize(Traversable t) {
+        long ret = 0;
+        DFIterator<Traversable> iter =
+                new DFIterator<Traversable>(t, Traversable.class);
+        while (iter.hasNext()) {
+            iter.next();
+            ret++;
+        }
+        return ret;
+    }
+}
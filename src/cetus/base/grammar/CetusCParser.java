@@ -35,6 +35,43 @@ public class CetusCParser implements CetusParser {
         }
     }
 
+    /**
+    * This nested class runs the pre-annotation step (PreCLexer and
+    * PreCParser) and writes its output directly to the standard input of the
+    * external preprocessor, so no intermediate file is created.
+    */
+    private class FeedThread extends Thread {
+        private String input_filename;
+        private String filename;
+        private OutputStream dest;
+        private Exception error;
+
+        FeedThread(String input_filename, String filename, OutputStream dest) {
+            this.input_filename = input_filename;
+            this.filename = filename;
+            this.dest = dest;
+            this.error = null;
+        }
+
+        public void run() {
+            PrintStream out =
+                    new PrintStream(new BufferedOutputStream(dest, 65536));
+            try {
+                InputStream istream = new DataInputStream(
+                        new BufferedInputStream(
+                        new FileInputStream(input_filename)));
+                PreCLexer lexer = new PreCLexer(istream);
+                PreCParser parser = new PreCParser(lexer);
+                parser.programUnit(out, filename);
+                istream.close();
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                out.close();
+            }
+        }
+    }
+
     /* Working directory for the parser. */
     private File pwd;
 
@@ -62,6 +99,11 @@ public class CetusCParser implements CetusParser {
     public TranslationUnit parseFile(String input_filename,
                                      CommandLineOptionSet options) {
         String cmd = options.getValue("preprocessor") + getMacros(options);
+        if (options.getValue("preprocessor-pipe") != null &&
+            options.getValue("debug_preprocessor_input") == null &&
+            options.getValue("debug_parser_input") == null) {
+            return parseAntlrPipe(input_filename, cmd, options);
+        }
         return parseAntlr(input_filename, cmd, options);
     }
 
@@ -88,6 +130,7 @@ public class CetusCParser implements CetusParser {
         String filename = null;
         byte[] barray = null;
         String prename = null;
+        File prefile = null;
         Class class_TokenStream = null;
         // pre step to handle header files
         // Insert markers for start and end of a header file
@@ -97,9 +140,11 @@ public class CetusCParser implements CetusParser {
             PreCLexer lexer = new PreCLexer(istream);
             PreCParser parser = new PreCParser(lexer);
             filename = (new File(input_filename)).getName();
-            prename = "cppinput_" + filename;
-            File prefile = new File(pwd, prename);
+            // Each call has its own intermediate file since the same parser
+            // may run on files with the same name concurrently.
+            prefile = File.createTempFile("cppinput_", "_" + filename, pwd);
             prefile.deleteOnExit();
+            prename = prefile.getName();
             FileOutputStream fo = new FileOutputStream(prefile);
             // Add option to print pre annotated input file before
             // calling external preprocessor and exit
@@ -148,6 +193,7 @@ public class CetusCParser implements CetusParser {
             }
             out_pipe.join();
             err_pipe.join();
+            prefile.delete();
             barray = bo.toByteArray();
             //----------------
             //System.out.write(barray, 0, Array.getLength(barray));
@@ -172,7 +218,69 @@ public class CetusCParser implements CetusParser {
         try {
             InputStream istream =
                     new DataInputStream(new ByteArrayInputStream(barray));
-            NewCLexer lexer = new NewCLexer(istream);
+            NewCLexer lexer = createLexer(istream, options);
+            lexer.setOriginalSource(filename);
+            lexer.setTokenObjectClass("cetus.base.grammars.CToken");
+            lexer.initialize();
+            NewCParser parser = new NewCParser(lexer);
+            parser.getPreprocessorInfoChannel(
+                    lexer.getPreprocessorInfoChannel());
+            parser.setLexer(lexer);
+            parser.translationUnit(tu);
+            finishLexer(lexer, tu);
+        } catch (Exception e) {
+            System.err.println("Parse error: " + e);
+            e.printStackTrace();
+            Tools.exit(1);
+        }
+        return tu;
+    }
+
+    /**
+    * Parse the associated input file with the same three stages as
+    * {@link #parseAntlr}, but the stages are connected with pipes instead of
+    * an intermediate file and an in-memory copy of the preprocessed file.
+    * The pre-annotated input is written to the standard input of the external
+    * preprocessor by a separate thread, and the lexer consumes the standard
+    * output of the preprocessor as it is produced. The preprocessor command
+    * should read from the standard input when no input file is given.
+    *
+    * @param input_filename Name of file to parse
+    * @return Parsed TranslationUnit
+    */
+    private TranslationUnit parseAntlrPipe(String input_filename,
+                        String pre_options, CommandLineOptionSet options) {
+        TranslationUnit tu = new TranslationUnit(input_filename);
+        String filename = (new File(input_filename)).getName();
+        if (!(new File(input_filename)).canRead()) {
+            System.err.println("cetus: could not read input file " +
+                               input_filename);
+            Tools.exit(1);
+        }
+        Process p = null;
+        FeedThread feeder = null;
+        PipeThread err_pipe = null;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(
+                    Arrays.asList(pre_options.trim().split(" +")));
+            pb.directory(pwd);
+            p = pb.start();
+            feeder = new FeedThread(
+                    input_filename, filename, p.getOutputStream());
+            err_pipe = new PipeThread(new BufferedReader(
+                    new InputStreamReader(p.getErrorStream())), System.err);
+            feeder.start();
+            err_pipe.start();
+        } catch (IOException e) {
+            System.err.println("Fatal error starting preprocessor: " + e);
+            Tools.exit(1);
+        }
+
+        // Actual antlr parser is called on the preprocessor output
+        try {
+            InputStream istream = new DataInputStream(
+                    new BufferedInputStream(p.getInputStream(), 65536));
+            NewCLexer lexer = createLexer(istream, options);
             lexer.setOriginalSource(filename);
             lexer.setTokenObjectClass("cetus.base.grammars.CToken");
             lexer.initialize();
@@ -181,14 +289,57 @@ public class CetusCParser implements CetusParser {
                     lexer.getPreprocessorInfoChannel());
             parser.setLexer(lexer);
             parser.translationUnit(tu);
+            finishLexer(lexer, tu);
+            istream.close();
         } catch (Exception e) {
             System.err.println("Parse error: " + e);
             e.printStackTrace();
             Tools.exit(1);
         }
+
+        try {
+            feeder.join();
+            if (feeder.error != null) {
+                System.err.println("cetus: exception: " + feeder.error);
+                feeder.error.printStackTrace();
+                Tools.exit(1);
+            }
+            if (p.waitFor() != 0) {
+                System.err.println(
+                        "cetus: preprocessor terminated with exit code "
+                        + p.exitValue());
+                Tools.exit(1);
+            }
+            err_pipe.join();
+        } catch (InterruptedException e) {
+            System.err.println("Fatal error waiting for preprocessor: " + e);
+            Tools.exit(1);
+        }
         return tu;
     }
 
+    /**
+    * Creates the lexer for the preprocessed input; the lexer reads the input
+    * through the shared {@link HeaderCache} if <b>header-cache</b> is set.
+    */
+    private static NewCLexer createLexer(InputStream istream,
+                                         CommandLineOptionSet options) {
+        if (options.getValue("header-cache") != null) {
+            return HeaderCache.getInstance().createLexer(istream);
+        }
+        return new NewCLexer(istream);
+    }
+
+    /**
+    * Completes the parsed translation unit with the header declarations
+    * that were skipped by the lexer.
+    */
+    private static void finishLexer(NewCLexer lexer, TranslationUnit tu) {
+        if (lexer instanceof HeaderCache.CachingLexer) {
+            ((HeaderCache.CachingLexer)lexer).finish(tu);
+        }
+    }
+
     // Reads option value from -macro and returns a converted string to be
     // added in the preprocessor cmd line.
     protected static String getMacros(CommandLineOptionSet options) {
@@ -0,0 +1,429 @@
+package cetus.base.grammars;
+
+import cetus.hir.*;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* Cache of parsed header regions shared by all translation units parsed in the
+* same run. PreCParser brackets every file inclusion with
+* <b>#pragma startinclude</b> and <b>#pragma endinclude</b>, so the
+* preprocessed input contains one region per top-level inclusion. A region is
+* identified by its include directive and a digest of its preprocessed text
+* (line markers excluded), which already reflects the macro set in effect.
+* When a region was parsed before, its text is dropped before lexing and the
+* cached declarations are cloned into the new translation unit after parsing.
+* Typedef names and token numbers of the skipped region are replayed to the
+* lexer and parser so the rest of the file is parsed as before.
+*/
+public class HeaderCache {
+
+    private static final String START_INCLUDE = "#pragma startinclude";
+
+    private static final String END_INCLUDE = "#pragma endinclude";
+
+    /** The cache instance shared by all parsers */
+    private static final HeaderCache instance = new HeaderCache();
+
+    /** Cached regions keyed by the include directive and content digest */
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    /** Statistics */
+    private final AtomicInteger num_hits, num_misses;
+
+    /** Parsed contents of a header region */
+    private static class Entry {
+        // Detached copies of the declarations in the region.
+        private final List<Declaration> decls;
+        // Typedef names declared in the region.
+        private final List<String> typedefs;
+        // Number of tokens in the region.
+        private final int num_tokens;
+
+        private Entry(List<Declaration> decls, List<String> typedefs,
+                      int num_tokens) {
+            this.decls = decls;
+            this.typedefs = typedefs;
+            this.num_tokens = num_tokens;
+        }
+    }
+
+    /** A header region found in the input of one translation unit */
+    private static class Region {
+        private final String key;
+        private final String directive;
+        // Non-null if the region was found in the cache.
+        private final Entry entry;
+        private int start_token;
+        private int num_tokens;
+
+        private Region(String key, String directive, Entry entry) {
+            this.key = key;
+            this.directive = directive;
+            this.entry = entry;
+            this.start_token = -1;
+            this.num_tokens = -1;
+        }
+    }
+
+    private HeaderCache() {
+        entries = new ConcurrentHashMap<String, Entry>();
+        num_hits = new AtomicInteger(0);
+        num_misses = new AtomicInteger(0);
+    }
+
+    /**
+    * Returns the header cache shared by all translation units.
+    * @return the header cache.
+    */
+    public static HeaderCache getInstance() {
+        return instance;
+    }
+
+    /**
+    * Creates a lexer that reads the specified preprocessed input through
+    * this cache.
+    * @param istream the preprocessed input.
+    * @return the new lexer.
+    */
+    public CachingLexer createLexer(InputStream istream) {
+        return new CachingLexer(new RegionFilter(istream));
+    }
+
+    /** Returns a string summary of the cache */
+    @Override
+    public String toString() {
+        return "[HeaderCache] " + entries.size() + " regions, " +
+                num_hits.get() + " hits, " + num_misses.get() + " misses";
+    }
+
+    /**
+    * Input stream that splits the preprocessed input into lines, identifies
+    * header regions, and drops the contents of cached regions while keeping
+    * their start and end markers.
+    */
+    private class RegionFilter extends InputStream {
+        private final InputStream in;
+        private final List<Region> regions;
+        private byte[] buf;
+        private int pos;
+        private boolean eof;
+
+        private RegionFilter(InputStream in) {
+            this.in = new BufferedInputStream(in, 65536);
+            regions = new ArrayList<Region>();
+            buf = new byte[0];
+            pos = 0;
+            eof = false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= buf.length && !fill()) {
+                return -1;
+            }
+            return buf[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= buf.length && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, buf.length - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        // Reads the next line, or the next header region, into the buffer.
+        private boolean fill() throws IOException {
+            byte[] line = readLine();
+            if (line == null) {
+                return false;
+            }
+            if (!startsWith(line, START_INCLUDE)) {
+                buf = line;
+                pos = 0;
+                return true;
+            }
+            byte[] start = line;
+            ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+            byte[] end = null;
+            MessageDigest md = newDigest();
+            while ((line = readLine()) != null) {
+                if (startsWith(line, END_INCLUDE)) {
+                    end = line;
+                    break;
+                }
+                body.write(line, 0, line.length);
+                if (!isLineMarker(line)) {
+                    md.update(line);
+                }
+            }
+            String directive = new String(start).trim();
+            Entry entry = null;
+            String key = null;
+            if (end != null) {
+                key = directive + "\n" + toHex(md.digest());
+                entry = entries.get(key);
+            }
+            regions.add(new Region(key, directive, entry));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    start.length + body.size() + END_INCLUDE.length() + 1);
+            out.write(start, 0, start.length);
+            if (entry == null) {
+                body.writeTo(out);
+            }
+            if (end != null) {
+                out.write(end, 0, end.length);
+            }
+            buf = out.toByteArray();
+            pos = 0;
+            return true;
+        }
+
+        // Reads a line including the line terminator; null at end of input.
+        private byte[] readLine() throws IOException {
+            if (eof) {
+                return null;
+            }
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            int c;
+            while ((c = in.read()) != -1) {
+                line.write(c);
+                if (c == '\n') {
+                    break;
+                }
+            }
+            if (c == -1) {
+                eof = true;
+                if (line.size() == 0) {
+                    return null;
+                }
+            }
+            return line.toByteArray();
+        }
+    }
+
+    /**
+    * Lexer that reads its input through a {@link RegionFilter} and keeps the
+    * token numbering and typedef names consistent for skipped regions.
+    */
+    public class CachingLexer extends NewCLexer {
+        private final RegionFilter filter;
+        private int num_regions;
+        private Region current;
+
+        private CachingLexer(RegionFilter filter) {
+            super(filter);
+            this.filter = filter;
+            num_regions = 0;
+            current = null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void setPreprocessingDirective(String pre, int t) {
+            super.setPreprocessingDirective(pre, t);
+            if (t != Pragma.pragma) {
+                return;
+            }
+            String text = pre.trim();
+            if (text.startsWith(START_INCLUDE)) {
+                current = null;
+                if (num_regions < filter.regions.size()) {
+                    current = filter.regions.get(num_regions++);
+                    current.start_token = tokenNumber;
+                }
+            } else if (text.startsWith(END_INCLUDE) && current != null) {
+                if (current.entry != null) {
+                    // Replays the effect of the skipped tokens.
+                    tokenNumber += current.entry.num_tokens;
+                    HashMap<String, String> typetable =
+                            (HashMap<String, String>)parser.typestack.get(0);
+                    for (String name : current.entry.typedefs) {
+                        typetable.put(name, "typedef");
+                    }
+                } else {
+                    current.num_tokens = tokenNumber - current.start_token;
+                }
+                current = null;
+            }
+        }
+
+        /**
+        * Completes the specified translation unit parsed by this lexer; the
+        * cached declarations are inserted in the skipped regions and newly
+        * parsed regions are added to the cache.
+        * @param tu the translation unit.
+        */
+        public void finish(TranslationUnit tu) {
+            List<PreAnnotation> markers = new ArrayList<PreAnnotation>();
+            DFIterator<PreAnnotation> iter =
+                    new DFIterator<PreAnnotation>(tu, PreAnnotation.class);
+            while (iter.hasNext()) {
+                PreAnnotation annot = iter.next();
+                String text = annot.getText().trim();
+                if (text.startsWith(START_INCLUDE) ||
+                    text.startsWith(END_INCLUDE)) {
+                    markers.add(annot);
+                }
+            }
+            int num_reused = 0;
+            int marker_idx = 0;
+            for (Region region : filter.regions) {
+                PreAnnotation start = null, end = null;
+                if (marker_idx < markers.size() &&
+                    markers.get(marker_idx).getText().trim().startsWith(
+                    START_INCLUDE)) {
+                    start = markers.get(marker_idx++);
+                    if (marker_idx < markers.size() &&
+                        markers.get(marker_idx).getText().trim().startsWith(
+                        END_INCLUDE)) {
+                        end = markers.get(marker_idx++);
+                    }
+                }
+                if (region.entry != null) {
+                    insertEntry(tu, region, start);
+                    num_reused++;
+                    num_hits.incrementAndGet();
+                } else if (region.key != null) {
+                    num_misses.incrementAndGet();
+                    addEntry(tu, region, start, end);
+                }
+            }
+            PrintTools.printlnStatus("[HeaderCache] " + tu.getInputFilename()
+                    + ": " + num_reused + " of " + filter.regions.size() +
+                    " header regions reused", 2);
+        }
+    }
+
+    // Inserts clones of the cached declarations after the start marker, so
+    // the region is printed as its include directive as before.
+    private static void insertEntry(
+            TranslationUnit tu, Region region, PreAnnotation start) {
+        List<Declaration> decls = region.entry.decls;
+        if (start != null &&
+            start.getParent() instanceof DeclarationStatement) {
+            // A compound statement finds the statement of the reference
+            // declaration by identity, so the clones are inserted right after
+            // the start marker in reverse order instead of after each other.
+            CompoundStatement stmt =
+                    (CompoundStatement)start.getParent().getParent();
+            for (int i = decls.size() - 1; i >= 0; i--) {
+                stmt.addDeclarationAfter(start, decls.get(i).clone());
+            }
+            return;
+        }
+        if (start == null) {
+            // The markers are not attached when no token follows the region.
+            start = new PreAnnotation(region.directive);
+            start.setPrintMethod(PreAnnotation.print_raw_method);
+            tu.addDeclaration(start);
+        }
+        // A translation unit finds the reference declaration with equals(),
+        // which matches any earlier annotation with the same text, e.g., the
+        // same comment in another header. The clones are inserted after an
+        // anchor that replaces the start marker until they are in place.
+        int index = indexOf(tu.getChildren(), start);
+        Declaration anchor = new AnnotationDeclaration();
+        tu.setChild(index, anchor);
+        for (int i = decls.size() - 1; i >= 0; i--) {
+            tu.addDeclarationAfter(anchor, decls.get(i).clone());
+        }
+        tu.setChild(index, start);
+    }
+
+    // Adds the declarations of a newly parsed region to the cache. Only the
+    // regions that are complete sequences of top-level declarations are
+    // cached.
+    private void addEntry(TranslationUnit tu, Region region,
+                          PreAnnotation start, PreAnnotation end) {
+        if (start == null || end == null || region.num_tokens < 0 ||
+            start.getParent() != tu || end.getParent() != tu ||
+            entries.containsKey(region.key)) {
+            return;
+        }
+        List<Traversable> children = tu.getChildren();
+        int from = indexOf(children, start), to = indexOf(children, end);
+        List<Declaration> decls = new ArrayList<Declaration>(to - from);
+        List<String> typedefs = new ArrayList<String>();
+        for (int i = from + 1; i < to; i++) {
+            Declaration decl = (Declaration)children.get(i);
+            decls.add(decl.clone());
+            if (decl instanceof VariableDeclaration &&
+                ((VariableDeclaration)decl).getSpecifiers().contains(
+                Specifier.TYPEDEF)) {
+                for (IDExpression id : decl.getDeclaredIDs()) {
+                    typedefs.add(id.toString());
+                }
+            }
+        }
+        entries.putIfAbsent(
+                region.key, new Entry(decls, typedefs, region.num_tokens));
+    }
+
+    // Annotations with the same text are equal, so the search is by identity.
+    private static int indexOf(List<Traversable> children, Traversable t) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == t) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] line, String prefix) {
+        int len = prefix.length();
+        if (line.length < len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Checks if the line is a line marker, "# N ..." or "#line N ...".
+    private static boolean isLineMarker(byte[] line) {
+        if (line.length < 3 || line[0] != '#') {
+            return false;
+        }
+        return (line[1] == ' ' && Character.isDigit(line[2])) ||
+                startsWith(line, "#line");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("SHA-1 is not available");
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package cetus.codegen;
 
+import cetus.exec.PassTelemetry;
 import cetus.hir.PrintTools;
 import cetus.hir.Program;
 
@@ -17,7 +18,10 @@ public abstract class CodeGenPass
   public static void run(CodeGenPass pass)
   {
     PrintTools.println(pass.getPassName() + " begin", 0);
+    PassTelemetry.Record telemetry =
+        PassTelemetry.begin(pass.getPassName(), pass.program);
     pass.start();
+    PassTelemetry.end(telemetry, pass.program);
     PrintTools.println(pass.getPassName() + " end", 0);
   }
 
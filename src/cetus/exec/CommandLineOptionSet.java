@@ -189,6 +189,33 @@ public class CommandLineOptionSet {
         return retval;
     }
 
+    /**
+    * Returns a string dump of the current option values, one option per line
+    * in the order of the option names, including the selection of IR for
+    * inclusion/exclusion. Two option sets produce the same dump if and only
+    * if they have the same values and selections.
+    * @param ignored the names of the options that are not dumped.
+    */
+    public String dumpValues(Collection<String> ignored) {
+        StringBuilder sb = new StringBuilder(1000);
+        for (String name : name_to_record.keySet()) {
+            if (ignored.contains(name)) {
+                continue;
+            }
+            OptionRecord record = name_to_record.get(name);
+            sb.append(name);
+            if (record.value != null) {
+                sb.append("=").append(record.value);
+            }
+            if (!record.select_map.isEmpty()) {
+                sb.append(" ").append(record.select_type).append(" ");
+                sb.append(new TreeMap<String, List<String>>(record.select_map));
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
     /**
     * Returns the usage information for the entire option set.
     */
@@ -10,13 +10,24 @@ import cetus.hir.PrintTools;
 import cetus.hir.Program;
 import cetus.hir.SymbolTools;
 import cetus.hir.Tools;
+import cetus.hir.TranslationUnit;
+import cetus.hir.Traversable;
 import cetus.transforms.*;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.SwingUtilities;
 
@@ -43,6 +54,9 @@ public class Driver {
     /** The filenames supplied on the command line. */
     protected List<String> filenames;
 
+    /** Size of the buffers used for writing an output file. */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /** Cetus default option file*/
 	public static String preferencesFileName = ".cetus.opt";
 	public static String preferencesDirFileName = CetusGUITools.user_home + CetusGUITools.file_sep + preferencesFileName;
@@ -122,6 +136,50 @@ public class Driver {
             "cetus.base.grammars.CetusCParser",
             "parsername",
             "Name of parser to be used for parsing source file");
+        options.add(options.UTILITY,
+            "preprocessor-pipe",
+            "Pipe the annotated input file through the preprocessor into the"
+            + " parser\n"
+            + "      without temporary files (the preprocessor must read the"
+            + " standard input)");
+        options.add(options.UTILITY,
+            "header-cache",
+            "Reuse the parsed declarations of header files included with"
+            + " identical\n"
+            + "      preprocessed contents by multiple input files");
+        options.add(options.UTILITY,
+            "parse-threads",
+            "1",
+            "N",
+            "Number of worker threads that parse input files in parallel\n"
+            + "      =0 use all available processors\n"
+            + "      =1 parse input files one at a time (default)");
+        options.add(options.UTILITY,
+            "print-threads",
+            "1",
+            "N",
+            "Number of worker threads that print output files in parallel\n"
+            + "      =0 use all available processors\n"
+            + "      =1 print output files one at a time (default)");
+        options.add(options.UTILITY,
+            "telemetry",
+            "file",
+            "Write performance telemetry of every pass run to the file (CSV"
+            + " if the\n"
+            + "      file name ends with .csv, JSON otherwise)");
+        options.add(options.UTILITY,
+            "incremental",
+            "dir",
+            "Store the output of every procedure in the directory and reuse"
+            + " it for the\n"
+            + "      procedures whose code and dependences are unchanged in the"
+            + " next run;\n"
+            + "      with -alias=1 (default), -alias=2, -alias=4, or -range=2 a"
+            + " change\n"
+            + "      invalidates every procedure connected to it in the call"
+            + " graph, which\n"
+            + "      disables reuse for most programs (use -alias=0 or -alias=3"
+            + " instead)");
         options.add(options.UTILITY, // TODO: somebody needs to work on this.
             "dump-options",
             "Create file options.cetus with default options");
@@ -254,7 +312,25 @@ public class Driver {
             "Perform Data Dependence Testing (ON=2)\n"
             + "      =0 force to disable\n" //in case -parallelize-loops is on, but user wants to disable this option
             + "      =1 banerjee-wolfe test\n"
-            + "      =2 range test");
+            + "      =2 range test\n"
+            + "      =3 omega test (exact test on all subscripts together)");
+        options.add(options.ANALYSIS,
+            "ddt-threads",
+            "1",
+            "N",
+            "Number of worker threads that test loop nests for data"
+            + " dependence in parallel\n"
+            + "      =0 use all available processors\n"
+            + "      =1 test loop nests one at a time (default)");
+        options.add(options.ANALYSIS,
+            "ipa-threads",
+            "1",
+            "N",
+            "Number of worker threads that analyze independent call graph"
+            + " components\n"
+            + "      in parallel during interprocedural analysis\n"
+            + "      =0 use all available processors\n"
+            + "      =1 analyze procedures one at a time (default)");
         options.add(options.ANALYSIS,
             "parallelize-loops",
             "1", // now this option is turned on by default. (=0 to turn off)
@@ -276,6 +352,19 @@ public class Driver {
             + "      =2 remove existing OpenMP pragmas\n"
             + "      =3 remove existing OpenMP and Cetus pragmas\n"
             + "      =4 keep all pragmas");
+        options.add(options.TRANSFORM,
+            "loop-interchange",
+            "Permute perfectly nested loops for data locality; the innermost\n"
+            + "      loop is made unit-stride while an outermost parallel loop is kept");
+        options.add(options.TRANSFORM,
+            "loop-tiling",
+            "Tile fully permutable loop nests for data locality; tile sizes are\n"
+            + "      chosen from a cache model of the nest (see -cache-sizes)");
+        options.add(options.TRANSFORM,
+            "cache-sizes",
+            "L1,L2,L3",
+            "Set the data cache sizes used by -loop-tiling, e.g., 32K,1M,8M\n"
+            + "      (default: read from /sys/devices/system/cpu, or 32K,1M,8M)");
         options.add(options.TRANSFORM,
             "profile-loops",
             null,
@@ -299,8 +388,25 @@ public class Driver {
         + "      =1 advanced interprocedural analysis (default)\n"
         + "         Uses interprocedural points-to analysis\n"
         + "      =2 assume no alias exists when points-to analysis is too conservative\n"
-        + "      =3 assume no alias exists"
+        + "      =3 assume no alias exists\n"
+        + "      =4 fast unification-based analysis for very large programs\n"
+        + "         Uses flow-insensitive, context-insensitive alias sets"
         );
+        options.add(options.ANALYSIS,
+            "alias-size-limit",
+            "N",
+            "Maximum number of statements in the program for points-to"
+            + " analysis;\n"
+            + "      alias analysis falls back to the unification-based"
+            + " analysis (=4)\n"
+            + "      for larger programs");
+        options.add(options.ANALYSIS,
+            "alias-time-limit",
+            "N",
+            "Maximum number of seconds spent in points-to analysis;"
+            + " alias analysis\n"
+            + "      falls back to the unification-based analysis (=4)"
+            + " after the limit");
         options.add(options.TRANSFORM,
             "normalize-return-stmt",
             "Normalize return statements for all procedures");
@@ -311,7 +417,8 @@ public class Driver {
             "Specify the accuracy of symbolic analysis with value ranges\n"
             + "      =0 disable range computation (minimal symbolic analysis)\n"
             + "      =1 enable local range computation (default)\n"
-            + "      =2 enable inter-procedural computation (experimental)");
+            + "      =2 enable inter-procedural computation (experimental)\n"
+            + "      =4 enable sparse local range computation with lazy queries");
         options.add(options.UTILITY,
             "preserve-KR-function",
             "Preserves K&R-style function declaration");
@@ -528,19 +635,34 @@ public class Driver {
 
     /**
     * Parses all of the files listed in <var>filenames</var>
-    * and creates a {@link Program Program} object.
+    * and creates a {@link Program Program} object. Input files are parsed by
+    * a bounded pool of worker threads if the <b>parse-threads</b> option is
+    * greater than one, and the parsed translation units are always added to
+    * the program in the order of <var>filenames</var>.
     */
     @SuppressWarnings({"unchecked", "cast"})
     protected void parseFiles() {
         program = new Program();
-        Class class_parser;
+        Class<? extends CetusParser> class_parser;
+        double timer = Tools.getTime();
+        int num_threads = getParseThreads();
         try {
             class_parser = getClass().getClassLoader().loadClass(
-                           getOptionValue("parser"));
-            CetusParser cparser =
-                    (CetusParser)class_parser.getConstructor().newInstance();
-            for (String file : filenames) {
-                program.addTranslationUnit(cparser.parseFile(file,options));
+                           getOptionValue("parser")).asSubclass(
+                           CetusParser.class);
+            List<TranslationUnit> tus;
+            if (num_threads > 1) {
+                tus = parseFilesInParallel(class_parser, num_threads);
+            } else {
+                CetusParser cparser =
+                        class_parser.getConstructor().newInstance();
+                tus = new ArrayList<TranslationUnit>(filenames.size());
+                for (String file : filenames) {
+                    tus.add(parseFile(cparser, file));
+                }
+            }
+            for (TranslationUnit tu : tus) {
+                program.addTranslationUnit(tu);
             }
         } catch (ClassNotFoundException e) {
             System.err.println("Failed to load parser: " +
@@ -550,6 +672,9 @@ public class Driver {
             System.err.println("Failed to initialize parser");
             Tools.exit(1);
         }
+        PrintTools.printlnStatus("[Parser] " + filenames.size() +
+                " files parsed with " + num_threads + " thread(s) in " +
+                String.format("%.2f seconds", Tools.getTime(timer)), 1);
         // It is more natural to include these two steps in this method.
         // Link IDExpression => Symbol object for faster future access.
         SymbolTools.linkSymbol(program);
@@ -557,6 +682,88 @@ public class Driver {
         TransformPass.run(new AnnotationParser(program));
     }
 
+    /**
+    * Returns the number of parser threads requested by the
+    * <b>parse-threads</b> option, bounded by the number of input files.
+    */
+    private int getParseThreads() {
+        return getThreads("parse-threads", filenames.size());
+    }
+
+    /**
+    * Returns the number of worker threads requested by the specified option,
+    * where zero means all available processors, bounded by the number of
+    * tasks.
+    */
+    private static int getThreads(String option, int num_tasks) {
+        int ret = 1;
+        String value = getOptionValue(option);
+        if (value != null) {
+            try {
+                ret = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                System.err.println("ignoring invalid " + option + " " + value);
+            }
+        }
+        if (ret <= 0) {
+            ret = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Math.min(ret, num_tasks));
+    }
+
+    /**
+    * Parses a single input file with the given parser and reports the
+    * elapsed time for the file.
+    */
+    private static TranslationUnit parseFile(CetusParser cparser, String file){
+        double timer = Tools.getTime();
+        TranslationUnit ret = cparser.parseFile(file, options);
+        PrintTools.printlnStatus("[Parser] " + file + " parsed in " +
+                String.format("%.2f seconds", Tools.getTime(timer)), 1);
+        return ret;
+    }
+
+    /**
+    * Parses the input files on a fixed-size pool of worker threads. Each task
+    * runs the whole parsing pipeline (PreCParser, external preprocessor, and
+    * NewCParser) with its own parser instance, and the returned list follows
+    * the order of <var>filenames</var> regardless of completion order. A
+    * failure in any task terminates the program.
+    */
+    private List<TranslationUnit> parseFilesInParallel(
+            final Class<? extends CetusParser> class_parser, int num_threads)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(num_threads);
+        List<Future<TranslationUnit>> futures =
+                new ArrayList<Future<TranslationUnit>>(filenames.size());
+        try {
+            for (final String file : filenames) {
+                futures.add(executor.submit(new Callable<TranslationUnit>() {
+                    public TranslationUnit call() throws Exception {
+                        CetusParser cparser =
+                                class_parser.getConstructor().newInstance();
+                        return parseFile(cparser, file);
+                    }
+                }));
+            }
+            List<TranslationUnit> ret =
+                    new ArrayList<TranslationUnit>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    ret.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("cetus: failed to parse " +
+                            filenames.get(i) + ": " + e.getCause());
+                    e.getCause().printStackTrace();
+                    Tools.exit(1);
+                }
+            }
+            return ret;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 /*
     protected void parseFiles_old() {
         try {
@@ -698,21 +905,117 @@ public class Driver {
             System.err.println("parsing finished and parse-only option set");
             Tools.exit(0);
         }
+        IncrementalState.start(program);
         runPasses();
+        IncrementalState.finish(program);
+        PrintTools.printlnStatus(Cache.getStatistics(), 2);
         PrintTools.printlnStatus("Printing...", 1);
         try {
-            program.print();
-            // process indentation for output C file
-            String outDir = getOptionValue("outdir");
-            for (String fileString : filenames) {
-            	//System.out.println("**************"+fileString);
-            	File outFile = new File(outDir, (new File(fileString)).getName());
-            	Tools.processIndent(outFile);
-            }
+            printFiles();
         } catch (IOException e) {
             System.err.println("could not write output files: " + e);
             Tools.exit(1);
         }
+        PassTelemetry.write();
+    }
+
+    /**
+    * Writes the translation units of the program to the output directory
+    * given by the <b>outdir</b> option. Each file is printed and indented in
+    * a single pass through a buffered channel writer, producing the same
+    * output as {@link Program#print()} followed by
+    * {@link Tools#processIndent(File)}. Translation units are printed by a
+    * bounded pool of worker threads if the <b>print-threads</b> option is
+    * greater than one.
+    *
+    * @throws IOException if the output directory or a file cannot be
+    *       written.
+    */
+    protected void printFiles() throws IOException {
+        double timer = Tools.getTime();
+        File dir = new File(getOptionValue("outdir"));
+        if (!dir.exists() && !dir.mkdir()) {
+            throw new IOException("could not create output directory " + dir);
+        }
+        List<TranslationUnit> tus = new ArrayList<TranslationUnit>();
+        for (Traversable child : program.getChildren()) {
+            tus.add((TranslationUnit)child);
+        }
+        int num_threads = getThreads("print-threads", tus.size());
+        if (num_threads > 1) {
+            printFilesInParallel(dir, tus, num_threads);
+        } else {
+            for (TranslationUnit tu : tus) {
+                printFile(dir, tu);
+            }
+        }
+        PrintTools.printlnStatus("[Printer] " + tus.size() +
+                " files printed with " + num_threads + " thread(s) in " +
+                String.format("%.2f seconds", Tools.getTime(timer)), 1);
+    }
+
+    /**
+    * Prints a single translation unit to its output file in the given
+    * directory.
+    */
+    private static void printFile(File dir, TranslationUnit tu)
+            throws IOException {
+        FileOutputStream stream = new FileOutputStream(
+                new File(dir, tu.getOutputFilename()));
+        // Encoding errors are replaced as in FileWriter.
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        PrintWriter out = new PrintWriter(new IndentingWriter(
+                new BufferedWriter(Channels.newWriter(
+                stream.getChannel(), encoder, OUTPUT_BUFFER_SIZE),
+                OUTPUT_BUFFER_SIZE)));
+        try {
+            tu.print(out);
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("could not write " + tu.getOutputFilename());
+        }
+    }
+
+    /**
+    * Prints the translation units on a fixed-size pool of worker threads.
+    * Printing a translation unit only reads and simplifies the IR of the
+    * translation unit, so the units are printed independently.
+    */
+    private static void printFilesInParallel(final File dir,
+            List<TranslationUnit> tus, int num_threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(num_threads);
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        try {
+            for (final TranslationUnit tu : tus) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws IOException {
+                        printFile(dir, tu);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException)cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error)cause;
+                    }
+                    throw (IOException)cause;
+                } catch (InterruptedException e) {
+                    throw new IOException("printing was interrupted");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -797,20 +1100,20 @@ public class Driver {
             AnalysisPass.run(new OmpAnalysis(program));
         }
 */
+        // Loops are permuted before the parallelization decisions are made.
+        if (getOptionValue("loop-interchange") != null) {
+            TransformPass.run(new LoopInterchange(program));
+        }
         if (getOptionValue("parallelize-loops") != null && !getOptionValue("parallelize-loops").equals("0")) {
             AnalysisPass.run(new LoopParallelizationPass(program));
         }
+        // Tiling is applied to the annotated loops before ompGen.
+        if (getOptionValue("loop-tiling") != null) {
+            TransformPass.run(new LoopTiling(program));
+        }
         if (getOptionValue("ompGen") != null && !getOptionValue("ompGen").equals("0")) {
             CodeGenPass.run(new ompGen(program));
         }
-/*
-        if (getOptionValue("loop-interchange") != null) {
-            TransformPass.run(new LoopInterchange(program));
-        }
-        if (getOptionValue("loop-tiling") != null) {
-            AnalysisPass.run(new LoopTiling(program));
-        }
-*/
         if (getOptionValue("profile-loops") != null) {
             TransformPass.run(new LoopProfiler(program));
         }
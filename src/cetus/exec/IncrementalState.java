@@ -0,0 +1,399 @@
+package cetus.exec;
+
+import cetus.analysis.CallGraph;
+import cetus.hir.*;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+* Keeps the state of incremental compilation when the "incremental" option is
+* given. The state directory stores, for each procedure of the previous run,
+* a key and the output text of the procedure. The key is a hash of the
+* procedure body, the bodies of the procedures its analysis results depend
+* on, the file-scope declarations of the program, and the option values. A
+* procedure whose key is the same as the stored key is <i>reused</i>: the
+* analysis passes skip the procedure, and the stored output text replaces
+* the procedure before the program is printed. The other procedures, which
+* include every procedure whose dependences changed, are processed as usual.
+* <p>
+* The dependences of a procedure follow the precision of the interprocedural
+* analyses in use. The transitive callees are the dependences when the
+* analyses only use the side effects of the callees; with the interprocedural
+* points-to analysis ("alias" option 1 or 2) or range analysis ("range"
+* option 2), the results of a procedure also depend on its callers, so the
+* dependences are all procedures connected through call edges; and with the
+* unification-based alias analysis ("alias" option 4) every procedure
+* depends on the whole program. Since the call graph of a typical program is
+* connected, these analyses, including the default "alias" option 1,
+* effectively disable reuse. No procedure is reused if the program calls
+* through function pointers, or in a translation unit whose file-scope
+* declarations were changed by the passes in the previous run since such
+* changes are not recorded per procedure. The state does not identify the
+* build of the compiler, so the state directory should be removed after
+* updating Cetus.
+*/
+public class IncrementalState {
+
+    /** Name of the state file in the state directory */
+    private static final String STATE_FILE = "procedures.state";
+
+    /** Format version of the state file */
+    private static final int STATE_VERSION = 1;
+
+    /** Options that do not affect the output code */
+    private static final List<String> ignored_options = Arrays.asList(
+            "incremental", "outdir", "verbosity", "telemetry",
+            "parse-threads", "print-threads", "ddt-threads", "ipa-threads",
+            "callgraph");
+
+    /** Procedures whose stored output text is reused in the current run */
+    private static final Map<Procedure, String> reused =
+            new IdentityHashMap<Procedure, String>();
+
+    /** Identifiers and keys of the procedures in the current run */
+    private static final Map<Procedure, String[]> current =
+            new IdentityHashMap<Procedure, String[]>();
+
+    /** File-scope children of the translation units before the passes */
+    private static final Map<TranslationUnit, List<Traversable>> tu_children =
+            new IdentityHashMap<TranslationUnit, List<Traversable>>();
+
+    private IncrementalState() {
+    }
+
+    /**
+    * Checks if incremental compilation is enabled.
+    * @return true if the "incremental" option is given.
+    */
+    public static boolean isEnabled() {
+        return (Driver.getOptionValue("incremental") != null);
+    }
+
+    /**
+    * Checks if the procedure enclosing the specified IR is reused from the
+    * previous run, in which case analysis passes do not need to process the
+    * IR.
+    * @param t the IR object to be checked.
+    * @return true if the enclosing procedure is reused.
+    */
+    public static boolean isReused(Traversable t) {
+        if (reused.isEmpty()) {
+            return false;
+        }
+        while (t != null && !(t instanceof Procedure)) {
+            t = t.getParent();
+        }
+        return (t != null && reused.containsKey(t));
+    }
+
+    /**
+    * Computes the keys of the procedures in the program and identifies the
+    * procedures reused from the previous run. This method should be called
+    * before the passes are run, and does nothing if incremental compilation
+    * is not enabled.
+    * @param program the parsed program.
+    */
+    public static void start(Program program) {
+        if (!isEnabled()) {
+            return;
+        }
+        reused.clear();
+        current.clear();
+        tu_children.clear();
+        Map<String, String[]> stored = new HashMap<String, String[]>();
+        Set<String> changed_units = new HashSet<String>();
+        readState(stored, changed_units);
+        // Collects the procedures and the hash of the file-scope context.
+        List<Procedure> procs = new ArrayList<Procedure>();
+        Map<String, Integer> num_ids = new HashMap<String, Integer>();
+        Map<Procedure, String> bodies = new IdentityHashMap<Procedure, String>();
+        MessageDigest context = getDigest();
+        update(context, Driver.options.dumpValues(ignored_options));
+        for (Traversable child : program.getChildren()) {
+            TranslationUnit tu = (TranslationUnit)child;
+            tu_children.put(tu, new ArrayList<Traversable>(tu.getChildren()));
+            update(context, tu.getInputFilename());
+            for (Traversable decl : tu.getChildren()) {
+                if (decl instanceof Procedure) {
+                    Procedure proc = (Procedure)decl;
+                    String id = tu.getInputFilename() + ":" + proc.getName();
+                    Integer num = num_ids.get(id);
+                    num_ids.put(id, (num == null) ? 1 : num + 1);
+                    procs.add(proc);
+                    bodies.put(proc, toHex(getDigest(), toText(proc)));
+                    current.put(proc, new String[] {id, null});
+                } else {
+                    update(context, toText(decl));
+                }
+            }
+        }
+        String context_hash = toHex(context, "");
+        // Computes the keys from the dependences.
+        Map<Procedure, Collection<Procedure>> deps = getDependences(program);
+        for (int i = 0; deps != null && i < procs.size(); i++) {
+            Procedure proc = procs.get(i);
+            String[] state = current.get(proc);
+            MessageDigest key = getDigest();
+            update(key, context_hash);
+            update(key, state[0]);
+            update(key, bodies.get(proc));
+            List<String> dep_hashes = new ArrayList<String>();
+            for (Procedure dep : deps.get(proc)) {
+                dep_hashes.add(current.get(dep)[0] + bodies.get(dep));
+            }
+            Collections.sort(dep_hashes);
+            for (String dep_hash : dep_hashes) {
+                update(key, dep_hash);
+            }
+            state[1] = toHex(key, "");
+            TranslationUnit tu = (TranslationUnit)proc.getParent();
+            String[] prev = stored.get(state[0]);
+            if (prev != null && prev[0].equals(state[1]) &&
+                num_ids.get(state[0]) == 1 &&
+                !changed_units.contains(tu.getInputFilename())) {
+                reused.put(proc, prev[1]);
+            }
+        }
+        PrintTools.printlnStatus(1, "[IncrementalState]", reused.size(),
+                "of", procs.size(), "procedures reused from",
+                Driver.getOptionValue("incremental"));
+    }
+
+    /**
+    * Replaces the reused procedures with their stored output text and writes
+    * the state of the current run to the state directory. This method should
+    * be called after the passes are run, and does nothing if incremental
+    * compilation is not enabled.
+    * @param program the transformed program.
+    */
+    public static void finish(Program program) {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<String, String[]> stored = new LinkedHashMap<String, String[]>();
+        Set<String> changed_units = new HashSet<String>();
+        for (Traversable child : program.getChildren()) {
+            TranslationUnit tu = (TranslationUnit)child;
+            List<Traversable> children = tu.getChildren();
+            List<Traversable> prev_children = tu_children.get(tu);
+            if (prev_children == null ||
+                !isSameList(children, prev_children)) {
+                changed_units.add(tu.getInputFilename());
+            }
+            for (int i = 0; i < children.size(); i++) {
+                Traversable decl = children.get(i);
+                String[] state = current.get(decl);
+                if (state == null || state[1] == null) {
+                    continue;
+                }
+                String text = reused.get(decl);
+                if (text == null) {
+                    // Translation units remove verbose parentheses before
+                    // printing their children.
+                    PrintTools.removeVerboseParens(decl);
+                    text = toText(decl);
+                } else {
+                    tu.setChild(i, new AnnotationDeclaration(
+                            new CodeAnnotation(text)));
+                }
+                stored.put(state[0], new String[] {state[1], text});
+            }
+        }
+        writeState(stored, changed_units);
+        reused.clear();
+        current.clear();
+        tu_children.clear();
+    }
+
+    // Returns the map from each procedure to the procedures its analysis
+    // results depend on, or null if the call graph is incomplete.
+    private static Map<Procedure, Collection<Procedure>>
+            getDependences(Program program) {
+        CallGraph callgraph = new CallGraph(program);
+        if (callgraph.getConnectedProcedures(
+                new ArrayList<Procedure>()) == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Procedure, CallGraph.Node> nodes = callgraph.getCallGraph();
+        Map<Procedure, Collection<Procedure>> ret =
+                new IdentityHashMap<Procedure, Collection<Procedure>>();
+        String alias = Driver.getOptionValue("alias");
+        String range = Driver.getOptionValue("range");
+        if ("4".equals(alias)) {
+            Collection<Procedure> all = nodes.keySet();
+            for (Procedure proc : nodes.keySet()) {
+                ret.put(proc, all);
+            }
+        } else if ("1".equals(alias) || "2".equals(alias) ||
+                   "2".equals(range)) {
+            for (Procedure proc : nodes.keySet()) {
+                if (!ret.containsKey(proc)) {
+                    Set<Procedure> connected = callgraph.getConnectedProcedures(
+                            Collections.singletonList(proc));
+                    for (Procedure member : connected) {
+                        ret.put(member, connected);
+                    }
+                }
+            }
+        } else {
+            for (Procedure proc : nodes.keySet()) {
+                Set<Procedure> callees = new HashSet<Procedure>();
+                LinkedList<Procedure> work_list = new LinkedList<Procedure>();
+                work_list.add(proc);
+                while (!work_list.isEmpty()) {
+                    CallGraph.Node node = nodes.get(work_list.removeFirst());
+                    for (Procedure callee : node.getCallees()) {
+                        if (nodes.containsKey(callee) && callees.add(callee)) {
+                            work_list.add(callee);
+                        }
+                    }
+                }
+                ret.put(proc, callees);
+            }
+        }
+        return ret;
+    }
+
+    private static boolean
+            isSameList(List<Traversable> l1, List<Traversable> l2) {
+        if (l1.size() != l2.size()) {
+            return false;
+        }
+        for (int i = 0; i < l1.size(); i++) {
+            if (l1.get(i) != l2.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the text of the IR as printed in the output file, which is
+    // different from the string returned by toString() for some IR.
+    private static String toText(Traversable t) {
+        StringWriter sw = new StringWriter(1000);
+        PrintWriter pw = new PrintWriter(sw);
+        t.print(pw);
+        pw.flush();
+        return sw.toString();
+    }
+
+    // Reads the state file if it exists and is readable.
+    private static void
+            readState(Map<String, String[]> stored, Set<String> changed_units) {
+        File file = new File(Driver.getOptionValue("incremental"), STATE_FILE);
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                if (in.readInt() != STATE_VERSION) {
+                    return;
+                }
+                int num_units = in.readInt();
+                for (int i = 0; i < num_units; i++) {
+                    changed_units.add(readString(in));
+                }
+                int num_procs = in.readInt();
+                for (int i = 0; i < num_procs; i++) {
+                    String id = readString(in);
+                    String key = readString(in);
+                    stored.put(id, new String[] {key, readString(in)});
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            PrintTools.printlnStatus(0, "[IncrementalState]",
+                    "[WARNING] could not read", file, ":", e.getMessage());
+            stored.clear();
+            changed_units.clear();
+        }
+    }
+
+    // Writes the state file, creating the state directory if necessary.
+    private static void
+            writeState(Map<String, String[]> stored, Set<String> changed_units) {
+        File dir = new File(Driver.getOptionValue("incremental"));
+        File file = new File(dir, STATE_FILE);
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("could not create directory");
+            }
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                out.writeInt(STATE_VERSION);
+                out.writeInt(changed_units.size());
+                for (String unit : changed_units) {
+                    writeString(out, unit);
+                }
+                out.writeInt(stored.size());
+                for (Map.Entry<String, String[]> entry : stored.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue()[0]);
+                    writeString(out, entry.getValue()[1]);
+                }
+            } finally {
+                out.close();
+            }
+            PrintTools.printlnStatus(1, "[IncrementalState]", stored.size(),
+                    "procedures written to", file);
+        } catch (IOException e) {
+            PrintTools.printlnStatus(0, "[IncrementalState]",
+                    "[WARNING] could not write", file, ":", e.getMessage());
+            file.delete();
+        }
+    }
+
+    // Strings are written with their length since the procedure text may
+    // exceed the limit of DataOutput.writeUTF().
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeString(DataOutputStream out, String str)
+            throws IOException {
+        byte[] bytes = str.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("SHA-1 is not available");
+        }
+    }
+
+    // Adds the string and a separator to the digest.
+    private static void update(MessageDigest digest, String str) {
+        try {
+            digest.update(str.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new InternalError("UTF-8 is not available");
+        }
+        digest.update((byte)0);
+    }
+
+    // Returns the hexadecimal form of the digest after adding the string.
+    private static String toHex(MessageDigest digest, String str) {
+        if (str.length() > 0) {
+            update(digest, str);
+        }
+        StringBuilder sb = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
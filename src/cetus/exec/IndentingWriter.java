@@ -0,0 +1,153 @@
+package cetus.exec;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+* Writer that indents the printed C code while it is written to the
+* underlying writer. The output is the same as the file rewritten by
+* {@link cetus.hir.Tools#processIndent(java.io.File)}: each line is prefixed
+* with one tab per open brace in the preceding lines, where a line that
+* contains "}" closes a level before it is printed and a line that contains
+* "{" opens a level after it is printed. Like the original process, lines
+* are terminated with the line separator of the platform and the
+* whitespace-only lines at the end of the output are dropped; such lines are
+* kept in this writer until a following line turns out to be non-blank.
+*/
+class IndentingWriter extends Writer {
+
+    /** Line separator used by {@link java.io.PrintWriter#println()} */
+    private static final String line_sep =
+            System.getProperty("line.separator");
+
+    /** Other line terminators recognized by {@link java.util.Scanner} */
+    private static final char NEXT_LINE = 0x0085;
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    /** The underlying writer */
+    private final Writer out;
+
+    /** The current line without its terminator */
+    private final StringBuilder line;
+
+    /** Whitespace-only lines that are not written yet */
+    private final StringBuilder blank_lines;
+
+    /** Nesting level of the braces */
+    private int depth;
+
+    /** Properties of the current line */
+    private boolean has_open, has_close, has_token;
+
+    /** Checks if the last character was a carriage return */
+    private boolean after_cr;
+
+    /**
+    * Constructs an indenting writer on top of the specified writer.
+    * @param out the writer that receives the indented code.
+    */
+    public IndentingWriter(Writer out) {
+        super(out);
+        this.out = out;
+        line = new StringBuilder(120);
+        blank_lines = new StringBuilder();
+        depth = 0;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            for (int i = off; i < off + len; i++) {
+                char c = cbuf[i];
+                switch (c) {
+                case '\n':
+                    if (!after_cr) {
+                        endLine();
+                    }
+                    after_cr = false;
+                    break;
+                case '\r':
+                    endLine();
+                    after_cr = true;
+                    break;
+                case NEXT_LINE:
+                    // Scanner does not treat the next-line character as
+                    // whitespace, so the line is not blank.
+                    has_token = true;
+                    endLine();
+                    after_cr = false;
+                    break;
+                case LINE_SEPARATOR:
+                case PARAGRAPH_SEPARATOR:
+                    endLine();
+                    after_cr = false;
+                    break;
+                default:
+                    line.append(c);
+                    if (c == '{') {
+                        has_open = true;
+                    } else if (c == '}') {
+                        has_close = true;
+                    }
+                    if (!has_token && !Character.isWhitespace(c)) {
+                        has_token = true;
+                    }
+                    after_cr = false;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            out.flush();
+        }
+    }
+
+    /**
+    * Writes the last line if it has no terminator, and closes the underlying
+    * writer. The pending whitespace-only lines are dropped.
+    */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (has_token) {
+                endLine();
+            }
+            out.close();
+        }
+    }
+
+    // Writes the current line with indentation, or keeps it if the line is
+    // blank.
+    private void endLine() throws IOException {
+        if (!has_token) {
+            indent(blank_lines);
+            blank_lines.append(line).append(line_sep);
+            line.setLength(0);
+            return;
+        }
+        if (blank_lines.length() > 0) {
+            out.append(blank_lines);
+            blank_lines.setLength(0);
+        }
+        if (has_close) {
+            depth--;
+        }
+        indent(out);
+        out.append(line).append(line_sep);
+        if (has_open) {
+            depth++;
+        }
+        line.setLength(0);
+        has_open = has_close = has_token = false;
+    }
+
+    private void indent(Appendable a) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            a.append('\t');
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cetus.exec;
 
+import cetus.base.grammars.CetusCParser;
 import cetus.base.grammars.NewCLexer;
 import cetus.base.grammars.NewCParser;
 import cetus.base.grammars.PreCLexer;
@@ -66,6 +67,12 @@ public class Parser {
     * @return Parsed TranslationUnit
     */
     public TranslationUnit parse(String input_filename) throws IOException {
+        // Streaming pipeline without intermediate files is implemented in
+        // the default parser.
+        if (Driver.getOptionValue("preprocessor-pipe") != null) {
+            return new CetusCParser(pwd.getPath()).parseFile(
+                    input_filename, Driver.options);
+        }
         return parseAntlr(input_filename);
         // If you want to add another parser other than antlr, then you need
         // to modify parseExternal routine below for your purpose and update
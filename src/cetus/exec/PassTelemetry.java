@@ -0,0 +1,335 @@
+package cetus.exec;
+
+import cetus.analysis.Cache;
+import cetus.hir.DFIterator;
+import cetus.hir.PrintTools;
+import cetus.hir.Procedure;
+import cetus.hir.Program;
+import cetus.hir.Traversable;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+* Collects performance telemetry of the passes run by a driver and writes it
+* as a report when the "telemetry" option is given. The report has one record
+* per pass run in the order the passes finished, and each record contains the
+* wall-clock time, the CPU time and the allocated bytes of the driver thread,
+* the garbage collection time, the peak heap usage, the number of IR nodes
+* before and after the pass, the hit ratio of the analysis caches, and the
+* slowest procedures processed by the pass. The report is written in CSV if
+* the file name ends with ".csv" and in JSON otherwise. Nested passes, e.g.,
+* an analysis invoked by another pass, have their own records and are also
+* included in the enclosing record.
+*/
+public class PassTelemetry {
+
+    /** Number of the slowest procedures reported per pass */
+    private static final int NUM_SLOWEST_PROCEDURES = 5;
+
+    /** Records of the finished passes */
+    private static final List<Record> records = new ArrayList<Record>();
+
+    /** Records of the running passes; the innermost pass comes first */
+    private static final LinkedList<Record> running = new LinkedList<Record>();
+
+    /** Telemetry of a single pass run */
+    public static class Record {
+        private final String pass_name;
+        private final long start_wall, start_cpu, start_alloc, start_gc;
+        private final long start_hits, start_misses;
+        private final int nodes_before;
+        private long wall, cpu, alloc, gc, peak_heap, hits, misses;
+        private int nodes_after;
+        // Time spent for each procedure in nanoseconds.
+        private final Map<String, Long> procedure_times;
+
+        private Record(String pass_name, Program program) {
+            this.pass_name = pass_name;
+            nodes_before = countNodes(program);
+            procedure_times = new LinkedHashMap<String, Long>();
+            resetPeakHeap();
+            start_hits = Cache.getTotalHits();
+            start_misses = Cache.getTotalMisses();
+            start_gc = getGCTime();
+            start_alloc = getAllocatedBytes();
+            start_cpu = getCPUTime();
+            start_wall = System.nanoTime();
+        }
+
+        private void finish(Program program) {
+            wall = System.nanoTime() - start_wall;
+            cpu = getCPUTime() - start_cpu;
+            alloc = getAllocatedBytes() - start_alloc;
+            gc = getGCTime() - start_gc;
+            hits = Cache.getTotalHits() - start_hits;
+            misses = Cache.getTotalMisses() - start_misses;
+            peak_heap = Math.max(peak_heap, getPeakHeap());
+            nodes_after = countNodes(program);
+        }
+
+        private double getHitRatio() {
+            long total = hits + misses;
+            return (total == 0) ? 0.0 : (double)hits / total;
+        }
+
+        // Returns the slowest procedures in descending order of time.
+        private List<Map.Entry<String, Long>> getSlowestProcedures() {
+            List<Map.Entry<String, Long>> ret =
+                    new ArrayList<Map.Entry<String, Long>>(
+                    procedure_times.entrySet());
+            Collections.sort(ret, new Comparator<Map.Entry<String, Long>>() {
+                public int compare(Map.Entry<String, Long> e1,
+                                   Map.Entry<String, Long> e2) {
+                    return e2.getValue().compareTo(e1.getValue());
+                }
+            });
+            if (ret.size() > NUM_SLOWEST_PROCEDURES) {
+                ret = ret.subList(0, NUM_SLOWEST_PROCEDURES);
+            }
+            return ret;
+        }
+    }
+
+    private PassTelemetry() {
+    }
+
+    /**
+    * Checks if telemetry is collected.
+    * @return true if the "telemetry" option is given.
+    */
+    public static boolean isEnabled() {
+        return (Driver.getOptionValue("telemetry") != null);
+    }
+
+    /**
+    * Starts collecting telemetry of the specified pass.
+    * @param pass_name the name of the pass.
+    * @param program the program processed by the pass.
+    * @return the record of the pass, or null if telemetry is not collected.
+    */
+    public static synchronized Record begin(String pass_name, Program program) {
+        if (!isEnabled()) {
+            return null;
+        }
+        // The new record resets the peak heap usage, so the peak so far is
+        // kept in the enclosing records first.
+        long peak = getPeakHeap();
+        for (Record r : running) {
+            r.peak_heap = Math.max(r.peak_heap, peak);
+        }
+        Record record = new Record(pass_name, program);
+        running.addFirst(record);
+        return record;
+    }
+
+    /**
+    * Finishes collecting telemetry of the pass started with
+    * {@link #begin(String, Program)}.
+    * @param record the record returned by begin, which may be null.
+    * @param program the program processed by the pass.
+    */
+    public static synchronized void end(Record record, Program program) {
+        if (record == null) {
+            return;
+        }
+        record.finish(program);
+        running.remove(record);
+        records.add(record);
+    }
+
+    /**
+    * Adds the time spent for the specified procedure to the innermost running
+    * pass.
+    * @param proc the procedure.
+    * @param nanos the time in nanoseconds.
+    */
+    public static synchronized void addProcedureTime(Procedure proc,
+                                                     long nanos) {
+        if (running.isEmpty()) {
+            return;
+        }
+        Map<String, Long> times = running.getFirst().procedure_times;
+        String name = proc.getName().toString();
+        Long prev = times.get(name);
+        times.put(name, (prev == null) ? nanos : prev + nanos);
+    }
+
+    /**
+    * Writes the telemetry report to the file given by the "telemetry" option.
+    * This method does nothing if the option is not given.
+    */
+    public static synchronized void write() {
+        String file = Driver.getOptionValue("telemetry");
+        if (file == null) {
+            return;
+        }
+        try {
+            PrintWriter out =
+                    new PrintWriter(new BufferedWriter(new FileWriter(file)));
+            if (file.endsWith(".csv")) {
+                writeCSV(out);
+            } else {
+                writeJSON(out);
+            }
+            out.close();
+            PrintTools.printlnStatus(1, "[PassTelemetry]", records.size(),
+                    "pass runs written to", file);
+        } catch (IOException e) {
+            PrintTools.printlnStatus(0, "[PassTelemetry]",
+                    "[WARNING] could not write", file, ":", e.getMessage());
+        }
+    }
+
+    private static void writeJSON(PrintWriter out) {
+        out.println("{");
+        out.println("  \"passes\": [");
+        for (int i = 0; i < records.size(); i++) {
+            Record r = records.get(i);
+            out.println("    {");
+            out.println("      \"pass\": " + quote(r.pass_name) + ",");
+            out.println("      \"wall_ms\": " + toMillis(r.wall) + ",");
+            out.println("      \"cpu_ms\": " + toMillis(r.cpu) + ",");
+            out.println("      \"allocated_bytes\": " + r.alloc + ",");
+            out.println("      \"gc_ms\": " + r.gc + ",");
+            out.println("      \"peak_heap_bytes\": " + r.peak_heap + ",");
+            out.println("      \"ir_nodes_before\": " + r.nodes_before + ",");
+            out.println("      \"ir_nodes_after\": " + r.nodes_after + ",");
+            out.println("      \"cache_hits\": " + r.hits + ",");
+            out.println("      \"cache_misses\": " + r.misses + ",");
+            out.println("      \"cache_hit_ratio\": " +
+                    String.format(Locale.ROOT, "%.4f", r.getHitRatio()) + ",");
+            out.print("      \"slowest_procedures\": [");
+            List<Map.Entry<String, Long>> slowest = r.getSlowestProcedures();
+            for (int j = 0; j < slowest.size(); j++) {
+                Map.Entry<String, Long> e = slowest.get(j);
+                out.print((j == 0) ? "" : ", ");
+                out.print("{\"procedure\": " + quote(e.getKey()) +
+                        ", \"wall_ms\": " + toMillis(e.getValue()) + "}");
+            }
+            out.println("]");
+            out.println((i + 1 < records.size()) ? "    }," : "    }");
+        }
+        out.println("  ]");
+        out.println("}");
+    }
+
+    private static void writeCSV(PrintWriter out) {
+        out.println("pass,wall_ms,cpu_ms,allocated_bytes,gc_ms," +
+                "peak_heap_bytes,ir_nodes_before,ir_nodes_after,cache_hits," +
+                "cache_misses,cache_hit_ratio,slowest_procedures");
+        for (Record r : records) {
+            StringBuilder slowest = new StringBuilder(80);
+            for (Map.Entry<String, Long> e : r.getSlowestProcedures()) {
+                if (slowest.length() > 0) {
+                    slowest.append(";");
+                }
+                slowest.append(e.getKey()).append(":");
+                slowest.append(toMillis(e.getValue()));
+            }
+            out.println(quoteCSV(r.pass_name) + "," + toMillis(r.wall) + "," +
+                    toMillis(r.cpu) + "," + r.alloc + "," + r.gc + "," +
+                    r.peak_heap + "," + r.nodes_before + "," +
+                    r.nodes_after + "," + r.hits + "," + r.misses + "," +
+                    String.format(Locale.ROOT, "%.4f", r.getHitRatio()) + "," +
+                    quoteCSV(slowest.toString()));
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1.0e6);
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int)c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String quoteCSV(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    private static int countNodes(Program program) {
+        int ret = 0;
+        if (program != null) {
+            DFIterator<Traversable> iter = new DFIterator<Traversable>(program);
+            while (iter.hasNext()) {
+                iter.next();
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    private static long getCPUTime() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return (bean.isCurrentThreadCpuTimeSupported()) ?
+                bean.getCurrentThreadCpuTime() : 0;
+    }
+
+    // Allocated bytes are available only with the HotSpot extension.
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long getGCTime() {
+        long ret = 0;
+        for (GarbageCollectorMXBean bean :
+                ManagementFactory.getGarbageCollectorMXBeans()) {
+            ret += Math.max(0, bean.getCollectionTime());
+        }
+        return ret;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeap() {
+        long ret = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                ret += pool.getPeakUsage().getUsed();
+            }
+        }
+        return ret;
+    }
+}
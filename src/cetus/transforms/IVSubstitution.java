@@ -153,6 +153,7 @@ public class IVSubstitution extends TransformPass {
     */
     public IVSubstitution(Program program) {
         super(program);
+        track_changes = true;
         // Assumption: caller of this constructor already checked IV
         // substitution is turned on.
         try {
@@ -778,6 +779,7 @@ public class IVSubstitution extends TransformPass {
             }
             orig = ((Statement)loop).clone();
         }
+        setModified(loop);
         // After-loop increments for the outermost loop needs to be cached to be
         // placed properly in the multi-version loop.
         List<Statement> live_increments  = new LinkedList<Statement>();
@@ -1157,6 +1159,7 @@ public class IVSubstitution extends TransformPass {
                 continue;
             }
             ForLoop for_loop = (ForLoop)loop;
+            setModified(for_loop);
             CompoundStatement parent = (CompoundStatement)for_loop.getParent();
             // 1. Assign index = first value;
             Statement init_stmt = for_loop.getInitialStatement();
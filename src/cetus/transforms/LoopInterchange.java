@@ -2,357 +2,467 @@ package cetus.transforms;
 
 import cetus.analysis.DDGraph;
 import cetus.analysis.DependenceVector;
+import cetus.analysis.LoopInfo;
 import cetus.analysis.LoopTools;
+import cetus.exec.IncrementalState;
 import cetus.hir.*;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
- * Exchange loops if they are perfect nested loop.
- */
-public class LoopInterchange extends TransformPass
-{
-//    protected Program program;
-
-    public LoopInterchange(Program program)
-    {
+* Permutes perfectly nested loops for data locality. For a band of perfectly
+* nested loops, the pass computes the cost of each loop from the subscripts of
+* the array references in the band, and it selects the legal order that places
+* the cheapest loop innermost and a parallel loop outermost, while keeping the
+* outermost loop parallel if it was parallel. The cost of a loop is the
+* number of cache lines accessed by the references if the loop is the
+* innermost one: a reference that is invariant
+* to the loop accesses one line, a reference whose last subscript moves with a
+* stride smaller than a cache line accesses one line every
+* <code>line_size/stride</code> iterations, and any other reference accesses
+* one line per iteration. For example, the column-major walk
+* <pre>
+* for (j=0; j&lt;n; j++)
+*   for (i=0; i&lt;n; i++)
+*     a[i][j] = b[i][j] + c[j];
+* </pre>
+* is permuted to iterate over <code>j</code> in the innermost loop. The trip
+* counts are taken from the {@link LoopInfo} of the loops, and the legality of
+* an order is checked with the direction vectors in the data dependence graph
+* of the program.
+* <p>
+* The loops are permuted by exchanging the loop headers, so each loop keeps
+* its position and its loop name. The private sets of the loops and the
+* dependence graph are updated for the new order, and the reduction
+* annotations of the moved loops are removed. This pass is run before the
+* parallelization pass, which makes the parallelization decisions for the new
+* order.
+*/
+public class LoopInterchange extends TransformPass {
+
+    /** Pass name */
+    private static final String pass_name = "[LoopInterchange]";
+
+    /** Trip count assumed for a loop with symbolic bounds */
+    private static final long default_trip = 100;
+
+    /** Largest band whose orders are enumerated */
+    private static final int MAX_DEPTH = 6;
+
+    /** Statistics */
+    private int num_bands, num_ineligible, num_in_order, num_illegal,
+            num_permuted;
+
+    public LoopInterchange(Program program) {
         super(program);
+        track_changes = true;
     }
 
-    public String getPassName()
-    {
-        return new String("[LoopInterchange]");
+    public String getPassName() {
+        return pass_name;
     }
 
-    public void start()
-    {
-        LinkedList<Loop> loops = new LinkedList<Loop>();
-        List<Statement> outer_loops = new ArrayList<Statement>();
-        List<DependenceVector> depVec = new ArrayList<DependenceVector>();
-        DepthFirstIterator iter = new DepthFirstIterator(program);
-        List<Expression> expList = new LinkedList<Expression>();
-        int i;
-        int target_loops = 0;
-        int num_single = 0, num_non_perfect = 0, num_contain_func = 0, num_loop_interchange=0;
-
-        while(iter.hasNext()) {
-            Object o = iter.next();
-            if(o instanceof ForLoop)
-                outer_loops.add((Statement)o);
+    public void start() {
+        DDGraph ddg = program.getDDGraph();
+        if (ddg == null) {
+            PrintTools.printlnStatus(0, pass_name,
+                    "[WARNING] no dependence graph; run with -ddt");
+            return;
         }
-
-        for(i = outer_loops.size()-1; i >= 0; i--)
-        {
-            if(!LoopTools.isOutermostLoop((ForLoop)outer_loops.get(i)))
-            {
-                outer_loops.remove(i);
+        // Collects the bands before modifying the loops.
+        List<List<ForLoop>> bands = new ArrayList<List<ForLoop>>();
+        DFIterator<ForLoop> iter =
+                new DFIterator<ForLoop>(program, ForLoop.class);
+        while (iter.hasNext()) {
+            ForLoop loop = iter.next();
+            ForLoop outer = IRTools.getAncestorOfType(loop, ForLoop.class);
+            if (outer != null && LoopTiling.getNestedLoop(outer) == loop) {
+                continue;
             }
-        }
-
-        System.out.println("# of Outermost Loop: " + outer_loops.size());
-
-        for(i = outer_loops.size()-1; i >= 0; i--)
-        {
-            iter = new DepthFirstIterator(outer_loops.get(i));
-            loops.clear();
-            while(iter.hasNext()) {
-                Object o = iter.next();
-                if(o instanceof ForLoop)
-                    loops.add((Loop)o);
+            List<ForLoop> band = new ArrayList<ForLoop>();
+            for (ForLoop l = loop; l != null; l = LoopTiling.getNestedLoop(l)) {
+                band.add(l);
             }
-            if(loops.size() < 2) {
-                num_single++;
-            }    else if(!LoopTools.isPerfectNest((ForLoop)loops.get(0))) {
-                num_non_perfect++;
-            }    else if(LoopTools.containsFunctionCall((ForLoop)loops.get(0))) {
-                num_contain_func++;
-            } else {
-                target_loops++;
-                Statement stm = ((ForLoop)loops.get(loops.size()-1)).getBody();
-                List<ArrayAccess> arrays = new ArrayList<ArrayAccess>();  // Arrays in loop body
-                DepthFirstIterator iter2 = new DepthFirstIterator(stm);
-
-                while(iter2.hasNext())
-                {
-                    Object child = iter2.next();
-                    if(child instanceof ArrayAccess)
-                    {
-                        arrays.add((ArrayAccess)child);
-                    }
-                }
-
-                int r = 0,j,until = loops.size();
-                int target_index = 0;
-                boolean icFlag = true;
-                List<Integer> rank;
-                int rankSize;
-
-                while(icFlag)
-                {
-                    Expression exp;
-                    expList.clear();
-                    for(j = 0; j < until; j++)
-                    {
-                        exp = LoopTools.getIndexVariable((ForLoop)loops.get(j));
-                        if(exp != null)
-                            expList.add(exp);
-                    }
-                    rank = getRank(arrays, expList, target_index);
-                    rankSize = rank.size();
-                    for(j = 0; j < rankSize; j++) 
-                    {
-                        r = getRank2(rank, expList, loops);
-                        rank.remove(rank.indexOf(r));
-                        ///////////////////////////////////////////////////////////////////////////////////
-                        // FIXME: requested by SY Lee                                                    //
-                        // If the list "rank" consists of r1 and r2 (r1 < r2), and if getRank2() returns //
-                        // r1 first, the loop pointed by r2 will be moved upward by 1. Thus r2 in the    //
-                        // list "rank" should be changed with r2-1.                                      //
-                        ///////////////////////////////////////////////////////////////////////////////////
-
-                        if(expList.size() < until) until = expList.size();
-                        for(int k = r+1; k < until; k++)
-                        {
-                            if(isLegal(loops, r, k))
-                            {
-                                swapLoop((ForLoop)loops.get(r), (ForLoop)loops.get(k));
-                                num_loop_interchange++;
-                                Collections.swap(expList, r, k);
-                                r = k;
-
-                            } else {
-                                break;
-                            }
-                        }        
-                        until = r;
-                    }
-                    target_index++;
-                    if(until == 0) icFlag = false;
-                }
+            if (band.size() > 1 &&
+                !LoopTools.containsLoop(band.get(band.size()-1)) &&
+                !IncrementalState.isReused(loop)) {
+                bands.add(band);
             }
         }
-
-        System.out.println("Target loops : " + target_loops);
-        System.out.println("Non Perfect loops : " + num_non_perfect);
-        System.out.println("Single loops : " + num_single);
-        System.out.println("Contain Function : " + num_contain_func);
-        System.out.println("Loop Interchanged : " + num_loop_interchange);
-
-        return;
+        for (List<ForLoop> band : bands) {
+            num_bands++;
+            permuteBand(band, ddg);
+        }
+        PrintTools.printlnStatus(1, pass_name, "Number of loop bands =",
+                num_bands);
+        PrintTools.printlnStatus(1, pass_name, "  ineligible        =",
+                num_ineligible);
+        PrintTools.printlnStatus(1, pass_name, "  in best order     =",
+                num_in_order);
+        PrintTools.printlnStatus(1, pass_name, "  not permutable    =",
+                num_illegal);
+        PrintTools.printlnStatus(1, pass_name, "  permuted          =",
+                num_permuted);
     }
 
-    // Find out which loops could legally interchanged with innermost loop.
-    protected List<Integer> rankByMaxInterchange(List<Integer> rank, List<Loop> loops)
-    {
-        int i, j, legal, max = 0, cur;
-        boolean legality;
-        List<Integer> result = new LinkedList<Integer>();
+    /**
+    * Returns the private set of the specified loop, or null if the loop does
+    * not have a private annotation.
+    */
+    private static Set<Symbol> getPrivateSet(Loop loop) {
+        CetusAnnotation note = ((Annotatable)loop).getAnnotation(
+                CetusAnnotation.class, "private");
+        return (note == null) ? null : note.<Set<Symbol>>get("private");
+    }
 
-        for(i=0; i<rank.size(); i++)
-        {
-            legal = rank.get(i);
-            cur = rank.get(i);
-            if(cur+1 == loops.size()) {
-                if(legal > max) result.clear();
-                result.add(rank.get(i));
-                max = legal;
+    /**
+    * Checks if the loops of the specified band can be permuted. Dependence
+    * testing must have covered the band, the band must be rectangular, and
+    * the data dependences other than those of array accesses must be resolved
+    * by privatization: each loop is private to itself and the enclosing band
+    * loops, every loop has the same private variables other than the band
+    * indices, and the live-out variables are not handled.
+    */
+    private static boolean isEligible(List<ForLoop> band,
+                                      Expression[][] spaces) {
+        ForLoop outer = band.get(0);
+        Statement body = band.get(band.size()-1).getBody();
+        if (band.size() > MAX_DEPTH ||
+            LoopTools.scalarDependencePossible(outer) ||
+            LoopTools.containsControlFlowModifier(outer) ||
+            IRTools.containsFunctionCall(outer) ||
+            IRTools.containsUnary(body, UnaryOperator.DEREFERENCE) ||
+            IRTools.containsClass(body, AccessExpression.class)) {
+            return false;
+        }
+        List<Symbol> indices = new ArrayList<Symbol>(band.size());
+        for (int i = 0; i < band.size(); i++) {
+            ForLoop loop = band.get(i);
+            spaces[i] = LoopTiling.getIterationSpace(loop);
+            if (spaces[i] == null ||
+                !LoopTools.checkDataDependenceEligibility(loop) ||
+                !LoopTools.isLoopInvariant(outer, spaces[i][1]) ||
+                !LoopTools.isLoopInvariant(outer, spaces[i][2]) ||
+                loop.containsAnnotation(CetusAnnotation.class, "lastprivate")) {
+                return false;
             }
-
-            for(j=cur+1; j<loops.size(); j++)
-            {
-                legality = isLegal((LinkedList<Loop>)loops, cur, j);
-                if(legality) legal = j;
-                if(!legality || j == loops.size()-1) {
-                    if(legal > max)
-                    {
-                        result.clear();
-                        result.add(rank.get(i));
-                        max = legal;
-                    } else if (legal == max) {
-                        result.add(rank.get(i));
-                    }
-                    break;
-                }
+            indices.add(((Identifier)spaces[i][0]).getSymbol());
+        }
+        Set<Symbol> others = null;
+        for (int i = 0; i < band.size(); i++) {
+            Set<Symbol> private_vars = getPrivateSet(band.get(i));
+            if (private_vars == null ||
+                !private_vars.containsAll(indices.subList(i, band.size()))) {
+                return false;
+            }
+            Set<Symbol> vars = new HashSet<Symbol>(private_vars);
+            vars.removeAll(indices);
+            if (others == null) {
+                others = vars;
+            } else if (!others.equals(vars)) {
+                return false;
             }
         }
-        if(result.size() == 0) return rank;
-        return result;
+        for (ArrayAccess access :
+                IRTools.getExpressionsOfType(body, ArrayAccess.class)) {
+            if (!(access.getArrayName() instanceof Identifier)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    /* if all upperbound, lowerbound and increment are constnant, we can decide by number of iterations */
-    protected List<Integer> rankByNumOfIteration(List<Integer> rank, List<Loop> loops)
-    {
-        int i, rankSize;
-        boolean flag = true;
-        Expression lBound, uBound, inc;
-        long lb, ub, in, max = 0;
-        long count[] = new long[rank.size()];
-        List<Integer> result = new LinkedList<Integer>();
-
-        for(i = 0; i < rank.size(); i++)
-        {
-            if(LoopTools.isUpperBoundConstant(loops.get(rank.get(i))) && LoopTools.isLowerBoundConstant(loops.get(rank.get(i)))
-                    && LoopTools.isIncrementConstant(loops.get(rank.get(i))))
-            {
-                lBound = LoopTools.getLowerBoundExpression(loops.get(rank.get(i)));
-                uBound = LoopTools.getUpperBoundExpression(loops.get(rank.get(i)));
-                inc = LoopTools.getIncrementExpression(loops.get(rank.get(i)));
-                lb = ((IntegerLiteral)lBound).getValue();
-                ub = ((IntegerLiteral)uBound).getValue();
-                in = ((IntegerLiteral)inc).getValue();
-                count[i] = (ub-lb)/in;
-            } else {
-                flag = false;
-                break;
+    /**
+    * Permutes the specified band if it is eligible and a legal order with a
+    * lower cost exists.
+    */
+    private void permuteBand(List<ForLoop> band, DDGraph ddg) {
+        int depth = band.size();
+        Expression[][] spaces = new Expression[depth][];
+        if (!isEligible(band, spaces)) {
+            num_ineligible++;
+            return;
+        }
+        Collection<LoopTiling.ArrayGroup> groups =
+                LoopTiling.getArrayGroups(band, spaces);
+        if (groups == null) {
+            num_ineligible++;
+            return;
+        }
+        long[] trips = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            trips[i] = getTripCount(band.get(i));
+        }
+        double[] costs = getLoopCosts(groups, trips);
+        LinkedList<Loop> nest = new LinkedList<Loop>();
+        for (Traversable t = band.get(0).getParent(); t != null;
+                t = t.getParent()) {
+            if (t instanceof ForLoop) {
+                nest.addFirst((Loop)t);
             }
         }
-
-        // check which one has more loop count
-        if(flag) {
-            for(i = 0; i < rank.size(); i++)
-            {
-                if(count[i] > max) {
-                    result.clear();
-                    result.add(rank.get(i));
-                    max = count[i];
-                } else if (count[i] == max) {
-                    result.add(rank.get(i));
+        int offset = nest.size();
+        nest.addAll(band);
+        List<DependenceVector> dpv = ddg.getDirectionMatrix(nest);
+        Set<Symbol> private_vars = getPrivateSet(band.get(0));
+        boolean[] parallel = new boolean[depth];
+        for (int i = 0; i < depth; i++) {
+            parallel[i] = isParallel(ddg, band.get(i), private_vars);
+        }
+        // Enumerates the orders in lexicographic order from the identity.
+        int[] order = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            order[i] = i;
+        }
+        int[] best = order.clone();
+        boolean blocked = false;
+        while (nextPermutation(order)) {
+            if (parallel[0] && !parallel[order[0]]) {
+                continue;
+            }
+            if (isBetter(order, best, costs, parallel)) {
+                if (isLegal(dpv, nest, offset, order)) {
+                    best = order.clone();
+                } else {
+                    blocked = true;
                 }
             }
         }
-        if(result.size() == 0) return rank;
-        return result;
+        if (isIdentity(best)) {
+            if (blocked) {
+                num_illegal++;
+            } else {
+                num_in_order++;
+            }
+            return;
+        }
+        permute(band, spaces, best);
+        ddg.permuteLoops(new ArrayList<Loop>(band), best);
+        num_permuted++;
+        List<Expression> indices = new ArrayList<Expression>(depth);
+        for (int i = 0; i < depth; i++) {
+            indices.add(spaces[best[i]][0]);
+        }
+        PrintTools.printlnStatus(1, pass_name, "Permuted",
+                LoopTools.getLoopName(band.get(0)), "to order",
+                PrintTools.listToString(indices, ","));
     }
 
-    protected int getRank2(List<Integer> rank, List<Expression> expList, List<Loop> loops)
-    {
-        int i;
-        List<Integer> result;
-
-        if(rank.size() == 1) {
-            return rank.get(0);
+    /**
+    * Returns the trip count of the specified loop, or the default trip count
+    * if the bounds of the loop are not constant.
+    */
+    private static long getTripCount(ForLoop loop) {
+        LoopInfo info = new LoopInfo(loop);
+        if (info.getLoopLB() == null || info.getLoopUB() == null) {
+            return default_trip;
         }
-
-        result = rankByMaxInterchange(rank, loops);
-        if(result.size() == 1) return result.get(0);
-
-        result = rankByNumOfIteration(result, loops);
-        if(result.size() == 1) return result.get(0);
-
-        return result.get(result.size()-1);
+        Expression trip = Symbolic.add(Symbolic.subtract(info.getLoopUB(),
+                info.getLoopLB()), new IntegerLiteral(1));
+        if (trip instanceof IntegerLiteral) {
+            return Math.max(1, ((IntegerLiteral)trip).getValue());
+        }
+        return default_trip;
     }
 
-    /* if n = 0, it means right most index in array. */
-    protected List<Integer> getRank(List<ArrayAccess> array , List<Expression> expList, int n)
-    {
-        int i, j, max = 0, cur_exp;
-        ArrayList<Integer> result = new ArrayList<Integer>();
-        List<Expression> temp = new LinkedList<Expression>();
-        Traversable parentTemp;
-        Expression lhs, rhs;
-
-
-        for(i = 0; i < expList.size(); i++)
-        {
-            Expression e = expList.get(i);
-            cur_exp = 0;
-
-            for(j = 0; j < array.size(); j++)
-            {
-                ArrayAccess f = array.get(j);
-                if(f.getNumIndices() >= n) {
-                    temp = f.getIndex(f.getNumIndices()-1-n).findExpression(e);
-                    if(temp.size() >= 1) {
-                        cur_exp+=2;
-                        parentTemp = (temp.get(0)).getParent();
-                        if(parentTemp instanceof BinaryExpression)
-                        {
-                            if((((BinaryExpression)parentTemp).getOperator()).toString() == "*")
-                            {
-                                lhs = ((BinaryExpression)parentTemp).getLHS();
-                                rhs = ((BinaryExpression)parentTemp).getRHS();
-
-                                if(lhs.equals((Object)e) || rhs.equals((Object)e)) {
-                                    cur_exp--;
-                                    break;
-                                }
-                            }
-                        }
-                    }
+    /**
+    * Returns the number of cache lines accessed by the band if each loop is
+    * the innermost one.
+    */
+    private static double[] getLoopCosts(
+            Collection<LoopTiling.ArrayGroup> groups, long[] trips) {
+        double[] ret = new double[trips.length];
+        for (int j = 0; j < trips.length; j++) {
+            double lines = 0;
+            for (LoopTiling.ArrayGroup group : groups) {
+                lines += getReferenceCost(group, j, trips[j]);
+            }
+            for (int k = 0; k < trips.length; k++) {
+                if (k != j) {
+                    lines *= trips[k];
                 }
             }
-            if(cur_exp > max) {
-                max = cur_exp;
-                result.clear();
-                result.add(i);
-            } else if (cur_exp == max)
-                result.add(i);
-        }
-        return result;
+            ret[j] = lines;
+        }
+        return ret;
     }
 
-    private List<Expression> getIndex(List<ArrayAccess> array, int n)
-    {
-        int i;
-        List<Expression> result = new LinkedList<Expression>();
-
-        for(i = 0; i < array.size(); i++)
-        {
-            ArrayAccess f = array.get(i);
-            if(f.getNumIndices()-n-1 > 0) result.add(f.getIndex(f.getNumIndices()-n-1));
+    /**
+    * Returns the number of cache lines accessed by the references in the
+    * group during the iterations of the specified loop.
+    */
+    private static double getReferenceCost(LoopTiling.ArrayGroup group,
+                                           int loop, long trip) {
+        int last = group.coefs.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (group.uses(i, loop)) {
+                return trip;
+            }
         }
-        return result;
-
+        if (!group.uses(last, loop)) {
+            return 1;
+        }
+        long stride = Math.abs(group.coefs[last][loop]) * group.elem_size;
+        if (group.symbolic[last][loop] ||
+            stride >= LoopTiling.default_line_size) {
+            return trip;
+        }
+        return Math.max(1.0,
+                (double)trip * stride / LoopTiling.default_line_size);
     }
 
-    public void swapLoop(ForLoop loop1, ForLoop loop2) 
-    {
-        loop1.getInitialStatement().swapWith(loop2.getInitialStatement());
-        loop1.getCondition().swapWith(loop2.getCondition());
-        loop1.getStep().swapWith(loop2.getStep());
-
-        return;
+    /**
+    * Checks if the specified loop carries no dependences other than those of
+    * the private variables.
+    */
+    private static boolean isParallel(DDGraph ddg, Loop loop,
+                                      Set<Symbol> private_vars) {
+        for (DDGraph.Arc arc : ddg.getAllArcs()) {
+            String dir = arc.getDependenceVector().getDirectionString(loop);
+            if (dir.length() == 0 || dir.equals("=")) {
+                continue;
+            }
+            Symbol src_symbol = SymbolTools.getSymbolOf(
+                    (Expression)arc.getSource().getArrayAccess());
+            Symbol sink_symbol = SymbolTools.getSymbolOf(
+                    (Expression)arc.getSink().getArrayAccess());
+            if (src_symbol != sink_symbol ||
+                !private_vars.contains(src_symbol)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    /* Check legality of loop interchange between src and target. Both src and target are in nest loops and src is outer than target */
-    public boolean isLegal(LinkedList<Loop> nest, int src, int target)
-    {
-        int i, j, next;
-        DDGraph ddg;
-        String str;
-        ArrayList<DependenceVector> dpv;
-        DependenceVector dd;
-        ddg = program.getDDGraph();
-        dpv = ddg.getDirectionMatrix(nest);
+    /**
+    * Checks if the first order is better than the second one: the innermost
+    * loop is cheaper, or the outermost loop is parallel, or the other loops
+    * are cheaper from the innermost position.
+    */
+    private static boolean isBetter(int[] order, int[] best, double[] costs,
+                                    boolean[] parallel) {
+        int last = order.length - 1;
+        if (costs[order[last]] != costs[best[last]]) {
+            return (costs[order[last]] < costs[best[last]]);
+        }
+        if (parallel[order[0]] != parallel[best[0]]) {
+            return parallel[order[0]];
+        }
+        for (int i = last-1; i >= 0; i--) {
+            if (costs[order[i]] != costs[best[i]]) {
+                return (costs[order[i]] < costs[best[i]]);
+            }
+        }
+        return false;
+    }
 
-        if(src == target) return true;
-        if(src > target) {
-            i = src;
-            src = target;
-            target = i;
+    private static boolean isIdentity(int[] order) {
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] != i) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        for(i = 0; i < dpv.size(); i++)
-        {
-            dd = dpv.get(i);
-            str = dd.toString();
-            for(j = 0; j < str.length(); j++)
-            {
-                if(j == src) next = target;
-                else if(j == target) next = src;
-                else next = j;
+    /**
+    * Rearranges the specified order into the next order in lexicographic
+    * order, and returns false if there is no such order.
+    */
+    private static boolean nextPermutation(int[] order) {
+        int i = order.length - 2;
+        while (i >= 0 && order[i] > order[i+1]) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        int j = order.length - 1;
+        while (order[j] < order[i]) {
+            j--;
+        }
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+        for (int k = i+1, l = order.length-1; k < l; k++, l--) {
+            tmp = order[k];
+            order[k] = order[l];
+            order[l] = tmp;
+        }
+        return true;
+    }
 
-                if(next < str.length()) {
-                    if(str.charAt(next) == '>') return false;
-                    if(str.charAt(next) == '<') break;
+    /**
+    * Checks if every direction vector in the specified matrix is still
+    * lexicographically positive after the band loops from the specified
+    * offset of the nest are permuted to the given order. The "*" direction of
+    * a band loop is conservatively assumed to include "&gt;".
+    */
+    private static boolean isLegal(List<DependenceVector> dpv,
+                                   List<Loop> nest, int offset, int[] order) {
+        for (DependenceVector dv : dpv) {
+            // The dependence is not affected if the band does not enclose it.
+            if (dv.getDirectionString(nest.get(offset)).length() == 0) {
+                continue;
+            }
+            for (int i = 0; i < nest.size(); i++) {
+                Loop loop = (i < offset) ?
+                        nest.get(i) : nest.get(offset+order[i-offset]);
+                String dir = dv.getDirectionString(loop);
+                if (dir.equals("<")) {
+                    break;
+                } else if (dir.equals(">") ||
+                           (dir.equals("*") && i >= offset)) {
+                    return false;
                 }
             }
         }
-
         return true;
     }
 
+    /**
+    * Moves the loop header at position order[i] of the band to position i,
+    * and updates the private sets and the reduction annotations.
+    */
+    private void permute(List<ForLoop> band, Expression[][] spaces,
+                         int[] order) {
+        int depth = band.size();
+        Statement[] inits = new Statement[depth];
+        Expression[] conds = new Expression[depth];
+        Expression[] steps = new Expression[depth];
+        Set<Symbol> indices = new HashSet<Symbol>();
+        for (int i = 0; i < depth; i++) {
+            ForLoop loop = band.get(i);
+            inits[i] = loop.getInitialStatement().clone();
+            conds[i] = loop.getCondition().clone();
+            steps[i] = loop.getStep().clone();
+            indices.add(((Identifier)spaces[i][0]).getSymbol());
+        }
+        for (int i = 0; i < depth; i++) {
+            ForLoop loop = band.get(i);
+            loop.setInitialStatement(inits[order[i]]);
+            loop.setCondition(conds[order[i]]);
+            loop.setStep(steps[order[i]]);
+            Set<Symbol> private_vars = getPrivateSet(loop);
+            private_vars.removeAll(indices);
+            for (int j = i; j < depth; j++) {
+                private_vars.add(
+                        ((Identifier)spaces[order[j]][0]).getSymbol());
+            }
+            if (order[i] != i) {
+                // The reductions of the moved loop may not be valid.
+                for (CetusAnnotation note :
+                        loop.getAnnotations(CetusAnnotation.class)) {
+                    if (note.get("reduction") == null) {
+                        continue;
+                    } else if (note.size() == 1) {
+                        note.detach();
+                    } else {
+                        note.remove("reduction");
+                    }
+                }
+            }
+        }
+        setModified(band.get(0));
+    }
 }
@@ -37,6 +37,7 @@ public class LoopNormalization extends TransformPass {
     */
     public LoopNormalization(Program program) {
         super(program);
+        track_changes = true;
     }
 
     /* Returns the pass name */
@@ -203,6 +204,7 @@ public class LoopNormalization extends TransformPass {
                     LoopTools.toControlString(loop));
             return;
         }
+        setModified(loop);
         // Attach comment.
         CommentAnnotation comment = new CommentAnnotation("Normalized Loop");
         comment.setOneLiner(true);
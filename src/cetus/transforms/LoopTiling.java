@@ -1,654 +1,813 @@
 package cetus.transforms;
 
-import cetus.analysis.AnalysisPass;
 import cetus.analysis.DDGraph;
 import cetus.analysis.DependenceVector;
 import cetus.analysis.LoopTools;
+import cetus.exec.Driver;
+import cetus.exec.IncrementalState;
 import cetus.hir.*;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
 
 /**
-  * Exchage loops if they are perfect nested loop.
-  */
-public class LoopTiling extends TransformPass
-{
-    //  protected Program program;
-
-    public LoopTiling(Program program)
-    {
-        super(program);
-    }
+* Tiles perfectly nested loops for data locality. A band of perfectly nested
+* loops is tiled only if it is fully permutable, which is checked with the
+* direction vectors in the data dependence graph of the program (see
+* {@link #isLegal(LinkedList, int, int)}). The tile size of a band is the
+* largest one whose data footprint fits in half of a cache level, where the
+* footprint is estimated from the affine subscripts of the array references in
+* the band, and the cache sizes are given by the <b>cache-sizes</b> option or
+* read from /sys/devices/system/cpu.
+* <p>
+* Tiling creates a tile-control loop for each tiled loop and places the
+* tile-control loops outside the point loops, which iterate over a tile:
+* <pre>
+* for (i_tile=0; i_tile&lt;n; i_tile+=32)
+*   for (j_tile=0; j_tile&lt;n; j_tile+=32)
+*     for (i=i_tile; i&lt;(((i_tile+32)&lt;n) ? (i_tile+32) : n); i++)
+*       for (j=j_tile; j&lt;(((j_tile+32)&lt;n) ? (j_tile+32) : n); j++)
+* </pre>
+* The outermost tile-control loop is the original outermost loop with a new
+* header, so it keeps the annotations of the loop, e.g., "cetus parallel", and
+* the new variables are added to the private sets of the enclosing loops. This
+* pass is run after the parallelization passes so that ompGen generates the
+* OpenMP pragmas on the tiled nests.
+*/
+public class LoopTiling extends TransformPass {
 
-    public String getPassName()
-    {
-        return new String("[LoopTiling]");
-    }
+    /** Pass name */
+    private static final String pass_name = "[LoopTiling]";
 
-    public void start()
-    {
-        LinkedList<Loop> loops = new LinkedList<Loop>();
-        List<Statement> outer_loops = new ArrayList<Statement>();
-        List<DependenceVector> depVec = new ArrayList<DependenceVector>();
-        DepthFirstIterator iter = new DepthFirstIterator(program);
-        List<Expression> expList = new LinkedList<Expression>();
-        int i,j;
-        int target_loops = 0;
-        int num_single = 0, num_non_perfect = 0, num_contain_func = 0;
-        int numOfTiling = 0, reuse_in_innermost = 0, no_reuse = 0;
-        //        DDTDriver ddtd = new DDTDriver(program);
-        //        this.program.getDDGraph();    
-
-        while(iter.hasNext()) {
-            Object o = iter.next();
-            if(o instanceof ForLoop)
-                outer_loops.add((Statement)o);
-        }
-
-        for(i = outer_loops.size()-1; i >= 0; i--)
-        {
-            if(!LoopTools.isOutermostLoop((ForLoop)outer_loops.get(i)))
-            {
-                //                System.out.print("Remove : ");
-                //                System.out.println(((ForLoop)outer_loops.get(i)).getInitialStatement());
-                outer_loops.remove(i);
-            }
-        }
+    /** Cache sizes used if they are not available otherwise */
+    private static final long[] default_cache_sizes = {32 << 10, 1 << 20, 8 << 20};
 
-  //      System.out.println("# of Outermost : " + outer_loops.size());
+    /** Cache line size used if it is not available otherwise */
+    static final int default_line_size = 64;
 
-        for(i = outer_loops.size()-1; i >= 0; i--)
-        {
-            //            System.out.println("Check #" + i + " loop");
-            iter = new DepthFirstIterator(outer_loops.get(i));
-            loops.clear();
-            while(iter.hasNext()) {
-                Object o = iter.next();
-                if(o instanceof ForLoop)
-                    loops.add((Loop)o);
-            }
-            //            System.out.println("DDG ");
-            //            System.out.println(loops.size());
-            if(loops.size() < 2) {
-                //              System.out.println("Single loop");
-                num_single++;
-            }  else if(!LoopTools.isPerfectNest((ForLoop)loops.get(0))) {
-                num_non_perfect++;
-                //                System.out.println("It is not a perfect nested loop.");
-            }  else if(LoopTools.containsFunctionCall((ForLoop)loops.get(0))) {
-                num_contain_func++;
-  //              System.out.println("Contains Function.");
-                //return;
-                //                break;
-            } else {
+    /** Directory of the cache information of the first processor */
+    private static final String sysfs_cache =
+            "/sys/devices/system/cpu/cpu0/cache";
 
-                target_loops++;
-                Statement stm = ((ForLoop)loops.get(loops.size()-1)).getBody();
-                List<ArrayAccess> arrays = new ArrayList<ArrayAccess>();  // Arrays in loop body
-                DepthFirstIterator iter2 = new DepthFirstIterator(stm);
-
-                //isLegal(loops, 0 , 1);
-                while(iter2.hasNext())
-                {
-                    Object child = iter2.next();
-                    if(child instanceof ArrayAccess)
-                    {
-                        arrays.add((ArrayAccess)child);
-                    }
-                }
+    /** Smallest tile size that is worth the overhead of tiling */
+    private static final int MIN_TILE_SIZE = 16;
 
-//                System.out.println("Loop : ");
-//                System.out.println(loops.get(0));
-//                System.out.println();
-                
-                int loopSize = loops.size();
-                int firstNonZero = -1;
-                int[] reuseValue = new int[loopSize];
-
-                //reuseValue : 'n' bit will be located in the cache before reuse
-                getSelfReuseAll(loops, arrays, reuseValue);
-                getGroupReuseAll(loops, arrays, reuseValue);
-
-                for(j = 0; j < loopSize; j++) {
-                    if(reuseValue[j] > 0) {
-                        firstNonZero = j;
-                        break;
-                    }
-                }
-                
-                int cacheSize = 32*1024*8;
-                int arrayBits = 0;
-                int blockSize, blockSizeRemain;
-                //System.out.println("firstNonZero = " + firstNonZero + ", LoopSize = " + loopSize);
-                if(firstNonZero >= 0 && firstNonZero < (loopSize-1)) {
-                    for(j = 0; j < arrays.size(); j++)
-                        arrayBits += getTypeSize(arrays.get(j));
-                    
-                    blockSize = cacheSize / arrayBits;
-                    blockSizeRemain = cacheSize % arrayBits;
-
-                    for(j = 0; j < (loopSize-firstNonZero); j++) 
-                    {
-                        if(j == loops.size()-1) blockSize += blockSizeRemain;
-
-                        tiling(loops, loops.get(firstNonZero+j*2),firstNonZero, blockSize);
-                        numOfTiling++;
-                    }
-                } else if(firstNonZero > 0){ 
-                    reuse_in_innermost++;
-                } else no_reuse++;
-
-                //              temp_f.setInitialStatement(temp_f2.getInitialStatement());
-                //              temp_f.setStep(temp_f2.getStep());
-                //              temp_f.setCondition(temp_f2.getCondition());
-                //              temp_f.setBody();
+    /** Largest tile size considered */
+    private static final int MAX_TILE_SIZE = 1024;
 
-                //              System.out.println("For loop\n" + temp_for);
-                //              System.out.println("For loop end");
+    /** Data cache sizes in bytes from the lowest level */
+    private long[] cache_sizes;
 
-                //((CompoundStatement)t.getParent()).addStatementBefore((Statement)(loops.get(0)), (Statement)temp_for);
+    /** Cache line size in bytes */
+    private int line_size;
 
-            }
-        }
-        System.out.println("# of single loops : " + num_single);
-        System.out.println("# of non-perfect loops : " + num_non_perfect);
-        System.out.println("# of function nested loops : " + num_contain_func);
-        System.out.println("# of target loops : " + target_loops);
-        System.out.println("# of reuse only in the inner-most loops : " + reuse_in_innermost);
-        System.out.println("# of no reuse in loops : " + no_reuse);
-        System.out.println("# of tiled loops : " + numOfTiling);
-        return;
-    }
+    /** Statistics */
+    private int num_bands, num_ineligible, num_no_reuse, num_illegal,
+            num_in_cache, num_tiled;
 
     /**
-    * Performs loop tiling with the given input. It assumes the loop nest is
-    * perfectly nested.
-    * @param loops the list of loops within the nest.
-    * @param targetLoop the loop to be tiled.
-    * @param newLocation the position in "loops" to which the blocking code is
-    * inserted.
-    * @param blockSize the block size.
+    * Array references in a band that differ only in the constant offsets of
+    * their subscripts, e.g., a[i][j] and a[i-1][j+1]. The subscripts are
+    * affine functions of the band indices.
     */
-    private boolean tiling(List<Loop> loops, Loop targetLoop, int newLocation, int blockSize)
-    {
-        //blockSize = 64;
-//        System.out.println("blockSize = " + blockSize);
-        Expression tempVariable;
-        Symbol symbol = LoopTools.getLoopIndexSymbol(targetLoop);
-        tempVariable = (Expression)declareTemp((Traversable) (loops.get(0)), symbol.getSymbolName());
-
-//        System.out.println("before size of loops : " + loops.size());
-        targetLoop = insertNewLoop(loops, targetLoop, tempVariable, symbol, newLocation, blockSize);
-        if(targetLoop == null) {
-//            System.out.println("targetLoop is NULL!");
-            return false;
+    static class ArrayGroup {
+        /** Element size in bytes */
+        int elem_size;
+        /** Constant coefficients of the band indices in each subscript */
+        long[][] coefs;
+        /** Band indices with symbolic coefficients in each subscript */
+        boolean[][] symbolic;
+        /** Range of the constant offsets in each subscript */
+        long[] min_offset, max_offset;
+
+        ArrayGroup(int elem_size, int dims, int depth) {
+            this.elem_size = elem_size;
+            coefs = new long[dims][depth];
+            symbolic = new boolean[dims][depth];
+            min_offset = new long[dims];
+            max_offset = new long[dims];
         }
 
-//        System.out.println("after size of loops : " + loops.size());
-
-        Statement oriInitStat = ((ForLoop)targetLoop).getInitialStatement();
-        Statement newInitStat = oriInitStat.clone();
-        List<Traversable> oriInit = newInitStat.getChildren();
-        Expression oriCondition = ((ForLoop)targetLoop).getCondition();
-        Expression oriStep = ((ForLoop)targetLoop).getStep();
-        Expression newCondition;
-  
-        if(oriInit.size() > 1) System.out.println("For loop has more than one initial statement!");
-//        else System.out.println("oriInit size : "+oriInit.size());
-
-        Expression oriInitExp = (Expression)oriInit.get(0);
-
-        if(oriInitExp instanceof AssignmentExpression)
-        {
-            Expression oriInitLHS = ((AssignmentExpression)oriInitExp).getLHS();
-            Expression oriInitRHS = ((AssignmentExpression)oriInitExp).getRHS();
-            AssignmentOperator oriInitOp = ((AssignmentExpression)oriInitExp).getOperator();
-            Expression newInitExp = new AssignmentExpression(
-                    oriInitLHS.clone(), oriInitOp, tempVariable.clone());
-            oriInitExp.swapWith(newInitExp);
-          //  System.out.println("Target : New init Exp - " + newInitExp);
-          //  System.out.println("Target : New init Statement - " + newInitStat);
-        } else System.out.println("Initial Expression is not Assignment!");
-
-        if(oriCondition instanceof BinaryExpression)
-        {
-            Expression condRHS = ((BinaryExpression)oriCondition).getRHS();
-            Expression condLHS = ((BinaryExpression)oriCondition).getLHS();
-            BinaryOperator condOp = ((BinaryExpression)oriCondition).getOperator();
-
-            if(symbol.getSymbolName().equals(condLHS.toString()))
-            {
-                Expression blk = new IntegerLiteral(blockSize);
-                Expression one = new IntegerLiteral(1);
-                Expression exp1 = Symbolic.add(tempVariable, blk);
-                Expression exp2 = Symbolic.subtract(exp1, one);
-                Expression minExp = new ConditionalExpression(
-                        new BinaryExpression(
-                                exp2.clone(),
-                                BinaryOperator.COMPARE_LT,
-                                condRHS.clone()),
-                        exp2.clone(),
-                        condRHS.clone());
-                newCondition = new BinaryExpression(
-                        condLHS.clone(), condOp, minExp);
-              //  System.out.println("Target : Condition : " +  oriCondition);
-              //  System.out.println("Target : new Condition : " +  newCondition);
-            } else {
-                System.out.println("LHS is not a symbol!");
-                newCondition = oriCondition;
-            }
-        } else newCondition = oriCondition;
-        ForLoop newLoop = new ForLoop(newInitStat.clone(),
-                newCondition.clone(), oriStep.clone(),
-                new CompoundStatement());
-        targetLoop.getBody().swapWith(newLoop.getBody());
-        ((Statement)(targetLoop)).swapWith((Statement)newLoop);
-        return true;
+        /** Checks if the specified subscript depends on the band loop */
+        boolean uses(int dim, int loop) {
+            return (symbolic[dim][loop] || coefs[dim][loop] != 0);
+        }
     }
 
-    private Loop insertNewLoop(List<Loop> loops, Loop targetLoop, Expression tempVar, Symbol symbol, int newLocation, int blockSize)
-    {
-        Statement oriInitStat = ((ForLoop)targetLoop).getInitialStatement();
-        Statement newInitStat = oriInitStat.clone();
-        List<Traversable> oriInit = newInitStat.getChildren();
-        Expression oriCondition = ((ForLoop)targetLoop).getCondition();
-        Expression oriStep = ((ForLoop)targetLoop).getStep();
-
-        Expression newInitExp, newCondition, newStep;
-
-        if(oriInit.size() > 1) System.out.println("For loop has more than one initial statement!");
-        else System.out.println("oriInit size : "+oriInit.size());
-
-        Expression oriInitExp = (Expression)oriInit.get(0);
-
-        if(oriInitExp instanceof AssignmentExpression)
-        {
-            Expression oriInitLHS = ((AssignmentExpression)oriInitExp).getLHS();
-            Expression oriInitRHS = ((AssignmentExpression)oriInitExp).getRHS();
-            AssignmentOperator oriInitOp = ((AssignmentExpression)oriInitExp).getOperator();
-            newInitExp = new AssignmentExpression(tempVar, oriInitOp, oriInitRHS.clone());
-            oriInitExp.swapWith(newInitExp);
-
-          //  System.out.println("InitialStatement : " +  oriInitStat);
-          //  System.out.println("new InitialStatement : " +  newInitStat);
-        }
-
-        if(oriCondition instanceof BinaryExpression)
-        {
-          //  System.out.println("oriCondition is Binary");
-            Expression condRHS = ((BinaryExpression)oriCondition).getRHS();
-            Expression condLHS = ((BinaryExpression)oriCondition).getLHS();
-            BinaryOperator condOp = ((BinaryExpression)oriCondition).getOperator();
-
-            if(symbol.getSymbolName().equals(condLHS.toString()))
-                condLHS = tempVar;
-            else if(symbol.getSymbolName().equals(condRHS.toString()))
-                condRHS = tempVar;
-
-            newCondition = new BinaryExpression(
-                    condLHS.clone(), condOp, condRHS.clone());
-          //  System.out.println("Condition : " +  oriCondition);
-          //  System.out.println("new Condition : " +  newCondition);
-        } else newCondition = oriCondition.clone();
-        
-        Expression stepRHS = new IntegerLiteral(blockSize);
-        Expression stepLHS = tempVar;
-        newStep = Symbolic.add(stepLHS, stepRHS);
-        newStep = new AssignmentExpression(
-                stepLHS.clone(),
-                AssignmentOperator.ADD,
-                stepRHS.clone());
-/*
-        if(oriStep instanceof BinaryExpression)
-        {
-            System.out.println("oriStep is Binary");
-            Expression stepRHS = ((BinaryExpression)oriStep).getRHS();
-            Expression stepLHS = ((BinaryExpression)oriStep).getLHS();
-            BinaryOperator stepOp = ((BinaryExpression)oriStep).getOperator();
-
-            if(symbol.getSymbolName().equals(stepLHS.toString()))
-                stepLHS = tempVar;
-            else if(symbol.getSymbolName().equals(stepRHS.toString()))
-                stepRHS = tempVar;
-
-            newStep = new BinaryExpression(stepLHS, stepOp, stepRHS);
-            System.out.println("Step : " +  oriStep);
-            System.out.println("new Step : " +  newStep);
-        } else if(oriStep instanceof UnaryExpression) {
-            System.out.println("oriStep is Unary");
-            UnaryOperator stepOp = ((UnaryExpression)oriStep).getOperator();
-
-            newStep = new UnaryExpression(stepOp, tempVar);
-            System.out.println("Step : " +  oriStep);
-            System.out.println("new Step : " +  newStep);
-        } else newStep = (Expression)oriStep.clone();
-    */        
-        Object test_st = ((Statement)(loops.get(newLocation))).clone();
-        Traversable t = (Traversable)(loops.get(newLocation));
-
-        ForLoop newLoop = new ForLoop(newInitStat, newCondition, newStep, (Statement)(test_st));
-      ((Statement)t).swapWith((Statement)newLoop);
-
-        loops.add(newLocation, newLoop);
-
-        DepthFirstIterator iter = new DepthFirstIterator(newLoop);
-//        System.out.println("Target loop : " + targetLoop);
-        while(iter.hasNext()) {
-            Object o = iter.next();
-//            System.out.println("Object : " + o);
-            if(o instanceof ForLoop && ((ForLoop)o).toString().equals(targetLoop.toString()))
-                    return (Loop)o;
-        }
-        return null;
+    public LoopTiling(Program program) {
+        super(program);
+        track_changes = true;
     }
 
-    private Identifier declareTemp(Traversable t, String s)
-    {
-        t = t.getParent();
-        while ( !(t instanceof SymbolTable))
-            t = t.getParent();
-        SymbolTable symtab = (SymbolTable)t;
-
-        NameID temp = new NameID(s);
-        int temp_i = 1;
-        while ( symtab.findSymbol(temp) != null )
-            temp = new NameID(s+"_tiling"+(temp_i++));
+    public String getPassName() {
+        return pass_name;
+    }
 
-        VariableDeclarator temp_declarator = new VariableDeclarator(temp);
-        Declaration temp_decl = new VariableDeclaration(Specifier.INT, temp_declarator);
-        Identifier ret = new Identifier(temp_declarator);
+    public void start() {
+        DDGraph ddg = program.getDDGraph();
+        if (ddg == null) {
+            PrintTools.printlnStatus(0, pass_name,
+                    "[WARNING] no dependence graph; run with -ddt");
+            return;
+        }
+        readCacheSizes();
+        // Collects the bands before modifying the loops.
+        List<List<ForLoop>> bands = new ArrayList<List<ForLoop>>();
+        DFIterator<ForLoop> iter =
+                new DFIterator<ForLoop>(program, ForLoop.class);
+        while (iter.hasNext()) {
+            ForLoop loop = iter.next();
+            ForLoop outer = IRTools.getAncestorOfType(loop, ForLoop.class);
+            if (outer != null && getNestedLoop(outer) == loop) {
+                continue;
+            }
+            List<ForLoop> band = new ArrayList<ForLoop>();
+            for (ForLoop l = loop; l != null; l = getNestedLoop(l)) {
+                band.add(l);
+            }
+            if (band.size() > 1 &&
+                !LoopTools.containsLoop(band.get(band.size()-1)) &&
+                !IncrementalState.isReused(loop)) {
+                bands.add(band);
+            }
+        }
+        for (List<ForLoop> band : bands) {
+            num_bands++;
+            tileBand(band, ddg);
+        }
+        PrintTools.printlnStatus(1, pass_name, "Number of loop bands =",
+                num_bands);
+        PrintTools.printlnStatus(1, pass_name, "  ineligible        =",
+                num_ineligible);
+        PrintTools.printlnStatus(1, pass_name, "  without reuse     =",
+                num_no_reuse);
+        PrintTools.printlnStatus(1, pass_name, "  not permutable    =",
+                num_illegal);
+        PrintTools.printlnStatus(1, pass_name, "  fitting in cache  =",
+                num_in_cache);
+        PrintTools.printlnStatus(1, pass_name, "  tiled             =",
+                num_tiled);
+    }
 
-        //                temp = SymbolTools.getTemp(temp);
-        //        System.out.println(temp.getSymbol() + "name : "+temp.getName());
-        symtab.addDeclaration(temp_decl);
+    /**
+    * Returns the loop that is the only statement in the body of the specified
+    * loop, or null if there is no such loop.
+    */
+    static ForLoop getNestedLoop(ForLoop loop) {
+        Statement body = loop.getBody();
+        Statement ret = body;
+        if (body instanceof CompoundStatement) {
+            ret = null;
+            for (Traversable child : body.getChildren()) {
+                if (child instanceof AnnotationStatement) {
+                    continue;
+                } else if (ret != null) {
+                    return null;
+                }
+                ret = (Statement)child;
+            }
+        }
+        return (ret instanceof ForLoop) ? (ForLoop)ret : null;
+    }
 
-        return ret;
+    /**
+    * Returns the index, the lower bound, and the exclusive upper bound of the
+    * specified loop if it has the form "for (i=lb; i&lt;ub; i++)" or
+    * "for (i=lb; i&lt;=ub; i++)".
+    */
+    static Expression[] getIterationSpace(ForLoop loop) {
+        if (!LoopTools.isCanonical(loop) ||
+            !(loop.getInitialStatement() instanceof ExpressionStatement)) {
+            return null;
+        }
+        Expression init = ((ExpressionStatement)loop.getInitialStatement())
+                .getExpression();
+        if (!(init instanceof AssignmentExpression) ||
+            ((AssignmentExpression)init).getOperator() !=
+                    AssignmentOperator.NORMAL) {
+            return null;
+        }
+        Expression index = ((AssignmentExpression)init).getLHS();
+        Expression step = LoopTools.getIncrementExpression(loop);
+        if (!(index instanceof Identifier) ||
+            !index.equals(LoopTools.getIndexVariable(loop)) ||
+            !(step instanceof IntegerLiteral) ||
+            ((IntegerLiteral)step).getValue() != 1 ||
+            !(loop.getCondition() instanceof BinaryExpression)) {
+            return null;
+        }
+        BinaryExpression cond = (BinaryExpression)loop.getCondition();
+        Expression ub = null;
+        if (!cond.getLHS().equals(index)) {
+            return null;
+        } else if (cond.getOperator() == BinaryOperator.COMPARE_LT) {
+            ub = cond.getRHS().clone();
+        } else if (cond.getOperator() == BinaryOperator.COMPARE_LE) {
+            ub = Symbolic.add(cond.getRHS(), new IntegerLiteral(1));
+        } else {
+            return null;
+        }
+        Expression lb = ((AssignmentExpression)init).getRHS().clone();
+        return new Expression[] {index, lb, ub};
     }
 
-    // Find out which loops could legally interchanged with innermost loop.
-
-
-    public boolean isLegal(LinkedList<Loop> nest, int src, int target)
-    {
-        int i, j, next;
-        DDGraph ddg;
-        String str;
-        ArrayList<DependenceVector> dpv;
-        DependenceVector dd;
-        ddg = program.getDDGraph();
-        dpv = ddg.getDirectionMatrix(nest);
-        
-        if(src == target) return true;
-        if(src > target) {
-            i = src;
-            src = target;
-            target = i;
-        }
-
-    //    System.out.println("DDVector :");
-    //    System.out.println(dpv);
-
-        for(i = 0; i < dpv.size(); i++)
-        {
-            dd = dpv.get(i);
-            str = dd.VectorToString();
-            for(j = 0; j < str.length(); j++)
-            {
-                if(j == src) next = target;
-                else if(j == target) next = src;
-                else next = j;
-                
-                if(next < str.length()) {
-                    if(str.charAt(next) == '>') return false;
-                    if(str.charAt(next) == '<') break;
-                }
+    /**
+    * Checks if the specified band can be tiled. Dependence testing must have
+    * covered the band, its bounds must be invariant, and the data dependences
+    * other than those of array accesses must be resolved by privatization:
+    * the band indices are private to the outermost loop of the band, and the
+    * live-out or reduction variables are not handled.
+    */
+    private static boolean isEligible(List<ForLoop> band,
+                                      Expression[][] spaces) {
+        ForLoop outer = band.get(0);
+        Statement body = band.get(band.size()-1).getBody();
+        CetusAnnotation note =
+                outer.getAnnotation(CetusAnnotation.class, "private");
+        Set<Symbol> private_vars =
+                (note == null) ? null : note.<Set<Symbol>>get("private");
+        if (private_vars == null ||
+            LoopTools.scalarDependencePossible(outer) ||
+            LoopTools.containsControlFlowModifier(outer) ||
+            IRTools.containsFunctionCall(outer) ||
+            IRTools.containsUnary(body, UnaryOperator.DEREFERENCE) ||
+            IRTools.containsClass(body, AccessExpression.class)) {
+            return false;
+        }
+        for (int i = 0; i < band.size(); i++) {
+            ForLoop loop = band.get(i);
+            spaces[i] = getIterationSpace(loop);
+            if (spaces[i] == null ||
+                !LoopTools.checkDataDependenceEligibility(loop) ||
+                !LoopTools.isLoopInvariant(outer, spaces[i][1]) ||
+                !LoopTools.isLoopInvariant(outer, spaces[i][2]) ||
+                !private_vars.contains(
+                        ((Identifier)spaces[i][0]).getSymbol()) ||
+                loop.containsAnnotation(CetusAnnotation.class, "reduction") ||
+                loop.containsAnnotation(CetusAnnotation.class, "lastprivate")) {
+                return false;
+            }
+        }
+        for (ArrayAccess access :
+                IRTools.getExpressionsOfType(body, ArrayAccess.class)) {
+            if (!(access.getArrayName() instanceof Identifier)) {
+                return false;
             }
         }
-    
         return true;
     }
-    private int getGroupReuseAll(LinkedList<Loop> loops, List<ArrayAccess> arrays, int[] reuseValue)
-    {
-        long reuseDistance;
-        int i, j, k;
-
-        for(i = 0; i < loops.size(); i++)
-        {
-            for(j = 0; j < arrays.size(); j++)
-            {
-                for(k = j+1; k < arrays.size(); k++)
-                {
-                    reuseDistance = LoopTools.getReuseDistance(loops.get(i), arrays.get(j), arrays.get(k));
-                    if(reuseDistance > reuseValue[i]) reuseValue[i] = (int)reuseDistance;
+
+    /**
+    * Tiles the specified band if it is eligible, legal, and profitable.
+    */
+    private void tileBand(List<ForLoop> band, DDGraph ddg) {
+        Expression[][] spaces = new Expression[band.size()][];
+        if (!isEligible(band, spaces)) {
+            num_ineligible++;
+            return;
+        }
+        // Full permutability of the band is checked with the enclosing loops
+        // since the dependences carried by them do not constrain the band.
+        // The outer loops of the band that prevent permutation are excluded
+        // from tiling, e.g., a time-step loop of a stencil.
+        LinkedList<Loop> nest = new LinkedList<Loop>();
+        for (Traversable t = band.get(0).getParent(); t != null;
+             t = t.getParent()) {
+            if (t instanceof ForLoop) {
+                nest.addFirst((Loop)t);
+            }
+        }
+        int offset = nest.size();
+        nest.addAll(band);
+        List<DependenceVector> dpv = ddg.getDirectionMatrix(nest);
+        int first = 0;
+        while (first < band.size()-1 &&
+               !isPermutable(dpv, nest, offset+first)) {
+            first++;
+        }
+        if (first == band.size()-1) {
+            num_illegal++;
+            return;
+        }
+        band = band.subList(first, band.size());
+        spaces = Arrays.copyOfRange(spaces, first, spaces.length);
+        int depth = band.size();
+        Collection<ArrayGroup> groups = getArrayGroups(band, spaces);
+        if (groups == null) {
+            num_ineligible++;
+            return;
+        }
+        if (!hasOuterReuse(groups, depth)) {
+            num_no_reuse++;
+            return;
+        }
+        // Constant trip counts; a band with an empty loop is left as is.
+        long[] trips = new long[depth];
+        boolean known_trips = true;
+        for (int i = 0; i < depth; i++) {
+            Expression trip = Symbolic.subtract(spaces[i][2], spaces[i][1]);
+            trips[i] = (trip instanceof IntegerLiteral) ?
+                    ((IntegerLiteral)trip).getValue() : -1;
+            if (trips[i] == 0) {
+                num_in_cache++;
+                return;
+            }
+            known_trips &= (trips[i] > 0);
+        }
+        if (known_trips &&
+            getFootprint(groups, getTileSizes(trips, MAX_TILE_SIZE)) <=
+                    cache_sizes[0] / 2) {
+            num_in_cache++;
+            return;
+        }
+        int level = -1, tile_size = 0;
+        for (int i = 0; i < cache_sizes.length && level < 0; i++) {
+            tile_size = selectTileSize(groups, trips, cache_sizes[i] / 2);
+            if (tile_size >= MIN_TILE_SIZE) {
+                level = i;
+            }
+        }
+        if (level < 0) {
+            num_in_cache++;
+            return;
+        }
+        // Tiles are multiples of cache lines, and divide the iteration space
+        // if possible to avoid the partial tiles.
+        int line_elems = line_size;
+        for (ArrayGroup group : groups) {
+            line_elems = Math.min(line_elems, line_size / group.elem_size);
+        }
+        if (line_elems > 1 && tile_size >= line_elems) {
+            tile_size -= tile_size % line_elems;
+        }
+        int[] sizes = new int[depth];
+        int num_tiled_loops = 0;
+        for (int i = 0; i < depth; i++) {
+            if (trips[i] > 0 && trips[i] <= tile_size) {
+                continue;
+            }
+            sizes[i] = tile_size;
+            for (int size = tile_size; trips[i] > 0 && 2*size >= tile_size;
+                 size -= Math.max(1, line_elems)) {
+                if (trips[i] % size == 0) {
+                    sizes[i] = size;
+                    break;
                 }
             }
+            num_tiled_loops++;
         }
-
-        //reuseDistance = LoopTools.getReuseDistance(loops.get(0), arrays.get(0), arrays.get(1));
-        //System.out.println("reuse dist : " + reuseDistance);
-        return 0;
-
+        // Tiling a single loop does not change the iteration order.
+        if (num_tiled_loops < 2) {
+            num_in_cache++;
+            return;
+        }
+        tile(band, spaces, trips, sizes);
+        num_tiled++;
+        PrintTools.printlnStatus(1, pass_name, "Tiled",
+                LoopTools.getLoopName(band.get(0)), "for L" + (level+1),
+                "with tile sizes", PrintTools.listToString(toList(sizes), ","));
     }
-    private int getSelfReuseAll(LinkedList<Loop> loops, List<ArrayAccess> arrays, int[] reuseValue)
-    {
-        long [] kernelVector;
-        int loopSize = loops.size();
-        List type;
-        int typeSize;
 
-        kernelVector = new long[loopSize];
-
-        for(int i=0; i < arrays.size(); i++)
-        {
-            kernelVector = getKernelVector(loops, arrays.get(i));
-            typeSize = getTypeSize(arrays.get(i));
-//            System.out.println("typeSize = " + typeSize + " bit");
-
-            for(int j=0; j < loopSize; j++)
-                if(reuseValue[j] < (kernelVector[j]*typeSize)) reuseValue[j] = (int)(kernelVector[j]*typeSize);
-
-    //        System.out.print("reuseValue : ");
-    //        for(int j=0; j < loopSize; j++)
-    //          System.out.print(reuseValue[j]+ " ");
-    //        System.out.println();
+    private static List<Integer> toList(int[] values) {
+        List<Integer> ret = new ArrayList<Integer>(values.length);
+        for (int value : values) {
+            ret.add(value);
         }
-
-
-        return 1;
+        return ret;
     }
 
-    private int getTypeSize(ArrayAccess array)
-    {
-        int typeSize;
-        List types;
-        Specifier type;
-        
-        types = ((Identifier)array.getArrayName()).getSymbol().getTypeSpecifiers();
-        type = (Specifier)types.get(0);
-//        System.out.println("gettype : " + type);
-
-        if(type == Specifier.BOOL)                         typeSize=1;
-        else if(type == Specifier.CHAR)               typeSize=8;
-        else if(type == Specifier.WCHAR_T)         typeSize=32;
-        else if(type == Specifier.SHORT)              typeSize=16;
-        else if(type == Specifier.INT)                  typeSize=32;
-        else if(type == Specifier.LONG)                typeSize=32;
-        else if(type == Specifier.SIGNED)            typeSize=32;
-        else if(type == Specifier.UNSIGNED)        typeSize=32;
-        else if(type == Specifier.FLOAT)             typeSize=32;
-        else if(type == Specifier.DOUBLE)            typeSize=64;
-        else if(type == Specifier.VOID)              typeSize=8;
-        else typeSize = 32;
-
-        return typeSize;
+    /**
+    * Performs tiling of the band with the specified tile sizes, where a loop
+    * with zero tile size is not tiled.
+    */
+    private void tile(List<ForLoop> band, Expression[][] spaces, long[] trips,
+                      int[] sizes) {
+        // The new variables are declared in the scope enclosing the band.
+        Traversable scope = band.get(0).getParent();
+        List<Symbol> tile_vars = new ArrayList<Symbol>();
+        ForLoop tile_loop = null, point_loop = null;
+        CompoundStatement tile_body = null;
+        for (int i = 0; i < band.size(); i++) {
+            if (sizes[i] == 0) {
+                continue;
+            }
+            ForLoop loop = band.get(i);
+            Identifier index = (Identifier)spaces[i][0];
+            Expression lb = spaces[i][1], ub = spaces[i][2];
+            Identifier tile = SymbolTools.getTemp(scope,
+                    index.getSymbol().getTypeSpecifiers(),
+                    index.getName() + "_tile");
+            tile_vars.add(tile.getSymbol());
+            Expression size = new IntegerLiteral(sizes[i]);
+            Statement tile_init = new ExpressionStatement(
+                    new AssignmentExpression(
+                            tile.clone(), AssignmentOperator.NORMAL, lb));
+            Expression tile_cond = new BinaryExpression(
+                    tile.clone(), BinaryOperator.COMPARE_LT, ub.clone());
+            Expression tile_step = new AssignmentExpression(
+                    tile.clone(), AssignmentOperator.ADD, size);
+            Statement point_init = new ExpressionStatement(
+                    new AssignmentExpression(
+                            index.clone(), AssignmentOperator.NORMAL,
+                            tile.clone()));
+            Expression point_ub = Symbolic.add(tile, size);
+            if (trips[i] < 0 || trips[i] % sizes[i] != 0) {
+                point_ub = new ConditionalExpression(
+                        new BinaryExpression(point_ub.clone(),
+                                BinaryOperator.COMPARE_LT, ub.clone()),
+                        point_ub.clone(), ub.clone());
+            }
+            Expression point_cond = new BinaryExpression(
+                    index.clone(), BinaryOperator.COMPARE_LT, point_ub);
+            if (tile_loop == null) {
+                // The outermost tiled loop becomes the outermost tile-control
+                // loop, keeping its annotations, and a new point loop iterates
+                // over its original body.
+                point_loop = new ForLoop(point_init, point_cond,
+                        loop.getStep().clone(), new CompoundStatement());
+                loop.getBody().swapWith(point_loop.getBody());
+                loop.setInitialStatement(tile_init);
+                loop.setCondition(tile_cond);
+                loop.setStep(tile_step);
+                tile_loop = loop;
+                tile_body = (CompoundStatement)loop.getBody();
+            } else {
+                ForLoop new_loop = new ForLoop(tile_init, tile_cond, tile_step,
+                        new CompoundStatement());
+                tile_body.addStatement(new_loop);
+                tile_body = (CompoundStatement)new_loop.getBody();
+                loop.setInitialStatement(point_init);
+                loop.setCondition(point_cond);
+            }
+        }
+        tile_body.addStatement(point_loop);
+        // The new variables are private to the loops within the scope.
+        for (Traversable t = tile_loop; t != scope; t = t.getParent()) {
+            if (t instanceof ForLoop) {
+                CetusAnnotation note = ((ForLoop)t).getAnnotation(
+                        CetusAnnotation.class, "private");
+                if (note != null) {
+                    Set<Symbol> private_vars = note.get("private");
+                    private_vars.addAll(tile_vars);
+                }
+            }
+        }
+        setModified(tile_loop);
     }
 
+    /**
+    * Collects the array references in the band into the groups. Returns null
+    * if any subscript is not an affine function of the band indices.
+    */
+    static Collection<ArrayGroup>
+            getArrayGroups(List<ForLoop> band, Expression[][] spaces) {
+        int depth = band.size();
+        Set<Symbol> indices = new HashSet<Symbol>();
+        for (Expression[] space : spaces) {
+            indices.add(((Identifier)space[0]).getSymbol());
+        }
+        Map<List<Object>, ArrayGroup> ret =
+                new LinkedHashMap<List<Object>, ArrayGroup>();
+        Statement body = band.get(depth-1).getBody();
+        for (ArrayAccess access :
+                IRTools.getExpressionsOfType(body, ArrayAccess.class)) {
+            Symbol array = ((Identifier)access.getArrayName()).getSymbol();
+            int dims = access.getNumIndices();
+            ArrayGroup group = new ArrayGroup(getElementSize(array), dims,
+                    depth);
+            long[] offsets = new long[dims];
+            List<Object> key = new ArrayList<Object>(dims+1);
+            key.add(array);
+            for (int i = 0; i < dims; i++) {
+                Expression rest = access.getIndex(i);
+                StringBuilder shape = new StringBuilder();
+                for (int j = 0; j < depth; j++) {
+                    Identifier index = (Identifier)spaces[j][0];
+                    Expression coef = Symbolic.getCoefficient(rest, index);
+                    if (coef == null || IRTools.containsSymbols(coef, indices)) {
+                        return null;
+                    } else if (coef instanceof IntegerLiteral) {
+                        group.coefs[i][j] = ((IntegerLiteral)coef).getValue();
+                    } else {
+                        group.symbolic[i][j] = true;
+                    }
+                    if (group.uses(i, j)) {
+                        rest = Symbolic.subtract(rest,
+                                Symbolic.multiply(coef, index));
+                    }
+                    shape.append(coef).append(",");
+                }
+                if (IRTools.containsSymbols(rest, indices)) {
+                    return null;
+                }
+                offsets[i] = Symbolic.getConstantCoefficient(rest);
+                shape.append(Symbolic.subtract(rest,
+                        new IntegerLiteral(offsets[i])));
+                key.add(shape.toString());
+            }
+            ArrayGroup prev = ret.get(key);
+            if (prev == null) {
+                group.min_offset = offsets.clone();
+                group.max_offset = offsets.clone();
+                ret.put(key, group);
+            } else {
+                for (int i = 0; i < dims; i++) {
+                    prev.min_offset[i] = Math.min(prev.min_offset[i],
+                                                  offsets[i]);
+                    prev.max_offset[i] = Math.max(prev.max_offset[i],
+                                                  offsets[i]);
+                }
+            }
+        }
+        return ret.values();
+    }
 
-    private long[] getKernelVector(LinkedList<Loop> loops, ArrayAccess array)
-    {
-        int numLoops = loops.size();
-        int numIndices = array.getNumIndices();
-        double[][] matrix = getLoopMatrix(loops, array);
-        matrix = GaussJordan(matrix, numIndices, numLoops);
-//        System.out.println("Final = ");
-//        printMatrix(matrix);
-
-        long kernel[] = new long[numLoops];
-        for(int i = 0; i < numLoops; i++)
-            kernel[i] = 1;
-
-        for(int i = 1; i <= numIndices; i++)
-            for(int j = 1; j <= numLoops; j++)
-                if(matrix[i][j] != 0) kernel[j-1] = 0;
-
-//        System.out.println("Kernel vector");
-//        for(int i = 0; i < numLoops; i++)
-//            System.out.print(kernel[i]+" ");
-//        System.out.println();
-
-        return kernel;
+    /**
+    * Returns the element size in bytes of the specified array; the size of a
+    * type other than the basic types is assumed to be 8 bytes.
+    */
+    static int getElementSize(Symbol array) {
+        List types = array.getTypeSpecifiers();
+        if (types.contains(Specifier.CHAR)) {
+            return 1;
+        } else if (types.contains(Specifier.SHORT)) {
+            return 2;
+        } else if (types.contains(Specifier.FLOAT)) {
+            return 4;
+        } else if (types.contains(Specifier.DOUBLE)) {
+            return (types.contains(Specifier.LONG)) ? 16 : 8;
+        } else if (types.contains(Specifier.LONG)) {
+            return 8;
+        } else if (types.contains(Specifier.INT)) {
+            return 4;
+        } else {
+            return 8;
+        }
     }
 
-    private double[][] getLoopMatrix(LinkedList<Loop> loops, ArrayAccess array)
-    {
-        double matrix[][];
-        int numLoops = loops.size();
-        int numIndices = array.getNumIndices();
-        matrix = new double[numIndices+1][numLoops+2];
-
-        Expression loopIndex, arrayIndex;
-        List<Expression> tempIndex;
-        Traversable parentExp;
-        Expression lhs, rhs;
-
-        for(int i = 0; i <= numIndices; i++)
-            for(int j = 0; j <= numLoops+1; j++)
-                matrix[i][j] = 0;
-
-        for(int i = 1; i <= numIndices; i++)
-        {
-            arrayIndex = array.getIndex(i-1);
-            for(int j = 1; j <= numLoops; j++)
-            {
-                loopIndex = LoopTools.getIndexVariable((ForLoop)loops.get(j-1));
-                tempIndex = arrayIndex.findExpression(loopIndex);
-                if(tempIndex.size() > 0) {
-                    parentExp = tempIndex.get(0).getParent();
-                    if(parentExp instanceof BinaryExpression)
-                    {
-                        if((((BinaryExpression)parentExp).getOperator()).toString() == "*")
-                        {
-                            lhs = ((BinaryExpression)parentExp).getLHS();
-                            rhs = ((BinaryExpression)parentExp).getRHS();
-
-                            if(rhs.equals((Object)loopIndex)) {
-                                if(lhs instanceof IntegerLiteral) 
-                                    matrix[i][j] = ((IntegerLiteral)lhs).getValue();
-                            }
-                            if(lhs.equals((Object)loopIndex)) {
-                                if(rhs instanceof IntegerLiteral) 
-                                    matrix[i][j] = ((IntegerLiteral)rhs).getValue();
-                            }
-                        }
+    /**
+    * Checks if data are reused across the iterations of a band loop other
+    * than the innermost one: the references of a group are invariant to the
+    * loop (temporal reuse), move along a cache line with the loop (spatial
+    * reuse), or access the same data in different iterations of the loop
+    * (group reuse). Tiling does not improve the reuse in the innermost loop.
+    */
+    private boolean hasOuterReuse(Collection<ArrayGroup> groups, int depth) {
+        for (ArrayGroup group : groups) {
+            int last = group.coefs.length - 1;
+            for (int j = 0; j < depth - 1; j++) {
+                boolean new_lines = false;
+                for (int i = 0; i <= last; i++) {
+                    if (!group.uses(i, j)) {
+                        continue;
+                    } else if (group.max_offset[i] > group.min_offset[i]) {
+                        return true;
+                    } else if (i < last || group.symbolic[i][j] ||
+                        Math.abs(group.coefs[i][j]) * group.elem_size >=
+                                line_size) {
+                        new_lines = true;
                     }
-                    if(matrix[i][j] == 0) matrix[i][j] = 1;
+                }
+                if (!new_lines) {
+                    return true;
                 }
             }
         }
+        return false;
+    }
 
-/*        System.out.println("Loop Matrix : ");
-        for(int i = 1; i <= numIndices; i++)
-        {
-            System.out.println("");
-            for(int j = 1; j <= numLoops; j++)
-                System.out.print(matrix[i][j]+" ");
+    /**
+    * Returns the tile sizes of the loops for the specified tile size, bounded
+    * by the known trip counts.
+    */
+    private static int[] getTileSizes(long[] trips, int tile_size) {
+        int[] ret = new int[trips.length];
+        for (int i = 0; i < trips.length; i++) {
+            ret[i] = (trips[i] > 0) ? (int)Math.min(trips[i], tile_size) :
+                                      tile_size;
         }
-        System.out.println();
-        System.out.println();
-*/
-        return matrix;
+        return ret;
     }
-    private  static void swap(double[][] A, int i, int k, int j){
-        int m = A[0].length - 1;
-        double temp;
-        for(int q=j; q<=m; q++){
-            temp = A[i][q];
-            A[i][q] = A[k][q];
-            A[k][q] = temp;
+
+    /**
+    * Returns the largest tile size whose footprint fits in the specified
+    * capacity, or zero if no tile fits.
+    */
+    private int selectTileSize(Collection<ArrayGroup> groups, long[] trips,
+                               long capacity) {
+        if (getFootprint(groups, getTileSizes(trips, 1)) > capacity) {
+            return 0;
         }
+        // The footprint increases with the tile size.
+        int lo = 1, hi = MAX_TILE_SIZE;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (getFootprint(groups, getTileSizes(trips, mid)) <= capacity) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
     }
 
-    private static void divide(double[][] A, int i, int j){
-        int m = A[0].length - 1;
-        for(int q=j+1; q<=m; q++) A[i][q] /= A[i][j];
-        A[i][j] = 1;
+    /**
+    * Returns the number of bytes in the cache lines accessed by a tile with
+    * the specified sizes. The last subscript of a reference spans contiguous
+    * elements, and the other subscripts and symbolic coefficients select the
+    * rows of the elements.
+    */
+    private double getFootprint(Collection<ArrayGroup> groups, int[] sizes) {
+        double ret = 0;
+        for (ArrayGroup group : groups) {
+            int last = group.coefs.length - 1;
+            double rows = 1, lines = 1;
+            for (int i = 0; i <= last; i++) {
+                long extent = group.max_offset[i] - group.min_offset[i] + 1;
+                long distinct = extent;
+                for (int j = 0; j < sizes.length; j++) {
+                    if (group.symbolic[i][j]) {
+                        rows *= sizes[j];
+                    } else if (group.coefs[i][j] != 0) {
+                        extent += Math.abs(group.coefs[i][j]) * (sizes[j]-1);
+                        distinct += sizes[j] - 1;
+                    }
+                }
+                if (i < last) {
+                    rows *= distinct;
+                } else {
+                    lines = Math.min(distinct, Math.ceil(
+                            (double)extent * group.elem_size / line_size));
+                }
+            }
+            ret += rows * lines * line_size;
+        }
+        return ret;
     }
 
-    private static void eliminate(double[][] A, int i, int j){
-        int n = A.length - 1;
-        int m = A[0].length - 1;
-        for(int p=1; p<=n; p++){
-            if( p!=i && A[p][j]!=0 ){
-                for(int q=j+1; q<=m; q++){
-                    A[p][q] -= A[p][j]*A[i][q];
+    /**
+    * Reads the data cache sizes from the <b>cache-sizes</b> option or the
+    * cache information of the system.
+    */
+    private void readCacheSizes() {
+        cache_sizes = null;
+        line_size = default_line_size;
+        String value = Driver.getOptionValue("cache-sizes");
+        if (value != null) {
+            try {
+                String[] sizes = value.split(",");
+                cache_sizes = new long[sizes.length];
+                for (int i = 0; i < sizes.length; i++) {
+                    cache_sizes[i] = parseSize(sizes[i]);
                 }
-                A[p][j] = 0;
+            } catch (NumberFormatException e) {
+                PrintTools.printlnStatus(0, pass_name,
+                        "[WARNING] ignoring invalid cache-sizes", value);
+                cache_sizes = null;
             }
         }
+        // Levels and sizes of the data or unified caches.
+        Map<Integer, Long> sysfs_sizes = new TreeMap<Integer, Long>();
+        File[] dirs = new File(sysfs_cache).listFiles();
+        for (int i = 0; dirs != null && i < dirs.length; i++) {
+            if (!dirs[i].getName().startsWith("index")) {
+                continue;
+            }
+            try {
+                if (readLine(dirs[i], "type").equals("Instruction")) {
+                    continue;
+                }
+                int level = Integer.parseInt(readLine(dirs[i], "level"));
+                sysfs_sizes.put(level, parseSize(readLine(dirs[i], "size")));
+                if (level == 1) {
+                    line_size = Integer.parseInt(
+                            readLine(dirs[i], "coherency_line_size"));
+                }
+            } catch (IOException e) {
+                continue;
+            } catch (NumberFormatException e) {
+                continue;
+            }
+        }
+        if (line_size <= 0) {
+            line_size = default_line_size;
+        }
+        if (cache_sizes == null && !sysfs_sizes.isEmpty()) {
+            cache_sizes = new long[sysfs_sizes.size()];
+            int i = 0;
+            for (long size : sysfs_sizes.values()) {
+                cache_sizes[i++] = size;
+            }
+        }
+        if (cache_sizes == null) {
+            cache_sizes = default_cache_sizes.clone();
+        }
+        PrintTools.printlnStatus(1, pass_name, "Cache sizes =",
+                Arrays.toString(cache_sizes), "line size =", line_size);
     }
 
-    private static void printMatrix(double[][] A){
-        int n = A.length - 1;
-        int m = A[0].length - 1;
-        for(int i=1; i<=n; i++){
-            for(int j=1; j<=m; j++) System.out.print(A[i][j] + "  ");
-            System.out.println();
+    /** Returns the first line of the specified file in the directory */
+    private static String readLine(File dir, String name) throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new FileReader(new File(dir, name)));
+        try {
+            String ret = reader.readLine();
+            if (ret == null) {
+                throw new IOException("empty file " + name);
+            }
+            return ret.trim();
+        } finally {
+            reader.close();
         }
-        System.out.println();
-        System.out.println();
     }
 
-    private static double[][] GaussJordan(double[][] A, int n, int m)
-    {
-        int i,j,k;
-      //  printMatrix(A);
-
-        // perform Gauss-Jordan Elimination algorithm
-        i = 1;
-        j = 1;
-        while( i<=n && j<=m ){
-
-            //look for a non-zero entry in col j at or below row i
-            k = i;
-            while( k<=n && A[k][j]==0 ) k++;
+    /** Parses a positive size in bytes with an optional K, M, or G suffix */
+    private static long parseSize(String size) {
+        String value = size.trim().toUpperCase();
+        long unit = 1;
+        if (value.endsWith("K")) {
+            unit = 1 << 10;
+        } else if (value.endsWith("M")) {
+            unit = 1 << 20;
+        } else if (value.endsWith("G")) {
+            unit = 1 << 30;
+        }
+        if (unit > 1) {
+            value = value.substring(0, value.length()-1);
+        }
+        long ret = Long.parseLong(value) * unit;
+        if (ret <= 0) {
+            throw new NumberFormatException("non-positive size " + size);
+        }
+        return ret;
+    }
 
-            // if such an entry is found at row k
-            if( k<=n ){
+    /**
+    * Checks if the loops at positions <b>src</b> and <b>target</b> of the
+    * specified nest can be interchanged without violating the dependences in
+    * the program.
+    * @param nest the loop nest from the outermost loop.
+    * @param src the position of a loop.
+    * @param target the position of the other loop.
+    * @return true if the interchange is legal.
+    */
+    public boolean isLegal(LinkedList<Loop> nest, int src, int target) {
+        DDGraph ddg = program.getDDGraph();
+        return isLegal(ddg.getDirectionMatrix(nest), nest, src, target);
+    }
 
-                //  if k is not i, then swap row i with row k
-                if( k!=i ) {
-                    swap(A, i, k, j);
-          //          printMatrix(A);
+    /**
+    * Checks if the loops of the nest from the specified position are fully
+    * permutable, i.e., every pair of them can be interchanged.
+    */
+    private static boolean isPermutable(List<DependenceVector> dpv,
+                                        List<Loop> nest, int from) {
+        for (int i = from; i < nest.size(); i++) {
+            for (int j = i+1; j < nest.size(); j++) {
+                if (!isLegal(dpv, nest, i, j)) {
+                    return false;
                 }
+            }
+        }
+        return true;
+    }
 
-                // if A[i][j] is not 1, then divide row i by A[i][j]
-                if( A[i][j]!=1 ){
-                    divide(A, i, j);
-                  //  printMatrix(A);
+    /**
+    * Checks if every direction vector in the specified matrix is still
+    * lexicographically positive after interchanging the two directions. A
+    * dependence is not affected by the interchange if either loop does not
+    * enclose both of its accesses; any other loop missing in the vector does
+    * not carry the dependence. The "*" direction is conservatively assumed to
+    * include ">".
+    */
+    private static boolean isLegal(List<DependenceVector> dpv, List<Loop> nest,
+                                   int src, int target) {
+        if (src == target) {
+            return true;
+        }
+        for (DependenceVector dv : dpv) {
+            if (dv.getDirectionString(nest.get(src)).length() == 0 ||
+                dv.getDirectionString(nest.get(target)).length() == 0) {
+                continue;
+            }
+            for (int i = 0; i < nest.size(); i++) {
+                int next = i;
+                if (i == src) {
+                    next = target;
+                } else if (i == target) {
+                    next = src;
+                }
+                String dir = dv.getDirectionString(nest.get(next));
+                if (dir.equals("<")) {
+                    break;
+                } else if (dir.equals(">") || dir.equals("*")) {
+                    return false;
                 }
-
-                // eliminate all other non-zero entries from col j by subtracting from each
-                // row (other than i) an appropriate multiple of row i
-                eliminate(A, i, j);
-            //    printMatrix(A);
-                i++;
             }
-            j++;
         }
-
-      //  System.out.println("rank = " + (i-1));
-        return A;
+        return true;
     }
 }
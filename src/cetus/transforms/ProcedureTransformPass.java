@@ -1,6 +1,7 @@
 package cetus.transforms;
 
 import cetus.exec.Driver;
+import cetus.exec.PassTelemetry;
 import cetus.hir.DFIterator;
 import cetus.hir.PrintTools;
 import cetus.hir.Procedure;
@@ -25,7 +26,10 @@ public abstract class ProcedureTransformPass extends TransformPass {
               if (!skip_set.contains(proc.getName().toString())) {
                   PrintTools.printlnStatus(1,
                         getPassName(), "examining procedure", proc.getName());
+                    long timer = System.nanoTime();
                     transformProcedure(proc);
+                    PassTelemetry.addProcedureTime(
+                            proc, System.nanoTime() - timer);
               } else {
                   PrintTools.printlnStatus(1,
                         getPassName(), "skipping procedure", proc.getName());
@@ -3,12 +3,25 @@ package cetus.transforms;
 import cetus.analysis.IPPointsToAnalysis;
 import cetus.analysis.IPRangeAnalysis;
 import cetus.analysis.ArrayParameterAnalysis;
+import cetus.analysis.CallGraph;
 import cetus.analysis.RangeAnalysis;
+import cetus.analysis.DDTestWrapper;
+import cetus.analysis.UnificationAliasAnalysis;
+import cetus.exec.PassTelemetry;
 import cetus.hir.*;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
 * Base class of all transformation passes. For consistent compilation, there
 * are a series of checking processes at the end of every transformation pass.
+* A pass that sets {@link #track_changes} reports the regions it modifies
+* through {@link #setModified(Traversable)}; the checking processes then
+* cover only the modified procedures, and the cached analysis results are
+* invalidated only for the procedures that may depend on them through the call
+* graph.
+* Other passes are assumed to modify the whole program.
 */
 public abstract class TransformPass {
 
@@ -21,11 +34,23 @@ public abstract class TransformPass {
     /** Flags for skipping analysis invalidation */
     protected boolean disable_invalidation;
 
+    /** Flags for reporting modified regions instead of the whole program */
+    protected boolean track_changes;
+
+    /** Procedures modified by the pass if track_changes is set */
+    private Set<Procedure> modified_procedures;
+
+    /** Flags for modifications outside any procedure */
+    private boolean modified_program;
+
     /** Constructs a transform pass with the given program */
     protected TransformPass(Program program) {
         this.program = program;
         disable_protection = false;
         disable_invalidation = false;
+        track_changes = false;
+        modified_procedures = new LinkedHashSet<Procedure>();
+        modified_program = false;
     }
 
     /** Returns the name of the transform pass */
@@ -38,24 +63,94 @@ public abstract class TransformPass {
     public static void run(TransformPass pass) {
         double timer = Tools.getTime();
         PrintTools.println(pass.getPassName() + " begin", 0);
+        PassTelemetry.Record telemetry =
+                PassTelemetry.begin(pass.getPassName(), pass.program);
+        pass.modified_procedures.clear();
+        pass.modified_program = false;
         pass.start();
+        PassTelemetry.end(telemetry, pass.program);
         PrintTools.println(pass.getPassName() + " end in " +
                 String.format("%.2f seconds", Tools.getTime(timer)), 0);
+        Set<Procedure> modified = pass.getModifiedProcedures();
+        if (modified != null) {
+            PrintTools.printlnStatus(1, pass.getPassName(), "modified",
+                    modified.size(), "procedure(s)");
+        }
         if (!pass.disable_protection) {
-            if (!IRTools.checkConsistency(pass.program)) {
-                throw new InternalError("Inconsistent IR after " +
-                                        pass.getPassName());
+            if (modified == null) {
+                checkConsistency(pass, pass.program);
+                SymbolTools.linkSymbol(pass.program);
+            } else {
+                for (Procedure proc : modified) {
+                    checkConsistency(pass, proc);
+                    SymbolTools.linkSymbol(proc);
+                }
             }
-            SymbolTools.linkSymbol(pass.program);
         }
         // Invalidates points-to relations.
         // TODO: what about ddgraph ?
         if (!pass.disable_invalidation) {
-            IPPointsToAnalysis.clearPointsToRelations();
-            IPRangeAnalysis.clear();
-            ArrayParameterAnalysis.invalidate();
-            RangeAnalysis.invalidate();
+            // Interprocedural points-to relations flow in both directions of
+            // the call edges while ranges and array parameters only depend on
+            // the callees.
+            Set<Procedure> connected = null, callers = null;
+            if (modified != null) {
+                CallGraph callgraph = new CallGraph(pass.program);
+                connected = callgraph.getConnectedProcedures(modified);
+                callers = callgraph.getCallingProcedures(modified);
+            }
+            if (connected == null || callers == null) {
+                IPPointsToAnalysis.clearPointsToRelations();
+                UnificationAliasAnalysis.invalidate();
+                IPRangeAnalysis.clear();
+                ArrayParameterAnalysis.invalidate();
+                RangeAnalysis.invalidate();
+                DDTestWrapper.invalidate();
+            } else if (!connected.isEmpty()) {
+                IPPointsToAnalysis.clearPointsToRelations(connected);
+                UnificationAliasAnalysis.invalidate();
+                ArrayParameterAnalysis.invalidate(callers);
+                RangeAnalysis.invalidate(callers);
+                DDTestWrapper.invalidate();
+            }
+        }
+    }
+
+    private static void checkConsistency(TransformPass pass, Traversable t) {
+        if (!IRTools.checkConsistency(t)) {
+            throw new InternalError("Inconsistent IR after " +
+                                    pass.getPassName());
+        }
+    }
+
+    /**
+    * Records that the specified IR object has been modified by this pass. The
+    * procedure containing the object is checked and its dependent analysis
+    * results are invalidated after the pass; an object outside any procedure
+    * makes the whole program modified. This method has no effect unless
+    * {@link #track_changes} is set.
+    * @param t the modified IR object.
+    */
+    protected void setModified(Traversable t) {
+        Procedure proc = (t instanceof Procedure) ? (Procedure)t :
+                IRTools.getAncestorOfType(t, Procedure.class);
+        if (proc == null) {
+            modified_program = true;
+        } else {
+            modified_procedures.add(proc);
+        }
+    }
+
+    /**
+    * Returns the procedures modified by the last run of this pass, or null if
+    * the whole program should be considered modified.
+    * @return the set of modified procedures or null.
+    */
+    protected Set<Procedure> getModifiedProcedures() {
+        if (!track_changes || modified_program) {
+            return null;
         }
+        return modified_procedures;
     }
 
     /** Starts a transform pass */
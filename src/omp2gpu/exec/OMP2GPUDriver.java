@@ -279,6 +279,7 @@ public class OMP2GPUDriver extends Driver
 			System.err.println("could not write output files: " + e);
 			System.exit(1);
 		}
+		PassTelemetry.write();
 	}
 	/**
 	 * Entry point for Cetus; creates a new Driver object,
@@ -56,6 +56,7 @@ public class OMPDDriver extends Driver {
             System.err.println("could not write output files: " + e);
             System.exit(1);
         }
+        PassTelemetry.write();
     }
 
     /**
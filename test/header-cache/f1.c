@@ -0,0 +1,3 @@
+#include <stdio.h>
+#include "h1.h"
+int main1(void) { pair_t p; p.a = 1; printf("%d\n", h1fun(&p)); return 0; }
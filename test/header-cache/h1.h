@@ -0,0 +1,2 @@
+typedef struct { int a; double b; } pair_t;
+int h1fun(pair_t *p);